@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmarks jar. Takes the usual JMH command line
+ * options, but always adds the GC profiler, so that every benchmark reports
+ * allocations per op (<tt>gc.alloc.rate.norm</tt>) alongside its ops/s.
+ * <p/>
+ * E.g. <tt>java -jar target/benchmarks.jar Tetra</tt> runs just the
+ * benchmarks with "Tetra" in their names.
+ */
+public class BenchMain {
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions cmdLine = new CommandLineOptions(args);
+    Options options =
+        new OptionsBuilder()
+        .parent(cmdLine)
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.bench.SimEngineBench.CountingCheckpoint;
+import com.gnahraf.sim.CheckpointStack;
+
+/**
+ * Cost of firing (and rescheduling) the head of a {@linkplain CheckpointStack}
+ * of periodic checkpoints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckpointStackBench {
+
+  @Param({ "1", "10", "100" })
+  public int checkpoints;
+
+  private CheckpointStack stack;
+
+
+  @Setup
+  public void setup() {
+    stack = new CheckpointStack();
+    for (int k = 0; k < checkpoints; ++k) {
+      // distinct periods, so the schedules interleave
+      long periodTicks = 1000 + 7 * k;
+      stack.schedule(new CountingCheckpoint(), periodTicks, periodTicks, k);
+    }
+  }
+
+
+  @Benchmark
+  public int consumeHeadTick() {
+    return stack.consumeHeadTick();
+  }
+
+}
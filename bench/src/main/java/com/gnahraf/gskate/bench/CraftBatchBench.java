@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.gskate.tetra.model.CraftBatch;
+
+/**
+ * Animates a number of crafts for one control interval (40 millis at the default
+ * time fineness), once in a {@linkplain CraftBatch}, once one craft at a time.
+ * The tethers are slack, so the crafts never collide.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CraftBatchBench {
+
+  private final static double DT = new Constraints().timeFineness;
+
+  private final static long CONTROL_MILLIS = 40;
+
+  @Param({ "1", "16", "256" })
+  public int crafts;
+
+  private List<LonelyEarth> systems;
+  private CraftBatch batch;
+
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    systems = new ArrayList<>(crafts);
+    for (int c = 0; c < crafts; ++c)
+      systems.add(new LonelyEarth(new Constraints()));
+    batch = new CraftBatch(systems);
+  }
+
+
+  @Benchmark
+  public CraftBatch batched() {
+    batch.animateMillis(CONTROL_MILLIS, DT);
+    return batch;
+  }
+
+
+  @Benchmark
+  public List<LonelyEarth> oneByOne() {
+    for (int c = 0; c < crafts; ++c)
+      systems.get(c).animateMillis(CONTROL_MILLIS, DT);
+    return systems;
+  }
+
+}
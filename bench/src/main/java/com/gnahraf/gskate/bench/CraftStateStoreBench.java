@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.gskate.tetra.gen.le.io.TrialStore;
+import com.gnahraf.gskate.tetra.model.CraftState;
+import com.gnahraf.gskate.tetra.model.Tetra;
+import com.gnahraf.io.store.ObjectManager;
+
+/**
+ * Writes and reads {@linkplain CraftState}s through the {@linkplain TrialStore}'s
+ * (hashed, file-per-object) state manager. The store is created afresh for
+ * each iteration, so that the writes always create new files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CraftStateStoreBench {
+
+  private Tetra craft;
+  private long time;
+
+  private Path dir;
+  private ObjectManager<CraftState> manager;
+  private String readId;
+
+
+  @Setup(Level.Trial)
+  public void setupCraft() {
+    craft = new LonelyEarth(new Constraints()).getCraft();
+  }
+
+
+  @Setup(Level.Iteration)
+  public void setupStore() throws IOException {
+    dir = Files.createTempDirectory("gskate-bench");
+    manager = TrialStore.load(dir.toFile()).getStateManager();
+    readId = manager.write(new CraftState(-1, craft));
+  }
+
+
+  @TearDown(Level.Iteration)
+  public void deleteStore() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+
+  /**
+   * Each op writes a new state (a new file).
+   */
+  @Benchmark
+  public String write() {
+    return manager.write(new CraftState(++time, craft));
+  }
+
+
+  /**
+   * Each op writes an already stored state (only validated).
+   */
+  @Benchmark
+  public String writeExisting() {
+    return manager.write(new CraftState(-1, craft));
+  }
+
+
+  @Benchmark
+  public CraftState read() {
+    return manager.read(readId);
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.sim.Checkpoint;
+import com.gnahraf.sim.SimEngine;
+import com.gnahraf.sim.Universe;
+
+/**
+ * {@linkplain SimEngine} overhead with a varying number of periodic checkpoints.
+ * The model does no work, so this measures the engine's bookkeeping. Each op
+ * animates 1 millisecond at microsecond resolution (1000 animation ticks).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimEngineBench {
+
+  /**
+   * The k'th checkpoint (zero-based) has a period of (k + 1) times this
+   * many ns (10 animation ticks). So checkpoints fire on at most every 10th
+   * animation tick: the first fires on each of those, the others on a subset.
+   */
+  public final static long BASE_PERIOD_TICKS = 10_000;
+
+
+  static class NullUniverse extends Universe {
+    long steps;
+    @Override
+    public void tick(double time, long steps) {
+      this.steps += steps;
+    }
+  }
+
+
+  static class CountingCheckpoint extends Checkpoint {
+    long count;
+    @Override
+    public void check() {
+      ++count;
+    }
+  }
+
+
+  @Param({ "1", "10", "100" })
+  public int checkpoints;
+
+  private SimEngine engine;
+
+
+  @Setup
+  public void setup() {
+    engine = new SimEngine(new NullUniverse());
+    engine.setAnimationTps(1000 * 1000);
+    for (int k = 0; k < checkpoints; ++k) {
+      long periodTicks = (k + 1) * BASE_PERIOD_TICKS;
+      engine.schedule(new CountingCheckpoint(), periodTicks, periodTicks, k);
+    }
+  }
+
+
+  @Benchmark
+  public long animate() {
+    return engine.animate(0.001);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.sling.Sling;
+import com.gnahraf.gskate.sling.TetherLengthControl;
+import com.gnahraf.gskate.sling.le.Launcher;
+
+/**
+ * {@linkplain Sling} time step halves, plus its tether controller (which
+ * the controller's docs claim isn't worth optimizing).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlingBench {
+
+  /**
+   * 200k ticks per second, same as the sling demo.
+   */
+  private final static double DT = 1.0 / 200_000;
+
+  private Sling sling;
+  private TetherLengthControl control;
+  private double controlTime;
+
+
+  @Setup
+  public void setup() {
+    sling = new Launcher().launch();
+    sling.setTether(0.01);
+    sling.updateForces();
+    control = new TetherLengthControl(sling);
+    control.init(controlTime);
+  }
+
+
+  @Benchmark
+  public Sling updateForces() {
+    sling.updateForces();
+    return sling;
+  }
+
+
+  @Benchmark
+  public Sling animate() {
+    sling.animate(DT);
+    return sling;
+  }
+
+
+  /**
+   * The bobs don't move here, so the controller sees the same state
+   * at ever later times. Still exercises the full code path.
+   */
+  @Benchmark
+  public TetherLengthControl adjustTether() {
+    control.adjustTether(controlTime += DT);
+    return control;
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.gskate.tetra.model.Tetra;
+
+/**
+ * The 2 halves of a {@linkplain Tetra} time step, measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TetraBench {
+
+  private final static double DT = new Constraints().timeFineness;
+
+  private SphericalBodyPotential potential;
+  private Tetra craft;
+
+
+  @Setup
+  public void setup() {
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    craft = system.getCraft();
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, -0.5);
+    potential = new SphericalBodyPotential();
+    craft.updateForces(potential);
+  }
+
+
+  @Benchmark
+  public Tetra updateForces() {
+    craft.updateForces(potential);
+    return craft;
+  }
+
+
+  /**
+   * Accelerations are held fixed (we don't update forces), which is fine
+   * for this many steps at this time resolution.
+   */
+  @Benchmark
+  public Tetra animateDeltaT() {
+    craft.animateDeltaT(DT);
+    return craft;
+  }
+
+}
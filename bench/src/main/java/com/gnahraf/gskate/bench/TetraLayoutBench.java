@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.bench;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.gskate.tetra.model.PackedTetra;
+import com.gnahraf.gskate.tetra.model.Tetra;
+
+/**
+ * Compares the {@linkplain Tetra} object graph with the {@linkplain PackedTetra}
+ * arrays. Each op is one time step (update forces, then animate).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TetraLayoutBench {
+
+  private final static double DT = new Constraints().timeFineness;
+
+  private SphericalBodyPotential potential;
+  private Tetra craft;
+  private PackedTetra packed;
+
+
+  @Setup
+  public void setup() {
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    craft = system.getCraft();
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, -0.5);
+    potential = new SphericalBodyPotential();
+    packed = new PackedTetra(craft);
+  }
+
+
+  @Benchmark
+  public Tetra objectGraphStep() {
+    craft.animate(potential, DT, DT);
+    return craft;
+  }
+
+
+  @Benchmark
+  public PackedTetra packedStep() {
+    packed.animate(potential, DT, DT);
+    return packed;
+  }
+
+}
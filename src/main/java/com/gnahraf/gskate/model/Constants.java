@@ -22,5 +22,34 @@ public class Constants {
   public final static double EARTH_RADIUS = 6.371e6;
 
   public static final double MIN_SURFACE_DISTANCE = 100 * 1000;
+  
+  public final static double MOON_MASS = 7.342e22;
+  
+  /**
+   * Mean Earth-Moon distance.
+   */
+  public final static double MOON_ORBIT_RADIUS = 3.844e8;
+  
+  /**
+   * Sidereal month in seconds.
+   */
+  public final static double MOON_PERIOD = 27.321661 * 86400;
+  
+  public final static double SUN_MASS = 1.989e30;
+  
+  /**
+   * Astronomical unit: mean Earth-Sun distance.
+   */
+  public final static double AU = 1.495978707e11;
+  
+  /**
+   * Sidereal year in seconds.
+   */
+  public final static double YEAR = 365.256363 * 86400;
+  
+  /**
+   * Tilt of the Earth's equator to the ecliptic, in radians.
+   */
+  public final static double OBLIQUITY = Math.toRadians(23.44);
 
 }
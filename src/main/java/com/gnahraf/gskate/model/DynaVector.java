@@ -168,6 +168,26 @@ public class DynaVector {
     vel.add(dvx, dvy, dvz);
   }
 
+  /**
+   * Advances the {@linkplain #getVel() velocity} by <tt>dt</tt> seconds of the current
+   * acceleration. The position is unchanged.
+   * 
+   * @see com.gnahraf.sim.Integrator
+   */
+  public void kick(double dt) {
+    vel.add(acc, dt);
+  }
+
+  /**
+   * Advances the {@linkplain #getPos() position} by <tt>dt</tt> seconds of the current
+   * velocity. The velocity is unchanged.
+   * 
+   * @see com.gnahraf.sim.Integrator
+   */
+  public void drift(double dt) {
+    pos.add(vel, dt);
+  }
+
   public double getX() {
     return pos.getX();
   }
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import java.util.Arrays;
+
+import com.gnahraf.math.matrix.LuSolver;
+
+/**
+ * Elastic tether forces of a {@linkplain TetheredCraft}, and the implicit step that
+ * integrates them. A tether is a spring-damper that's only engaged when stretched
+ * past its rest length <i>L<sub>0</sub></i>; its tension, then, is
+ * <pre>
+ *   T = k (s - &epsilon;/2) + c ds/dt         (s = L - L<sub>0</sub> &ge; &epsilon;)
+ *   T = (k s/2 + c ds/dt) s / &epsilon;            (0 &lt; s &lt; &epsilon;)
+ * </pre>
+ * where the <em>toe</em> <i>&epsilon;</i> is {@value #TOE_STRAIN} of the rest length.
+ * Real tethers do stiffen gradually as they take up slack. Here it's mostly so that
+ * the tension and its derivatives are continuous at engagement: Newton's method
+ * cycles (slack, taut, slack..) on a kink, and a stiff tether near equilibrium
+ * is always near its kink.
+ * Works on the craft's arrays (shared, not copied).
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+final class ElasticSolver {
+
+  private final static int MAX_ITERATIONS = 20;
+  private final static int MAX_SPLITS = 16;
+
+  /**
+   * Width of the tension's ramp at engagement, as a fraction of the rest length.
+   */
+  final static double TOE_STRAIN = 1e-4;
+
+  private final static double GAMMA = 1 - Math.sqrt(0.5);
+
+  private final int[] lo;
+  private final int[] hi;
+  private final double[] inverseMass;
+  private final double[] restLength;
+  private final double[] stiffness;
+  private final double[] damping;
+
+  private final int n;
+
+  // work arrays, recycling ok since single threaded
+  private final double[] jacobian;
+  /**
+   * Velocity changes from the start of the step, by coordinate: at the first stage,
+   * and at the second (the Newton iterate).
+   */
+  private final double[] d1;
+  private final double[] d;
+  /**
+   * The second stage's position offset and velocity change, less its implicit terms.
+   */
+  private final double[] p;
+  private final double[] q;
+  private final double[] delta;
+  /**
+   * Separation and relative velocity at the start of the stage (less its implicit
+   * terms), by tether.
+   */
+  private final double[] u0;
+  private final double[] w0;
+  private final double[] unit = new double[3];
+  private final double[] gradient = new double[3];
+  private final double[] block = new double[9];
+  private final LuSolver lu;
+
+  private int iterations;
+  private double lastCorrection;
+
+
+  ElasticSolver(
+      int[] lo, int[] hi, double[] inverseMass,
+      double[] restLength, double[] stiffness, double[] damping) {
+    this.lo = lo;
+    this.hi = hi;
+    this.inverseMass = inverseMass;
+    this.restLength = restLength;
+    this.stiffness = stiffness;
+    this.damping = damping;
+    this.n = inverseMass.length;
+    this.jacobian = new double[n * n];
+    this.d1 = new double[n];
+    this.d = new double[n];
+    this.p = new double[n];
+    this.q = new double[n];
+    this.delta = new double[n];
+    this.u0 = new double[3 * lo.length];
+    this.w0 = new double[3 * lo.length];
+    this.lu = new LuSolver(n);
+  }
+
+
+  /**
+   * Returns the number of Newton iterations (both stages) the last successful
+   * {@linkplain #step(double[], double[], double) step} took.
+   */
+  int getIterations() {
+    return iterations;
+  }
+
+
+  /**
+   * Returns the elastic tension (Newtons) in the given tether.
+   */
+  double tension(double[] pos, double[] vel, int tether) {
+    final int a = lo[tether];
+    final int b = hi[tether];
+    double ux = pos[b] - pos[a];
+    double uy = pos[b + 1] - pos[a + 1];
+    double uz = pos[b + 2] - pos[a + 2];
+    double length = Math.sqrt(ux*ux + uy*uy + uz*uz);
+    double stretch = length - restLength[tether];
+    if (!(stretch > 0))
+      return 0;
+    double rate =
+        (ux * (vel[b] - vel[a]) + uy * (vel[b + 1] - vel[a + 1]) + uz * (vel[b + 2] - vel[a + 2]))
+        / length;
+    double toe = TOE_STRAIN * restLength[tether];
+    if (stretch < toe)
+      return (stiffness[tether] * stretch / 2 + damping[tether] * rate) * stretch / toe;
+    return stiffness[tether] * (stretch - toe / 2) + damping[tether] * rate;
+  }
+
+
+  /**
+   * Adds the elastic tethers' accelerations to <tt>acc</tt>.
+   */
+  void addForces(double[] pos, double[] vel, double[] acc) {
+    for (int tether = 0; tether < lo.length; ++tether) {
+      if (stiffness[tether] == 0)
+        continue;
+      double tension = tension(pos, vel, tether);
+      if (tension == 0)
+        continue;
+      final int a = lo[tether];
+      final int b = hi[tether];
+      double ux = pos[b] - pos[a];
+      double uy = pos[b + 1] - pos[a + 1];
+      double uz = pos[b + 2] - pos[a + 2];
+      double scale = tension / Math.sqrt(ux*ux + uy*uy + uz*uz);
+      double fx = ux * scale;
+      double fy = uy * scale;
+      double fz = uz * scale;
+      acc[a] += fx * inverseMass[a];
+      acc[a + 1] += fy * inverseMass[a];
+      acc[a + 2] += fz * inverseMass[a];
+      acc[b] -= fx * inverseMass[b];
+      acc[b + 1] -= fy * inverseMass[b];
+      acc[b + 2] -= fz * inverseMass[b];
+    }
+  }
+
+
+  /**
+   * Advances the given positions and velocities <tt>dt</tt> seconds under the
+   * elastic forces alone (and free drift), by the 2-stage, 2nd order, L-stable SDIRK
+   * (singly diagonally implicit Runge-Kutta) rule. With <i>&gamma; = 1 - 1/&radic;2</i>,
+   * <i>y = (x, v)</i> and <i>f(y) = (v, M<sup>-1</sup>F(x, v))</i>:
+   * <pre>
+   *   Y<sub>1</sub> = y<sub>0</sub> + &gamma; dt f(Y<sub>1</sub>)
+   *   y<sub>1</sub> = y<sub>0</sub> + (1 - &gamma;) dt f(Y<sub>1</sub>) + &gamma; dt f(y<sub>1</sub>)
+   * </pre>
+   * Each stage is a (3N-dimensional) nonlinear equation in the stage velocity, solved by
+   * Newton's method with the exact Jacobian. L-stability means the tethers' stiff
+   * oscillations, when not resolved by the step, are damped out (so a stiff tether
+   * behaves as a constraint) rather than left to ring at a spurious frequency, as they
+   * would under the (merely A-stable) trapezoidal or midpoint rules.
+   * <p/>
+   * The tension is not smooth where a tether goes slack, and Newton's method may
+   * not converge across it; if so, the step is split in 2, recursively.
+   *
+   * @throws IllegalStateException if Newton's method doesn't converge even on
+   *         steps split {@value #MAX_SPLITS} times
+   */
+  void step(double[] pos, double[] vel, double dt) throws IllegalStateException {
+    step(pos, vel, dt, 0);
+  }
+
+
+  private void step(double[] pos, double[] vel, double dt, int splits) {
+    if (tryStep(pos, vel, dt))
+      return;
+    if (splits == MAX_SPLITS)
+      throw new IllegalStateException(
+          "Newton iteration did not converge: dt " + dt + "; last correction " + lastCorrection);
+    step(pos, vel, dt / 2, splits + 1);
+    step(pos, vel, dt / 2, splits + 1);
+  }
+
+
+  /**
+   * Attempts an SDIRK step, and returns <tt>true</tt> if both stages converged.
+   */
+  private boolean tryStep(double[] pos, double[] vel, double dt) {
+    final int n = this.n;
+    final double h = GAMMA * dt;
+    iterations = 0;
+
+    Arrays.fill(p, 0);
+    Arrays.fill(q, 0);
+    if (!solveStage(pos, vel, h, h, d1))
+      return false;
+
+    for (int i = 0; i < n; ++i) {
+      p[i] = (1 - GAMMA) * dt * d1[i];
+      q[i] = (1 - GAMMA) / GAMMA * d1[i];
+    }
+    if (!solveStage(pos, vel, dt, h, d))
+      return false;
+
+    for (int i = 0; i < n; ++i) {
+      pos[i] += dt * vel[i] + p[i] + h * d[i];
+      vel[i] += d[i];
+    }
+    return true;
+  }
+
+
+  /**
+   * Solves a stage's equation for its velocity change <tt>d</tt> (from the velocity at
+   * the start of the step):
+   * <pre>
+   *   d = q + h M<sup>-1</sup> F(x<sub>0</sub> + tau v<sub>0</sub> + p + h d, v<sub>0</sub> + d)
+   * </pre>
+   * Returns <tt>true</tt> if it converged. The tethers' geometry is computed from
+   * relative positions and velocities, so round-off is that of the craft's size, not
+   * of its orbit.
+   */
+  private boolean solveStage(double[] pos, double[] vel, double tau, double h, double[] d) {
+    final int n = this.n;
+    final double[] delta = this.delta;
+
+    double speed = 0;
+    for (int tether = 0, j = 0; tether < lo.length; ++tether, j += 3) {
+      if (stiffness[tether] == 0)
+        continue;
+      final int a = lo[tether];
+      final int b = hi[tether];
+      for (int i = 0; i < 3; ++i) {
+        double w = vel[b + i] - vel[a + i];
+        u0[j + i] = pos[b + i] - pos[a + i] + tau * w + (p[b + i] - p[a + i]);
+        w0[j + i] = w;
+        speed = Math.max(speed, Math.abs(w));
+      }
+    }
+    System.arraycopy(q, 0, d, 0, n);
+
+    double lastMax = Double.POSITIVE_INFINITY;
+    for (int count = 1; count <= MAX_ITERATIONS; ++count) {
+      ++iterations;
+
+      // residual: -(d - q - h M^-1 F)
+      double size = 0;
+      for (int i = 0; i < n; ++i) {
+        delta[i] = q[i] - d[i];
+        size = Math.max(size, Math.abs(d[i]));
+      }
+      Arrays.fill(jacobian, 0);
+      for (int i = 0; i < n; ++i)
+        jacobian[i * n + i] = 1;
+      addNewtonTerms(h, d);
+
+      if (!lu.factor(jacobian))
+        return false;
+      lu.solve(delta);
+      double max = 0;
+      for (int i = 0; i < n; ++i) {
+        d[i] += delta[i];
+        max = Math.max(max, Math.abs(delta[i]));
+      }
+      lastCorrection = max;
+      if (max <= 1e-12 * (speed + size) + Double.MIN_NORMAL)
+        return true;
+      // not converging (quadratically) after a few tries: give up
+      if (count > 4 && max > lastMax / 2)
+        return false;
+      lastMax = max;
+    }
+    return false;
+  }
+
+
+  /**
+   * Adds the elastic terms at the stage's iterate <tt>d</tt> to the residual (in
+   * <tt>delta</tt>) and to the Jacobian.
+   */
+  private void addNewtonTerms(double h, double[] d) {
+    final int n = this.n;
+    final double[] delta = this.delta;
+    final double[] jacobian = this.jacobian;
+    final double[] unit = this.unit;
+    final double[] gradient = this.gradient;
+    final double[] block = this.block;
+
+    for (int tether = 0, j = 0; tether < lo.length; ++tether, j += 3) {
+      final double k = stiffness[tether];
+      if (k == 0)
+        continue;
+      final int a = lo[tether];
+      final int b = hi[tether];
+      // relative velocity w, and separation u, at the stage
+      double dx = d[b] - d[a];
+      double dy = d[b + 1] - d[a + 1];
+      double dz = d[b + 2] - d[a + 2];
+      double wx = w0[j] + dx;
+      double wy = w0[j + 1] + dy;
+      double wz = w0[j + 2] + dz;
+      double ux = u0[j] + h * dx;
+      double uy = u0[j + 1] + h * dy;
+      double uz = u0[j + 2] + h * dz;
+      double length = Math.sqrt(ux*ux + uy*uy + uz*uz);
+      double stretch = length - restLength[tether];
+      if (!(stretch > 0))
+        continue;
+      // unit vector from a -> b
+      double nx = ux / length;
+      double ny = uy / length;
+      double nz = uz / length;
+      double rate = nx * wx + ny * wy + nz * wz;
+      final double toe = TOE_STRAIN * restLength[tether];
+      // tension = k g(stretch) + c phi(stretch) rate
+      double g, gPrime, phi, phiPrime;
+      if (stretch < toe) {
+        phi = stretch / toe;
+        g = stretch * phi / 2;
+        gPrime = phi;
+        phiPrime = 1 / toe;
+      } else {
+        g = stretch - toe / 2;
+        gPrime = 1;
+        phi = 1;
+        phiPrime = 0;
+      }
+      final double c = damping[tether] * phi;
+      double tension = k * g + c * rate;
+      // d(tension)/d(length)
+      final double dtdl = k * gPrime + damping[tether] * phiPrime * rate;
+
+      // the force on a is tension * n (on b, its opposite)
+      double fx = tension * nx;
+      double fy = tension * ny;
+      double fz = tension * nz;
+      delta[a] += h * inverseMass[a] * fx;
+      delta[a + 1] += h * inverseMass[a + 1] * fy;
+      delta[a + 2] += h * inverseMass[a + 2] * fz;
+      delta[b] -= h * inverseMass[b] * fx;
+      delta[b + 1] -= h * inverseMass[b + 1] * fy;
+      delta[b + 2] -= h * inverseMass[b + 2] * fz;
+
+      // d(force on a)/d(d_b), where u = .. + h (d_b - d_a) and w = .. + d_b - d_a
+      // (and c, the effective damping):
+      //   h [ n (dtdl n + c (w - rate n) / length)^T + (tension / length)(I - n n^T) ]
+      //   + c n n^T
+      unit[0] = nx;
+      unit[1] = ny;
+      unit[2] = nz;
+      gradient[0] = dtdl * nx + c * (wx - rate * nx) / length;
+      gradient[1] = dtdl * ny + c * (wy - rate * ny) / length;
+      gradient[2] = dtdl * nz + c * (wz - rate * nz) / length;
+      double tl = tension / length;
+      for (int r = 0; r < 3; ++r) {
+        for (int s = 0; s < 3; ++s) {
+          double nn = unit[r] * unit[s];
+          double ku = unit[r] * gradient[s] + tl * ((r == s ? 1 : 0) - nn);
+          block[3 * r + s] = h * ku + c * nn;
+        }
+      }
+
+      // Jacobian of (d - h M^-1 F): rows of a get -h/m_a (-block, +block);
+      // rows of b, -h/m_b (+block, -block)
+      for (int r = 0; r < 3; ++r) {
+        double sa = h * inverseMass[a + r];
+        double sb = h * inverseMass[b + r];
+        int rowA = (a + r) * n;
+        int rowB = (b + r) * n;
+        for (int s = 0; s < 3; ++s) {
+          double value = block[3 * r + s];
+          jacobian[rowA + a + s] += sa * value;
+          jacobian[rowA + b + s] -= sa * value;
+          jacobian[rowB + a + s] -= sb * value;
+          jacobian[rowB + b + s] += sb * value;
+        }
+      }
+    }
+  }
+
+}
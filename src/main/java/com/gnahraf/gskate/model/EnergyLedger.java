@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+/**
+ * Running account of the work done on a tethered craft, posted by the craft itself
+ * as it's animated: the work of each tether, the work of gravity, and the work
+ * (of gravity, since the tethers' cancels) on the center of mass. Given the energies
+ * the ledger was {@linkplain #open(double, double, double) open}ed with, the craft's
+ * energies are then <tt>O(1)</tt> reads, instead of a walk over every bob.
+ * <p/>
+ * The work over a step is booked as the change in kinetic energy it causes, so the
+ * ledger's {@linkplain #getKe() kinetic energy} tracks the craft's to round-off.
+ * Its {@linkplain #getPe() potential energy}, on the other hand, is the opening value
+ * less the work of gravity: the difference from the craft's (measured) potential
+ * energy is a gauge of integration error. The sums are compensated (Neumaier), so
+ * millions of tiny postings don't lose their low order bits.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class EnergyLedger {
+
+  private final static int GRAVITY = 0;
+  private final static int TRANSLATIONAL = 1;
+  private final static int TETHERS = 2;
+
+  /**
+   * Compensated sums, as (sum, compensation) pairs: gravitational work, work on the
+   * center of mass, then the tethers' work in tether index order.
+   */
+  private final double[] sums;
+
+  private double openKe;
+  private double openTranslationalKe;
+  private double openPe;
+
+
+  /**
+   * Creates a ledger with all balances zero.
+   *
+   * @param tethers the number of tethers on the craft (&ge; 0)
+   */
+  public EnergyLedger(int tethers) {
+    if (tethers < 0)
+      throw new IllegalArgumentException("tethers " + tethers);
+    this.sums = new double[2 * (TETHERS + tethers)];
+  }
+
+
+  /**
+   * Copy constructor.
+   */
+  public EnergyLedger(EnergyLedger copy) {
+    this.sums = copy.sums.clone();
+    this.openKe = copy.openKe;
+    this.openTranslationalKe = copy.openTranslationalKe;
+    this.openPe = copy.openPe;
+  }
+
+
+  /**
+   * (Re)opens the ledger: clears the work done, and sets the opening energies.
+   *
+   * @param ke              kinetic energy (J)
+   * @param translationalKe kinetic energy of the center of mass (J)
+   * @param pe              potential energy (J)
+   */
+  public void open(double ke, double translationalKe, double pe) {
+    for (int i = sums.length; i-- > 0; )
+      sums[i] = 0;
+    this.openKe = ke;
+    this.openTranslationalKe = translationalKe;
+    this.openPe = pe;
+  }
+
+
+  public int getTethers() {
+    return sums.length / 2 - TETHERS;
+  }
+
+
+  /**
+   * Posts the work done by the tether at the given index.
+   */
+  public void addTetherWork(int index, double joules) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= getTethers())
+      throw new IndexOutOfBoundsException("index " + index);
+    add(TETHERS + index, joules);
+  }
+
+
+  /**
+   * Posts the work done by gravity.
+   */
+  public void addGravityWork(double joules) {
+    add(GRAVITY, joules);
+  }
+
+
+  /**
+   * Posts the work done on the center of mass.
+   */
+  public void addTranslationalWork(double joules) {
+    add(TRANSLATIONAL, joules);
+  }
+
+
+  /**
+   * Returns the work done by the tether at the given index since opening. Positive
+   * means the tether pumped energy into the craft.
+   */
+  public double getTetherWork(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= getTethers())
+      throw new IndexOutOfBoundsException("index " + index);
+    return get(TETHERS + index);
+  }
+
+
+  /**
+   * Returns the total work done by the tethers since opening. Since gravity is
+   * conservative, this is the craft's energy gain.
+   */
+  public double getTetherWork() {
+    double sum = 0, c = 0;
+    for (int slot = sums.length / 2; slot-- > TETHERS; ) {
+      double value = get(slot);
+      double t = sum + value;
+      c += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+      sum = t;
+    }
+    return sum + c;
+  }
+
+
+  /**
+   * Returns the work done by gravity since opening.
+   */
+  public double getGravityWork() {
+    return get(GRAVITY);
+  }
+
+
+  /**
+   * Returns the work done on the center of mass since opening.
+   */
+  public double getTranslationalWork() {
+    return get(TRANSLATIONAL);
+  }
+
+
+  public double getKe() {
+    return openKe + getGravityWork() + getTetherWork();
+  }
+
+
+  /**
+   * Returns the kinetic energy of the center of mass.
+   */
+  public double getTranslationalKe() {
+    return openTranslationalKe + getTranslationalWork();
+  }
+
+
+  /**
+   * Returns the kinetic energy of the bobs relative to the center of mass.
+   */
+  public double getRotationalKe() {
+    return getKe() - getTranslationalKe();
+  }
+
+
+  /**
+   * Returns the opening potential energy less the work of gravity.
+   */
+  public double getPe() {
+    return openPe - getGravityWork();
+  }
+
+
+  public double getEnergy() {
+    return getKe() + getPe();
+  }
+
+
+  /**
+   * Returns the energy gained since opening.
+   *
+   * @see #getTetherWork()
+   */
+  public double getEnergyGain() {
+    return getTetherWork();
+  }
+
+
+  private void add(int slot, double value) {
+    int i = 2 * slot;
+    double sum = sums[i];
+    double t = sum + value;
+    sums[i + 1] += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+    sums[i] = t;
+  }
+
+
+  private double get(int slot) {
+    int i = 2 * slot;
+    return sums[i] + sums[i + 1];
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ * A precomputed table of a body's trajectory over a span of time, interpolated
+ * piecewise by cubic Hermite polynomials. The table stores the body's position and
+ * velocity at evenly spaced nodes, so a lookup costs an index computation and a few
+ * multiplies; the interpolation error is of order <i>r (&omega;h)<sup>4</sup></i>
+ * for a body orbiting at radius <i>r</i>, angular rate <i>&omega;</i>, sampled
+ * every <i>h</i> seconds.
+ * <p/>
+ * Instances are immutable, and safe to share across threads and
+ * {@linkplain Potential#clone() cloned} potentials.
+ */
+public class EphemerisTable {
+
+  /**
+   * The exact trajectory a table is sampled from.
+   */
+  public interface Source {
+
+    /**
+     * Writes the position and velocity at the given time (seconds) to the given
+     * array as <tt>x, y, z, vx, vy, vz</tt>.
+     */
+    void getState(double time, double[] state);
+  }
+
+
+  /**
+   * A circular orbit about the origin. The orbit's plane is inclined about the
+   * <tt>x</tt>-axis; the body is on the positive <tt>x</tt>-axis at time zero,
+   * plus the phase.
+   */
+  public static class CircularOrbit implements Source {
+
+    private final double radius;
+    private final double rate;
+    private final double phase;
+    private final double cosInclination;
+    private final double sinInclination;
+
+    /**
+     * @param radius      meters
+     * @param period      seconds
+     * @param inclination radians
+     * @param phase       radians
+     */
+    public CircularOrbit(double radius, double period, double inclination, double phase) {
+      if (radius <= 0)
+        throw new IllegalArgumentException("radius " + radius);
+      if (period <= 0)
+        throw new IllegalArgumentException("period " + period);
+      this.radius = radius;
+      this.rate = 2 * Math.PI / period;
+      this.phase = phase;
+      this.cosInclination = Math.cos(inclination);
+      this.sinInclination = Math.sin(inclination);
+    }
+
+    @Override
+    public void getState(double time, double[] state) {
+      double angle = phase + rate * time;
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      double speed = radius * rate;
+      state[0] = radius * cos;
+      state[1] = radius * sin * cosInclination;
+      state[2] = radius * sin * sinInclination;
+      state[3] = -speed * sin;
+      state[4] = speed * cos * cosInclination;
+      state[5] = speed * cos * sinInclination;
+    }
+  }
+
+
+
+
+  private final double startTime;
+  private final double step;
+  private final int nodes;
+  /**
+   * <tt>x, y, z, vx, vy, vz</tt> per node, node by node.
+   */
+  private final double[] states;
+
+
+
+  /**
+   * Samples the given <tt>source</tt> every <tt>step</tt> seconds, over
+   * (at least) the given span of time.
+   */
+  public EphemerisTable(Source source, double startTime, double endTime, double step) {
+    if (step <= 0)
+      throw new IllegalArgumentException("step " + step);
+    if (!(endTime > startTime))
+      throw new IllegalArgumentException("startTime " + startTime + "; endTime " + endTime);
+    double intervals = Math.ceil((endTime - startTime) / step);
+    if (intervals >= Integer.MAX_VALUE / 6)
+      throw new IllegalArgumentException("too many nodes: " + intervals);
+
+    this.startTime = startTime;
+    this.step = step;
+    this.nodes = (int) intervals + 1;
+    this.states = new double[6 * nodes];
+    double[] state = new double[6];
+    for (int node = 0; node < nodes; ++node) {
+      source.getState(startTime + node * step, state);
+      System.arraycopy(state, 0, states, 6 * node, 6);
+    }
+  }
+
+
+  public double getStartTime() {
+    return startTime;
+  }
+
+
+  public double getEndTime() {
+    return startTime + (nodes - 1) * step;
+  }
+
+
+  /**
+   * Returns the time between nodes, in seconds.
+   */
+  public double getStep() {
+    return step;
+  }
+
+
+  /**
+   * Returns the number of nodes in the table.
+   */
+  public int getNodes() {
+    return nodes;
+  }
+
+
+  /**
+   * Sets the given vector to the interpolated position at the given time, and
+   * returns it.
+   *
+   * @throws IllegalArgumentException if <tt>time</tt> is out of the table's span
+   */
+  public Vector getPosition(double time, Vector out) throws IllegalArgumentException {
+    double s = (time - startTime) / step;
+    if (!(s >= 0 && s <= nodes - 1))
+      throw new IllegalArgumentException(
+          "time " + time + " outside [" + startTime + ", " + getEndTime() + "]");
+    int node = Math.min((int) s, nodes - 2);
+    s -= node;
+
+    // Hermite basis; the tangents are scaled by the step
+    double s2 = s * s;
+    double s3 = s2 * s;
+    double h00 = 2 * s3 - 3 * s2 + 1;
+    double h10 = (s3 - 2 * s2 + s) * step;
+    double h01 = 3 * s2 - 2 * s3;
+    double h11 = (s3 - s2) * step;
+
+    final double[] states = this.states;
+    int a = 6 * node;
+    int b = a + 6;
+    return out.set(
+        h00 * states[a] + h10 * states[a + 3] + h01 * states[b] + h11 * states[b + 3],
+        h00 * states[a + 1] + h10 * states[a + 4] + h01 * states[b + 1] + h11 * states[b + 4],
+        h00 * states[a + 2] + h10 * states[a + 5] + h01 * states[b + 2] + h11 * states[b + 5]);
+  }
+
+}
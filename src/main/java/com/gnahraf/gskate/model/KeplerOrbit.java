@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ * An elliptic two-body orbit about a point mass at the origin, propagated analytically.
+ * The state at any time is computed from the state at the epoch (time zero) by solving
+ * Kepler's equation for the change in eccentric anomaly, and applying the Lagrange
+ * <i>f</i> and <i>g</i> coefficients. So there's no error accumulation, however long
+ * the propagation.
+ * <p/>
+ * Instances are immutable.
+ */
+public class KeplerOrbit {
+
+  private final static int MAX_ITERATIONS = 64;
+
+
+  /**
+   * Mass times gravitational constant G.
+   */
+  private final double g;
+
+  private final double x0, y0, z0;
+  private final double vx0, vy0, vz0;
+
+  /**
+   * Distance at epoch.
+   */
+  private final double r0;
+  /**
+   * Semi-major axis.
+   */
+  private final double a;
+  /**
+   * Mean motion (radians per second).
+   */
+  private final double n;
+  /**
+   * <i>r<sub>0</sub> &middot; v<sub>0</sub> / &radic;g</i>
+   */
+  private final double sigma0;
+
+
+
+  /**
+   * Creates an instance with the given state at epoch.
+   *
+   * @param g     the central body's mass times the gravitational constant
+   * @param state position and velocity at epoch (acceleration ignored)
+   *
+   * @throws IllegalArgumentException if the orbit is not elliptic
+   */
+  public KeplerOrbit(double g, DynaVector state) throws IllegalArgumentException {
+    if (g <= 0)
+      throw new IllegalArgumentException("g " + g);
+    this.g = g;
+    Vector pos = state.getPos();
+    Vector vel = state.getVel();
+    this.x0 = pos.getX();
+    this.y0 = pos.getY();
+    this.z0 = pos.getZ();
+    this.vx0 = vel.getX();
+    this.vy0 = vel.getY();
+    this.vz0 = vel.getZ();
+
+    this.r0 = pos.magnitude();
+    if (r0 == 0)
+      throw new IllegalArgumentException("zero distance");
+    double inverseA = 2 / r0 - vel.magnitudeSq() / g;
+    if (!(inverseA > 0))
+      throw new IllegalArgumentException("not elliptic: 1/a " + inverseA);
+    this.a = 1 / inverseA;
+    this.n = Math.sqrt(g / (a * a * a));
+    this.sigma0 = pos.dot(vel) / Math.sqrt(g);
+  }
+
+
+  public double getSemiMajorAxis() {
+    return a;
+  }
+
+
+  /**
+   * Returns the period in seconds.
+   */
+  public double getPeriod() {
+    return 2 * Math.PI / n;
+  }
+
+
+  /**
+   * Returns the specific orbital energy (Joules per kg).
+   */
+  public double getEnergy() {
+    return -g / (2 * a);
+  }
+
+
+  /**
+   * Sets the position and velocity of the given bob to this orbit's at the given
+   * time (seconds since epoch; may be negative). The bob's acceleration is set to the
+   * central body's pull. Returns the bob.
+   */
+  public DynaVector propagate(double time, DynaVector out) {
+
+    // mean anomaly change, reduced to [-pi, pi) (the equation is periodic in it)
+    double m = n * time;
+    m -= 2 * Math.PI * Math.floor((m + Math.PI) / (2 * Math.PI));
+
+    // solve Kepler's equation for the change in eccentric anomaly e:
+    //   m = e - (1 - r0/a) sin e + (sigma0 / sqrt a) (1 - cos e)
+    final double c1 = 1 - r0 / a;
+    final double c2 = sigma0 / Math.sqrt(a);
+    double e = m;
+    for (int count = 0; ; ++count) {
+      double sin = Math.sin(e);
+      double cos = Math.cos(e);
+      double delta = (e - c1 * sin + c2 * (1 - cos) - m) / (1 - c1 * cos + c2 * sin);
+      e -= delta;
+      if (Math.abs(delta) <= 1e-14)
+        break;
+      if (count == MAX_ITERATIONS)
+        throw new IllegalStateException("Kepler's equation did not converge: m " + m);
+    }
+
+    double sin = Math.sin(e);
+    double half = Math.sin(e / 2);
+    double oneMinusCos = 2 * half * half;
+    double r = a - (r0 - a) * (oneMinusCos - 1) + sigma0 * Math.sqrt(a) * sin;
+
+    double f = 1 - a / r0 * oneMinusCos;
+    double gc = a * sigma0 / Math.sqrt(g) * oneMinusCos + r0 * Math.sqrt(a / g) * sin;
+    double fDot = -Math.sqrt(g * a) / (r * r0) * sin;
+    double gDot = 1 - a / r * oneMinusCos;
+
+    double x = f * x0 + gc * vx0;
+    double y = f * y0 + gc * vy0;
+    double z = f * z0 + gc * vz0;
+    out.setPosition(x, y, z);
+    out.setVelocity(fDot * x0 + gDot * vx0, fDot * y0 + gDot * vy0, fDot * z0 + gDot * vz0);
+    double scale = -g / (r * r * r);
+    out.setAcceleration(x * scale, y * scale, z * scale);
+    return out;
+  }
+
+}
@@ -10,6 +10,11 @@ package com.gnahraf.gskate.model;
  */
 public abstract class Potential {
   
+  // work bob for the base bulk force(..), lazily created
+  // recycling ok since not safe under concurrent access anyway
+  private DynaVector work;
+  
+  
   /**
    * Updates the acceleration vector of the given thing by adding the
    * gravitational acceleration (force) induced by this field.
@@ -19,6 +24,38 @@ public abstract class Potential {
   public abstract void force(DynaVector bob);
   
   
+  /**
+   * Adds the accelerations induced by this field to <tt>count</tt> bobs in bulk.
+   * The bobs' coordinates are packed <tt>x, y, z</tt> per bob, bob by bob, in both
+   * arrays: the <tt>x</tt> coordinate of the <tt>i</tt>th bob is at index
+   * <tt>offset + 3 * i</tt>.
+   * <p/>
+   * The base implementation invokes {@linkplain #force(DynaVector)} once per bob.
+   * Subclasses should override it with a tight loop over the arrays that computes
+   * exactly the same values.
+   * 
+   * @param pos     the bobs' positions (read only)
+   * @param acc     the bobs' accelerations, added to
+   * @param offset  the index of the first bob's <tt>x</tt> coordinate
+   * @param count   the number of bobs
+   */
+  public void force(double[] pos, double[] acc, int offset, int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count " + count);
+    DynaVector bob = work;
+    if (bob == null)
+      work = bob = new DynaVector();
+    for (int x = offset, end = offset + 3 * count; x < end; x += 3) {
+      bob.setPosition(pos[x], pos[x + 1], pos[x + 2]);
+      bob.setAcceleration(acc[x], acc[x + 1], acc[x + 2]);
+      force(bob);
+      acc[x] = bob.getAx();
+      acc[x + 1] = bob.getAy();
+      acc[x + 2] = bob.getAz();
+    }
+  }
+  
+  
   /**
    * Returns the potential energy of the given thing in Joules per kg.
    */
@@ -67,6 +67,33 @@ public class SphericalBodyPotential extends Potential {
     s.multiply(scale);
     bob.getAcc().add(s);
   }
+  
+  
+  /**
+   * Same arithmetic as {@linkplain #force(DynaVector)}, in one loop.
+   */
+  @Override
+  public void force(double[] pos, double[] acc, int offset, int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count " + count);
+    final double g = this.g;
+    final double cx = this.pos.getX();
+    final double cy = this.pos.getY();
+    final double cz = this.pos.getZ();
+    for (int x = offset, end = offset + 3 * count; x < end; x += 3) {
+      // vector from bob to center of planet
+      double sx = cx - pos[x];
+      double sy = cy - pos[x + 1];
+      double sz = cz - pos[x + 2];
+      double distanceSq = sx*sx + sy*sy + sz*sz;
+      double force = g / distanceSq;
+      double distance = Math.sqrt(distanceSq);
+      double scale = force / distance;
+      acc[x] += sx * scale;
+      acc[x + 1] += sy * scale;
+      acc[x + 2] += sz * scale;
+    }
+  }
 
   
   @Override
@@ -0,0 +1,792 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import java.util.Arrays;
+
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.Integrator;
+
+/**
+ * Bobs of arbitrary mass connected by mass-less tethers along an arbitrary graph.
+ * The <tt>Sling</tt> (2 bobs, 1 tether) and the <tt>Tetra</tt> (4 bobs, 6 tethers)
+ * are the {@linkplain #newComplete(double[]) complete} graphs on 2 and 4 bobs.
+ * <p/>
+ * The graph is stored in compressed sparse row (CSR) form: the tethers are ordered by
+ * their low-index bob, then by their high-index bob, and that order defines the tether
+ * index. So the tethers from bob <tt>i</tt> to higher-index bobs are at indices
+ * <tt>rowStart[i]</tt> through <tt>rowStart[i + 1] - 1</tt>. (For the complete graph on
+ * 4 bobs, this is the <tt>TetraEdge</tt> order.) The graph is immutable, and shared
+ * by copies.
+ * <p/>
+ * Bob state is packed in flat <tt>double</tt> arrays, <tt>x, y, z</tt> per bob, bob by
+ * bob; {@linkplain #updateForces(Potential)} touches only these and the graph's arrays,
+ * and allocates nothing.
+ * <p/>
+ * Tethers may optionally be {@linkplain #setElastic(int, double, double, double) elastic}:
+ * spring-dampers that pull, on top of their actuated tension, when stretched past a
+ * rest length. Realistic tethers are stiff, so explicitly integrated they need
+ * sub-millisecond steps; {@linkplain #animateImex(Potential, double, double)} integrates
+ * them implicitly instead, at steps set by the orbital dynamics.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class TetheredCraft {
+
+  /**
+   * Returns a new instance with every pair of bobs tethered.
+   *
+   * @param masses the bobs' masses (kg), by bob index
+   */
+  public static TetheredCraft newComplete(double[] masses) {
+    int bobs = masses.length;
+    int[] edges = new int[bobs * (bobs - 1)];
+    for (int a = 0, e = 0; a < bobs; ++a) {
+      for (int b = a + 1; b < bobs; ++b) {
+        edges[e++] = a;
+        edges[e++] = b;
+      }
+    }
+    return new TetheredCraft(masses, edges);
+  }
+
+
+  /**
+   * Returns a new instance with every pair of the given number of 1 kg bobs tethered.
+   */
+  public static TetheredCraft newComplete(int bobs) {
+    if (bobs < 2)
+      throw new IllegalArgumentException("bobs " + bobs);
+    double[] masses = new double[bobs];
+    Arrays.fill(masses, 1);
+    return newComplete(masses);
+  }
+
+
+
+  private final double[] mass;
+  /**
+   * Inverse masses, laid out like the coordinates (so indexed by bob offset).
+   */
+  private final double[] inverseMass;
+  /**
+   * Whether all bobs weigh 1 kg.
+   */
+  private final boolean unitMasses;
+
+  /**
+   * CSR row offsets, by bob: length is bob count + 1.
+   */
+  private final int[] rowStart;
+  /**
+   * Offsets (<tt>3 * bob</tt>) of the low-index bob of each tether, by tether index.
+   */
+  private final int[] lo;
+  /**
+   * Offsets (<tt>3 * bob</tt>) of the high-index bob of each tether, by tether index.
+   */
+  private final int[] hi;
+
+  private final double[] pos;
+  private final double[] vel;
+  private final double[] acc;
+
+  /**
+   * Tether strengths (Newtons), by tether index. +/- means attractive/repulsive.
+   */
+  private final double[] tethers;
+
+  /**
+   * Elastic tether parameters, by tether index: rest length (meters), stiffness
+   * (Newtons per meter; zero if not elastic), and damping (Newton-seconds per meter).
+   */
+  private final double[] restLength;
+  private final double[] stiffness;
+  private final double[] damping;
+  /**
+   * Created when the first tether is made elastic; <tt>null</tt> till then.
+   */
+  private ElasticSolver elastic;
+
+  // work bob for the potential energy calculations (which take DynaVectors)
+  // recycling ok since single threaded
+  private final DynaVector work = new DynaVector();
+
+
+
+  /**
+   * Creates an instance with all bobs at rest at the origin, and all tethers slack.
+   *
+   * @param masses the bobs' masses (kg), by bob index
+   * @param edges  the tethered pairs of bobs, as <tt>bobA, bobB</tt> per tether, in any
+   *               order (the tether indices are the CSR order, not this one)
+   */
+  public TetheredCraft(double[] masses, int[] edges) {
+    final int bobs = masses.length;
+    if (bobs < 2)
+      throw new IllegalArgumentException("bobs " + bobs);
+    if (edges.length % 2 != 0)
+      throw new IllegalArgumentException("edges length " + edges.length);
+
+    this.mass = masses.clone();
+    this.inverseMass = new double[3 * bobs];
+    boolean unit = true;
+    for (int i = 0; i < bobs; ++i) {
+      if (!(mass[i] > 0))
+        throw new IllegalArgumentException("masses[" + i + "] " + mass[i]);
+      Arrays.fill(inverseMass, 3 * i, 3 * i + 3, 1 / mass[i]);
+      unit &= mass[i] == 1;
+    }
+    this.unitMasses = unit;
+
+    // count the tethers by low-index bob (the CSR rows)..
+    final int count = edges.length / 2;
+    this.rowStart = new int[bobs + 1];
+    for (int e = 0; e < edges.length; e += 2) {
+      int a = edges[e];
+      int b = edges[e + 1];
+      if (a < 0 || b < 0 || a >= bobs || b >= bobs || a == b)
+        throw new IllegalArgumentException("edge " + e / 2 + ": " + a + ", " + b);
+      ++rowStart[Math.min(a, b) + 1];
+    }
+    for (int i = 0; i < bobs; ++i)
+      rowStart[i + 1] += rowStart[i];
+
+    // ..place the high-index bobs in their rows..
+    int[] column = new int[count];
+    int[] next = Arrays.copyOf(rowStart, bobs);
+    for (int e = 0; e < edges.length; e += 2) {
+      int a = edges[e];
+      int b = edges[e + 1];
+      column[next[Math.min(a, b)]++] = Math.max(a, b);
+    }
+
+    // ..and sort each row
+    this.lo = new int[count];
+    this.hi = new int[count];
+    for (int i = 0; i < bobs; ++i) {
+      Arrays.sort(column, rowStart[i], rowStart[i + 1]);
+      for (int t = rowStart[i]; t < rowStart[i + 1]; ++t) {
+        if (t > rowStart[i] && column[t] == column[t - 1])
+          throw new IllegalArgumentException("duplicate edge: " + i + ", " + column[t]);
+        lo[t] = 3 * i;
+        hi[t] = 3 * column[t];
+      }
+    }
+
+    this.pos = new double[3 * bobs];
+    this.vel = new double[3 * bobs];
+    this.acc = new double[3 * bobs];
+    this.tethers = new double[count];
+    this.restLength = new double[count];
+    this.stiffness = new double[count];
+    this.damping = new double[count];
+  }
+
+
+  /**
+   * Copy constructor. The graph is shared.
+   */
+  public TetheredCraft(TetheredCraft copy) {
+    this.mass = copy.mass;
+    this.inverseMass = copy.inverseMass;
+    this.unitMasses = copy.unitMasses;
+    this.rowStart = copy.rowStart;
+    this.lo = copy.lo;
+    this.hi = copy.hi;
+    this.pos = copy.pos.clone();
+    this.vel = copy.vel.clone();
+    this.acc = copy.acc.clone();
+    this.tethers = copy.tethers.clone();
+    this.restLength = copy.restLength.clone();
+    this.stiffness = copy.stiffness.clone();
+    this.damping = copy.damping.clone();
+    if (copy.elastic != null)
+      newElasticSolver();
+  }
+
+
+
+  /**
+   * Copies the state of the given instance (which must have the same graph and masses).
+   */
+  public void copyFrom(TetheredCraft other) {
+    if (other.rowStart != rowStart && !sameShape(other))
+      throw new IllegalArgumentException("graph/mass mismatch");
+    System.arraycopy(other.pos, 0, pos, 0, pos.length);
+    System.arraycopy(other.vel, 0, vel, 0, vel.length);
+    System.arraycopy(other.acc, 0, acc, 0, acc.length);
+    System.arraycopy(other.tethers, 0, tethers, 0, tethers.length);
+    System.arraycopy(other.restLength, 0, restLength, 0, tethers.length);
+    System.arraycopy(other.stiffness, 0, stiffness, 0, tethers.length);
+    System.arraycopy(other.damping, 0, damping, 0, tethers.length);
+    if (other.elastic != null && elastic == null)
+      newElasticSolver();
+  }
+
+
+  private void newElasticSolver() {
+    elastic = new ElasticSolver(lo, hi, inverseMass, restLength, stiffness, damping);
+  }
+
+
+  private boolean sameShape(TetheredCraft other) {
+    return
+        Arrays.equals(rowStart, other.rowStart) &&
+        Arrays.equals(hi, other.hi) &&
+        Arrays.equals(mass, other.mass);
+  }
+
+
+
+  public int getBobs() {
+    return mass.length;
+  }
+
+
+  public int getTethers() {
+    return tethers.length;
+  }
+
+
+  public double getMass(int bob) throws IndexOutOfBoundsException {
+    return mass[bob];
+  }
+
+
+  public double getTotalMass() {
+    double kg = 0;
+    for (double m : mass)
+      kg += m;
+    return kg;
+  }
+
+
+  public int getLoBob(int tether) throws IndexOutOfBoundsException {
+    return lo[tether] / 3;
+  }
+
+
+  public int getHiBob(int tether) throws IndexOutOfBoundsException {
+    return hi[tether] / 3;
+  }
+
+
+  /**
+   * Returns the index of the tether between the given bobs (in either order), or -1
+   * if they're not tethered.
+   */
+  public int getTetherIndex(int bobA, int bobB) throws IndexOutOfBoundsException {
+    int a = Math.min(bobA, bobB);
+    int offset = 3 * Math.max(bobA, bobB);
+    for (int t = rowStart[a], end = rowStart[a + 1]; t < end && hi[t] <= offset; ++t)
+      if (hi[t] == offset)
+        return t;
+    return -1;
+  }
+
+
+  /**
+   * @return +/- means attractive/repulsive
+   */
+  public double getTetherByIndex(int index) throws IndexOutOfBoundsException {
+    return tethers[index];
+  }
+
+
+  /**
+   * @param tether Newtons; +/- means attractive/repulsive
+   */
+  public void setTetherByIndex(int index, double tether) throws IndexOutOfBoundsException {
+    tethers[index] = tether;
+  }
+
+
+  /**
+   * Returns the distance between the bobs at the ends of the tether at the given index.
+   */
+  public double getTetherLength(int index) throws IndexOutOfBoundsException {
+    int a = lo[index];
+    int b = hi[index];
+    double abx = pos[b] - pos[a];
+    double aby = pos[b + 1] - pos[a + 1];
+    double abz = pos[b + 2] - pos[a + 2];
+    return Math.sqrt(abx*abx + aby*aby + abz*abz);
+  }
+
+
+
+  /**
+   * Makes the tether at the given index elastic (or, with zero <tt>stiffness</tt>,
+   * not). An elastic tether's tension, added to its actuated one, is
+   * <pre>
+   *   stiffness (L - restLength) + damping dL/dt
+   * </pre>
+   * if its length <tt>L</tt> exceeds <tt>restLength</tt>; zero, otherwise. (The tension
+   * is ramped in smoothly over the first 0.01% stretch.)
+   */
+  public void setElastic(int index, double restLength, double stiffness, double damping)
+      throws IndexOutOfBoundsException {
+    if (restLength < 0)
+      throw new IllegalArgumentException("restLength " + restLength);
+    if (stiffness < 0)
+      throw new IllegalArgumentException("stiffness " + stiffness);
+    if (damping < 0)
+      throw new IllegalArgumentException("damping " + damping);
+    this.restLength[index] = restLength;
+    this.stiffness[index] = stiffness;
+    this.damping[index] = damping;
+    if (stiffness > 0 && elastic == null)
+      newElasticSolver();
+  }
+
+
+  /**
+   * Returns <tt>true</tt> if any tether has ever been made elastic.
+   */
+  public boolean isElastic() {
+    return elastic != null;
+  }
+
+
+  public double getRestLength(int index) throws IndexOutOfBoundsException {
+    return restLength[index];
+  }
+
+
+  /**
+   * Sets the rest length of the (elastic) tether at the given index. This is how
+   * a controller reels an elastic tether in or out.
+   */
+  public void setRestLength(int index, double restLength) throws IndexOutOfBoundsException {
+    if (restLength < 0)
+      throw new IllegalArgumentException("restLength " + restLength);
+    this.restLength[index] = restLength;
+  }
+
+
+  public double getStiffness(int index) throws IndexOutOfBoundsException {
+    return stiffness[index];
+  }
+
+
+  public double getDamping(int index) throws IndexOutOfBoundsException {
+    return damping[index];
+  }
+
+
+  /**
+   * Returns the current elastic tension (Newtons) in the tether at the given index,
+   * excluding its actuated tension.
+   */
+  public double getElasticTension(int index) throws IndexOutOfBoundsException {
+    if (stiffness[index] == 0)
+      return 0;
+    return elastic.tension(pos, vel, index);
+  }
+
+
+  /**
+   * Returns the number of Newton iterations the last implicit step took (zero,
+   * if none yet).
+   *
+   * @see #animateImex(Potential, double, double)
+   */
+  public int getNewtonIterations() {
+    return elastic == null ? 0 : elastic.getIterations();
+  }
+
+
+
+  private int checkBob(int index) {
+    if (index < 0 || index >= mass.length)
+      throw new IndexOutOfBoundsException("bob index " + index);
+    return index;
+  }
+
+
+  /**
+   * Copies the state of the bob at the given <tt>index</tt> to the
+   * given <tt>out</tt> argument, and returns it.
+   */
+  public DynaVector copyBobTo(int index, DynaVector out) throws IndexOutOfBoundsException {
+    int x = 3 * checkBob(index);
+    out.setPosition(pos[x], pos[x + 1], pos[x + 2]);
+    out.setVelocity(vel[x], vel[x + 1], vel[x + 2]);
+    out.setAcceleration(acc[x], acc[x + 1], acc[x + 2]);
+    return out;
+  }
+
+
+  /**
+   * Sets the state of the bob at the given <tt>index</tt> from the given <tt>bob</tt>.
+   */
+  public void setBob(int index, DynaVector bob) throws IndexOutOfBoundsException {
+    int x = 3 * checkBob(index);
+    pos[x] = bob.getX();
+    pos[x + 1] = bob.getY();
+    pos[x + 2] = bob.getZ();
+    vel[x] = bob.getVx();
+    vel[x + 1] = bob.getVy();
+    vel[x + 2] = bob.getVz();
+    acc[x] = bob.getAx();
+    acc[x + 1] = bob.getAy();
+    acc[x + 2] = bob.getAz();
+  }
+
+
+  public double getX(int bob) {
+    return pos[3 * checkBob(bob)];
+  }
+
+  public double getY(int bob) {
+    return pos[3 * checkBob(bob) + 1];
+  }
+
+  public double getZ(int bob) {
+    return pos[3 * checkBob(bob) + 2];
+  }
+
+  public double getVx(int bob) {
+    return vel[3 * checkBob(bob)];
+  }
+
+  public double getVy(int bob) {
+    return vel[3 * checkBob(bob) + 1];
+  }
+
+  public double getVz(int bob) {
+    return vel[3 * checkBob(bob) + 2];
+  }
+
+
+
+  /**
+   * Sets the given vector to the center of mass, and returns it.
+   */
+  public Vector getCm(Vector out) {
+    return out.set(cm(pos, 0), cm(pos, 1), cm(pos, 2)).divide(getTotalMass());
+  }
+
+
+  /**
+   * Sets the given vector to the center of mass' velocity, and returns it.
+   */
+  public Vector getCmVel(Vector out) {
+    return out.set(cm(vel, 0), cm(vel, 1), cm(vel, 2)).divide(getTotalMass());
+  }
+
+
+  private double cm(double[] v, int axis) {
+    double sum = 0;
+    for (int i = 0, x = axis; i < mass.length; ++i, x += 3)
+      sum += mass[i] * v[x];
+    return sum;
+  }
+
+
+
+  public double getKe() {
+    double mv2 = 0;
+    for (int i = 0, x = 0; i < mass.length; ++i, x += 3)
+      mv2 += mass[i] * (vel[x]*vel[x] + vel[x + 1]*vel[x + 1] + vel[x + 2]*vel[x + 2]);
+    return mv2 / 2;
+  }
+
+
+  public double getPe(Potential potential) {
+    double joules = 0;
+    for (int i = 0, x = 0; i < mass.length; ++i, x += 3) {
+      work.setPosition(pos[x], pos[x + 1], pos[x + 2]);
+      joules += mass[i] * potential.pe(work);
+    }
+    return joules;
+  }
+
+
+  public double getEnergy(Potential potential) {
+    return getPe(potential) + getKe();
+  }
+
+
+
+  /**
+   * Updates the accelerations of the bobs using the given <tt>potential</tt>,
+   * taking into account the tether forces (elastic ones, included).
+   */
+  public void updateForces(Potential potential) {
+    updateExplicitForces(potential);
+    if (elastic != null)
+      elastic.addForces(pos, vel, acc);
+  }
+
+
+  /**
+   * Updates the accelerations from the potential and the actuated tethers only.
+   */
+  private void updateExplicitForces(Potential potential) {
+    Arrays.fill(acc, 0);
+    potential.force(pos, acc, 0, mass.length);
+    addTetherForces();
+  }
+
+
+  /**
+   * Sets the accelerations of the bobs to those of the tethers alone.
+   */
+  public void updateTetherForces() {
+    Arrays.fill(acc, 0);
+    addTetherForces();
+    if (elastic != null)
+      elastic.addForces(pos, vel, acc);
+  }
+
+
+  /**
+   * The force kernel: one pass over the tethers, in index order.
+   */
+  private void addTetherForces() {
+    if (unitMasses) {
+      addUnitTetherForces();
+      return;
+    }
+    final double[] pos = this.pos;
+    final double[] acc = this.acc;
+    final double[] tethers = this.tethers;
+    final double[] inverseMass = this.inverseMass;
+    final int[] lo = this.lo;
+    final int[] hi = this.hi;
+
+    for (int tether = 0; tether < tethers.length; ++tether) {
+      final int a = lo[tether];
+      final int b = hi[tether];
+
+      // the vector from a -> b
+      double abx = pos[b] - pos[a];
+      double aby = pos[b + 1] - pos[a + 1];
+      double abz = pos[b + 2] - pos[a + 2];
+
+      double distance = Math.sqrt(abx*abx + aby*aby + abz*abz);
+      if (distance == 0)
+        throw new IllegalStateException(
+            "Woa.. bobs " + a / 3 + " and " + b / 3 + " have collided (distance zero)");
+
+      // the force on a (toward b, if attractive)
+      final double tetherValue = tethers[tether];
+      double fx = abx / distance * tetherValue;
+      double fy = aby / distance * tetherValue;
+      double fz = abz / distance * tetherValue;
+
+      // add the equal and opposite forces' accelerations
+      final double ma = inverseMass[a];
+      final double mb = inverseMass[b];
+      acc[a] += fx * ma;
+      acc[a + 1] += fy * ma;
+      acc[a + 2] += fz * ma;
+      acc[b] -= fx * mb;
+      acc[b + 1] -= fy * mb;
+      acc[b + 2] -= fz * mb;
+    }
+  }
+
+
+  /**
+   * {@linkplain #addTetherForces()} for the common case of 1 kg bobs. Same arithmetic,
+   * less the (~10% of the step's cost) multiplications by one.
+   */
+  private void addUnitTetherForces() {
+    final double[] pos = this.pos;
+    final double[] acc = this.acc;
+    final double[] tethers = this.tethers;
+    final int[] lo = this.lo;
+    final int[] hi = this.hi;
+
+    for (int tether = 0; tether < tethers.length; ++tether) {
+      final int a = lo[tether];
+      final int b = hi[tether];
+
+      double abx = pos[b] - pos[a];
+      double aby = pos[b + 1] - pos[a + 1];
+      double abz = pos[b + 2] - pos[a + 2];
+
+      double distance = Math.sqrt(abx*abx + aby*aby + abz*abz);
+      if (distance == 0)
+        throw new IllegalStateException(
+            "Woa.. bobs " + a / 3 + " and " + b / 3 + " have collided (distance zero)");
+
+      final double tetherValue = tethers[tether];
+      double fx = abx / distance * tetherValue;
+      double fy = aby / distance * tetherValue;
+      double fz = abz / distance * tetherValue;
+
+      acc[a] += fx;
+      acc[a + 1] += fy;
+      acc[a + 2] += fz;
+      acc[b] -= fx;
+      acc[b + 1] -= fy;
+      acc[b + 2] -= fz;
+    }
+  }
+
+
+
+  /**
+   * Advances the velocities by <tt>dt</tt> seconds of the current accelerations.
+   *
+   * @see DynaVector#kick(double)
+   */
+  public void kick(double dt) {
+    final double[] vel = this.vel;
+    final double[] acc = this.acc;
+    for (int i = 0; i < vel.length; ++i)
+      vel[i] += acc[i] * dt;
+  }
+
+
+  /**
+   * Advances the positions by <tt>dt</tt> seconds of the current velocities.
+   *
+   * @see DynaVector#drift(double)
+   */
+  public void drift(double dt) {
+    final double[] pos = this.pos;
+    final double[] vel = this.vel;
+    for (int i = 0; i < pos.length; ++i)
+      pos[i] += vel[i] * dt;
+  }
+
+
+  /**
+   * Advances the positions and velocities by <tt>dt</tt> seconds holding the
+   * accelerations constant.
+   *
+   * @see DynaVector#animate(double)
+   */
+  public void animateDeltaT(double dt) {
+    final double[] pos = this.pos;
+    final double[] vel = this.vel;
+    final double[] acc = this.acc;
+    for (int i = 0; i < pos.length; ++i) {
+      double dv = acc[i] * dt;
+      pos[i] += (vel[i] + dv/2) * dt;
+      vel[i] += dv;
+    }
+  }
+
+
+  public void animate(Potential potential, double seconds, double timeFineness) {
+    if (seconds < 0 || timeFineness <= 0)
+      throw new IllegalArgumentException(seconds + ", " + timeFineness);
+    int runs = (int) (seconds / timeFineness);
+    for (int i = 0; i < runs; ++i) {
+      potential.update(timeFineness);
+      updateForces(potential);
+      animateDeltaT(timeFineness);
+    }
+    seconds -= (runs * timeFineness);
+    if (seconds > 0) {
+      potential.update(seconds);
+      updateForces(potential);
+      animateDeltaT(seconds);
+    }
+  }
+
+
+  /**
+   * Animates the craft using the given <tt>integrator</tt>, the way <tt>Tetra</tt>
+   * does: with the {@linkplain Integrator#DEFAULT default} integrator, this is the same
+   * as {@linkplain #animate(Potential, double, double)}; otherwise, the <tt>potential</tt>
+   * is updated as the bobs drift, just before their forces are recomputed.
+   */
+  public void animate(Potential potential, double seconds, double timeFineness, Integrator integrator) {
+    if (integrator == Integrator.DEFAULT) {
+      animate(potential, seconds, timeFineness);
+      return;
+    }
+    if (seconds < 0 || timeFineness <= 0)
+      throw new IllegalArgumentException(seconds + ", " + timeFineness);
+
+    Integrator.Dynamics dynamics = new Integrator.Dynamics() {
+
+      double pendingSeconds;
+
+      @Override
+      public void updateForces() {
+        if (pendingSeconds > 0) {
+          potential.update(pendingSeconds);
+          pendingSeconds = 0;
+        }
+        TetheredCraft.this.updateForces(potential);
+      }
+      @Override
+      public void kick(double dt) {
+        TetheredCraft.this.kick(dt);
+      }
+      @Override
+      public void drift(double dt) {
+        TetheredCraft.this.drift(dt);
+        pendingSeconds += dt;
+      }
+      @Override
+      public void animate(double dt) {
+        animateDeltaT(dt);
+      }
+    };
+
+    long runs = (long) (seconds / timeFineness);
+    integrator.integrate(dynamics, timeFineness, runs);
+    seconds -= (runs * timeFineness);
+    if (seconds > 0)
+      integrator.integrate(dynamics, seconds, 1);
+  }
+
+
+  /**
+   * Animates the craft with an implicit-explicit (IMEX) scheme that takes the
+   * elastic tethers' stiffness in stride. Each step <tt>dt</tt> is a velocity Verlet
+   * step in the explicit forces (the potential's and the actuated tethers'), with the
+   * drift replaced by an implicit (2-stage SDIRK) step in the elastic forces:
+   * <pre>
+   *   kick(dt/2)
+   *   drift and stretch implicitly (dt)
+   *   update potential and explicit forces; kick(dt/2)
+   * </pre>
+   * Each implicit stage solves a <tt>3N</tt>-dimensional nonlinear system by Newton's
+   * method (a few iterations, each a dense LU solve). The scheme is 2nd order, and
+   * L-stable in the elastic forces: tether oscillations too fast for the step are damped
+   * out, leaving the tethers to act as (nearly) rigid constraints. Without elastic
+   * tethers, it's {@linkplain Integrator#VELOCITY_VERLET}.
+   * <p/>
+   * On return, the bobs' accelerations exclude the elastic forces.
+   *
+   * @throws IllegalStateException if a Newton iteration doesn't converge
+   */
+  public void animateImex(Potential potential, double seconds, double timeFineness)
+      throws IllegalStateException {
+    if (seconds < 0 || timeFineness <= 0)
+      throw new IllegalArgumentException(seconds + ", " + timeFineness);
+    long runs = (long) (seconds / timeFineness);
+    seconds -= (runs * timeFineness);
+    if (runs == 0 && seconds == 0)
+      return;
+    updateExplicitForces(potential);
+    while (runs-- > 0)
+      imexStep(potential, timeFineness);
+    if (seconds > 0)
+      imexStep(potential, seconds);
+  }
+
+
+  private void imexStep(Potential potential, double dt) {
+    kick(dt / 2);
+    if (elastic == null)
+      drift(dt);
+    else
+      elastic.step(pos, vel, dt);
+    potential.update(dt);
+    updateExplicitForces(potential);
+    kick(dt / 2);
+  }
+
+}
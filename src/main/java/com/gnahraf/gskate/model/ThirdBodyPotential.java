@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ * A central body's potential perturbed by distant third bodies (e.g. the Moon and
+ * the Sun, for a craft about the Earth). Coordinates are centered on the central
+ * body, which is itself accelerated by the third bodies; so each third body
+ * contributes only its <em>tidal</em> acceleration: its pull on the bob less its
+ * pull on the center.
+ * <p/>
+ * The third bodies' positions are looked up in precomputed {@linkplain EphemerisTable}s,
+ * once per {@linkplain #update(double) update}; the cost of a force evaluation is then
+ * a few multiplies and one square root per body. {@linkplain #clone() Clones} share
+ * the (immutable) tables.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ * Clone a copy if you need to.
+ *
+ * @see #newEarthMoonSun(double, double)
+ */
+public class ThirdBodyPotential extends Potential {
+
+  /**
+   * Ephemeris table step for the Moon. (Interpolation error under a centimeter.)
+   */
+  private final static double MOON_STEP = 3600;
+  /**
+   * Ephemeris table step for the Sun. (Interpolation error under 100 meters.)
+   */
+  private final static double SUN_STEP = 86400;
+
+
+  /**
+   * Returns an instance modeling the Earth, with the Moon and the Sun as third bodies
+   * over the given span of time (seconds). The Earth is the {@linkplain SphericalBodyPotential
+   * default} one; the Moon and the Sun are on circular orbits, inclined to the equator
+   * by the {@linkplain Constants#OBLIQUITY obliquity} of the ecliptic. The instance's
+   * time starts at <tt>startTime</tt>.
+   */
+  public static ThirdBodyPotential newEarthMoonSun(double startTime, double endTime) {
+    EphemerisTable moon = new EphemerisTable(
+        new EphemerisTable.CircularOrbit(
+            Constants.MOON_ORBIT_RADIUS, Constants.MOON_PERIOD, Constants.OBLIQUITY, 0),
+        startTime, endTime, MOON_STEP);
+    EphemerisTable sun = new EphemerisTable(
+        new EphemerisTable.CircularOrbit(
+            Constants.AU, Constants.YEAR, Constants.OBLIQUITY, 0),
+        startTime, endTime, SUN_STEP);
+    return new ThirdBodyPotential(
+        new SphericalBodyPotential(),
+        new double[] { Constants.MOON_MASS, Constants.SUN_MASS },
+        new EphemerisTable[] { moon, sun },
+        startTime);
+  }
+
+
+
+  private final SphericalBodyPotential central;
+
+  /**
+   * Mass times gravitational constant G, by third body.
+   */
+  private final double[] g;
+
+  private final EphemerisTable[] tables;
+
+  private double time;
+
+  /**
+   * Third body positions at {@linkplain #time}, <tt>x, y, z</tt> per body.
+   */
+  private final double[] pos;
+
+  /**
+   * The acceleration of the center due to each third body, <tt>x, y, z</tt> per body.
+   * (Subtracted from the bob's.)
+   */
+  private final double[] indirect;
+
+  // work vector recycling ok since single threaded
+  private final Vector work = new Vector();
+
+
+
+  /**
+   * @param central the central body, at the origin
+   * @param masses  the third bodies' masses (kg)
+   * @param tables  the third bodies' trajectories, parallel to <tt>masses</tt>
+   * @param time    the initial time (seconds); must be covered by the tables
+   */
+  public ThirdBodyPotential(
+      SphericalBodyPotential central, double[] masses, EphemerisTable[] tables, double time) {
+    if (central == null)
+      throw new IllegalArgumentException("null central");
+    if (masses.length != tables.length)
+      throw new IllegalArgumentException(
+          "masses/tables length mismatch: " + masses.length + "/" + tables.length);
+    this.central = central.clone();
+    this.g = new double[masses.length];
+    this.tables = tables.clone();
+    for (int index = 0; index < masses.length; ++index) {
+      if (masses[index] <= 0)
+        throw new IllegalArgumentException("masses[" + index + "] " + masses[index]);
+      if (tables[index] == null)
+        throw new IllegalArgumentException("null tables[" + index + "]");
+      g[index] = masses[index] * Constants.G;
+    }
+    this.pos = new double[3 * g.length];
+    this.indirect = new double[3 * g.length];
+    setTime(time);
+  }
+
+
+  /**
+   * Copy constructor. The ephemeris tables are shared.
+   */
+  public ThirdBodyPotential(ThirdBodyPotential copy) {
+    this.central = copy.central.clone();
+    this.g = copy.g;
+    this.tables = copy.tables;
+    this.time = copy.time;
+    this.pos = copy.pos.clone();
+    this.indirect = copy.indirect.clone();
+  }
+
+
+
+  @Override
+  public void force(DynaVector bob) {
+    central.force(bob);
+    Vector p = bob.getPos();
+    double x = p.getX();
+    double y = p.getY();
+    double z = p.getZ();
+    double ax = 0, ay = 0, az = 0;
+    for (int k = 0, j = 0; k < g.length; ++k, j += 3) {
+      // vector from bob to third body
+      double sx = pos[j] - x;
+      double sy = pos[j + 1] - y;
+      double sz = pos[j + 2] - z;
+      double distanceSq = sx*sx + sy*sy + sz*sz;
+      double scale = g[k] / (distanceSq * Math.sqrt(distanceSq));
+      ax += sx * scale - indirect[j];
+      ay += sy * scale - indirect[j + 1];
+      az += sz * scale - indirect[j + 2];
+    }
+    bob.getAcc().add(ax, ay, az);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Same arithmetic, in the same order, as {@linkplain #force(DynaVector)}: the third
+   * bodies' terms are summed per bob, then added to its acceleration.
+   */
+  @Override
+  public void force(double[] pos, double[] acc, int offset, int count) {
+    central.force(pos, acc, offset, count);
+    final double[] bodies = this.pos;
+    for (int x = offset, end = offset + 3 * count; x < end; x += 3) {
+      final double px = pos[x], py = pos[x + 1], pz = pos[x + 2];
+      double ax = 0, ay = 0, az = 0;
+      for (int k = 0, j = 0; k < g.length; ++k, j += 3) {
+        double sx = bodies[j] - px;
+        double sy = bodies[j + 1] - py;
+        double sz = bodies[j + 2] - pz;
+        double distanceSq = sx*sx + sy*sy + sz*sz;
+        double scale = g[k] / (distanceSq * Math.sqrt(distanceSq));
+        ax += sx * scale - indirect[j];
+        ay += sy * scale - indirect[j + 1];
+        az += sz * scale - indirect[j + 2];
+      }
+      acc[x] += ax;
+      acc[x + 1] += ay;
+      acc[x + 2] += az;
+    }
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The third bodies' tidal potentials are zero at the origin.
+   */
+  @Override
+  public double pe(DynaVector bob) {
+    double joules = central.pe(bob);
+    Vector p = bob.getPos();
+    for (int k = 0, j = 0; k < g.length; ++k, j += 3) {
+      double distance = p.diffMagnitude(pos[j], pos[j + 1], pos[j + 2]);
+      double centerDistance = Math.sqrt(
+          pos[j] * pos[j] + pos[j + 1] * pos[j + 1] + pos[j + 2] * pos[j + 2]);
+      joules += g[k] / centerDistance - g[k] / distance
+          + p.dot(indirect[j], indirect[j + 1], indirect[j + 2]);
+    }
+    return joules;
+  }
+
+
+  /**
+   * Advances this instance's time, and looks up the third bodies' new positions.
+   *
+   * @throws IllegalArgumentException if the new time is past the ephemeris tables' span
+   */
+  @Override
+  public void update(double seconds) throws IllegalArgumentException {
+    if (seconds < 0)
+      throw new IllegalArgumentException("seconds " + seconds);
+    central.update(seconds);
+    setTime(time + seconds);
+  }
+
+
+  private void setTime(double time) {
+    // check first, so as to fail atomically
+    for (EphemerisTable table : tables)
+      if (!(time >= table.getStartTime() && time <= table.getEndTime()))
+        throw new IllegalArgumentException(
+            "time " + time + " outside [" + table.getStartTime() + ", " + table.getEndTime() + "]");
+    for (int k = 0, j = 0; k < g.length; ++k, j += 3) {
+      Vector r = tables[k].getPosition(time, work);
+      double x = r.getX();
+      double y = r.getY();
+      double z = r.getZ();
+      double distanceSq = x*x + y*y + z*z;
+      double scale = g[k] / (distanceSq * Math.sqrt(distanceSq));
+      pos[j] = x;
+      pos[j + 1] = y;
+      pos[j + 2] = z;
+      indirect[j] = x * scale;
+      indirect[j + 1] = y * scale;
+      indirect[j + 2] = z * scale;
+    }
+    this.time = time;
+  }
+
+
+  /**
+   * Returns this instance's time, in seconds.
+   */
+  public double getTime() {
+    return time;
+  }
+
+
+  /**
+   * Returns the number of third bodies.
+   */
+  public int getBodies() {
+    return g.length;
+  }
+
+
+  /**
+   * Sets the given vector to the position of the third body at the given index, and
+   * returns it.
+   */
+  public Vector getBodyPosition(int index, Vector out) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= g.length)
+      throw new IndexOutOfBoundsException("index " + index);
+    int j = 3 * index;
+    return out.set(pos[j], pos[j + 1], pos[j + 2]);
+  }
+
+
+  public SphericalBodyPotential getCentral() {
+    return central;
+  }
+
+
+  @Override
+  public ThirdBodyPotential clone() {
+    return new ThirdBodyPotential(this);
+  }
+
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.PointMass;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.CheckedUniverse;
+
+/**
+ * A {@linkplain Sling} modeled in the co-orbiting (Hill) frame of its center of mass.
+ * The state is the center of mass (CM), in inertial coordinates, and the <em>offset</em>
+ * of bob B from bob A, in the rotating frame: <tt>x</tt> radial (outward), <tt>z</tt>
+ * along the CM's orbital angular momentum, and <tt>y</tt> completing the right hand
+ * (along track, for a circular orbit).
+ * <p/>
+ * The offset's equations of motion are the nonlinear Hill equations: the tidal
+ * acceleration (the difference of the central body's pull on the 2 bobs, computed
+ * without cancellation), the tether's, and the Coriolis, centrifugal and Euler terms of
+ * the rotating frame. The CM is pulled by the central body, plus the net tidal force
+ * on the bobs. Neither ever subtracts the large coordinates of the 2 bobs, so the tether
+ * length and its rate are had directly, to full precision.
+ * <p/>
+ * The forces depend on velocity (Coriolis), so the symplectic {@linkplain com.gnahraf.sim.Integrator}s
+ * don't apply; the state is advanced by classic (4th order) Runge-Kutta steps. The rotation
+ * of the frame about the radial axis (from out-of-plane forces on the CM, of order
+ * 10<sup><small>-16</small></sup> radians per second, for a sling in low earth orbit)
+ * is ignored.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class HillSling extends CheckedUniverse implements Tethered {
+
+  private final static int CM = 0;
+  private final static int CM_VEL = 3;
+  private final static int OFFSET = 6;
+  private final static int OFFSET_VEL = 9;
+  private final static int LENGTH = 12;
+
+
+  private final double massA;
+  private final double massB;
+  /**
+   * Mass times gravitational constant G of the central body.
+   */
+  private final double g;
+
+  private double tether;
+
+  /**
+   * CM position, velocity (inertial); offset position, velocity (Hill frame).
+   */
+  private final double[] state = new double[LENGTH];
+
+  // RK4 work arrays, recycling ok since single threaded
+  private final double[] k1 = new double[LENGTH];
+  private final double[] k2 = new double[LENGTH];
+  private final double[] k3 = new double[LENGTH];
+  private final double[] k4 = new double[LENGTH];
+  private final double[] probe = new double[LENGTH];
+  private final Frame frame = new Frame();
+  private final double[] tideA = new double[3];
+  private final double[] tideB = new double[3];
+  private final double[] work = new double[3];
+  private final double[] work2 = new double[3];
+
+
+
+  /**
+   * Creates an instance with the same state as the given <tt>sling</tt>.
+   *
+   * @param sling whose potential is a {@linkplain SphericalBodyPotential}
+   */
+  public HillSling(Sling sling) {
+    if (!(sling.getPotential() instanceof SphericalBodyPotential))
+      throw new IllegalArgumentException("potential " + sling.getPotential());
+    this.massA = sling.getBobA().getMass();
+    this.massB = sling.getBobB().getMass();
+    this.g = ((SphericalBodyPotential) sling.getPotential()).getG();
+    this.tether = sling.getTether();
+    setState(sling);
+  }
+
+
+  /**
+   * Copy constructor.
+   */
+  public HillSling(HillSling copy) {
+    this.massA = copy.massA;
+    this.massB = copy.massB;
+    this.g = copy.g;
+    this.tether = copy.tether;
+    System.arraycopy(copy.state, 0, state, 0, LENGTH);
+  }
+
+
+
+  /**
+   * Sets this instance's state (but not its tether) from the given <tt>sling</tt>'s.
+   * The masses should match.
+   */
+  public void setState(Sling sling) {
+    PointMass a = sling.getBobA();
+    PointMass b = sling.getBobB();
+    final double mass = massA + massB;
+    for (int i = 0; i < 3; ++i) {
+      double ax = a.getPos().val(0, i);
+      double bx = b.getPos().val(0, i);
+      double av = a.getVel().val(0, i);
+      double bv = b.getVel().val(0, i);
+      state[CM + i] = (massA * ax + massB * bx) / mass;
+      state[CM_VEL + i] = (massA * av + massB * bv) / mass;
+      // inertial offset, for now
+      state[OFFSET + i] = bx - ax;
+      state[OFFSET_VEL + i] = bv - av;
+    }
+    frame.set(state);
+    double[] offset = work;
+    double[] offsetVel = work2;
+    frame.toHill(state, OFFSET, offset);
+    frame.toHill(state, OFFSET_VEL, offsetVel);
+    // the rate seen in the rotating frame: less omega x offset
+    offsetVel[0] += frame.omega * offset[1];
+    offsetVel[1] -= frame.omega * offset[0];
+    System.arraycopy(offset, 0, state, OFFSET, 3);
+    System.arraycopy(offsetVel, 0, state, OFFSET_VEL, 3);
+  }
+
+
+  /**
+   * Writes this instance's state (and tether) to the given sling's, in inertial
+   * coordinates.
+   */
+  public void copyTo(Sling sling) {
+    frame.set(state);
+    double ox = state[OFFSET], oy = state[OFFSET + 1], oz = state[OFFSET + 2];
+    // inertial rate: plus omega x offset
+    double vx = state[OFFSET_VEL] - frame.omega * oy;
+    double vy = state[OFFSET_VEL + 1] + frame.omega * ox;
+    double vz = state[OFFSET_VEL + 2];
+    double[] offset = work;
+    double[] offsetVel = work2;
+    frame.toInertial(ox, oy, oz, offset);
+    frame.toInertial(vx, vy, vz, offsetVel);
+
+    final double mass = massA + massB;
+    final double aShare = -massB / mass;
+    final double bShare = massA / mass;
+    set(sling.getBobA(), offset, offsetVel, aShare);
+    set(sling.getBobB(), offset, offsetVel, bShare);
+    sling.setTether(tether);
+  }
+
+
+  private void set(DynaVector bob, double[] offset, double[] offsetVel, double share) {
+    bob.setPosition(
+        state[CM] + share * offset[0],
+        state[CM + 1] + share * offset[1],
+        state[CM + 2] + share * offset[2]);
+    bob.setVelocity(
+        state[CM_VEL] + share * offsetVel[0],
+        state[CM_VEL + 1] + share * offsetVel[1],
+        state[CM_VEL + 2] + share * offsetVel[2]);
+  }
+
+
+
+  @Override
+  public double getTether() {
+    return tether;
+  }
+
+
+  @Override
+  public void setTether(double tether) {
+    this.tether = tether;
+  }
+
+
+  @Override
+  public double getTetherLength() {
+    double x = state[OFFSET], y = state[OFFSET + 1], z = state[OFFSET + 2];
+    return Math.sqrt(x*x + y*y + z*z);
+  }
+
+
+  @Override
+  public double getTetherLengthRate() {
+    // (the frame's rotation doesn't change the length)
+    return (state[OFFSET] * state[OFFSET_VEL]
+        + state[OFFSET + 1] * state[OFFSET_VEL + 1]
+        + state[OFFSET + 2] * state[OFFSET_VEL + 2]) / getTetherLength();
+  }
+
+
+  /**
+   * Returns the offset of bob B from bob A in the Hill frame.
+   */
+  public Vector getOffset() {
+    return new Vector(state[OFFSET], state[OFFSET + 1], state[OFFSET + 2]);
+  }
+
+
+  /**
+   * Returns the rate of change of the {@linkplain #getOffset() offset}, as seen in
+   * the (rotating) Hill frame.
+   */
+  public Vector getOffsetRate() {
+    return new Vector(state[OFFSET_VEL], state[OFFSET_VEL + 1], state[OFFSET_VEL + 2]);
+  }
+
+
+  public Vector getCm() {
+    return new Vector(state[CM], state[CM + 1], state[CM + 2]);
+  }
+
+
+  public Vector getCmVel() {
+    return new Vector(state[CM_VEL], state[CM_VEL + 1], state[CM_VEL + 2]);
+  }
+
+
+  public double getMass() {
+    return massA + massB;
+  }
+
+
+
+  /**
+   * Advances the state by the given number of <tt>seconds</tt> in the given number of
+   * equal Runge-Kutta steps.
+   */
+  @Override
+  protected void tickImpl(double time, long steps) {
+    double dt = time / steps;
+    while (steps-- > 0)
+      step(dt);
+  }
+
+
+  /**
+   * Advances the state by one Runge-Kutta step of <tt>dt</tt> seconds, holding the
+   * tether constant.
+   */
+  public void step(double dt) {
+    final double[] state = this.state;
+    derivative(state, k1);
+    for (int i = 0; i < LENGTH; ++i)
+      probe[i] = state[i] + k1[i] * dt / 2;
+    derivative(probe, k2);
+    for (int i = 0; i < LENGTH; ++i)
+      probe[i] = state[i] + k2[i] * dt / 2;
+    derivative(probe, k3);
+    for (int i = 0; i < LENGTH; ++i)
+      probe[i] = state[i] + k3[i] * dt;
+    derivative(probe, k4);
+    for (int i = 0; i < LENGTH; ++i)
+      state[i] += (k1[i] + 2 * (k2[i] + k3[i]) + k4[i]) * dt / 6;
+  }
+
+
+  /**
+   * Computes the time derivative of the given state <tt>y</tt>.
+   */
+  private void derivative(double[] y, double[] dy) {
+    final Frame frame = this.frame.set(y);
+    final double r = frame.r;
+    final double omega = frame.omega;
+
+    final double mass = massA + massB;
+    final double aShare = -massB / mass;
+    final double bShare = massA / mass;
+    final double ox = y[OFFSET], oy = y[OFFSET + 1], oz = y[OFFSET + 2];
+
+    // tidal accelerations of the 2 bobs (Hill frame)
+    final double scale = -g / (r * r * r);
+    final double[] tideA = this.tideA;
+    final double[] tideB = this.tideB;
+    tide(r, scale, aShare * ox, aShare * oy, aShare * oz, tideA);
+    tide(r, scale, bShare * ox, bShare * oy, bShare * oz, tideB);
+
+    // the perturbation of the CM
+    double px = (massA * tideA[0] + massB * tideB[0]) / mass;
+    double py = (massA * tideA[1] + massB * tideB[1]) / mass;
+    double pz = (massA * tideA[2] + massB * tideB[2]) / mass;
+
+    // inertial relative acceleration of B from A (Hill frame components)
+    double length = Math.sqrt(ox*ox + oy*oy + oz*oz);
+    double pull = -tether * (1 / massA + 1 / massB) / length;
+    double ax = tideB[0] - tideA[0] + pull * ox;
+    double ay = tideB[1] - tideA[1] + pull * oy;
+    double az = tideB[2] - tideA[2] + pull * oz;
+
+    // the frame's angular acceleration
+    double rDot = (y[CM] * y[CM_VEL] + y[CM + 1] * y[CM_VEL + 1] + y[CM + 2] * y[CM_VEL + 2]) / r;
+    double omegaDot = (py - 2 * omega * rDot) / r;
+
+    double vx = y[OFFSET_VEL], vy = y[OFFSET_VEL + 1], vz = y[OFFSET_VEL + 2];
+    dy[OFFSET] = vx;
+    dy[OFFSET + 1] = vy;
+    dy[OFFSET + 2] = vz;
+    double omegaSq = omega * omega;
+    dy[OFFSET_VEL] = ax + 2 * omega * vy + omegaDot * oy + omegaSq * ox;
+    dy[OFFSET_VEL + 1] = ay - 2 * omega * vx - omegaDot * ox + omegaSq * oy;
+    dy[OFFSET_VEL + 2] = az;
+
+    // CM
+    double[] perturbation = work;
+    frame.toInertial(px, py, pz, perturbation);
+    for (int i = 0; i < 3; ++i) {
+      dy[CM + i] = y[CM_VEL + i];
+      dy[CM_VEL + i] = scale * y[CM + i] + perturbation[i];
+    }
+  }
+
+
+  /**
+   * Writes the difference between the central body's pull at <tt>u</tt> (Hill frame)
+   * from the CM, and its pull at the CM, at radius <tt>r</tt>, to <tt>out</tt>.
+   *
+   * @param scale <tt>-g / r<sup><small>3</small></sup></tt>
+   */
+  private static void tide(double r, double scale, double ux, double uy, double uz, double[] out) {
+    double rx = r + ux;
+    // (r/|r + u|)^2 = 1 + q; and 1 - (r/|r + u|)^3 = -f(q), computed w/o cancellation
+    double q = (ux * (ux - 2 * rx) - uy * uy - uz * uz) / (rx*rx + uy*uy + uz*uz);
+    double f = q * (3 + 3 * q + q * q) / (1 + Math.pow(1 + q, 1.5));
+    out[0] = scale * (ux + f * rx);
+    out[1] = scale * (uy + f * uy);
+    out[2] = scale * (uz + f * uz);
+  }
+
+
+
+  /**
+   * The Hill frame of a state's CM.
+   */
+  private static class Frame {
+
+    double r;
+    /**
+     * Angular velocity about the z axis.
+     */
+    double omega;
+    // the unit vectors, in inertial coordinates
+    final Vector xHat = new Vector();
+    final Vector yHat = new Vector();
+    final Vector zHat = new Vector();
+
+    Frame set(double[] y) {
+      xHat.set(y[CM], y[CM + 1], y[CM + 2]);
+      zHat.set(xHat).cross(yHat.set(y[CM_VEL], y[CM_VEL + 1], y[CM_VEL + 2]));
+      this.r = xHat.magnitude();
+      double h = zHat.magnitude();
+      if (r == 0 || h == 0)
+        throw new IllegalStateException("degenerate CM orbit: r " + r + "; h " + h);
+      this.omega = h / (r * r);
+      xHat.divide(r);
+      zHat.divide(h);
+      yHat.set(zHat).cross(xHat);
+      return this;
+    }
+
+    /**
+     * Writes the Hill frame coordinates of the inertial vector at <tt>v[offset]</tt>
+     * to <tt>out</tt>.
+     */
+    void toHill(double[] v, int offset, double[] out) {
+      double x = v[offset], y = v[offset + 1], z = v[offset + 2];
+      out[0] = xHat.dot(x, y, z);
+      out[1] = yHat.dot(x, y, z);
+      out[2] = zHat.dot(x, y, z);
+    }
+
+    /**
+     * Writes the inertial coordinates of the given Hill frame vector to <tt>out</tt>.
+     */
+    void toInertial(double x, double y, double z, double[] out) {
+      out[0] = x * xHat.getX() + y * yHat.getX() + z * zHat.getX();
+      out[1] = x * xHat.getY() + y * yHat.getY() + z * zHat.getY();
+      out[2] = x * xHat.getZ() + y * yHat.getZ() + z * zHat.getZ();
+    }
+  }
+
+}
@@ -6,8 +6,11 @@ package com.gnahraf.gskate.sling;
 
 import java.util.function.Function;
 
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.EnergyLedger;
 import com.gnahraf.gskate.model.PointMass;
 import com.gnahraf.gskate.model.Potential;
+import com.gnahraf.gskate.model.TetheredCraft;
 import com.gnahraf.math.r3.Vector;
 
 /**
@@ -18,7 +21,7 @@ import com.gnahraf.math.r3.Vector;
  * bob A is the more massive than bob B.
  * 
  */
-public class Sling {
+public class Sling implements Tethered {
   
   private final PointMass bobA;
   private final PointMass bobB;
@@ -31,6 +34,16 @@ public class Sling {
   // work vector recycling ok since single threaded
   private final Vector work = new Vector();
   
+  // slow (gravitational) accelerations, for multi-rate integration
+  private final Vector slowA = new Vector();
+  private final Vector slowB = new Vector();
+  private final DynaVector probe = new DynaVector();
+  
+  /**
+   * Posted to as the sling is animated, if not <tt>null</tt>.
+   */
+  private EnergyLedger ledger;
+  
   
   /**
    * Creates a new 1 kilogram sling with the specified ratio of
@@ -93,11 +106,62 @@ public class Sling {
   }
   
 
+  /**
+   * Updates the acceleration vectors of bobs A and B reflecting only the force
+   * of the tether.
+   * 
+   * @see com.gnahraf.sim.Integrator.MultiRateDynamics
+   */
+  public void updateFastForces() {
+    bobA.clearAcceleration();
+    bobB.clearAcceleration();
+    
+    Vector a2bTether =
+        work.set(bobB.getPos()).subtract(bobA.getPos()).toMagnitude(tether);
+    bobA.addForce(a2bTether);
+    bobB.addForce(a2bTether.flip());
+  }
+  
+  
+  /**
+   * Updates the gravitational accelerations of bobs A and B, kept apart from
+   * their acceleration vectors (which are unaffected).
+   * 
+   * @see #kickSlow(double)
+   * @see com.gnahraf.sim.Integrator.MultiRateDynamics
+   */
+  public void updateSlowForces() {
+    slowA.set(gravity(bobA));
+    slowB.set(gravity(bobB));
+  }
+  
+  
+  private Vector gravity(PointMass bob) {
+    probe.getPos().set(bob.getPos());
+    probe.clearAcceleration();
+    potential.force(probe);
+    return probe.getAcc();
+  }
+  
+  
+  /**
+   * Advances the bobs' velocities by <tt>dt</tt> seconds of the gravitational
+   * accelerations last {@linkplain #updateSlowForces() updated}.
+   */
+  public void kickSlow(double dt) {
+    if (ledger != null)
+      postWork(dt, slowA, slowB, false);
+    bobA.getVel().add(slowA, dt);
+    bobB.getVel().add(slowB, dt);
+  }
+  
+
   /**
    * Returns the tether strength in Newtons.
    * 
    * @see #setTether(double)
    */
+  @Override
   public double getTether() {
     return tether;
   }
@@ -114,9 +178,24 @@ public class Sling {
    * @param tether +/- means attractive/repulsive (tensile/strut).
    *               (Also, note change in convention!)
    */
+  @Override
   public void setTether(double tether) {
     this.tether = tether;
   }
+  
+  
+  @Override
+  public double getTetherLength() {
+    return bobA.getPos().diffMagnitude(bobB.getPos());
+  }
+  
+  
+  @Override
+  public double getTetherLengthRate() {
+    Vector a2bHat = new Vector(bobB.getPos()).subtract(bobA.getPos()).toUnit();
+    Vector a2bVel = new Vector(bobB.getVel()).subtract(bobA.getVel());
+    return a2bVel.dot(a2bHat);
+  }
 
 
 
@@ -145,11 +224,122 @@ public class Sling {
    * @param dt  a sliver of time; results undefined for non-positive value
    */
   public void animate(double dt) {
+    if (ledger != null)
+      postWork(dt, bobA.getAcc(), bobB.getAcc(), true);
     bobA.animate(dt);
     bobB.animate(dt);
   }
   
   
+  /**
+   * Advances the bobs' velocities by <tt>dt</tt> seconds. Assumes
+   * {@linkplain #updateForces()} has already been called.
+   * 
+   * @see com.gnahraf.sim.Integrator
+   */
+  public void kick(double dt) {
+    if (ledger != null)
+      postWork(dt, bobA.getAcc(), bobB.getAcc(), true);
+    bobA.kick(dt);
+    bobB.kick(dt);
+  }
+  
+  
+  /**
+   * Advances the bobs' positions by <tt>dt</tt> seconds.
+   * 
+   * @see com.gnahraf.sim.Integrator
+   */
+  public void drift(double dt) {
+    bobA.drift(dt);
+    bobB.drift(dt);
+  }
+  
+  
+  
+  
+  
+  
+  /**
+   * Returns the energy ledger posted to as the sling is animated, or <tt>null</tt>
+   * if none.
+   */
+  public EnergyLedger getLedger() {
+    return ledger;
+  }
+  
+  
+  /**
+   * Sets the energy ledger. Work is posted to it whenever the sling is
+   * {@linkplain #kick(double) kick}ed (slow or fast) or
+   * {@linkplain #animate(double) animate}d.
+   * 
+   * @param ledger with 1 tether, or <tt>null</tt> for none
+   */
+  public void setLedger(EnergyLedger ledger) {
+    if (ledger != null && ledger.getTethers() != 1)
+      throw new IllegalArgumentException("ledger tethers " + ledger.getTethers());
+    this.ledger = ledger;
+  }
+  
+  
+  /**
+   * Sets and returns a new energy ledger opened at the sling's current state.
+   */
+  public EnergyLedger openLedger() {
+    EnergyLedger ledger = new EnergyLedger(1);
+    double mass = getMass();
+    ledger.open(getKe(), getCmVel().magnitudeSq() * mass / 2, getPe());
+    this.ledger = ledger;
+    return ledger;
+  }
+  
+  
+  /**
+   * Posts the work the given accelerations of bobs A and B do over the next
+   * <tt>dt</tt> seconds: their dot product with the mid-step velocities (times
+   * mass and <tt>dt</tt>). If <tt>tethered</tt>, the tether's share is split out;
+   * the rest is gravity's.
+   */
+  private void postWork(double dt, Vector accA, Vector accB, boolean tethered) {
+    final double h = dt / 2;
+    final double ma = bobA.getMass();
+    final double mb = bobB.getMass();
+    Vector velA = bobA.getVel();
+    Vector velB = bobB.getVel();
+    
+    double ax = accA.getX() * dt, ay = accA.getY() * dt, az = accA.getZ() * dt;
+    double bx = accB.getX() * dt, by = accB.getY() * dt, bz = accB.getZ() * dt;
+    double ke =
+        ma * (ax * (velA.getX() + ax / 2) + ay * (velA.getY() + ay / 2) + az * (velA.getZ() + az / 2)) +
+        mb * (bx * (velB.getX() + bx / 2) + by * (velB.getY() + by / 2) + bz * (velB.getZ() + bz / 2));
+    
+    double tetherWork = 0;
+    if (tethered) {
+      double abx = bobB.getX() - bobA.getX();
+      double aby = bobB.getY() - bobA.getY();
+      double abz = bobB.getZ() - bobA.getZ();
+      // relative velocity at mid-step
+      double vx = velB.getX() - velA.getX() + (accB.getX() - accA.getX()) * h;
+      double vy = velB.getY() - velA.getY() + (accB.getY() - accA.getY()) * h;
+      double vz = velB.getZ() - velA.getZ() + (accB.getZ() - accA.getZ()) * h;
+      // attractive (+) tether does work as it shortens
+      tetherWork = -tether * dt *
+          (abx * vx + aby * vy + abz * vz) / Math.sqrt(abx*abx + aby*aby + abz*abz);
+      ledger.addTetherWork(0, tetherWork);
+    }
+    ledger.addGravityWork(ke - tetherWork);
+    
+    // momentum and its change
+    double px = ma * velA.getX() + mb * velB.getX();
+    double py = ma * velA.getY() + mb * velB.getY();
+    double pz = ma * velA.getZ() + mb * velB.getZ();
+    double dpx = ma * ax + mb * bx;
+    double dpy = ma * ay + mb * by;
+    double dpz = ma * az + mb * bz;
+    ledger.addTranslationalWork(
+        (dpx * (px + dpx / 2) + dpy * (py + dpy / 2) + dpz * (pz + dpz / 2)) / (ma + mb));
+  }
   
   
   
@@ -158,6 +348,35 @@ public class Sling {
   
   
   
+  /**
+   * Returns a new generic craft with the same state as this sling: bob A at index 0,
+   * bob B at 1, and one tether (same sign convention).
+   */
+  public TetheredCraft toTetheredCraft() {
+    TetheredCraft craft =
+        new TetheredCraft(new double[] { bobA.getMass(), bobB.getMass() }, new int[] { 0, 1 });
+    craft.setBob(0, bobA);
+    craft.setBob(1, bobB);
+    craft.setTetherByIndex(0, tether);
+    return craft;
+  }
+  
+  
+  /**
+   * Sets this sling's state from the given generic craft, laid out as in
+   * {@linkplain #toTetheredCraft()}.
+   */
+  public void copyFrom(TetheredCraft craft) {
+    if (craft.getBobs() != 2 || craft.getTethers() != 1)
+      throw new IllegalArgumentException(
+          "bobs/tethers " + craft.getBobs() + "/" + craft.getTethers());
+    craft.copyBobTo(0, bobA);
+    craft.copyBobTo(1, bobB);
+    tether = craft.getTetherByIndex(0);
+  }
+  
+  
+  
   public Vector getCm() {
     return cmVector(b -> b.getPos());
   }
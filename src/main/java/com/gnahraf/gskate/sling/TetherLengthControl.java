@@ -15,7 +15,11 @@ import com.gnahraf.math.r3.Vector;
  */
 public class TetherLengthControl {
   
-  private final Sling craft;
+  private final Tethered craft;
+  /**
+   * Same as <tt>craft</tt>, if it's a {@linkplain Sling}; <tt>null</tt>, o.w.
+   */
+  private final Sling sling;
   
   
   private double targetLength = 100;
@@ -44,10 +48,11 @@ public class TetherLengthControl {
   /**
    * 
    */
-  public TetherLengthControl(Sling craft) {
+  public TetherLengthControl(Tethered craft) {
     this.craft = craft;
     if (craft == null)
       throw new IllegalArgumentException("null craft");
+    this.sling = craft instanceof Sling ? (Sling) craft : null;
   }
   
   
@@ -57,17 +62,7 @@ public class TetherLengthControl {
   
   
   private Snapshot snap(double time) {
-    PointMass a = craft.getBobA();
-    PointMass b = craft.getBobB();
-
-    double length = a.getPos().diffMagnitude(b.getPos());
-    
-    Vector a2bHat = new Vector(b.getPos()).subtract(a.getPos()).toUnit();
-    Vector a2bVel = new Vector(b.getVel()).subtract(a.getVel());
-    
-    double speed = a2bVel.dot(a2bHat);
-    
-    return new Snapshot(length, speed, time);
+    return new Snapshot(craft.getTetherLength(), craft.getTetherLengthRate(), time);
   }
   
   
@@ -146,8 +141,13 @@ public class TetherLengthControl {
    * Note, performance gains for optimizing this code should be minimal;
    * we cycle through control invocations much less frequently than the
    * rest of the simulation.
+   * 
+   * @throws IllegalStateException if the craft is not a {@linkplain Sling}
    */
-  public void adjustTetherOld() {
+  public void adjustTetherOld() throws IllegalStateException {
+    if (sling == null)
+      throw new IllegalStateException("not a sling: " + craft);
+    final Sling craft = sling;
     PointMass a = craft.getBobA();
     PointMass b = craft.getBobB();
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+import com.gnahraf.sim.Checkpoint;
+import com.gnahraf.sim.ControlLog;
+import com.gnahraf.sim.SimEngine;
+
+/**
+ * A checkpoint that records changes to a sling's tether to a {@linkplain ControlLog},
+ * keyed by the engine's tick time (on channel zero). Schedule it on the same schedule
+ * as the controller, at a lower priority, so that it's checked right after. The tether
+ * on creation is recorded in full.
+ * 
+ * @see TetherReplay
+ */
+public class TetherRecorder extends Checkpoint {
+  
+  private final SimEngine engine;
+  private final Sling sling;
+  private final ControlLog log;
+  
+  private double tether;
+
+  
+  public TetherRecorder(SimEngine engine, Sling sling, ControlLog log) {
+    this.engine = engine;
+    this.sling = sling;
+    this.log = log;
+    if (engine == null)
+      throw new IllegalArgumentException("null engine");
+    
+    tether = sling.getTether();
+    log.append(engine.getTickTime(), 0, tether);
+  }
+  
+
+  @Override
+  public void check() {
+    double value = sling.getTether();
+    if (value != tether) {
+      tether = value;
+      log.append(engine.getTickTime(), 0, value);
+    }
+  }
+  
+  
+  public ControlLog getLog() {
+    return log;
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+import com.gnahraf.sim.Checkpoint;
+import com.gnahraf.sim.ControlLog;
+import com.gnahraf.sim.SimEngine;
+
+/**
+ * A checkpoint that plays back a sling's {@linkplain TetherRecorder recorded} tether
+ * changes, in place of its controller. Schedule it on the controller's schedule
+ * (and priority): the tether then changes at exactly the recorded ticks.
+ */
+public class TetherReplay extends Checkpoint {
+  
+  private final SimEngine engine;
+  private final ControlLog.Player player;
+  private final ControlLog.Sink sink;
+
+  /**
+   * Creates an instance, playing back the entries up to the engine's current tick.
+   */
+  public TetherReplay(SimEngine engine, Sling sling, ControlLog log) {
+    this.engine = engine;
+    this.player = log.newPlayer();
+    this.sink = (channel, tether) -> sling.setTether(tether);
+    if (log.isEmpty())
+      throw new IllegalArgumentException("empty log");
+    check();
+  }
+  
+
+  @Override
+  public void check() {
+    player.playUpTo(engine.getTickTime(), sink);
+  }
+  
+  
+  public boolean isDone() {
+    return player.isDone();
+  }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+/**
+ * The view of a sling a tether controller needs: the tether's strength, and its
+ * length and rate of change.
+ * 
+ * @see TetherLengthControl
+ */
+public interface Tethered {
+
+  /**
+   * Returns the tether strength in Newtons. +/- means attractive/repulsive.
+   */
+  double getTether();
+
+  /**
+   * Sets the tether strength in Newtons. +/- means attractive/repulsive.
+   */
+  void setTether(double tether);
+
+  /**
+   * Returns the distance between the 2 bobs in meters.
+   */
+  double getTetherLength();
+
+  /**
+   * Returns the rate of change of the {@linkplain #getTetherLength() tether length}
+   * in meters per second.
+   */
+  double getTetherLengthRate();
+
+}
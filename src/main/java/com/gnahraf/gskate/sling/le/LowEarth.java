@@ -3,15 +3,20 @@
  */
 package com.gnahraf.gskate.sling.le;
 
+import com.gnahraf.gskate.model.PointMass;
 import com.gnahraf.gskate.model.SphericalBodyPotential;
 import com.gnahraf.gskate.sling.Craft;
-import com.gnahraf.sim.TwoStepSystem;
+import com.gnahraf.gskate.sling.Sling;
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.AdaptiveStepSystem;
+import com.gnahraf.sim.TrajectoryRecorder;
 
 
 /**
- *
+ * The sling craft about a lonely earth. Fixed step, unless an
+ * {@linkplain #setTolerance(double) error tolerance} is set.
  */
-public class LowEarth extends TwoStepSystem {
+public class LowEarth extends AdaptiveStepSystem {
   
   private final Craft craft;
   // seems redundant to declare these..
@@ -36,6 +41,29 @@ public class LowEarth extends TwoStepSystem {
   }
   
 
+  /**
+   * Returns a trajectory source for this system. Each record is 13 values: the
+   * position and velocity (<tt>x, y, z, vx, vy, vz</tt>) of bob A, then of bob B,
+   * then the tether force.
+   *
+   * @see com.gnahraf.sim.TrajectoryLog
+   */
+  public TrajectoryRecorder.Source newTrajectorySource() {
+    return new TrajectoryRecorder.Source() {
+      @Override
+      public int width() {
+        return 13;
+      }
+      @Override
+      public void getState(double[] state) {
+        LowEarth.this.getState(state);
+        state[12] = craft.getSling().getTether();
+      }
+    };
+  }
+  
+  
+  
   @Override
   protected void updateForces() {
     craft.getSling().updateForces();;
@@ -46,4 +74,77 @@ public class LowEarth extends TwoStepSystem {
     craft.getSling().animate(timePerStep);
   }
 
+
+  @Override
+  protected void kick(double dt) {
+    craft.getSling().kick(dt);
+  }
+
+  @Override
+  protected void drift(double dt) {
+    craft.getSling().drift(dt);
+  }
+
+
+  @Override
+  protected boolean isMultiRate() {
+    return true;
+  }
+
+  @Override
+  protected void updateFastForces() {
+    craft.getSling().updateFastForces();
+  }
+
+  @Override
+  protected void updateSlowForces() {
+    craft.getSling().updateSlowForces();
+  }
+
+  @Override
+  protected void kickSlow(double dt) {
+    craft.getSling().kickSlow(dt);
+  }
+  
+  
+  
+  @Override
+  protected int stateLength() {
+    return 12;
+  }
+
+
+  @Override
+  protected void getState(double[] state) {
+    Sling sling = craft.getSling();
+    getState(sling.getBobA(), state, 0);
+    getState(sling.getBobB(), state, 6);
+  }
+
+
+  @Override
+  protected void setState(double[] state) {
+    Sling sling = craft.getSling();
+    setState(sling.getBobA(), state, 0);
+    setState(sling.getBobB(), state, 6);
+  }
+  
+  
+  private void getState(PointMass bob, double[] state, int offset) {
+    Vector pos = bob.getPos();
+    Vector vel = bob.getVel();
+    state[offset] = pos.getX();
+    state[offset + 1] = pos.getY();
+    state[offset + 2] = pos.getZ();
+    state[offset + 3] = vel.getX();
+    state[offset + 4] = vel.getY();
+    state[offset + 5] = vel.getZ();
+  }
+  
+  
+  private void setState(PointMass bob, double[] state, int offset) {
+    bob.setPosition(state[offset], state[offset + 1], state[offset + 2]);
+    bob.setVelocity(state[offset + 3], state[offset + 4], state[offset + 5]);
+  }
+
 }
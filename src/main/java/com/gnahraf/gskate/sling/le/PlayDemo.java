@@ -4,6 +4,7 @@
 package com.gnahraf.gskate.sling.le;
 
 import com.gnahraf.gskate.model.Constants;
+import com.gnahraf.gskate.model.EnergyLedger;
 import com.gnahraf.gskate.sling.Craft;
 import com.gnahraf.gskate.sling.Sling;
 import com.gnahraf.gskate.sling.TetherLengthControl;
@@ -32,6 +33,7 @@ public class PlayDemo {
   private PlayDemo(Sling sling, long ticksPerSecond) {
     this.system = new LowEarth( new Craft(sling) );
     this.simulation = new SimEngine(system, ticksPerSecond);
+    sling.openLedger();
   }
   
   
@@ -142,17 +144,20 @@ public class PlayDemo {
     table.printRow("Energy");
     table.printHorizontalTableEdge('-');
     
-    double transEnergy = cmVel.magnitudeSq() * sling.getMass() / 2;
-    double ke = sling.getKe();
-    double rotEnergy = ke - transEnergy;
+    EnergyLedger ledger = sling.getLedger();
     
     table.printRow("Kinetic", null);
-    table.printRow("  translational", transEnergy);
-    table.printRow("  rotational", rotEnergy);
+    table.printRow("  translational", ledger.getTranslationalKe());
+    table.printRow("  rotational", ledger.getRotationalKe());
     table.printHorizontalTableEdge('-');
-    table.printRow("  Subtotal", ke);
+    table.printRow("  Subtotal", ledger.getKe());
     table.printHorizontalTableEdge('-');
-    table.printRow("PE", sling.getPe());
+    table.printRow("PE", ledger.getPe());
+    table.printRow("  measured", sling.getPe());
+    table.printHorizontalTableEdge('-');
+    table.printRow("Work", null);
+    table.printRow("  tether", ledger.getTetherWork());
+    table.printRow("  gravity", ledger.getGravityWork());
     
     println();
     table.printHorizontalTableEdge('-');
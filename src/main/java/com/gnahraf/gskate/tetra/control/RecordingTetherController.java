@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.control;
+
+import com.gnahraf.gskate.tetra.model.Simulation;
+import com.gnahraf.gskate.tetra.model.Tetra;
+import com.gnahraf.sim.ControlLog;
+
+/**
+ * Records the tether changes another controller makes to a {@linkplain ControlLog},
+ * keyed by the simulation's time in milliseconds (channels are tether indices).
+ * The craft's tethers on creation are recorded in full.
+ * 
+ * @see ReplayTetherController
+ */
+public class RecordingTetherController extends TetherController {
+  
+  private final TetherController controller;
+  private final Simulation system;
+  private final ControlLog log;
+  
+  private final double[] tethers = new double[6];
+
+  /**
+   * @param controller  the controller whose decisions are recorded
+   * @param system      the controlled system
+   * @param log         the log appended to
+   */
+  public RecordingTetherController(TetherController controller, Simulation system, ControlLog log) {
+    this.controller = controller;
+    this.system = system;
+    this.log = log;
+    if (controller == null)
+      throw new IllegalArgumentException("null controller");
+    if (log == null)
+      throw new IllegalArgumentException("null log");
+    
+    Tetra craft = system.getCraft();
+    for (int index = 0; index < 6; ++index) {
+      tethers[index] = craft.getTetherByIndex(index);
+      log.append(system.getTime(), index, tethers[index]);
+    }
+  }
+  
+
+  @Override
+  public void adjustTethers() {
+    controller.adjustTethers();
+    record();
+  }
+  
+  
+  /**
+   * Records any tether changes since last recorded. Only needed if the tethers are
+   * set other than through {@linkplain #adjustTethers()}.
+   */
+  public void record() {
+    Tetra craft = system.getCraft();
+    for (int index = 0; index < 6; ++index) {
+      double tether = craft.getTetherByIndex(index);
+      if (tether != tethers[index]) {
+        tethers[index] = tether;
+        log.append(system.getTime(), index, tether);
+      }
+    }
+  }
+  
+  
+  public ControlLog getLog() {
+    return log;
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.control;
+
+import com.gnahraf.gskate.tetra.model.Simulation;
+import com.gnahraf.sim.ControlLog;
+
+/**
+ * Plays back {@linkplain RecordingTetherController recorded} tether changes. Run under
+ * the same control schedule as the recording (the same
+ * {@linkplain Simulation#animateControlledMillis(long, double, TetherController, long)
+ * controlMillis}), from the same initial state, the craft's inputs are exactly the same as
+ * the recorded run's, whatever the time resolution, and no control logic is run.
+ */
+public class ReplayTetherController extends TetherController {
+  
+  private final Simulation system;
+  private final ControlLog.Player player;
+  private final ControlLog.Sink sink;
+
+  /**
+   * Creates an instance, playing back the entries up to the system's current time.
+   */
+  public ReplayTetherController(Simulation system, ControlLog log) {
+    this.system = system;
+    this.player = log.newPlayer();
+    this.sink = (index, tether) -> system.getCraft().setTetherByIndex(index, tether);
+    if (log.isEmpty())
+      throw new IllegalArgumentException("empty log");
+    if (log.getTick(0) > system.getTime())
+      throw new IllegalArgumentException(
+          "log starts at " + log.getTick(0) + "; system time " + system.getTime());
+    adjustTethers();
+  }
+  
+
+  @Override
+  public void adjustTethers() {
+    player.playUpTo(system.getTime(), sink);
+  }
+  
+  
+  /**
+   * Returns <tt>true</tt> if all the log has been played back.
+   */
+  public boolean isDone() {
+    return player.isDone();
+  }
+
+}
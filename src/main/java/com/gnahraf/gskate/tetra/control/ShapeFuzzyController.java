@@ -43,6 +43,11 @@ public class ShapeFuzzyController extends TetherController {
   
   private long lrTime;
   
+  
+  // work bob for the edge calculations
+  // recycling ok since single threaded
+  private final DynaVector work = new Bob();
+  
 
   private final Simulation system;
   
@@ -90,6 +95,51 @@ public class ShapeFuzzyController extends TetherController {
     this.minTetherLength = copy.minTetherLength;
   }
   
+  
+  
+  /**
+   * The number of values in this instance's {@linkplain #getState(double[], int) state}.
+   */
+  public final static int STATE_LENGTH = 17;
+  
+  
+  /**
+   * Writes the state of this instance (the target shape, length rates, and properties)
+   * as {@linkplain #STATE_LENGTH} values into <tt>out</tt>, starting at <tt>offset</tt>.
+   * Together with the system's state, that's everything needed to resume control.
+   * 
+   * @see #setState(double[], int)
+   */
+  public void getState(double[] out, int offset) {
+    for (int index = 0; index < 6; ++index) {
+      out[offset + index] = shape.length(index);
+      out[offset + 6 + index] = lengthRates[index];
+    }
+    out[offset + 12] = lrTime;
+    out[offset + 13] = fuzzyTimeToTarget;
+    out[offset + 14] = maxCompressiveForce;
+    out[offset + 15] = maxTensileForce;
+    out[offset + 16] = minTetherLength;
+  }
+  
+  
+  /**
+   * Restores the state written by {@linkplain #getState(double[], int)}.
+   */
+  public void setState(double[] in, int offset) {
+    double[] lengths = new double[6];
+    for (int index = 0; index < 6; ++index) {
+      lengths[index] = in[offset + index];
+      lengthRates[index] = in[offset + 6 + index];
+    }
+    shape.setLengths(lengths);
+    lrTime = (long) in[offset + 12];
+    setFuzzyTimeToTarget((int) in[offset + 13]);
+    setMaxCompressiveForce(in[offset + 14]);
+    setMaxTensileForce(in[offset + 15]);
+    setMinTetherLength(in[offset + 16]);
+  }
+  
 
   
   
@@ -110,8 +160,6 @@ public class ShapeFuzzyController extends TetherController {
     
     shape.copyFrom(system.getCraft().getShape());
     
-    DynaVector work = new Bob();
-    
     for (int index = 0; index < 6; ++index)
       lengthRates[index] = getTetherLengthRate(index, work);
     
@@ -177,7 +225,6 @@ public class ShapeFuzzyController extends TetherController {
       throw new IllegalStateException("system time " + system.getTime() + " < lrTime " + lrTime);
     }
     
-    DynaVector work = new Bob();
     for (int i = 0; i < 6; ++i)
       adjustTether(i, work);
     
@@ -52,6 +52,54 @@ public class ShapeMetaController extends TetherController {
   }
   
   
+  /**
+   * The number of values in this instance's {@linkplain #getState() state}.
+   */
+  public final static int STATE_LENGTH = 15 + ShapeFuzzyController.STATE_LENGTH;
+  
+  
+  /**
+   * Returns the state of this instance (including that of its fuzzy controller)
+   * as an array of {@linkplain #STATE_LENGTH} values. Longs and ints are encoded
+   * as doubles (no precision is lost below 2<sup><small>53</small></sup>).
+   * 
+   * @see #setState(double[])
+   */
+  public double[] getState() {
+    double[] state = new double[STATE_LENGTH];
+    for (int index = 0; index < 6; ++index) {
+      state[index] = shape.length(index);
+      state[6 + index] = lengthDeltasPerStep[index];
+    }
+    state[12] = millisPerStep;
+    state[13] = stepsRemaining;
+    state[14] = nextSystemDecisionTime;
+    fuzzyControl.getState(state, 15);
+    return state;
+  }
+  
+  
+  /**
+   * Restores the state returned by {@linkplain #getState()}. The system's
+   * state is not touched: it's the caller's responsibility that it be
+   * the same as it was when the state was taken.
+   */
+  public void setState(double[] state) {
+    if (state.length != STATE_LENGTH)
+      throw new IllegalArgumentException("state length " + state.length);
+    double[] lengths = new double[6];
+    for (int index = 0; index < 6; ++index) {
+      lengths[index] = state[index];
+      lengthDeltasPerStep[index] = state[6 + index];
+    }
+    shape.setLengths(lengths);
+    millisPerStep = (int) state[12];
+    stepsRemaining = (int) state[13];
+    nextSystemDecisionTime = (long) state[14];
+    fuzzyControl.setState(state, 15);
+  }
+  
+  
   public void setTargetShape(TetraShape target, int millisFromNow, int steps) {
     if (millisFromNow < 1)
       throw new IllegalArgumentException("millisFromNow " + millisFromNow);
@@ -5,11 +5,13 @@ package com.gnahraf.gskate.tetra.gen.le;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.gnahraf.gskate.model.DynaVector;
 import com.gnahraf.gskate.tetra.control.ShapeFuzzyController;
 import com.gnahraf.gskate.tetra.control.ShapeMetaController;
+import com.gnahraf.gskate.tetra.model.CraftBatch;
 import com.gnahraf.gskate.tetra.model.Simulation;
 import com.gnahraf.gskate.tetra.model.TetraShape;
 import com.gnahraf.util.data.DoubleDouble;
@@ -192,6 +194,93 @@ public class SimpleEquiTrial {
   }
   
   
+  /**
+   * Runs each of the given trials' orbit, as if by {@linkplain #runOneOrbit()}, but in
+   * lockstep through a {@linkplain CraftBatch}: one profile point at a time, each trial
+   * to its own. (Trials whose systems the batch doesn't
+   * {@linkplain CraftBatch#supports(Simulation) support} are run by themselves.) Each
+   * trial ends up in exactly the same state it would have alone.
+   */
+  public static void runOneOrbit(List<SimpleEquiTrial> trials) {
+    final int count = trials.size();
+    int[] trialTime = new int[count];
+    int phases = 0;
+    for (SimpleEquiTrial trial : trials)
+      phases = Math.max(phases, trial.profile.getPoints().size() + 1);
+    
+    // the last phase runs out the rest of the orbit
+    for (int phase = 0; phase < phases; ++phase) {
+      List<SimpleEquiTrial> batched = new ArrayList<>(count);
+      long[] millis = new long[count];
+      for (int i = 0; i < count; ++i) {
+        SimpleEquiTrial trial = trials.get(i);
+        List<DoubleDouble> points = trial.profile.getPoints();
+        if (trial.failed() || phase > points.size())
+          continue;
+        
+        int time;
+        if (phase < points.size()) {
+          DoubleDouble point = points.get(phase);
+          time = (int) (point.x() * trial.periodMillis) - trialTime[i];
+          TetraShape targetShape = new TetraShape();
+          targetShape.setLengths(point.y() * trial.config.maxTetherLength);
+          try {
+            trial.controller.setTargetShape(targetShape, time, trial.controlStepsPerProfilePoint);
+          } catch (RuntimeException rx) {
+            trial.error = rx;
+            continue;
+          }
+        } else
+          time = trial.periodMillis - trialTime[i];
+        trialTime[i] += time;
+        
+        if (trial.batchesWith(batched.isEmpty() ? trial : batched.get(0))) {
+          millis[batched.size()] = time;
+          batched.add(trial);
+        } else {
+          try {
+            trial.system.animateControlledMillis(
+                time, trial.config.timeFineness, trial.controller, trial.controlMillis);
+          } catch (RuntimeException rx) {
+            trial.error = rx;
+          }
+        }
+      }
+      
+      if (batched.isEmpty())
+        continue;
+      
+      List<Simulation> systems = new ArrayList<>(batched.size());
+      for (SimpleEquiTrial trial : batched)
+        systems.add(trial.system);
+      CraftBatch batch = new CraftBatch(systems);
+      for (int k = 0; k < batched.size(); ++k)
+        batch.setController(k, batched.get(k).controller);
+      
+      SimpleEquiTrial first = batched.get(0);
+      batch.animateControlledMillis(
+          Arrays.copyOf(millis, batched.size()), first.config.timeFineness, first.controlMillis);
+      
+      for (int k = 0; k < batched.size(); ++k) {
+        if (batch.failed(k))
+          batched.get(k).error = batch.getException(k);
+      }
+    }
+  }
+  
+  
+  /**
+   * Determines whether this instance can be animated in the same {@linkplain CraftBatch}
+   * as the given one.
+   */
+  private boolean batchesWith(SimpleEquiTrial other) {
+    return
+        CraftBatch.supports(system) &&
+        config.timeFineness == other.config.timeFineness &&
+        controlMillis == other.controlMillis;
+  }
+  
+  
   
   
   
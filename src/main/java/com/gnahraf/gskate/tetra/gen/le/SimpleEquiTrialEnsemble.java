@@ -95,12 +95,22 @@ public class SimpleEquiTrialEnsemble {
   }
 
 
+  /**
+   * Runs the trials. They're independent, so they're run in lockstep (through a
+   * {@linkplain com.gnahraf.gskate.tetra.model.CraftBatch CraftBatch}), with
+   * the same results as if run one by one.
+   * 
+   * @see SimpleEquiTrial#runOneOrbit(List)
+   */
   public void execute() {
-    for (SimpleEquiTrial.Profile profile : generateProfiles()) {
-      SimpleEquiTrial trial = new SimpleEquiTrial(constraints, profile);
+    List<SimpleEquiTrial> batch = new ArrayList<>();
+    for (SimpleEquiTrial.Profile profile : generateProfiles())
+      batch.add(new SimpleEquiTrial(constraints, profile));
+    System.out.println("Running " + batch.size() + " orbit control profiles..");
+    SimpleEquiTrial.runOneOrbit(batch);
+    for (SimpleEquiTrial trial : batch) {
       trials.add(trial);
-      System.out.print("Running orbit control profile " + profile.getPoints() + "\t..");
-      trial.runOneOrbit();
+      System.out.print("Ran orbit control profile " + trial.getProfile().getPoints() + "\t..");
       if (trial.failed()) {
         System.out.println(" FAIL - " + trial.getException());
       } else {
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A checkpoint in a {@linkplain com.gnahraf.gskate.tetra.gen.le.reg.RegularShapeTrial
+ * RegularShapeTrial}, keyed by the trial's config, initial state, and command history
+ * (all IDs). The rest are the values needed to resume the trial from there: the state
+ * reached, the commands received (also IDs), and the controller state.
+ * <p/>
+ * Since a trial's state is determined by its key, its ID in the store is computed
+ * from the key fields only. So a checkpoint can be looked up without knowing
+ * its values.
+ *
+ * @see TrialStore#writeRegularShapeCheckpoint(com.gnahraf.gskate.tetra.gen.le.reg.RegularShapeTrial)
+ * @see TrialStore#readRegularShapeCheckpoint(com.gnahraf.gskate.tetra.gen.le.Constraints, com.gnahraf.gskate.tetra.model.CraftState, java.util.List)
+ */
+public class RegularShapeCheckpoint {
+
+  public final String config;
+  public final String initState;
+  public final String history;
+
+  public final String state;
+  public final String commandSet;
+  private final double[] controller;
+
+
+  private RegularShapeCheckpoint(
+      String config,
+      String initState,
+      String history,
+      String state,
+      String commandSet,
+      double[] controller) {
+
+    this.config = config;
+    this.initState = initState;
+    this.history = history;
+    this.state = state;
+    this.commandSet = commandSet;
+    this.controller = controller;
+  }
+
+
+  /**
+   * Returns an instance with only the key fields set, for computing IDs.
+   */
+  static RegularShapeCheckpoint newKey(String config, String initState, String history) {
+    return new RegularShapeCheckpoint(config, initState, history, null, null, null);
+  }
+
+
+  /**
+   * Returns a copy of the controller state.
+   */
+  public double[] getControllerState() {
+    return controller.clone();
+  }
+
+
+
+
+  @Override
+  public final boolean equals(Object o) {
+    return
+        this == o ||
+        o instanceof RegularShapeCheckpoint && equals((RegularShapeCheckpoint) o);
+  }
+
+
+  public final boolean equals(RegularShapeCheckpoint other) {
+    if (this == other)
+      return true;
+    if (other == null)
+      return false;
+    return
+        config.equals(other.config) &&
+        initState.equals(other.initState) &&
+        history.equals(other.history) &&
+        state.equals(other.state) &&
+        commandSet.equals(other.commandSet) &&
+        Arrays.equals(controller, other.controller);
+  }
+
+
+  @Override
+  public int hashCode() {
+    return
+        config.hashCode() ^
+        initState.hashCode() ^
+        history.hashCode() ^
+        state.hashCode();
+  }
+
+
+
+  static class Builder {
+
+    final static int MAX_FIELD_LENGTH = 64;
+
+    public String config;
+    public String initState;
+    public String history;
+    public String state;
+    public String commandSet;
+    public double[] controller;
+
+    public Builder() {  }
+
+    public Builder(RegularShapeCheckpoint c) {
+      this.config = c.config;
+      this.initState = c.initState;
+      this.history = c.history;
+      this.state = c.state;
+      this.commandSet = c.commandSet;
+      this.controller = c.controller;
+    }
+
+    public RegularShapeCheckpoint build() {
+      checkField(config, "config");
+      checkField(initState, "initState");
+      checkField(history, "history");
+      checkField(state, "state");
+      checkField(commandSet, "commandSet");
+      if (controller == null)
+        throw new IllegalStateException("controller field not set");
+
+      return new RegularShapeCheckpoint(
+          config, initState, history, state, commandSet, controller.clone());
+    }
+
+    private void checkField(String value, String name) {
+      if (value == null || value.isEmpty())
+        throw new IllegalStateException(name + " field not set");
+      if (value.length() > MAX_FIELD_LENGTH)
+        throw new IllegalStateException(name + " field length too long: '" + value + "'");
+    }
+
+
+    @Override
+    public final boolean equals(Object o) {
+      return this == o || o instanceof Builder && equals((Builder) o);
+    }
+
+
+    public final boolean equals(Builder other) {
+      if (this == other)
+        return true;
+      if (other == null)
+        return false;
+
+      return
+          equal(config, other.config) &&
+          equal(initState, other.initState) &&
+          equal(history, other.history) &&
+          equal(state, other.state) &&
+          equal(commandSet, other.commandSet) &&
+          Arrays.equals(controller, other.controller);
+    }
+
+
+    private boolean equal(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+
+    @Override
+    public int hashCode() {
+      return
+          hashCode(config) ^
+          hashCode(initState) ^
+          hashCode(history) ^
+          hashCode(state);
+    }
+
+
+    private int hashCode(String field) {
+      return field == null ? -1 : field.hashCode();
+    }
+
+  }
+
+
+
+  /**
+   * Encodes the key fields only.
+   */
+  static class Encoder implements com.gnahraf.io.store.Encoder<Builder> {
+
+    private final static int MAX_BYTES = (Builder.MAX_FIELD_LENGTH * 2 + 1) * 3;
+
+    @Override
+    public void write(Builder item, ByteBuffer dtn) throws BufferOverflowException {
+      writeField(item.config, dtn);
+      writeField(item.initState, dtn);
+      writeField(item.history, dtn);
+    }
+
+    @Override
+    public int maxBytes() {
+      return MAX_BYTES;
+    }
+
+    private void writeField(String field, ByteBuffer buffer) {
+      for (int i = 0; i < field.length(); ++i)
+        buffer.putChar(field.charAt(i));
+      buffer.put((byte) 0xFF);
+    }
+
+  }
+
+}
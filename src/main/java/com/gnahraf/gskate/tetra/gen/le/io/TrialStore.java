@@ -4,8 +4,10 @@
 package com.gnahraf.gskate.tetra.gen.le.io;
 
 
+import java.io.Closeable;
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.xml.bind.JAXB;
 
@@ -15,8 +17,10 @@ import com.gnahraf.gskate.tetra.gen.le.reg.RegularShapeTrial;
 import com.gnahraf.gskate.tetra.model.CraftState;
 import com.gnahraf.io.HashedFilepath;
 import com.gnahraf.io.store.BinaryObjectManager;
+import com.gnahraf.io.store.Codec;
 import com.gnahraf.io.store.ListCodec;
 import com.gnahraf.io.store.ObjectManager;
+import com.gnahraf.io.store.PackObjectManager;
 import com.gnahraf.io.store.XmlObjectManager;
 import com.gnahraf.util.data.NormPoint;
 import com.gnahraf.xcept.NotFoundException;
@@ -29,8 +33,11 @@ import com.gnahraf.xcept.NotFoundException;
  * <h4>Implementation</h4>
  * Kinda enamored with hash pointers. However, I don't want users of
  * this class to interpret the hashes as anything but an ID string.
+ * <p/>
+ * If {@linkplain PackObjectManager pack}ed, the store is locked while open, and
+ * must be {@linkplain #close() close}d (else it's reindexed on the next load).
  */
-public class TrialStore {
+public class TrialStore implements Closeable {
   
   
   public final static String CONFIGS = "configs";
@@ -45,6 +52,16 @@ public class TrialStore {
   public final static String TRANSFORMS = "transforms";
   public final static String REG_SHAPE_TRANSFORM_PREFIX = "t-rs-";
   
+  public final static String CHECKPOINTS = "checkpoints";
+  public final static String REG_SHAPE_CHECKPOINT_PREFIX = "k-rs-";
+  
+  /**
+   * The checkpoints' (intermediate) states and command sets are kept apart from the
+   * outcomes' in these subdirectories.
+   */
+  public final static String CHECKPOINT_STATES = CHECKPOINTS + File.separator + STATES;
+  public final static String CHECKPOINT_COMMANDS = CHECKPOINTS + File.separator + COMMANDS;
+  
   /**
    * The minimum trial time in milliseconds.
    */
@@ -82,10 +99,21 @@ public class TrialStore {
    * Creates a new store. <tt>rootDir</tt> must not exist.
    */
   public static TrialStore create(File rootDir) throws IllegalStateException {
+    return create(rootDir, false);
+  }
+  
+  /**
+   * Creates a new store. <tt>rootDir</tt> must not exist.
+   * 
+   * @param packed if <tt>true</tt>, states and command sets are stored in packs
+   * 
+   * @see #TrialStore(File, boolean)
+   */
+  public static TrialStore create(File rootDir, boolean packed) throws IllegalStateException {
     if (rootDir.exists())
       throw new IllegalStateException("already exists " + rootDir);
     
-    return new TrialStore(rootDir);
+    return new TrialStore(rootDir, packed);
   }
   
   
@@ -102,6 +130,9 @@ public class TrialStore {
   private final ObjectManager<CraftState> stateManager;
   private final ObjectManager<List<NormPoint>> regShapeCmdSetManager;
   private final ObjectManager<RegularShapeTransform> regShapeTransformManager;
+  private final ObjectManager<RegularShapeCheckpoint> regShapeCheckpointManager;
+  private final ObjectManager<CraftState> checkpointStateManager;
+  private final ObjectManager<List<NormPoint>> checkpointCmdSetManager;
   
   
   public TrialStore(String rootDir) {
@@ -110,9 +141,22 @@ public class TrialStore {
   
 
   /**
-   * 
+   * Creates an instance using whichever storage layout is already on disk
+   * (one file per object, by default).
    */
   public TrialStore(File rootDir) {
+    this(rootDir, false);
+  }
+  
+  
+  /**
+   * Creates an instance. The (high volume) states and command sets are stored
+   * in {@linkplain PackObjectManager pack}s if <tt>packed</tt> is <tt>true</tt>, or
+   * if they're already stored that way; otherwise, one file per object.
+   * 
+   * @see TrialStorePacker
+   */
+  public TrialStore(File rootDir, boolean packed) {
     
     this.rootDir = rootDir;
     
@@ -123,15 +167,11 @@ public class TrialStore {
             Constraints.class);
     
     this.stateManager =
-        new BinaryObjectManager<CraftState>(
-            newHashedFilepath(STATES, STATE_PREFIX, null),
-            new CraftStateSerializer());
+        newBinaryManager(STATES, STATE_PREFIX, new CraftStateSerializer(), packed);
     
     
     this.regShapeCmdSetManager =
-        new BinaryObjectManager<List<NormPoint>>(
-            newHashedFilepath(COMMANDS, REG_SHAPE_CMD_PREFIX, null),
-            new ListCodec<NormPoint>(new NormPointCodec()));
+        newBinaryManager(COMMANDS, REG_SHAPE_CMD_PREFIX, newCommandSetCodec(), packed);
     
     this.regShapeTransformManager =
         ObjectManager.map(
@@ -144,6 +184,22 @@ public class TrialStore {
             b -> b.build(),
             t -> new RegularShapeTransform.Builder(t));
     
+    this.regShapeCheckpointManager =
+        ObjectManager.map(
+            
+            new XmlObjectManager<RegularShapeCheckpoint.Builder>(
+                newHashedFilepath(CHECKPOINTS, REG_SHAPE_CHECKPOINT_PREFIX, ".xml"),
+                new RegularShapeCheckpoint.Encoder(),
+                RegularShapeCheckpoint.Builder.class),
+                
+            b -> b.build(),
+            c -> new RegularShapeCheckpoint.Builder(c));
+    
+    this.checkpointStateManager =
+        newBinaryManager(CHECKPOINT_STATES, STATE_PREFIX, new CraftStateSerializer(), packed);
+    
+    this.checkpointCmdSetManager =
+        newBinaryManager(CHECKPOINT_COMMANDS, REG_SHAPE_CMD_PREFIX, newCommandSetCodec(), packed);
     
   }
   
@@ -154,11 +210,59 @@ public class TrialStore {
   }
   
   
+  private <T> ObjectManager<T> newBinaryManager(
+      String subdir, String prefix, Codec<T> codec, boolean packed) {
+    
+    File dir = new File(rootDir, subdir);
+    if (packed || PackObjectManager.isPack(dir))
+      return new PackObjectManager<T>(dir, codec);
+    else
+      return new BinaryObjectManager<T>(newHashedFilepath(subdir, prefix, null), codec);
+  }
+  
+  
+  static Codec<List<NormPoint>> newCommandSetCodec() {
+    return new ListCodec<NormPoint>(new NormPointCodec());
+  }
+  
+  
+  private void forEachPack(Consumer<PackObjectManager<?>> action) {
+    ObjectManager<?>[] managers = {
+        stateManager, regShapeCmdSetManager, checkpointStateManager, checkpointCmdSetManager };
+    for (ObjectManager<?> manager : managers)
+      if (manager instanceof PackObjectManager)
+        action.accept((PackObjectManager<?>) manager);
+  }
+  
+  
+  /**
+   * Flushes the packed managers (if any) to disk.
+   */
+  public void flush() {
+    forEachPack(PackObjectManager::flush);
+  }
+  
+  
+  /**
+   * Flushes and closes the packed managers (if any). Idempotent.
+   */
+  @Override
+  public void close() {
+    forEachPack(PackObjectManager::close);
+  }
+  
   
   
   
   
   
+  
+  public File getRootDir() {
+    return rootDir;
+  }
+
+
+
   public ObjectManager<Constraints> getConstraintsManager() {
     return constraintsManager;
   }
@@ -182,6 +286,40 @@ public class TrialStore {
   }
 
 
+
+  /**
+   * Returns the manager of the checkpoints in {@linkplain RegularShapeTrial}s. A
+   * checkpoint's ID is determined by its key fields. Its <tt>state</tt>, <tt>history</tt>,
+   * and <tt>commandSet</tt> are in the {@linkplain #getCheckpointStateManager() checkpoint
+   * state} and {@linkplain #getCheckpointCmdSetManager() checkpoint command set} managers.
+   * 
+   * @see #writeRegularShapeCheckpoint(RegularShapeTrial)
+   * @see #readRegularShapeCheckpoint(Constraints, CraftState, List)
+   */
+  public ObjectManager<RegularShapeCheckpoint> getRegShapeCheckpointManager() {
+    return regShapeCheckpointManager;
+  }
+
+
+
+  /**
+   * Returns the manager of the checkpoints' intermediate states. These are kept
+   * out of the {@linkplain #getStateManager() state manager}, which holds outcomes.
+   */
+  public ObjectManager<CraftState> getCheckpointStateManager() {
+    return checkpointStateManager;
+  }
+
+
+
+  /**
+   * Returns the manager of the checkpoints' command histories and command sets.
+   */
+  public ObjectManager<List<NormPoint>> getCheckpointCmdSetManager() {
+    return checkpointCmdSetManager;
+  }
+
+
   
   
   
@@ -206,6 +344,64 @@ public class TrialStore {
   }
   
   
+  /**
+   * Writes a checkpoint of the given trial's current state, keyed by its constraints,
+   * initial state, and {@linkplain RegularShapeTrial#getCommandHistory() command history}.
+   * The trial must not have failed.
+   * 
+   * @return the checkpoint's ID
+   * @see #readRegularShapeCheckpoint(Constraints, CraftState, List)
+   */
+  public String writeRegularShapeCheckpoint(RegularShapeTrial trial) {
+    if (trial.failed())
+      throw new IllegalArgumentException("failed trial " + trial.getException());
+    
+    RegularShapeCheckpoint.Builder checkpoint = new RegularShapeCheckpoint.Builder();
+    
+    checkpoint.config = constraintsManager.write(trial.getConstraints());
+    checkpoint.initState = stateManager.write(trial.getInitState());
+    checkpoint.history = checkpointCmdSetManager.write(trial.getCommandHistory());
+    checkpoint.state = checkpointStateManager.write(
+        new CraftState(trial.getSystem().getTime(), trial.getSystem().getCraft()));
+    checkpoint.commandSet = checkpointCmdSetManager.write(trial.getCommandsReceived());
+    checkpoint.controller = trial.getControllerState();
+    
+    return regShapeCheckpointManager.write(checkpoint.build());
+  }
+  
+  
+  /**
+   * Resumes the trial with the given key from its checkpoint, if there's one.
+   * The lookup itself doesn't involve a scan.
+   * 
+   * @param history the {@linkplain RegularShapeTrial#getCommandHistory() command history}
+   * 
+   * @return the resumed trial, or <tt>null</tt>, if there's no such checkpoint
+   * @see #writeRegularShapeCheckpoint(RegularShapeTrial)
+   */
+  public RegularShapeTrial readRegularShapeCheckpoint(
+      Constraints constraints, CraftState initState, List<NormPoint> history) {
+    
+    String id = regShapeCheckpointManager.getId(
+        RegularShapeCheckpoint.newKey(
+            constraintsManager.getId(constraints),
+            stateManager.getId(initState),
+            checkpointCmdSetManager.getId(history)));
+    
+    if (!regShapeCheckpointManager.containsId(id))
+      return null;
+    
+    RegularShapeCheckpoint checkpoint = regShapeCheckpointManager.read(id);
+    return new RegularShapeTrial(
+        constraints,
+        initState,
+        checkpointStateManager.read(checkpoint.state),
+        checkpointCmdSetManager.read(checkpoint.commandSet),
+        history,
+        checkpoint.getControllerState());
+  }
+  
+  
 
   
   
@@ -8,9 +8,7 @@ import static com.gnahraf.print.Semantic.plural;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Predicate;
@@ -19,7 +17,6 @@ import java.util.stream.Stream;
 
 import com.gnahraf.gskate.model.Potential;
 import com.gnahraf.gskate.model.SphericalBodyPotential;
-import com.gnahraf.gskate.tetra.gen.StateComparators;
 import com.gnahraf.gskate.tetra.model.CraftState;
 import com.gnahraf.gskate.tetra.model.TetraEdge;
 import com.gnahraf.gskate.tetra.model.TetraShape;
@@ -27,6 +24,7 @@ import com.gnahraf.io.IoRuntimeException;
 import com.gnahraf.io.store.ObjectManager;
 import com.gnahraf.main.Args;
 import com.gnahraf.print.TablePrint;
+import com.gnahraf.util.list.Lists;
 import com.gnahraf.util.data.NormPoint;
 
 /**
@@ -36,6 +34,8 @@ public class TrialStoreExplorer {
   
   
   private final TrialStore store;
+  
+  private TrialStoreIndex index;
 
   
   /**
@@ -49,6 +49,29 @@ public class TrialStoreExplorer {
   }
   
   
+  /**
+   * Returns the store's secondary index, refreshed on first access.
+   */
+  public TrialStoreIndex getIndex() {
+    if (index == null) {
+      index = new TrialStoreIndex(store);
+      index.refresh();
+    }
+    return index;
+  }
+  
+  
+  public void printIndex() {
+    TrialStoreIndex index = new TrialStoreIndex(store);
+    int added = index.refresh();
+    this.index = index;
+    System.out.println("Indexed " + index.getFile());
+    System.out.println("\tstates:     " + index.stateCount());
+    System.out.println("\ttransforms: " + index.transformCount());
+    System.out.println("\t(" + added + " new)");
+  }
+  
+  
 
   
   
@@ -61,11 +84,21 @@ public class TrialStoreExplorer {
   }
   
   
+  /**
+   * Prints the states in order of CM energy. Only the states printed are read
+   * (the ranking comes from the {@linkplain #getIndex() index}).
+   */
   public void printStates(int maxCount) {
-    Comparator<CraftState> order =
-        StateComparators.newCmEnergyComparator(new SphericalBodyPotential());
+    if (maxCount < 1)
+      return;
     
-    printStates(order, maxCount);
+    List<TrialStoreIndex.Summary> first =
+        getIndex().first(TrialStoreIndex.Summary.CM_ENERGY_ORDER, maxCount);
+    
+    for (int i = 0; i < first.size(); ++i) {
+      System.out.println(i + 1 + ".");
+      printState(store.getStateManager().read(first.get(i).id));
+    }
   }
   
   
@@ -73,19 +106,16 @@ public class TrialStoreExplorer {
     if (maxCount < 1)
       return;
     
-    List<CraftState> states = new ArrayList<>();
-    store.getStateManager()
-      .streamObjects()
-      .forEach(states::add);
-    
-    if (order != null)
-      Collections.sort(states, order);
+    Stream<CraftState> states = store.getStateManager().streamObjects();
+    List<CraftState> first;
+    if (order == null)
+      first = states.limit(maxCount).collect(Collectors.toList());
+    else
+      first = Lists.first(states, order, maxCount);
     
-    maxCount = Math.min(maxCount, states.size());
-    for (int i = 0; i < maxCount; ++i) {
-      CraftState state = states.get(i);
+    for (int i = 0; i < first.size(); ++i) {
       System.out.println(i + 1 + ".");
-      printState(state);
+      printState(first.get(i));
     }
   }
   
@@ -145,25 +175,19 @@ public class TrialStoreExplorer {
   public void printAbout(CraftState state) {
     printState(state);
     String id = store.getStateManager().getId(state);
-    List<RegularShapeTransform> transform =
-        store.getRegShapeTransformManager().streamObjects()
-            .filter(t -> t.endState.equals(id)).collect(Collectors.toList());
-    if (transform.isEmpty()) {
+    String transformId = getIndex().getTransformTo(id);
+    if (transformId == null) {
       System.out.println("Don't know much else about this state.");
       return;
     }
-    if (transform.size() > 1) {
-      System.err.println("Woa.. this is crazy (" + transform + ") " + id);
-      System.exit(1);
-    }
 
     System.out.println("Provenance:");
     System.out.println("==========");
     System.out.println();
     System.out.println("the transform..");
     System.out.println();
-    RegularShapeTransform t = transform.get(0);
-    printTransform(store.getRegShapeTransformManager().getId(t));
+    RegularShapeTransform t = store.getRegShapeTransformManager().read(transformId);
+    printTransform(transformId);
     System.out.println();
     System.out.println("the command-set in the tranform..");
     System.out.println();
@@ -351,13 +375,14 @@ public class TrialStoreExplorer {
   public final static String PRINT_TRANSFORM_CMD = "print_transform";
   public final static String LIST_COMMANDSETS_CMD = "list_reg_cmds";
   public final static String PRINT_COMMANDSET_CMD = "print_reg_cmds";
+  public final static String INDEX_CMD = "index";
   
   
   public static void main(String[] args) {
     String cmd = Args.getValue(args, CMD);
-    TrialStoreExplorer explorer =
-        new TrialStoreExplorer(
-            TrialStore.load(Args.getValue(args, STORE)));
+    TrialStore store = TrialStore.load(Args.getValue(args, STORE));
+    Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+    TrialStoreExplorer explorer = new TrialStoreExplorer(store);
     
     System.out.println();
     
@@ -388,6 +413,9 @@ public class TrialStoreExplorer {
     else if (PRINT_COMMANDSET_CMD.equals(cmd))
       explorer.printCommandSet(Args.getValue(args, HASH));
     
+    else if (INDEX_CMD.equals(cmd))
+      explorer.printIndex();
+    
     else {
       System.err.println(
           "Unknown arg " + CMD + '=' + cmd + " - Valid combinations are " + CMD + "=" +
@@ -400,7 +428,8 @@ public class TrialStoreExplorer {
                   LIST_TRANSFORMS_CMD,
                   PRINT_TRANSFORM_CMD,
                   LIST_COMMANDSETS_CMD,
-                  PRINT_COMMANDSET_CMD));
+                  PRINT_COMMANDSET_CMD,
+                  INDEX_CMD));
       System.exit(1);
     }
   }
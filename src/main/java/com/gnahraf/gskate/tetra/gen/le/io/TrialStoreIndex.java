@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.io;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.model.CraftState;
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.IoRuntimeException;
+import com.gnahraf.io.store.ObjectManager;
+import com.gnahraf.util.list.Lists;
+
+/**
+ * A secondary index over a {@linkplain TrialStore}, persisted in the store's root
+ * directory. It maps
+ * <ol>
+ * <li>state ID &rarr; {@linkplain Summary energy metrics}, so that ranking states doesn't
+ * involve reading them, and</li>
+ * <li>end state ID &rarr; transform ID, so that a state's provenance is a map lookup
+ * instead of a scan over every transform's XML.</li>
+ * </ol>
+ * The store only ever grows, so the index is maintained incrementally: on
+ * {@linkplain #refresh() refresh}, only the objects not already indexed are read,
+ * in parallel.
+ *
+ * <h4>Format</h4>
+ * <pre>
+ *   int magic,
+ *   int state count, { UTF id, long time, double cmEnergy, double pe, double rotEnergy }*,
+ *   int transform count, { UTF id, UTF endState }*
+ * </pre>
+ * Energies are computed against the default {@linkplain SphericalBodyPotential} (Earth).
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class TrialStoreIndex {
+
+  public final static String INDEX_FILE = "explorer.idx";
+
+  private final static int MAGIC = 0x54534931;  // "TSI1"
+
+
+  /**
+   * The indexed metrics of a state. Immutable.
+   */
+  public static class Summary {
+
+    /**
+     * Orders by CM energy, ascending. (The same order as
+     * {@linkplain com.gnahraf.gskate.tetra.gen.StateComparators#newCmEnergyComparator(com.gnahraf.gskate.model.Potential)
+     * StateComparators.newCmEnergyComparator}.)
+     */
+    public final static Comparator<Summary> CM_ENERGY_ORDER =
+        (a, b) -> Double.compare(a.cmEnergy, b.cmEnergy);
+
+    /**
+     * Orders by rotational energy, ascending.
+     */
+    public final static Comparator<Summary> ROTATIONAL_ENERGY_ORDER =
+        (a, b) -> Double.compare(a.rotationalEnergy, b.rotationalEnergy);
+
+
+    public final String id;
+    public final long time;
+    public final double cmEnergy;
+    public final double pe;
+    public final double rotationalEnergy;
+
+
+    Summary(String id, CraftState state) {
+      SphericalBodyPotential earth = new SphericalBodyPotential();
+      this.id = id;
+      this.time = state.getTime();
+      this.cmEnergy = state.getCmEnergy(earth);
+      this.pe = state.getPe(earth);
+      this.rotationalEnergy = state.getRotationalEnergy();
+    }
+
+
+    Summary(String id, long time, double cmEnergy, double pe, double rotationalEnergy) {
+      this.id = id;
+      this.time = time;
+      this.cmEnergy = cmEnergy;
+      this.pe = pe;
+      this.rotationalEnergy = rotationalEnergy;
+    }
+  }
+
+
+
+
+  private final TrialStore store;
+  private final File file;
+
+  private final Map<String, Summary> states = new HashMap<>();
+  // transform ID -> end state ID
+  private final Map<String, String> transforms = new HashMap<>();
+  // end state ID -> transform ID
+  private final Map<String, String> provenance = new HashMap<>();
+
+
+  /**
+   * Creates an instance, loading the store's persisted index, if any. The index
+   * is not {@linkplain #refresh() refresh}ed.
+   */
+  public TrialStoreIndex(TrialStore store) {
+    this.store = store;
+    if (store == null)
+      throw new IllegalArgumentException("null store");
+    this.file = new File(store.getRootDir(), INDEX_FILE);
+    if (file.isFile())
+      load();
+  }
+
+
+
+  /**
+   * Indexes the states and transforms not already indexed, and saves the index
+   * if anything was added.
+   *
+   * @return the number of objects added to the index
+   */
+  public int refresh() throws IoRuntimeException {
+    ObjectManager<CraftState> stateMgr = store.getStateManager();
+    List<Summary> newStates =
+        stateMgr.streamIds().filter(id -> !states.containsKey(id))
+          .collect(Collectors.toList())
+          .parallelStream()
+          .map(id -> new Summary(id, stateMgr.read(id)))
+          .collect(Collectors.toList());
+
+    ObjectManager<RegularShapeTransform> transformMgr = store.getRegShapeTransformManager();
+    List<String[]> newTransforms =
+        transformMgr.streamIds().filter(id -> !transforms.containsKey(id))
+          .collect(Collectors.toList())
+          .parallelStream()
+          .map(id -> new String[] { id, transformMgr.read(id).endState })
+          .collect(Collectors.toList());
+
+    for (Summary summary : newStates)
+      states.put(summary.id, summary);
+    for (String[] entry : newTransforms)
+      addTransform(entry[0], entry[1]);
+
+    int count = newStates.size() + newTransforms.size();
+    if (count > 0 || !file.exists())
+      save();
+    return count;
+  }
+
+
+  private void addTransform(String id, String endState) {
+    transforms.put(id, endState);
+    // if more than one, the lesser ID wins (so it doesn't depend on scan order)
+    provenance.merge(endState, id, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+  }
+
+
+
+  public TrialStore getStore() {
+    return store;
+  }
+
+
+  public File getFile() {
+    return file;
+  }
+
+
+  /**
+   * Returns the number of states indexed.
+   */
+  public int stateCount() {
+    return states.size();
+  }
+
+
+  /**
+   * Returns the number of transforms indexed.
+   */
+  public int transformCount() {
+    return transforms.size();
+  }
+
+
+  /**
+   * Returns the summary of the state with the given ID, or <tt>null</tt>, if not
+   * indexed.
+   */
+  public Summary getSummary(String stateId) {
+    return states.get(stateId);
+  }
+
+
+  /**
+   * Returns the first <tt>count</tt> state summaries in the given <tt>order</tt>.
+   */
+  public List<Summary> first(Comparator<Summary> order, int count) {
+    return Lists.first(states.values().stream(), order, count);
+  }
+
+
+  /**
+   * Returns the ID of the transform whose end state is the given state, or
+   * <tt>null</tt>, if there's none indexed.
+   */
+  public String getTransformTo(String stateId) {
+    return provenance.get(stateId);
+  }
+
+
+
+  private void load() throws IoRuntimeException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+      if (in.readInt() != MAGIC)
+        throw new CorruptionException("bad header: " + file);
+      int count = in.readInt();
+      if (count < 0)
+        throw new CorruptionException("state count " + count + ": " + file);
+      while (count-- > 0) {
+        Summary summary =
+            new Summary(in.readUTF(), in.readLong(), in.readDouble(), in.readDouble(), in.readDouble());
+        states.put(summary.id, summary);
+      }
+      count = in.readInt();
+      if (count < 0)
+        throw new CorruptionException("transform count " + count + ": " + file);
+      while (count-- > 0)
+        addTransform(in.readUTF(), in.readUTF());
+
+    } catch (EOFException eofx) {
+      throw new CorruptionException("truncated " + file);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on loading " + file, iox);
+    }
+  }
+
+
+  /**
+   * Writes the index to a temp file and then swaps it in, so a crash doesn't
+   * leave a half-written index behind.
+   */
+  private void save() throws IoRuntimeException {
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+        out.writeInt(MAGIC);
+        out.writeInt(states.size());
+        for (Summary summary : states.values()) {
+          out.writeUTF(summary.id);
+          out.writeLong(summary.time);
+          out.writeDouble(summary.cmEnergy);
+          out.writeDouble(summary.pe);
+          out.writeDouble(summary.rotationalEnergy);
+        }
+        out.writeInt(transforms.size());
+        for (Map.Entry<String, String> entry : transforms.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeUTF(entry.getValue());
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on saving " + file, iox);
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.io;
+
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.gnahraf.gskate.tetra.gen.io.CraftStateSerializer;
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.HashedFilepath;
+import com.gnahraf.io.IoRuntimeException;
+import com.gnahraf.io.store.BinaryObjectManager;
+import com.gnahraf.io.store.Codec;
+import com.gnahraf.io.store.PackObjectManager;
+import com.gnahraf.main.Args;
+import com.gnahraf.xcept.NotFoundException;
+
+/**
+ * Migrates the states and command sets of a {@linkplain TrialStore} from one file
+ * per object to {@linkplain PackObjectManager pack}s, in place. The IDs don't
+ * change, so nothing referencing them (e.g. the transforms) needs updating.
+ * <p/>
+ * Once a subdirectory holds a pack, the <tt>TrialStore</tt> reads from the pack only.
+ * So if a migration is interrupted, run it again: it picks up where it left off.
+ * The per-object files are only deleted (if so asked) after every one of them is
+ * found in the pack.
+ */
+public class TrialStorePacker {
+
+  public final static String STORE = "store";
+  public final static String DELETE = "delete";
+
+
+
+  private final File rootDir;
+
+
+  public TrialStorePacker(File rootDir) {
+    this.rootDir = rootDir;
+    if (!rootDir.isDirectory())
+      throw new NotFoundException(rootDir.toString());
+  }
+
+
+
+  /**
+   * Packs the states.
+   *
+   * @param delete  if <tt>true</tt>, the per-object files are deleted
+   * @return the number of objects packed
+   */
+  public long packStates(boolean delete) {
+    return pack(TrialStore.STATES, TrialStore.STATE_PREFIX, new CraftStateSerializer(), delete);
+  }
+
+
+  /**
+   * Packs the regular shape command sets.
+   *
+   * @param delete  if <tt>true</tt>, the per-object files are deleted
+   * @return the number of objects packed
+   */
+  public long packCommandSets(boolean delete) {
+    return pack(
+        TrialStore.COMMANDS, TrialStore.REG_SHAPE_CMD_PREFIX,
+        TrialStore.newCommandSetCodec(), delete);
+  }
+
+
+  private <T> long pack(String subdir, String prefix, Codec<T> codec, boolean delete) {
+    File dir = new File(rootDir, subdir);
+    if (!dir.isDirectory())
+      return 0;
+
+    HashedFilepath hashedPath = new HashedFilepath(dir, prefix, null, false);
+    BinaryObjectManager<T> files = new BinaryObjectManager<>(hashedPath, codec);
+
+    long count;
+    try (PackObjectManager<T> pack = new PackObjectManager<>(dir, codec)) {
+      count = pack.migrate(files);
+      pack.flush();
+
+      if (delete) {
+        List<String> ids = files.streamIds().collect(Collectors.toList());
+        for (String id : ids)
+          if (!pack.containsId(id))
+            throw new CorruptionException("not packed: " + hashedPath.toFilepath(id));
+        for (String id : ids) {
+          File file = hashedPath.toFilepath(id);
+          if (!file.delete())
+            throw new IoRuntimeException("failed to delete " + file);
+        }
+      }
+    }
+    return count;
+  }
+
+
+
+  public static void main(String[] args) {
+    File rootDir = new File(Args.getValue(args, STORE));
+    boolean delete = Args.contains(args, DELETE);
+
+    TrialStorePacker packer = new TrialStorePacker(rootDir);
+    System.out.println();
+    System.out.println("Packing " + rootDir + (delete ? " (deleting files)" : ""));
+    System.out.println("\tstates:       " + packer.packStates(delete));
+    System.out.println("\tcommand sets: " + packer.packCommandSets(delete));
+  }
+
+}
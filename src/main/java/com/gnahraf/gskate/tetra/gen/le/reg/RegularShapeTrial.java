@@ -5,17 +5,23 @@ package com.gnahraf.gskate.tetra.gen.le.reg;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import com.gnahraf.gskate.model.DynaVector;
 import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.control.RecordingTetherController;
+import com.gnahraf.gskate.tetra.control.ReplayTetherController;
 import com.gnahraf.gskate.tetra.control.ShapeFuzzyController;
 import com.gnahraf.gskate.tetra.control.ShapeMetaController;
 import com.gnahraf.gskate.tetra.gen.le.Constraints;
 import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.gskate.tetra.model.CraftBatch;
 import com.gnahraf.gskate.tetra.model.CraftState;
 import com.gnahraf.gskate.tetra.model.Simulation;
 import com.gnahraf.gskate.tetra.model.TetraShape;
+import com.gnahraf.sim.ControlLog;
 import com.gnahraf.util.data.NormPoint;
 
 /**
@@ -26,6 +32,8 @@ import com.gnahraf.util.data.NormPoint;
 public class RegularShapeTrial {
   
   private final List<NormPoint> commandsReceived = new ArrayList<NormPoint>();
+  
+  private final List<NormPoint> commandHistory = new ArrayList<NormPoint>();
 
   private final Constraints config;
   
@@ -46,6 +54,15 @@ public class RegularShapeTrial {
   private RuntimeException error;
   
   private CraftState snapshot;
+  
+  /**
+   * Non-null if recording.
+   */
+  private RecordingTetherController recorder;
+  /**
+   * The lengths of the controlled animations (millis) since recording.
+   */
+  private final List<Integer> segments = new ArrayList<>();
 
   /**
    * 
@@ -84,8 +101,46 @@ public class RegularShapeTrial {
   
   
   
+  /**
+   * Resumes a trial from a checkpoint. Given the same arguments as were taken from
+   * a trial (via {@linkplain #getInitState()}, {@linkplain #newSnapshot()},
+   * {@linkplain #getCommandsReceived()}, {@linkplain #getCommandHistory()}, and
+   * {@linkplain #getControllerState()}), the resumed trial proceeds exactly as the
+   * original would have.
+   * 
+   * @param initState       the trial's initial state
+   * @param state           the system state to resume from
+   * @param commands        the commands received
+   * @param history         the command history
+   * @param controllerState the controller's state
+   */
+  public RegularShapeTrial(
+      Constraints constraints, CraftState initState, CraftState state,
+      List<NormPoint> commands, List<NormPoint> history, double[] controllerState) {
+    
+    this.config = constraints.clone();
+    if (!config.isValid())
+      throw new IllegalArgumentException(config.toString());
+    if (state.getTime() < initState.getTime())
+      throw new IllegalArgumentException(
+          "state time " + state.getTime() + " < init state time " + initState.getTime());
+    
+    this.system = new Simulation(new SphericalBodyPotential(), state);
+    this.controller = createController(system);
+    this.controller.setState(controllerState);
+    this.initState = initState;
+    this.snapshot = initState;
+    this.commandsReceived.addAll(commands);
+    this.commandHistory.addAll(history);
+    
+    periodMillis = estimateInitPeriodMillis();
+  }
+  
+  
+  
   public RegularShapeTrial(RegularShapeTrial copy) {
     this.commandsReceived.addAll(copy.commandsReceived);
+    this.commandHistory.addAll(copy.commandHistory);
     this.config = copy.config.clone();
     this.system = copy.system.clone();
     this.controller = copy.controller.newSnapshot(this.system);
@@ -147,65 +202,159 @@ public class RegularShapeTrial {
     if (failed())
       throw new IllegalStateException(
           "attempt to invoke with " + point + " on already-failed instance");
+    
+    try {
+      animate(commandOrbitalPoint(point));
+    } catch (RuntimeException rx) {
+      error = rx;
+      return false;
+    }
+    return true;
+  }
+  
+  
+  /**
+   * Runs each of the given trials to its respective point, as if by
+   * {@linkplain #runToOrbitalPoint(NormPoint)}, but in lockstep through a
+   * {@linkplain CraftBatch} where their systems
+   * {@linkplain CraftBatch#supports(Simulation) allow}. Each trial ends up
+   * in exactly the same state it would have alone: check {@linkplain #failed()}
+   * to see which succeeded.
+   * 
+   * @param trials    distinct trials, none already failed
+   * @param points    the points to run the trials to, in the same order
+   */
+  public static void runToOrbitalPoints(List<RegularShapeTrial> trials, List<NormPoint> points) {
+    if (trials.size() != points.size())
+      throw new IllegalArgumentException(
+          "trials size " + trials.size() + "; points size " + points.size());
+    for (int i = 0; i < trials.size(); ++i) {
+      if (trials.get(i).failed())
+        throw new IllegalStateException(
+            "attempt to invoke with " + points.get(i) + " on already-failed trial " + i);
+    }
+    
+    List<RegularShapeTrial> batched = new ArrayList<>(trials.size());
+    long[] millis = new long[trials.size()];
+    for (int i = 0; i < trials.size(); ++i) {
+      RegularShapeTrial trial = trials.get(i);
+      int timeToTarget;
+      try {
+        timeToTarget = trial.commandOrbitalPoint(points.get(i));
+      } catch (RuntimeException rx) {
+        trial.error = rx;
+        continue;
+      }
+      if (timeToTarget == 0)
+        continue;
+      
+      if (timeToTarget > 0 && trial.batchesWith(batched.isEmpty() ? trial : batched.get(0))) {
+        millis[batched.size()] = timeToTarget;
+        batched.add(trial);
+      } else {
+        try {
+          trial.animate(timeToTarget);
+        } catch (RuntimeException rx) {
+          trial.error = rx;
+        }
+      }
+    }
+    
+    if (batched.isEmpty())
+      return;
+    
+    List<Simulation> systems = new ArrayList<>(batched.size());
+    for (RegularShapeTrial trial : batched)
+      systems.add(trial.system);
+    CraftBatch batch = new CraftBatch(systems);
+    for (int k = 0; k < batched.size(); ++k)
+      batch.setController(k, batched.get(k).controller);
+    
+    RegularShapeTrial first = batched.get(0);
+    batch.animateControlledMillis(
+        Arrays.copyOf(millis, batched.size()), first.config.timeFineness, first.controlMillis);
+    
+    for (int k = 0; k < batched.size(); ++k) {
+      if (batch.failed(k))
+        batched.get(k).error = batch.getException(k);
+    }
+  }
+  
+  
+  /**
+   * Determines whether this instance can be animated in the same {@linkplain CraftBatch}
+   * as the given one.
+   */
+  private boolean batchesWith(RegularShapeTrial other) {
+    return
+        recorder == null &&
+        CraftBatch.supports(system) &&
+        config.timeFineness == other.config.timeFineness &&
+        controlMillis == other.controlMillis;
+  }
+  
+  
+  /**
+   * Records the command to run to the given <tt>point</tt> and, unless the command
+   * just holds the shape steady, sets the controller's target accordingly.
+   * 
+   * @return the millis to animate (zero, if there's nothing to do)
+   */
+  private int commandOrbitalPoint(NormPoint point) {
 
     final int timeToTarget = (int) (point.x() * periodMillis) - getTrialTime();
     
-    try {
+    NormPoint lastCommand;
+    {
+      final int count = commandsReceived.size();
+      final int lastIndex = count - 1;
       
-      NormPoint lastCommand;
-      {
-        final int count = commandsReceived.size();
-        final int lastIndex = count - 1;
+      if (count == 0) {
+        if (point.x() == 0)
+          throw new IllegalArgumentException(point.toString());
         
-        if (count == 0) {
-          if (point.x() == 0)
-            throw new IllegalArgumentException(point.toString());
-          
-          lastCommand = null;
-        } else {
-          
-          lastCommand = commandsReceived.get(lastIndex);
-          
-          if (lastCommand.x() >= point.x()) {
-            
-            // allow this corner case (that I sometimes hit)
-            if (lastCommand.equals(point))
-              return true;
-            
-            throw new IllegalArgumentException(
-                "out of sequence: last " + lastCommand + "; next " + point);
-          }
+        lastCommand = null;
+      } else {
+        
+        lastCommand = commandsReceived.get(lastIndex);
+        
+        if (lastCommand.x() >= point.x()) {
           
+          // allow this corner case (that I sometimes hit)
+          if (lastCommand.equals(point))
+            return 0;
           
-          // if we've been flat-lining just extend the last command
-          if (lastCommand.y() == point.y() && count > 1 && commandsReceived.get(count- 2).y() == point.y()) {
-            commandsReceived.remove(lastIndex);
-          }
+          throw new IllegalArgumentException(
+              "out of sequence: last " + lastCommand + "; next " + point);
+        }
+        
+        
+        // if we've been flat-lining just extend the last command
+        if (lastCommand.y() == point.y() && count > 1 && commandsReceived.get(count- 2).y() == point.y()) {
+          commandsReceived.remove(lastIndex);
         }
       }
+    }
 
-      
-      commandsReceived.add(point);
-      
-      
-      
-      if (lastCommand != null && lastCommand.y() == point.y())
-        return runSteady(timeToTarget);
-      
-      
-      double edgeLength = point.y() * config.maxTetherLength;
-      
-      TetraShape targetShape = new TetraShape();
-      targetShape.setLengths(edgeLength);
-      controller.setTargetShape(targetShape, timeToTarget, controlStepsPerProfilePoint);
-      system.animateControlledMillis(timeToTarget, config.timeFineness, controller, controlMillis);
-      
-      
-    } catch (RuntimeException rx) {
-      error = rx;
-      return false;
+    
+    commandsReceived.add(point);
+    commandHistory.add(point);
+    
+    
+    
+    if (lastCommand != null && lastCommand.y() == point.y()) {
+      if (timeToTarget < 0)
+        throw new IllegalArgumentException("millis " + timeToTarget);
+      return timeToTarget;
     }
-    return true;
+    
+    
+    double edgeLength = point.y() * config.maxTetherLength;
+    
+    TetraShape targetShape = new TetraShape();
+    targetShape.setLengths(edgeLength);
+    controller.setTargetShape(targetShape, timeToTarget, controlStepsPerProfilePoint);
+    return timeToTarget;
   }
   
   
@@ -220,7 +369,7 @@ public class RegularShapeTrial {
     }
     
     try {
-      system.animateControlledMillis(millis, config.timeFineness, controller, controlMillis);
+      animate(millis);
     } catch (RuntimeException rx) {
       error = rx;
       return false;
@@ -241,7 +390,7 @@ public class RegularShapeTrial {
     
     try {
       
-      system.animateControlledMillis(remainingMillis, config.timeFineness, controller, controlMillis);
+      animate(remainingMillis);
     
     } catch (RuntimeException rx) {
       error = rx;
@@ -253,6 +402,68 @@ public class RegularShapeTrial {
 
 
 
+  private void animate(int millis) {
+    if (millis == 0)
+      return;
+    if (recorder == null)
+      system.animateControlledMillis(millis, config.timeFineness, controller, controlMillis);
+    else {
+      segments.add(millis);
+      system.animateControlledMillis(millis, config.timeFineness, recorder, controlMillis);
+    }
+  }
+  
+  
+  /**
+   * Starts recording the controller's tether decisions, if not already recording,
+   * and returns the log recorded to. (Copies of this instance don't record.)
+   * 
+   * @see #replayTethers(double)
+   */
+  public ControlLog recordTethers() {
+    if (recorder == null)
+      recorder = new RecordingTetherController(controller, system, new ControlLog());
+    return recorder.getLog();
+  }
+  
+  
+  /**
+   * Returns the recorded tether decisions, or <tt>null</tt> if not recording.
+   */
+  public ControlLog getTetherLog() {
+    return recorder == null ? null : recorder.getLog();
+  }
+  
+  
+  /**
+   * Returns a new simulation, started from this instance's initial state, and animated
+   * with the {@linkplain #recordTethers() recorded} tether decisions played back verbatim
+   * (no control logic is run). Given the same time fineness, the simulation ends up in
+   * exactly this instance's state; given a finer one, the difference is a measure of this
+   * trial's error, under the same inputs.
+   * 
+   * @throws IllegalStateException if not recorded from the start, or if this trial failed
+   */
+  public Simulation replayTethers(double timeFineness) throws IllegalStateException {
+    if (recorder == null)
+      throw new IllegalStateException("not recorded");
+    if (failed())
+      throw new IllegalStateException("failed trial: " + error);
+    ControlLog log = recorder.getLog();
+    if (log.getTick(0) != initState.getTime())
+      throw new IllegalStateException(
+          "recorded from " + log.getTick(0) + "; init state time " + initState.getTime());
+    
+    Simulation replay = new Simulation(new SphericalBodyPotential(), initState);
+    replay.setIntegrator(system.getIntegrator());
+    ReplayTetherController player = new ReplayTetherController(replay, log);
+    for (int millis : segments)
+      replay.animateControlledMillis(millis, timeFineness, player, controlMillis);
+    return replay;
+  }
+
+
+
   public double getInitEnergy() {
     return initState.getEnergy(system.getPotential());
   }
@@ -310,6 +521,44 @@ public class RegularShapeTrial {
   public List<NormPoint> getCommandsReceived() {
     return commandsReceived;
   }
+  
+  
+  /**
+   * Returns the points this instance was {@linkplain #runToOrbitalPoint(NormPoint) run to},
+   * in order. Unlike the {@linkplain #getCommandsReceived() commands received}, which
+   * are merged and may be edited, this determines the state of the trial (given its
+   * constraints and initial state).
+   */
+  public List<NormPoint> getCommandHistory() {
+    return Collections.unmodifiableList(commandHistory);
+  }
+  
+  
+  /**
+   * Returns a new trial, under the given <tt>constraints</tt>, run from this
+   * instance's initial state through the same {@linkplain #getCommandHistory() command history}.
+   * Under the same constraints, the replay ends up in exactly the same state; under
+   * a finer time resolution, the difference is a measure of this trial's error.
+   * <p/>
+   * If a command fails, the replay stops there (check {@linkplain #failed()}).
+   */
+  public RegularShapeTrial replay(Constraints constraints) {
+    RegularShapeTrial replay = new RegularShapeTrial(constraints, initState);
+    for (NormPoint point : commandHistory)
+      if (!replay.runToOrbitalPoint(point))
+        break;
+    return replay;
+  }
+  
+  
+  /**
+   * Returns the state of the tether controller.
+   * 
+   * @see ShapeMetaController#getState()
+   */
+  public double[] getControllerState() {
+    return controller.getState();
+  }
 
 
   private int estimateInitPeriodMillis() {
@@ -326,7 +575,7 @@ public class RegularShapeTrial {
    * We'll be keeping track of the periapsis and apoapsis vectors soon anywqy.
    */
   private double estimateInitPeriod() {
-    DynaVector cm = system.getCraft().newCmBob();
+    DynaVector cm = initState.getCmBob();
     double r = cm.distance(0, 0, 0);
     double circum = 2 * r * Math.PI;
     double period = circum / cm.getV();
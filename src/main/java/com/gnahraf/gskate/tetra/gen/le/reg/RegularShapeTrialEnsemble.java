@@ -9,10 +9,15 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.gnahraf.gskate.tetra.gen.le.Constraints;
 import com.gnahraf.gskate.tetra.gen.le.io.TrialStore;
+import com.gnahraf.gskate.tetra.model.CraftBatch;
 import com.gnahraf.gskate.tetra.model.CraftState;
 import com.gnahraf.gskate.tetra.model.Tetra;
 import com.gnahraf.gskate.tetra.model.TetraEdge;
@@ -106,6 +111,13 @@ public class RegularShapeTrialEnsemble {
   
   private final static double SCALED_MAX = 0.98;
   
+  /**
+   * In parallel mode, the subtrees of nodes at or above this level are
+   * each run as a separate task. At level 2 there are already
+   * <em>O(n<sup><small>2</small></sup>)</em> tasks for <em>n</em> regions.
+   */
+  private final static int FORK_LEVEL = 2;
+  
 
   
   private final Constraints constraints;
@@ -114,8 +126,21 @@ public class RegularShapeTrialEnsemble {
   
   private final List<RegularShapeTrial> trials;
   
+  /**
+   * Completed trials keyed by their decision path. Guarded by itself.
+   */
+  private final List<TrialResult> results;
+  
   private final TrialProcessor processor;
   
+  /**
+   * Where trial checkpoints are read from and written to. Optional.
+   * Access is synchronized on the store.
+   */
+  private TrialStore checkpointStore;
+  
+  private final AtomicInteger checkpointHits = new AtomicInteger();
+  
   
 
   /**
@@ -136,6 +161,7 @@ public class RegularShapeTrialEnsemble {
     if (regions < 3)
       throw new IllegalArgumentException("regions " + regions);
     this.trials = new ArrayList<RegularShapeTrial>(1024);
+    this.results = new ArrayList<>(1024);
     this.processor = new TrialProcessor(minRegionGap, startRegion, endRegion, initState);
   }
   
@@ -144,8 +170,82 @@ public class RegularShapeTrialEnsemble {
     return processor.initState;
   }
   
+  
+  /**
+   * Returns a copy of the constraints.
+   */
+  public Constraints getConstraints() {
+    return constraints.clone();
+  }
+  
+  
+  /**
+   * Sets the store in which trial checkpoints are kept. Before each command is run,
+   * the store is checked for a checkpoint with the same key (constraints, initial state,
+   * and command history); if found, the trial resumes from there instead. Successfully
+   * run commands are checkpointed. So sweeps that revisit the decision tree (e.g. with
+   * a different end region) only simulate what hasn't been simulated before.
+   * 
+   * @param store  <tt>null</tt> for no checkpointing (the default)
+   * 
+   * @see TrialStore#readRegularShapeCheckpoint(Constraints, CraftState, List)
+   */
+  public void setCheckpointStore(TrialStore store) {
+    this.checkpointStore = store;
+  }
+  
+  
+  public TrialStore getCheckpointStore() {
+    return checkpointStore;
+  }
+  
+  
+  /**
+   * Returns the number of commands whose simulation was skipped because their
+   * outcome was found in the {@linkplain #setCheckpointStore(TrialStore) checkpoint store}.
+   */
+  public int getCheckpointHits() {
+    return checkpointHits.get();
+  }
+  
   public void execute() {
     processor.processTree();
+    collectTrials();
+  }
+  
+  
+  /**
+   * Executes the ensemble using the given number of <tt>threads</tt>. The trials
+   * are collected in the same order as in {@linkplain #execute()}, and since
+   * each forked subtree starts from a copy of the same state the serial run
+   * would have seen, the results are the same too.
+   */
+  public void execute(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads " + threads);
+    if (threads == 1) {
+      execute();
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      processor.processTree(pool);
+    } finally {
+      pool.shutdown();
+    }
+    collectTrials();
+  }
+  
+  
+  /**
+   * Sorts the results in pre-order (i.e. the order in which a serial
+   * traversal would have encountered them) and adds them to the trials.
+   */
+  private void collectTrials() {
+    Collections.sort(results);
+    for (TrialResult result : results)
+      trials.add(result.trial);
+    results.clear();
   }
   
 
@@ -191,6 +291,34 @@ public class RegularShapeTrialEnsemble {
   private final static DecimalFormat FORMAT = new DecimalFormat("#,###.##");
   
   
+  /**
+   * A completed trial and the regions of the decision path that led to it.
+   * Pre-order over the decision tree is lexicographic order over these
+   * region paths.
+   */
+  private static class TrialResult implements Comparable<TrialResult> {
+    
+    final int[] path;
+    final RegularShapeTrial trial;
+    
+    TrialResult(int[] path, RegularShapeTrial trial) {
+      this.path = path;
+      this.trial = trial;
+    }
+
+    @Override
+    public int compareTo(TrialResult other) {
+      int len = Math.min(path.length, other.path.length);
+      for (int i = 0; i < len; ++i) {
+        int comp = Integer.compare(path[i], other.path[i]);
+        if (comp != 0)
+          return comp;
+      }
+      return Integer.compare(path.length, other.path.length);
+    }
+  }
+  
+  
   /**
    * We use this construct to systematically cover the decision space. We also
    * use this to save computational work at each decision branch.
@@ -211,6 +339,13 @@ public class RegularShapeTrialEnsemble {
     
     private final boolean firstEver;
     
+    /**
+     * Trials already run (in lockstep with their siblings') for nodes yet to be processed.
+     * 
+     * @see #siblingTrial(RegionProgression)
+     */
+    private final Map<RegionProgression, RegularShapeTrial> siblingTrials = new HashMap<>();
+    
     
     
 
@@ -237,6 +372,36 @@ public class RegularShapeTrialEnsemble {
     }
     
     
+    /**
+     * Subtree constructor. The trial stack is copied, with the trial at the top
+     * (the one for <tt>node</tt>) replaced by a copy, since <tt>parent</tt> may
+     * go on to extend that instance for <tt>node</tt>'s next sibling.
+     */
+    private TrialProcessor(TrialProcessor parent, RegionProgression node) {
+      super(parent, node);
+      this.minRegionGap = parent.minRegionGap;
+      this.startRegion = parent.startRegion;
+      this.endRegion = parent.endRegion;
+      this.initState = parent.initState;
+      this.firstEver = parent.firstEver;
+      
+      trialProgress.addAll(parent.trialProgress);
+      trialProgress.push(new RegularShapeTrial(trialProgress.pop()));
+    }
+    
+    
+    @Override
+    protected boolean forkSubtree(RegionProgression node) {
+      return node.level() <= FORK_LEVEL;
+    }
+    
+    
+    @Override
+    protected TrialProcessor newSubtreeProcessor(RegionProgression node) {
+      return new TrialProcessor(this, node);
+    }
+    
+    
 
     /**
      * Commands vs time (expressed in orbital region units) depicted below.
@@ -265,54 +430,32 @@ public class RegularShapeTrialEnsemble {
         throw new RuntimeException(
             "Assertion failed. level " + level + "; node " + node + "; stack " + trialProgress);
 
-      if (level > 1 && minRegionGap > node.region() - node.parent().region())
-        return false;
-      
-      if ((4 - level) * minRegionGap > endRegion - node.region())
-        return false;
-      
-      if (node.region() < startRegion || node.region() > endRegion)
-        return false;
-      
-      if (level == 1 && firstEver && node.region() > 0)
+      if (!isEligible(node))
         return false;
       
       RegularShapeTrial lastTrial = null;
       while (level < trialProgress.size())
         lastTrial = trialProgress.pop();
       
-      RegularShapeTrial trial = null;
-      NormPoint command;
+      RegularShapeTrial trial;
+      NormPoint command = command(node);
       
-      {
-        double normalizedTime = normalizedRegionDuration * (1 + node.region());
-        double normalizedEdgeLength;
-        
-        switch (level) {
-        case 1:
-          normalizedEdgeLength = scaledMin;
-          if (node.region() > 0 && lastTrial != null)
-            trial = lastTrial;
-          break;
-        case 2:
-          normalizedEdgeLength = SCALED_MAX;
-          break;
-        case 3:
-          normalizedEdgeLength = SCALED_MAX;
-          if (node.region() - node.parent().region() > 1 && lastTrial != null)
-            trial = lastTrial;
-          break;
-        case 4:
-          normalizedEdgeLength = scaledMin;
-          break;
-        default:
-          throw new RuntimeException("Assertion failed. level " + level);
-        }
+      if (level == 2 || level == 4) {
+        // always a new copy of the parent's trial, independent of its siblings':
+        // already run (or resumed), along with theirs
+        trial = siblingTrial(node);
+        command = null;
+      } else {
+        // the last sibling's trial is extended, if it just held steady
+        boolean extend =
+            level == 1 ?
+                node.region() > 0 :
+                  node.region() - node.parent().region() > 1;
         
-
-        if (trial == null)
+        if (!extend || lastTrial == null)
           trial = new RegularShapeTrial(trialProgress.peek());
         else {
+          trial = lastTrial;
           int lastIndex = trial.getCommandsReceived().size() - 1;
           
           if (lastIndex < 0)
@@ -323,25 +466,28 @@ public class RegularShapeTrialEnsemble {
           trial.getCommandsReceived().remove(lastIndex);
         }
         
-        command = new NormPoint(normalizedTime, normalizedEdgeLength);
+        RegularShapeTrial resumed = resumeFromCheckpoint(trial, command);
+        if (resumed != null) {
+          trial = resumed;
+          command = null;
+        }
       }
 
-      
-      
-      
-
       trialProgress.push(trial);
       
+      int[] path = new int[level];
       {
         ArrayList<Integer> regionStack = new ArrayList<>();
-        for (RegionProgression n = node; !n.isRoot(); n = n.parent())
+        for (RegionProgression n = node; !n.isRoot(); n = n.parent()) {
           regionStack.add(n.region());
+          path[n.level() - 1] = n.region();
+        }
         print("Executing level " + level + ", region " + node.region() + " - " + regionStack);
       }
       
       
       
-      if (! trial.runToOrbitalPoint(command) ) {
+      if (command == null ? trial.failed() : !run(trial, command)) {
         printBackout(node, trial);
         return false;
       }
@@ -349,15 +495,6 @@ public class RegularShapeTrialEnsemble {
       if (node.isLeaf()) {
 
         print("Maneuver completed.");
-        // stabilize..
-        {
-          double normalizedTime = Math.min(1.0, normalizedRegionDuration * (2 + node.region()));
-          NormPoint hold = new NormPoint(normalizedTime, scaledMin);
-          if (!trial.runToOrbitalPoint(hold)) {
-            printBackout(node, trial);
-            return false;
-          }
-        }
         
         if (trial.getCmEnergyGain() < 0) {
           print("..but CM energy gain is negative (" + FORMAT.format(trial.getCmEnergyGain()) + " J) so not pursuing..");
@@ -378,7 +515,9 @@ public class RegularShapeTrialEnsemble {
 //          return false;
 //        }
         
-        trials.add(trial);
+        synchronized (results) {
+          results.add(new TrialResult(path, trial));
+        }
         print("Trial completed.");
         printSummary(trial);
       }
@@ -387,6 +526,177 @@ public class RegularShapeTrialEnsemble {
     }
     
     
+    private boolean isEligible(RegionProgression node) {
+      int level = node.level();
+      
+      if (level > 1 && minRegionGap > node.region() - node.parent().region())
+        return false;
+      
+      if ((4 - level) * minRegionGap > endRegion - node.region())
+        return false;
+      
+      if (node.region() < startRegion || node.region() > endRegion)
+        return false;
+      
+      if (level == 1 && firstEver && node.region() > 0)
+        return false;
+      
+      return true;
+    }
+    
+    
+    /**
+     * Returns the command for the given node.
+     */
+    private NormPoint command(RegionProgression node) {
+      double normalizedTime = normalizedRegionDuration * (1 + node.region());
+      double normalizedEdgeLength;
+      
+      switch (node.level()) {
+      case 1:
+      case 4:
+        normalizedEdgeLength = scaledMin;
+        break;
+      case 2:
+      case 3:
+        normalizedEdgeLength = SCALED_MAX;
+        break;
+      default:
+        throw new RuntimeException("Assertion failed. level " + node.level());
+      }
+      return new NormPoint(normalizedTime, normalizedEdgeLength);
+    }
+    
+    
+    /**
+     * Returns the command that stabilizes the craft after the given leaf node's.
+     */
+    private NormPoint holdCommand(RegionProgression leaf) {
+      double normalizedTime = Math.min(1.0, normalizedRegionDuration * (2 + leaf.region()));
+      return new NormPoint(normalizedTime, scaledMin);
+    }
+    
+    
+    /**
+     * Returns a new copy of the parent's trial (at the top of the stack) run to the given
+     * level 2 or 4 <tt>node</tt>'s command (and if a leaf, also to its
+     * {@linkplain #holdCommand(RegionProgression) hold}), or resumed from a checkpoint
+     * for the same. The returned trial may have failed.
+     * <p/>
+     * Such trials are independent of their siblings', so the first time one is asked for,
+     * it's run together with its eligible next siblings' in a {@linkplain CraftBatch}
+     * (see {@linkplain RegularShapeTrial#runToOrbitalPoints(List, List)}), and theirs
+     * are saved for when their nodes are processed. (The parent's trial doesn't change
+     * in the meantime: the nodes below each sibling work on copies.)
+     */
+    private RegularShapeTrial siblingTrial(RegionProgression node) {
+      RegularShapeTrial trial = siblingTrials.remove(node);
+      if (trial != null)
+        return trial;
+      
+      RegularShapeTrial parentTrial = trialProgress.peek();
+      List<RegionProgression> nodes = new ArrayList<>();
+      List<RegularShapeTrial> batch = new ArrayList<>();
+      List<NormPoint> commands = new ArrayList<>();
+      for (RegionProgression n = node; n != null; n = n.nextSibling()) {
+        if (!isEligible(n))
+          continue;
+        RegularShapeTrial copy = new RegularShapeTrial(parentTrial);
+        NormPoint command = command(n);
+        RegularShapeTrial resumed = resumeFromCheckpoint(copy, command);
+        if (resumed != null)
+          copy = resumed;
+        else {
+          batch.add(copy);
+          commands.add(command);
+        }
+        siblingTrials.put(n, copy);
+        nodes.add(n);
+      }
+      run(batch, commands);
+      
+      if (node.isLeaf()) {
+        // stabilize..
+        batch.clear();
+        commands.clear();
+        for (RegionProgression n : nodes) {
+          RegularShapeTrial copy = siblingTrials.get(n);
+          if (copy.failed())
+            continue;
+          NormPoint hold = holdCommand(n);
+          RegularShapeTrial resumed = resumeFromCheckpoint(copy, hold);
+          if (resumed != null)
+            siblingTrials.put(n, resumed);
+          else {
+            batch.add(copy);
+            commands.add(hold);
+          }
+        }
+        run(batch, commands);
+      }
+      
+      return siblingTrials.remove(node);
+    }
+    
+    
+    /**
+     * Returns the trial resumed from the checkpoint for the given <tt>trial</tt>
+     * after it's run to the given <tt>point</tt>, if there's one; <tt>null</tt>, otherwise.
+     */
+    private RegularShapeTrial resumeFromCheckpoint(RegularShapeTrial trial, NormPoint point) {
+      TrialStore store = checkpointStore;
+      if (store == null)
+        return null;
+      
+      List<NormPoint> history = new ArrayList<>(trial.getCommandHistory());
+      history.add(point);
+      RegularShapeTrial resumed;
+      synchronized (store) {
+        resumed = store.readRegularShapeCheckpoint(constraints, initState, history);
+      }
+      if (resumed != null) {
+        checkpointHits.incrementAndGet();
+        print("Resumed from checkpoint " + point);
+      }
+      return resumed;
+    }
+    
+    
+    /**
+     * Runs the trial to the given point and checkpoints it, if successful.
+     */
+    private boolean run(RegularShapeTrial trial, NormPoint point) {
+      if (!trial.runToOrbitalPoint(point))
+        return false;
+      checkpoint(trial);
+      return true;
+    }
+    
+    
+    /**
+     * Runs the trials to their respective points in lockstep, and checkpoints
+     * the successful ones.
+     */
+    private void run(List<RegularShapeTrial> trials, List<NormPoint> points) {
+      if (trials.isEmpty())
+        return;
+      RegularShapeTrial.runToOrbitalPoints(trials, points);
+      for (RegularShapeTrial trial : trials)
+        if (!trial.failed())
+          checkpoint(trial);
+    }
+    
+    
+    private void checkpoint(RegularShapeTrial trial) {
+      TrialStore store = checkpointStore;
+      if (store != null) {
+        synchronized (store) {
+          store.writeRegularShapeCheckpoint(trial);
+        }
+      }
+    }
+    
+    
     private boolean tethersMaxedOut(RegularShapeTrial trial) {
       Tetra craft = trial.getSystem().getCraft();
       int count = 0;
@@ -428,6 +738,13 @@ public class RegularShapeTrialEnsemble {
   public final static String END_REGION = "end_region";
   public final static String CONFIG = "config";
   public final static String PLAY = "play";
+  public final static String THREADS = "threads";
+  /**
+   * Opt-in: <tt>checkpoints=true</tt> turns on checkpointing.
+   */
+  public final static String CHECKPOINTS = "checkpoints";
+  public final static String COARSE = "coarse";
+  public final static String TOP = "top";
   
   public final static String DEFAULT_STORE_PATH =
       "data" + File.separator + "store";
@@ -438,7 +755,7 @@ public class RegularShapeTrialEnsemble {
   public static void main(String[] args) {
     
     if (Args.help(args)) {
-      String[] options = { STORE, REGIONS, INIT_STATE, MIN_REGION_GAP,START_REGION, END_REGION, CONFIG, PLAY };
+      String[] options = { STORE, REGIONS, INIT_STATE, MIN_REGION_GAP,START_REGION, END_REGION, CONFIG, PLAY, THREADS, CHECKPOINTS, COARSE, TOP };
       System.out.println("Reminder: options are");
       for (String option : options)
         System.out.println("   " + option + "=..");
@@ -454,6 +771,8 @@ public class RegularShapeTrialEnsemble {
     int startRegion = Args.getIntValue(args, START_REGION, 0);
     int endRegion = Args.getIntValue(args, END_REGION, regions - 1);
     
+    int threads = Args.getIntValue(args, THREADS, 1);
+    
     
     
     TrialStore store;
@@ -470,6 +789,8 @@ public class RegularShapeTrialEnsemble {
         System.out.println("Loading TrialStore from " + dir);
       
       store = new TrialStore(dir);
+      // also on System.exit(..), or ^C
+      Runtime.getRuntime().addShutdownHook(new Thread(store::close));
     }
     
     
@@ -531,8 +852,25 @@ public class RegularShapeTrialEnsemble {
       }
     }
     
-    RegularShapeTrialEnsemble instance =
-        new RegularShapeTrialEnsemble(constraints, regions, minRegionGap, startRegion, endRegion, initState);
+    // in pipeline mode, discover at the coarse time fineness; verify the top
+    // trials at the configured one
+    String coarse = Args.getValue(args, COARSE, null);
+    RegularShapeTrialPipeline pipeline;
+    RegularShapeTrialEnsemble instance;
+    if (coarse == null) {
+      pipeline = null;
+      instance =
+          new RegularShapeTrialEnsemble(constraints, regions, minRegionGap, startRegion, endRegion, initState);
+    } else {
+      pipeline =
+          new RegularShapeTrialPipeline(
+              constraints, Double.parseDouble(coarse), Args.getIntValue(args, TOP, 10),
+              regions, minRegionGap, startRegion, endRegion, initState);
+      instance = pipeline.getEnsemble();
+    }
+    
+    if (Boolean.parseBoolean(Args.getValue(args, CHECKPOINTS, "false")))
+      instance.setCheckpointStore(store);
     
     System.out.println(
         "Executing over " + regions + " regions with at least " + minRegionGap +
@@ -540,9 +878,19 @@ public class RegularShapeTrialEnsemble {
     System.out.println("Init state " + store.getStateManager().getId(instance.getInitState()));
     System.out.println();
     
-    instance.execute();
+    List<RegularShapeTrial> trials;
+    if (pipeline == null) {
+      instance.execute(threads);
+      trials = instance.getTrials();
+    } else {
+      pipeline.execute(threads);
+      pipeline.printReport();
+      trials = pipeline.getFineTrials();
+    }
+    
+    if (instance.getCheckpointStore() != null)
+      System.out.println(instance.getCheckpointHits() + " commands resumed from checkpoints.");
     
-    List<RegularShapeTrial> trials = instance.getTrials();
     
     Collections.sort(trials, new CmEnergyComparator());
     
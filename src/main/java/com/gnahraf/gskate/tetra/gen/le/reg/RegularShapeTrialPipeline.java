@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.reg;
+
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.model.CraftState;
+import com.gnahraf.print.TablePrint;
+
+/**
+ * A 2 stage sweep: discovery at a coarse time resolution, then verification at
+ * a fine one (TODO #3 in the captain's log).
+ * <ol>
+ * <li>The whole {@linkplain RegularShapeTrialEnsemble ensemble} is run with the
+ * constraints' time fineness replaced by a coarse one.</li>
+ * <li>The top <em>k</em> trials, by CM energy gain, are kept.</li>
+ * <li>Only those <em>k</em> are {@linkplain RegularShapeTrial#replay(Constraints) replayed}
+ * at the (fine) time resolution in the given constraints.</li>
+ * <li>The discrepancies between the 2 are {@linkplain Verification reported}.</li>
+ * </ol>
+ * Since the ensemble dominates the cost, the total cost falls roughly by the ratio
+ * of the fine to the coarse time fineness.
+ */
+public class RegularShapeTrialPipeline {
+
+  /**
+   * A trial run at both resolutions.
+   */
+  public static class Verification {
+
+    /**
+     * 1-based rank at the coarse resolution (1 is the best).
+     */
+    public final int coarseRank;
+    /**
+     * 1-based rank at the fine resolution among the verified trials.
+     * (Failed fine trials rank last.)
+     */
+    public final int fineRank;
+    public final RegularShapeTrial coarse;
+    public final RegularShapeTrial fine;
+
+
+    Verification(int coarseRank, int fineRank, RegularShapeTrial coarse, RegularShapeTrial fine) {
+      this.coarseRank = coarseRank;
+      this.fineRank = fineRank;
+      this.coarse = coarse;
+      this.fine = fine;
+    }
+
+
+    /**
+     * Returns the fine CM energy gain minus the coarse one, or <tt>NaN</tt> if
+     * the fine trial failed.
+     */
+    public double getCmEnergyGainError() {
+      return fine.failed() ? Double.NaN : fine.getCmEnergyGain() - coarse.getCmEnergyGain();
+    }
+
+
+    /**
+     * Returns the {@linkplain #getCmEnergyGainError() CM energy gain error} relative
+     * to the fine CM energy gain.
+     */
+    public double getRelativeCmEnergyGainError() {
+      return getCmEnergyGainError() / Math.abs(fine.getCmEnergyGain());
+    }
+
+
+    public double getRotationalEnergyGainError() {
+      return
+          fine.failed() ?
+              Double.NaN : fine.getRotationalEnergyGain() - coarse.getRotationalEnergyGain();
+    }
+
+
+    /**
+     * Returns the distance between the coarse and fine crafts' centers of mass,
+     * or <tt>NaN</tt> if the fine trial failed.
+     */
+    public double getCmPositionError() {
+      return
+          fine.failed() ?
+              Double.NaN :
+                fine.getSystem().getCraft().newCmBob().distance(
+                    coarse.getSystem().getCraft().newCmBob());
+    }
+  }
+
+
+
+  private final Constraints fineConstraints;
+  private final RegularShapeTrialEnsemble ensemble;
+  private final int topK;
+
+  private final List<Verification> verifications = new ArrayList<>();
+
+  private long coarseMillis;
+  private long fineMillis;
+
+
+  /**
+   *
+   * @param constraints     the constraints (and time resolution) to verify at
+   * @param coarseFineness  the time fineness for the discovery stage
+   * @param topK            the number of trials to verify
+   *
+   * @see RegularShapeTrialEnsemble#RegularShapeTrialEnsemble(Constraints, int, int, int, int, CraftState)
+   */
+  public RegularShapeTrialPipeline(
+      Constraints constraints,
+      double coarseFineness,
+      int topK,
+      int regions,
+      int minRegionGap,
+      int startRegion,
+      int endRegion,
+      CraftState initState) {
+
+    this.fineConstraints = constraints.clone();
+    this.topK = topK;
+
+    if (coarseFineness < fineConstraints.timeFineness)
+      throw new IllegalArgumentException(
+          "coarseFineness " + coarseFineness + " < timeFineness " + fineConstraints.timeFineness);
+    if (topK < 1)
+      throw new IllegalArgumentException("topK " + topK);
+
+    Constraints coarse = constraints.clone();
+    coarse.timeFineness = coarseFineness;
+    if (!coarse.isValid())
+      throw new IllegalArgumentException("coarseFineness " + coarseFineness);
+
+    this.ensemble =
+        new RegularShapeTrialEnsemble(coarse, regions, minRegionGap, startRegion, endRegion, initState);
+  }
+
+
+  /**
+   * Returns the coarse ensemble. (E.g. to set its checkpoint store.)
+   */
+  public RegularShapeTrialEnsemble getEnsemble() {
+    return ensemble;
+  }
+
+
+  public Constraints getFineConstraints() {
+    return fineConstraints.clone();
+  }
+
+
+  public int getTopK() {
+    return topK;
+  }
+
+
+
+  /**
+   * Executes both stages using the given number of <tt>threads</tt>.
+   */
+  public void execute(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads " + threads);
+
+    long start = System.currentTimeMillis();
+    ensemble.execute(threads);
+    coarseMillis = System.currentTimeMillis() - start;
+
+    List<RegularShapeTrial> ranked = new ArrayList<>(ensemble.getTrials());
+    Collections.sort(ranked, Collections.reverseOrder(new RegularShapeTrialEnsemble.CmEnergyComparator()));
+    List<RegularShapeTrial> top = ranked.subList(0, Math.min(topK, ranked.size()));
+
+    start = System.currentTimeMillis();
+    List<RegularShapeTrial> fine = replayAll(top, threads);
+    fineMillis = System.currentTimeMillis() - start;
+
+    List<RegularShapeTrial> fineRanked = new ArrayList<>();
+    for (RegularShapeTrial trial : fine)
+      if (!trial.failed())
+        fineRanked.add(trial);
+    Collections.sort(fineRanked, Collections.reverseOrder(new RegularShapeTrialEnsemble.CmEnergyComparator()));
+
+    verifications.clear();
+    int failedRank = fineRanked.size();
+    for (int index = 0; index < top.size(); ++index) {
+      RegularShapeTrial f = fine.get(index);
+      int fineRank = f.failed() ? ++failedRank : fineRanked.indexOf(f) + 1;
+      verifications.add(new Verification(index + 1, fineRank, top.get(index), f));
+    }
+  }
+
+
+  private List<RegularShapeTrial> replayAll(List<RegularShapeTrial> trials, int threads) {
+    List<Callable<RegularShapeTrial>> tasks = new ArrayList<>(trials.size());
+    for (RegularShapeTrial trial : trials)
+      tasks.add(() -> trial.replay(fineConstraints));
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<RegularShapeTrial> replays = new ArrayList<>(trials.size());
+      for (Future<RegularShapeTrial> future : pool.invokeAll(tasks))
+        replays.add(future.get());
+      return replays;
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ix);
+    } catch (ExecutionException xx) {
+      throw new RuntimeException(xx.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+
+
+  /**
+   * Returns the verifications in coarse rank order.
+   */
+  public List<Verification> getVerifications() {
+    return Collections.unmodifiableList(verifications);
+  }
+
+
+  /**
+   * Returns the fine trials that didn't fail, in coarse rank order.
+   */
+  public List<RegularShapeTrial> getFineTrials() {
+    List<RegularShapeTrial> trials = new ArrayList<>(verifications.size());
+    for (Verification v : verifications)
+      if (!v.fine.failed())
+        trials.add(v.fine);
+    return trials;
+  }
+
+
+  /**
+   * Returns the wall time of the coarse (discovery) stage in milliseconds.
+   */
+  public long getCoarseMillis() {
+    return coarseMillis;
+  }
+
+
+  /**
+   * Returns the wall time of the fine (verification) stage in milliseconds.
+   */
+  public long getFineMillis() {
+    return fineMillis;
+  }
+
+
+
+  public void printReport() {
+    System.out.println();
+    System.out.println(
+        "Verified top " + verifications.size() + " of " + ensemble.getTrials().size() +
+        " trials at time fineness " + fineConstraints.timeFineness +
+        " (discovery at " + ensemble.getConstraints().timeFineness + ")");
+    System.out.println(
+        "\tdiscovery " + FORMAT.format(coarseMillis / 1000.0) + " s; verification " +
+        FORMAT.format(fineMillis / 1000.0) + " s");
+    System.out.println();
+
+    TablePrint table = new TablePrint(8, 8, 18, 18, 14, 14);
+    table.setIndentation(4);
+    table.printRow("Coarse", "Fine", "CM gain (J)", "CM gain err (J)", "Rel err", "CM pos err (m)");
+    table.printHorizontalTableEdge('-');
+    for (Verification v : verifications) {
+      table.printRow(
+          v.coarseRank,
+          v.fine.failed() ? "failed" : v.fineRank,
+          v.fine.failed() ? "" : FORMAT.format(v.fine.getCmEnergyGain()),
+          v.fine.failed() ? "" : FORMAT.format(v.getCmEnergyGainError()),
+          v.fine.failed() ? "" : ERR_FORMAT.format(v.getRelativeCmEnergyGainError()),
+          v.fine.failed() ? "" : FORMAT.format(v.getCmPositionError()));
+    }
+    System.out.println();
+  }
+
+
+  private final static DecimalFormat FORMAT = new DecimalFormat("#,###.##");
+  private final static DecimalFormat ERR_FORMAT = new DecimalFormat("0.###E0");
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.gnahraf.gskate.model.Potential;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.model.TetheredCraft;
+import com.gnahraf.gskate.tetra.control.TetherController;
+import com.gnahraf.sim.Integrator;
+
+/**
+ * Animates many independent crafts in lockstep. Each craft belongs to its own
+ * {@linkplain Simulation} (typically one of many trials of an ensemble), but here
+ * they're animated together as the disjoint pieces of a single {@linkplain TetheredCraft}
+ * (a complete graph of 4 unit-mass bobs per craft). So each step computes gravity for
+ * all the crafts' bobs in one bulk {@linkplain Potential#force(double[], double[], int, int)
+ * force} call, and then runs the tether kernel once over all their tethers.
+ * <p/>
+ * The crafts must all orbit the same {@linkplain SphericalBodyPotential} using the
+ * {@linkplain Integrator#DEFAULT default} integrator (see {@linkplain #supports(Simulation)}).
+ * The arithmetic is done in the same order as in {@linkplain Tetra} (as in
+ * {@linkplain PackedTetra}), so each craft's trajectory is the same, bit-for-bit, as
+ * if its simulation were animated by itself.
+ * <p/>
+ * Each craft may have its own {@linkplain #setController(int, TetherController)
+ * controller}, and may be animated for its own duration. A craft fails if its bobs
+ * collide or its controller throws; failed crafts are left where they failed (just as
+ * they would be if animated alone), and are no longer animated. The others are
+ * not disturbed.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class CraftBatch {
+
+  /**
+   * Determines whether the given simulation's craft can be animated in a batch. It
+   * can if the simulation is not an {@linkplain EnckeSimulation}, uses the
+   * {@linkplain Integrator#DEFAULT default} integrator, orbits a (plain)
+   * {@linkplain SphericalBodyPotential}, and has no {@linkplain Simulation#getLedger()
+   * energy ledger} (which the batch would not post to).
+   */
+  public static boolean supports(Simulation system) {
+    return
+        !(system instanceof EnckeSimulation) &&
+        system.getIntegrator() == Integrator.DEFAULT &&
+        system.getPotential().getClass() == SphericalBodyPotential.class &&
+        system.getLedger() == null;
+  }
+
+
+  private final Simulation[] systems;
+  private final TetherController[] controllers;
+  private final RuntimeException[] errors;
+  private int failures;
+
+  /**
+   * The potential all the crafts orbit.
+   */
+  private final SphericalBodyPotential potential;
+
+  /**
+   * The crafts being animated, as one. Resized as the number of crafts
+   * animated together changes.
+   */
+  private TetheredCraft kernel;
+
+  /**
+   * Work array of craft indices.
+   */
+  private final int[] active;
+
+
+
+  /**
+   * Creates a batch of the crafts of the given simulations.
+   *
+   * @param systems non-empty, all {@linkplain #supports(Simulation) supported}
+   *                and orbiting bodies of the same mass
+   */
+  public CraftBatch(List<? extends Simulation> systems) {
+    if (systems == null || systems.isEmpty())
+      throw new IllegalArgumentException("empty systems " + systems);
+
+    this.systems = systems.toArray(new Simulation[systems.size()]);
+    final int count = this.systems.length;
+
+    for (int c = 0; c < count; ++c) {
+      Simulation system = this.systems[c];
+      if (!supports(system))
+        throw new IllegalArgumentException("craft " + c + " not supported: " + system);
+      if (((SphericalBodyPotential) system.getPotential()).getG() !=
+          ((SphericalBodyPotential) this.systems[0].getPotential()).getG())
+        throw new IllegalArgumentException("craft " + c + " potential " + system.getPotential());
+      for (int d = c; d-- > 0; )
+        if (this.systems[d] == system)
+          throw new IllegalArgumentException("duplicate craft " + c);
+    }
+
+    this.potential = ((SphericalBodyPotential) this.systems[0].getPotential()).clone();
+    this.controllers = new TetherController[count];
+    this.errors = new RuntimeException[count];
+    this.active = new int[count];
+  }
+
+
+
+  /**
+   * Returns the number of crafts in the batch.
+   */
+  public int size() {
+    return systems.length;
+  }
+
+
+  public Simulation getSystem(int craft) {
+    return systems[craft];
+  }
+
+
+  public TetherController getController(int craft) {
+    return controllers[craft];
+  }
+
+
+  /**
+   * Sets the controller for the given craft. The controller is invoked
+   * every <tt>controlMillis</tt> in {@linkplain #animateControlledMillis(long[], double, long)}.
+   *
+   * @param controller may be <tt>null</tt> (no control)
+   */
+  public void setController(int craft, TetherController controller) {
+    controllers[craft] = controller;
+  }
+
+
+  public boolean failed(int craft) {
+    return errors[craft] != null;
+  }
+
+
+  /**
+   * Returns the exception the given craft failed on, or <tt>null</tt> if it hasn't failed.
+   */
+  public RuntimeException getException(int craft) {
+    return errors[craft];
+  }
+
+
+  /**
+   * Returns the number of failed crafts.
+   */
+  public int getFailures() {
+    return failures;
+  }
+
+
+
+  /**
+   * Animates the crafts that haven't failed for the given milliseconds.
+   *
+   * @see Simulation#animateMillis(long, double)
+   */
+  public void animateMillis(long millis, double timeResolution) {
+    if (millis < 0 || timeResolution <= 0)
+      throw new IllegalArgumentException(millis + ", " + timeResolution);
+    int count = 0;
+    for (int c = 0; c < systems.length; ++c)
+      if (errors[c] == null)
+        active[count++] = c;
+    animate(count, millis, timeResolution);
+  }
+
+
+  /**
+   * Animates the crafts that haven't failed for the given milliseconds, invoking
+   * each craft's controller every <tt>controlMillis</tt>.
+   *
+   * @see #animateControlledMillis(long[], double, long)
+   */
+  public void animateControlledMillis(long millis, double timeResolution, long controlMillis) {
+    long[] durations = new long[systems.length];
+    Arrays.fill(durations, millis);
+    animateControlledMillis(durations, timeResolution, controlMillis);
+  }
+
+
+  /**
+   * Animates each craft that hasn't failed for its given milliseconds, invoking its
+   * controller every <tt>controlMillis</tt>. For each craft, this is the same as
+   * {@linkplain Simulation#animateControlledMillis(long, double, TetherController, long)
+   * animateControlledMillis}<tt>(millis[craft], timeResolution, controller, controlMillis)</tt>
+   * on its simulation, except that a failure is recorded here, rather than thrown.
+   * The crafts are run in lockstep, one control interval at a time, until each has
+   * fewer than <tt>controlMillis</tt> left; the remainders are then run in groups of
+   * equal length.
+   *
+   * @param millis  the milliseconds to animate, by craft
+   */
+  public void animateControlledMillis(long[] millis, double timeResolution, long controlMillis) {
+    if (millis.length != systems.length)
+      throw new IllegalArgumentException("millis length " + millis.length + "; size " + systems.length);
+    if (controlMillis < 1)
+      throw new IllegalArgumentException("controlMillis " + controlMillis);
+    if (timeResolution <= 0)
+      throw new IllegalArgumentException("timeResolution " + timeResolution);
+
+    final int size = systems.length;
+    for (long round = 0; ; ++round) {
+      int count = 0;
+      for (int c = 0; c < size; ++c)
+        if (errors[c] == null && millis[c] / controlMillis > round)
+          active[count++] = c;
+      if (count == 0)
+        break;
+      animate(count, controlMillis, timeResolution);
+      adjustTethers(count);
+    }
+
+    // the remainders, grouped by length
+    boolean[] done = new boolean[size];
+    for (int c = 0; c < size; ++c) {
+      if (done[c] || errors[c] != null)
+        continue;
+      long remainder = millis[c] - (millis[c] / controlMillis) * controlMillis;
+      if (remainder < 0) {
+        // let the simulation fail it (it's the argument that's bad)
+        animateAlone(c, remainder, timeResolution);
+        continue;
+      }
+      int count = 0;
+      for (int d = c; d < size; ++d) {
+        if (!done[d] && errors[d] == null &&
+            millis[d] - (millis[d] / controlMillis) * controlMillis == remainder) {
+          done[d] = true;
+          active[count++] = d;
+        }
+      }
+      animate(count, remainder, timeResolution);
+    }
+  }
+
+
+  private void adjustTethers(int count) {
+    for (int k = 0; k < count; ++k) {
+      int c = active[k];
+      if (errors[c] != null || controllers[c] == null)
+        continue;
+      try {
+        controllers[c].adjustTethers();
+      } catch (RuntimeException rx) {
+        fail(c, rx);
+      }
+    }
+  }
+
+
+  private void fail(int craft, RuntimeException cause) {
+    errors[craft] = cause;
+    ++failures;
+  }
+
+
+
+  /**
+   * Animates the first <tt>count</tt> {@linkplain #active} crafts for the given
+   * <tt>millis</tt>. If the batch fails (bobs collided), the crafts are animated
+   * again one by one from where they started, so that the failure lands on
+   * the craft it belongs to.
+   */
+  private void animate(int count, long millis, double timeResolution) {
+    if (count == 0)
+      return;
+
+    TetheredCraft kernel = kernel(count);
+    for (int k = 0; k < count; ++k)
+      load(k, systems[active[k]].getCraft());
+
+    double seconds = millis;
+    seconds /= 1000;
+    try {
+      kernel.animate(potential, seconds, timeResolution);
+    } catch (IllegalStateException collision) {
+      for (int k = 0; k < count; ++k)
+        animateAlone(active[k], millis, timeResolution);
+      return;
+    }
+
+    for (int k = 0; k < count; ++k) {
+      Simulation system = systems[active[k]];
+      store(k, system.getCraft());
+      system.advanceTime(millis);
+    }
+  }
+
+
+  private void animateAlone(int craft, long millis, double timeResolution) {
+    try {
+      systems[craft].animateMillis(millis, timeResolution);
+    } catch (RuntimeException rx) {
+      fail(craft, rx);
+    }
+  }
+
+
+  /**
+   * Returns the kernel for the given number of crafts. The <tt>k</tt>th craft's
+   * bobs are at indices <tt>4k</tt> thru <tt>4k + 3</tt>, and its tethers (which
+   * are then in {@linkplain TetraEdge} order) at <tt>6k</tt> thru <tt>6k + 5</tt>.
+   */
+  private TetheredCraft kernel(int count) {
+    if (kernel != null && kernel.getBobs() == 4 * count)
+      return kernel;
+
+    double[] masses = new double[4 * count];
+    Arrays.fill(masses, 1);
+    int[] edges = new int[12 * count];
+    for (int k = 0, e = 0; k < count; ++k) {
+      for (int a = 0; a < 4; ++a) {
+        for (int b = a + 1; b < 4; ++b) {
+          edges[e++] = 4 * k + a;
+          edges[e++] = 4 * k + b;
+        }
+      }
+    }
+    return kernel = new TetheredCraft(masses, edges);
+  }
+
+
+  private void load(int k, Tetra craft) {
+    for (int i = 0; i < 4; ++i)
+      kernel.setBob(4 * k + i, craft.getBob(i));
+    // the generic craft's sign convention for tethers is the opposite of ours
+    for (int t = 0; t < 6; ++t)
+      kernel.setTetherByIndex(6 * k + t, -craft.getTetherByIndex(t));
+  }
+
+
+  private void store(int k, Tetra craft) {
+    for (int i = 0; i < 4; ++i)
+      kernel.copyBobTo(4 * k + i, craft.getBob(i));
+  }
+
+}
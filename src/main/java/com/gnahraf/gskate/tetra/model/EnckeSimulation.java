@@ -0,0 +1,348 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.EnergyLedger;
+import com.gnahraf.gskate.model.KeplerOrbit;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.Integrator;
+
+/**
+ * A simulation that animates the craft by Encke's method. A reference (Keplerian)
+ * orbit, started at the craft's center of mass, is advanced analytically; only the bobs'
+ * deviations from it are integrated numerically. The deviations are small (the size
+ * of the craft, about), and their accelerations are the tethers' plus the difference
+ * between the central body's pull on the bob and on the reference, computed without
+ * cancellation. So the orbital motion, which dominates the error of a plain
+ * {@linkplain Simulation}, is exact; and the time resolution need only resolve the
+ * tether dynamics.
+ * <p/>
+ * When the center of mass strays from the reference orbit by more than the
+ * {@linkplain #getRectifyDistance() rectify distance}, the reference is
+ * <em>rectified</em>: restarted at the center of mass. This is checked at the end of
+ * every {@linkplain #animateMillis(long, double) animation}.
+ * <p/>
+ * The {@linkplain #getCraft() craft}'s absolute state is written back at the end of
+ * every animation. If it's modified otherwise (other than its tethers), the reference
+ * is rectified at the start of the next. Only a {@linkplain SphericalBodyPotential}
+ * is supported.
+ * <p/>
+ * The craft's {@linkplain #openLedger() ledger}, if any, is posted to at the end of every
+ * animation: the tethers' work, as done on the deviations (it depends only on the bobs'
+ * relative motion); and the rest of the change in the craft's kinetic energy,
+ * as gravity's.
+ */
+public class EnckeSimulation extends Simulation {
+
+  /**
+   * Default {@linkplain #getRectifyDistance() rectify distance} in meters.
+   */
+  public final static double DEFAULT_RECTIFY_DISTANCE = 1000;
+
+
+  /**
+   * Mass times gravitational constant G of the central body.
+   */
+  private final double g;
+
+  private double rectifyDistance = DEFAULT_RECTIFY_DISTANCE;
+
+  private KeplerOrbit reference;
+  /**
+   * Seconds since the reference orbit's epoch.
+   */
+  private double referenceTime;
+  /**
+   * The bobs' positions and velocities relative to the reference.
+   * Same tethers as the craft.
+   */
+  private final Tetra deviations = new Tetra();
+  /**
+   * The deviations' ledger, reopened every animation. Only its tether work is used.
+   */
+  private final EnergyLedger deviationLedger = new EnergyLedger(6);
+
+  private int rectifications;
+
+  // work vectors, recycling ok since single threaded
+  private final DynaVector ref = new DynaVector();
+  private final DynaVector work = new DynaVector();
+
+  private final Integrator.Dynamics dynamics = new Integrator.Dynamics() {
+    @Override
+    public void updateForces() {
+      updateDeviationForces();
+    }
+    @Override
+    public void kick(double dt) {
+      deviations.kick(dt);
+    }
+    @Override
+    public void drift(double dt) {
+      deviations.drift(dt);
+      referenceTime += dt;
+    }
+    @Override
+    public void animate(double dt) {
+      deviations.animateDeltaT(dt);
+      referenceTime += dt;
+    }
+  };
+
+
+
+  public EnckeSimulation(SphericalBodyPotential potential) {
+    this(potential, new Tetra());
+  }
+
+
+  public EnckeSimulation(SphericalBodyPotential potential, Tetra craft) {
+    super(potential, craft);
+    this.g = potential.getG();
+  }
+
+
+  public EnckeSimulation(SphericalBodyPotential potential, CraftState state) {
+    super(potential, state);
+    this.g = potential.getG();
+  }
+
+
+  /**
+   * Copy constructor.
+   */
+  public EnckeSimulation(EnckeSimulation copy) {
+    super(copy);
+    this.g = copy.g;
+    this.rectifyDistance = copy.rectifyDistance;
+    this.reference = copy.reference;
+    this.referenceTime = copy.referenceTime;
+    this.deviations.copyFrom(copy.deviations);
+    this.rectifications = copy.rectifications;
+  }
+
+
+  @Override
+  public EnckeSimulation clone() {
+    return new EnckeSimulation(this);
+  }
+
+
+  /**
+   * Returns the distance (meters) the center of mass may stray from the reference
+   * orbit before the reference is rectified.
+   */
+  public double getRectifyDistance() {
+    return rectifyDistance;
+  }
+
+
+  public void setRectifyDistance(double rectifyDistance) {
+    if (!(rectifyDistance > 0))
+      throw new IllegalArgumentException("rectifyDistance " + rectifyDistance);
+    this.rectifyDistance = rectifyDistance;
+  }
+
+
+  /**
+   * Returns the number of times the reference orbit was (re)started.
+   */
+  public int getRectifications() {
+    return rectifications;
+  }
+
+
+  /**
+   * Returns the reference orbit, or <tt>null</tt> if not yet animated.
+   */
+  public KeplerOrbit getReference() {
+    return reference;
+  }
+
+
+
+  @Override
+  public void animateMillis(long millis, double timeResolution) {
+    if (millis < 0 || timeResolution <= 0)
+      throw new IllegalArgumentException(millis + ", " + timeResolution);
+    if (millis == 0)
+      return;
+    sync();
+
+    EnergyLedger ledger = craft.getLedger();
+    double ke = 0, cmKe = 0;
+    if (ledger != null) {
+      ke = craft.getKe();
+      cmKe = craft.getCmKe();
+      deviationLedger.open(0, 0, 0);
+      deviations.setLedger(deviationLedger);
+    } else
+      deviations.setLedger(null);
+
+    double seconds = millis;
+    seconds /= 1000;
+    final double endTime = referenceTime + seconds;
+    Integrator integrator = getIntegrator();
+    long runs = (long) (seconds / timeResolution);
+    integrator.integrate(dynamics, timeResolution, runs);
+    seconds -= runs * timeResolution;
+    if (seconds > 0)
+      integrator.integrate(dynamics, seconds, 1);
+    // the drifts' round-off adds up (to millimeters along the orbit, over
+    // millions of steps): correct it
+    referenceTime = endTime;
+
+    reference.propagate(referenceTime, ref);
+    if (cmDeviation() > rectifyDistance) {
+      writeCraft();
+      rebase();
+    }
+    writeCraft();
+    advanceTime(millis);
+
+    if (ledger != null)
+      postWork(ledger, ke, cmKe);
+  }
+
+
+  /**
+   * Posts the work done over the last animation, given the craft's kinetic energies
+   * at its start. As in {@linkplain Tetra}, gravity's work is the change in kinetic
+   * energy less the tethers'.
+   */
+  private void postWork(EnergyLedger ledger, double ke, double cmKe) {
+    double tetherWork = 0;
+    for (int index = 0; index < 6; ++index) {
+      double work = deviationLedger.getTetherWork(index);
+      ledger.addTetherWork(index, work);
+      tetherWork += work;
+    }
+    ledger.addGravityWork(craft.getKe() - ke - tetherWork);
+    ledger.addTranslationalWork(craft.getCmKe() - cmKe);
+  }
+
+
+
+  /**
+   * Sets the accelerations of the deviations: the tethers' plus the central body's
+   * pull on each bob less that on the reference.
+   */
+  private void updateDeviationForces() {
+    reference.propagate(referenceTime, ref);
+    deviations.updateTetherForces();
+
+    Vector rho = ref.getPos();
+    final double px = rho.getX();
+    final double py = rho.getY();
+    final double pz = rho.getZ();
+    double rhoSq = px*px + py*py + pz*pz;
+    final double scale = -g / (rhoSq * Math.sqrt(rhoSq));
+
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = deviations.getBob(i);
+      double dx = bob.getX();
+      double dy = bob.getY();
+      double dz = bob.getZ();
+      double rx = px + dx;
+      double ry = py + dy;
+      double rz = pz + dz;
+
+      // (rho/r)^2 = 1 + q; and 1 - (rho/r)^3 = -f(q), computed w/o cancellation
+      double q = (dx * (dx - 2 * rx) + dy * (dy - 2 * ry) + dz * (dz - 2 * rz))
+          / (rx*rx + ry*ry + rz*rz);
+      double f = q * (3 + 3 * q + q * q) / (1 + Math.pow(1 + q, 1.5));
+
+      bob.addAcceleration(
+          scale * (dx + f * rx),
+          scale * (dy + f * ry),
+          scale * (dz + f * rz));
+    }
+  }
+
+
+  /**
+   * Returns the distance of the center of mass from the reference.
+   */
+  private double cmDeviation() {
+    double x = 0, y = 0, z = 0;
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = deviations.getBob(i);
+      x += bob.getX();
+      y += bob.getY();
+      z += bob.getZ();
+    }
+    return Math.sqrt(x*x + y*y + z*z) / 4;
+  }
+
+
+  /**
+   * Starts the reference orbit at the craft's center of mass, and sets the deviations
+   * from the craft's absolute state.
+   */
+  private void rebase() {
+    DynaVector cm = craft.newCmBob();
+    reference = new KeplerOrbit(g, cm);
+    referenceTime = 0;
+    reference.propagate(0, ref);
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = craft.getBob(i);
+      DynaVector deviation = deviations.getBob(i);
+      deviation.setPosition(
+          bob.getX() - cm.getX(), bob.getY() - cm.getY(), bob.getZ() - cm.getZ());
+      deviation.setVelocity(
+          bob.getVx() - cm.getVx(), bob.getVy() - cm.getVy(), bob.getVz() - cm.getVz());
+    }
+    ++rectifications;
+  }
+
+
+  /**
+   * Copies the craft's tethers to the deviations, and rebases if the craft's state
+   * is not what was last written.
+   */
+  private void sync() {
+    for (int index = 0; index < 6; ++index)
+      deviations.setTetherByIndex(index, craft.getTetherByIndex(index));
+
+    if (reference == null) {
+      rebase();
+      return;
+    }
+    reference.propagate(referenceTime, ref);
+    for (int i = 0; i < 4; ++i) {
+      absolute(i, work);
+      DynaVector bob = craft.getBob(i);
+      if (!bob.getPos().equals(work.getPos()) || !bob.getVel().equals(work.getVel())) {
+        rebase();
+        return;
+      }
+    }
+  }
+
+
+  /**
+   * Writes the craft's absolute state from the reference (already propagated to
+   * {@linkplain #referenceTime}) and the deviations.
+   */
+  private void writeCraft() {
+    for (int i = 0; i < 4; ++i)
+      absolute(i, craft.getBob(i));
+  }
+
+
+  private void absolute(int index, DynaVector out) {
+    DynaVector deviation = deviations.getBob(index);
+    out.setPosition(
+        ref.getX() + deviation.getX(),
+        ref.getY() + deviation.getY(),
+        ref.getZ() + deviation.getZ());
+    out.setVelocity(
+        ref.getVx() + deviation.getVx(),
+        ref.getVy() + deviation.getVy(),
+        ref.getVz() + deviation.getVz());
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.Potential;
+import com.gnahraf.gskate.model.TetheredCraft;
+
+/**
+ * A {@linkplain Tetra} whose state is packed in flat <tt>double</tt> arrays rather
+ * than in 4 {@linkplain DynaVector}s (each with its 3 vectors): a {@linkplain TetheredCraft}
+ * on the complete graph of 4 unit-mass bobs. The arithmetic is done in exactly the
+ * same order as in <tt>Tetra</tt>, so animating an instance of this class produces the
+ * same trajectory, bit-for-bit, as animating the <tt>Tetra</tt> it was
+ * {@linkplain #copyFrom(Tetra) copied from}. The difference is that the inner loop
+ * touches only a few arrays and allocates nothing.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class PackedTetra {
+
+
+  /**
+   * The tethers are in {@linkplain TetraEdge} order; but note the generic craft's
+   * sign convention for them is the opposite of ours.
+   */
+  private final TetheredCraft craft;
+
+
+
+  public PackedTetra() {
+    craft = TetheredCraft.newComplete(4);
+  }
+
+
+  public PackedTetra(Tetra copy) {
+    this();
+    copyFrom(copy);
+  }
+
+
+  /**
+   * Copy constructor.
+   */
+  public PackedTetra(PackedTetra copy) {
+    craft = new TetheredCraft(copy.craft);
+  }
+
+
+
+
+  public void copyFrom(Tetra craft) {
+    for (int i = 0; i < 4; ++i)
+      this.craft.setBob(i, craft.getBob(i));
+    for (int i = 0; i < 6; ++i)
+      setTetherByIndex(i, craft.getTetherByIndex(i));
+  }
+
+
+  public void copyFrom(PackedTetra other) {
+    craft.copyFrom(other.craft);
+  }
+
+
+  /**
+   * Copies the state of this instance to the given <tt>craft</tt>.
+   */
+  public void copyTo(Tetra craft) {
+    for (int i = 0; i < 4; ++i)
+      copyBobTo(i, craft.getBob(i));
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, getTetherByIndex(i));
+  }
+
+
+  /**
+   * Returns a new {@linkplain Tetra} with the same state as this instance.
+   */
+  public Tetra toTetra() {
+    Tetra craft = new Tetra();
+    copyTo(craft);
+    return craft;
+  }
+
+
+  /**
+   * Returns the underlying generic craft (live, not a copy). Its tethers'
+   * signs are flipped: +/- means attractive/repulsive there.
+   */
+  public TetheredCraft getCraft() {
+    return craft;
+  }
+
+
+  /**
+   * Copies the state of the bob at the given <tt>index</tt> to the
+   * given <tt>out</tt> argument.
+   */
+  public void copyBobTo(int index, DynaVector out) throws IndexOutOfBoundsException {
+    craft.copyBobTo(index, out);
+  }
+
+
+
+  public double getX(int bob) {
+    return craft.getX(bob);
+  }
+
+  public double getY(int bob) {
+    return craft.getY(bob);
+  }
+
+  public double getZ(int bob) {
+    return craft.getZ(bob);
+  }
+
+  public double getVx(int bob) {
+    return craft.getVx(bob);
+  }
+
+  public double getVy(int bob) {
+    return craft.getVy(bob);
+  }
+
+  public double getVz(int bob) {
+    return craft.getVz(bob);
+  }
+
+
+
+  public double getTetherByIndex(int index) throws IndexOutOfBoundsException {
+    return -craft.getTetherByIndex(index);
+  }
+
+
+  /**
+   * @param tether +/- means repulsive/attractive
+   */
+  public void setTetherByIndex(int index, double tether) throws IndexOutOfBoundsException {
+    craft.setTetherByIndex(index, -tether);
+  }
+
+
+
+  /** @see Tetra#getKe() */
+  public double getKe() {
+    return craft.getKe();
+  }
+
+
+  /** @see Tetra#getPe(Potential) */
+  public double getPe(Potential potential) {
+    return craft.getPe(potential);
+  }
+
+
+  public double getEnergy(Potential potential) {
+    return craft.getEnergy(potential);
+  }
+
+
+
+  /**
+   * Updates the accelerations of the 4 bobs using the given <tt>potential</tt>,
+   * taking into account the craft's tether forces.
+   *
+   * @see Tetra#updateForces(Potential)
+   */
+  public void updateForces(Potential potential) {
+    craft.updateForces(potential);
+  }
+
+
+
+  /** @see Tetra#animate(Potential, double, double) */
+  public void animate(Potential potential, double seconds, double timeFineness) {
+    craft.animate(potential, seconds, timeFineness);
+  }
+
+
+  /**
+   * Advances the positions and velocities by <tt>dt</tt> seconds holding the
+   * accelerations constant.
+   *
+   * @see DynaVector#animate(double)
+   */
+  public void animateDeltaT(double dt) {
+    craft.animateDeltaT(dt);
+  }
+
+}
@@ -3,8 +3,10 @@
  */
 package com.gnahraf.gskate.tetra.model;
 
+import com.gnahraf.gskate.model.EnergyLedger;
 import com.gnahraf.gskate.model.Potential;
 import com.gnahraf.gskate.tetra.control.TetherController;
+import com.gnahraf.sim.Integrator;
 
 /**
  * A simulation experiment. This abstracts away the environment.
@@ -23,6 +25,8 @@ public class Simulation {
    */
   private long time;
   
+  private Integrator integrator = Integrator.DEFAULT;
+  
   
   public Simulation(Potential potential) {
     this(potential, new Tetra());
@@ -46,6 +50,9 @@ public class Simulation {
     this(copy.potential.clone());
     this.craft.copyFrom(copy.craft);
     this.time = copy.time;
+    this.integrator = copy.integrator;
+    if (copy.craft.getLedger() != null)
+      this.craft.setLedger(new EnergyLedger(copy.craft.getLedger()));
   }
   
   
@@ -80,6 +87,23 @@ public class Simulation {
   
   
   
+  public Integrator getIntegrator() {
+    return integrator;
+  }
+  
+  
+  /**
+   * Sets the integration scheme used to animate the craft. Defaults to
+   * {@linkplain Integrator#DEFAULT}.
+   */
+  public void setIntegrator(Integrator integrator) {
+    if (integrator == null)
+      throw new IllegalArgumentException("null integrator");
+    this.integrator = integrator;
+  }
+  
+  
+  
   public Potential getPotential() {
     return potential;
   }
@@ -110,11 +134,41 @@ public class Simulation {
   }
   
   
+  /**
+   * Opens a new energy ledger on the craft at its current state, and returns it.
+   * From here on, the ledger tracks the work done by each tether and by gravity as
+   * the craft is animated.
+   * 
+   * @see Tetra#openLedger(Potential)
+   */
+  public EnergyLedger openLedger() {
+    return craft.openLedger(potential);
+  }
+  
+  
+  /**
+   * Returns the craft's energy ledger, or <tt>null</tt> if not
+   * {@linkplain #openLedger() open}ed.
+   */
+  public EnergyLedger getLedger() {
+    return craft.getLedger();
+  }
+  
+  
   
   public void animateMillis(long millis, double timeResolution) {
     double seconds = millis;
     seconds /= 1000;
-    craft.animate(potential, seconds, timeResolution);
+    craft.animate(potential, seconds, timeResolution, integrator);
+    time += millis;
+  }
+  
+  
+  /**
+   * Advances the clock without animating the craft. For {@linkplain CraftBatch}
+   * and subclasses (e.g. {@linkplain EnckeSimulation}) that animate the craft themselves.
+   */
+  void advanceTime(long millis) {
     time += millis;
   }
   
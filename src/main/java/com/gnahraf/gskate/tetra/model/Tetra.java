@@ -4,7 +4,10 @@
 package com.gnahraf.gskate.tetra.model;
 
 import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.EnergyLedger;
 import com.gnahraf.gskate.model.Potential;
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.Integrator;
 
 
 
@@ -22,6 +25,11 @@ public class Tetra {
    */
   private final double[] tethers = new double[6];
   
+  /**
+   * Posted to as the craft is animated, if not <tt>null</tt>.
+   */
+  private EnergyLedger ledger;
+  
   
   
   
@@ -143,6 +151,45 @@ public class Tetra {
   public double getEnergy(Potential potential) {
     return getPe(potential) + getKe();
   }
+  
+  
+  
+  /**
+   * Returns the energy ledger posted to as the craft is animated, or <tt>null</tt>
+   * if none.
+   */
+  public EnergyLedger getLedger() {
+    return ledger;
+  }
+  
+  
+  /**
+   * Sets the energy ledger. Work is posted to it whenever the craft is
+   * {@linkplain #kick(double) kick}ed or {@linkplain #animateDeltaT(double) animate}d
+   * by this instance. (An {@linkplain EnckeSimulation}, which doesn't animate the
+   * craft directly, posts to it itself; a {@linkplain CraftBatch} won't take a craft
+   * with a ledger.) The ledger is not carried over by {@linkplain #copyFrom(Tetra)}.
+   * 
+   * @param ledger with 6 tethers (indexed as here), or <tt>null</tt> for none
+   */
+  public void setLedger(EnergyLedger ledger) {
+    if (ledger != null && ledger.getTethers() != 6)
+      throw new IllegalArgumentException("ledger tethers " + ledger.getTethers());
+    this.ledger = ledger;
+  }
+  
+  
+  /**
+   * Sets and returns a new energy ledger opened at the craft's current state.
+   * 
+   * @see #setLedger(EnergyLedger)
+   */
+  public EnergyLedger openLedger(Potential potential) {
+    EnergyLedger ledger = new EnergyLedger(6);
+    ledger.open(getKe(), getCmKe(), getPe(potential));
+    this.ledger = ledger;
+    return ledger;
+  }
 
   
   
@@ -233,6 +280,19 @@ public class Tetra {
   
   
   
+  /**
+   * Updates the acceleration vectors of the 4 bobs reflecting only the craft's
+   * tether forces.
+   */
+  public void updateTetherForces() {
+    for (int i = 0; i < 4; ++i)
+      bobs[i].clearAcceleration();
+    for (int tether = 0; tether < 6; ++tether)
+      addTetherForces(tether);
+  }
+  
+  
+  
   /**
    * Clears the acceleration vectors of the 4 bobs. Note, you can do as you please with
    * the acceleration vectors. They are really temporary vectors; they don't encapsulate
@@ -263,11 +323,221 @@ public class Tetra {
   }
   
   
-  private void animateDeltaT(double seconds) {
+  /**
+   * Animates the craft using the given <tt>integrator</tt>. With the
+   * {@linkplain Integrator#DEFAULT default} integrator, this is the same as
+   * {@linkplain #animate(Potential, double, double)}. Otherwise, the <tt>potential</tt>
+   * is {@linkplain Potential#update(double) update}d as the bobs
+   * {@linkplain #drift(double) drift}, just before their forces are recomputed.
+   * (Since a potential's time can't go backward, the negative drifts of
+   * {@linkplain Integrator#YOSHIDA4} are deferred until the net time is positive.)
+   * <p/>
+   * With a {@linkplain Integrator#newRespa(int) multi-rate} integrator, <tt>timeFineness</tt>
+   * is the (slow) step at which gravity is evaluated; the tethers are sub-cycled
+   * within it.
+   */
+  public void animate(Potential potential, double seconds, double timeFineness, Integrator integrator) {
+    if (integrator == Integrator.DEFAULT) {
+      animate(potential, seconds, timeFineness);
+      return;
+    }
+    if (seconds < 0 || timeFineness <= 0)
+      throw new IllegalArgumentException(seconds + ", " + timeFineness);
+    
+    Integrator.Dynamics dynamics = new Integrator.MultiRateDynamics() {
+      
+      double pendingSeconds;
+      // gravitational accelerations (multi-rate only)
+      double[] slow;
+      DynaVector probe;
+      
+      @Override
+      public void updateForces() {
+        updatePotential();
+        Tetra.this.updateForces(potential);
+      }
+      
+      private void updatePotential() {
+        if (pendingSeconds > 0) {
+          potential.update(pendingSeconds);
+          pendingSeconds = 0;
+        }
+      }
+      @Override
+      public void updateFastForces() {
+        updateTetherForces();
+      }
+      @Override
+      public void updateSlowForces() {
+        updatePotential();
+        if (slow == null) {
+          slow = new double[12];
+          probe = new DynaVector();
+        }
+        for (int i = 0, j = 0; i < 4; ++i) {
+          probe.getPos().set(bobs[i].getPos());
+          probe.clearAcceleration();
+          potential.force(probe);
+          Vector acc = probe.getAcc();
+          slow[j++] = acc.getX();
+          slow[j++] = acc.getY();
+          slow[j++] = acc.getZ();
+        }
+      }
+      @Override
+      public void kickSlow(double dt) {
+        if (ledger != null)
+          postGravityWork(slow, dt);
+        for (int i = 0, j = 0; i < 4; ++i, j += 3)
+          bobs[i].getVel().add(slow[j] * dt, slow[j + 1] * dt, slow[j + 2] * dt);
+      }
+      @Override
+      public void kick(double dt) {
+        Tetra.this.kick(dt);
+      }
+      @Override
+      public void drift(double dt) {
+        Tetra.this.drift(dt);
+        pendingSeconds += dt;
+      }
+      @Override
+      public void animate(double dt) {
+        animateDeltaT(dt);
+      }
+    };
+    
+    long runs = (long) (seconds / timeFineness);
+    integrator.integrate(dynamics, timeFineness, runs);
+    seconds -= (runs * timeFineness);
+    if (seconds > 0)
+      integrator.integrate(dynamics, seconds, 1);
+  }
+  
+  
+  /**
+   * Advances the velocities of the 4 bobs by the given number of <tt>seconds</tt>
+   * using their current accelerations.
+   * 
+   * @see DynaVector#kick(double)
+   */
+  public void kick(double seconds) {
+    if (ledger != null)
+      postWork(seconds);
+    for (int i = 0; i < 4; ++i)
+      bobs[i].kick(seconds);
+  }
+  
+  
+  /**
+   * Advances the positions of the 4 bobs by the given number of <tt>seconds</tt>
+   * using their current velocities.
+   * 
+   * @see DynaVector#drift(double)
+   */
+  public void drift(double seconds) {
+    for (int i = 0; i < 4; ++i)
+      bobs[i].drift(seconds);
+  }
+  
+  
+  /**
+   * Advances the 4 bobs by the given number of <tt>seconds</tt> holding their
+   * accelerations constant. Usually invoked right after {@linkplain #updateForces(Potential)}.
+   */
+  public void animateDeltaT(double seconds) {
+    if (ledger != null)
+      postWork(seconds);
     for (int i = 0; i < 4; ++i)
       bobs[i].animate(seconds);
   }
   
+  
+  /**
+   * Posts the work the bobs' current accelerations are about to do over the next
+   * <tt>dt</tt> seconds. Whether kicked or animated, a bob's kinetic energy changes
+   * by its acceleration dotted with its mid-step velocity (times <tt>dt</tt>); the
+   * tethers' share is split out, and the rest is gravity's.
+   */
+  private void postWork(double dt) {
+    final double h = dt / 2;
+    
+    double tetherWork = 0;
+    for (int index = 0; index < 6; ++index) {
+      TetraEdge edge = TetraEdge.forIndex(index);
+      DynaVector a = bobs[edge.loBob];
+      DynaVector b = bobs[edge.hiBob];
+      double abx = b.getX() - a.getX();
+      double aby = b.getY() - a.getY();
+      double abz = b.getZ() - a.getZ();
+      // relative velocity at mid-step
+      double vx = b.getVx() - a.getVx() + (b.getAx() - a.getAx()) * h;
+      double vy = b.getVy() - a.getVy() + (b.getAy() - a.getAy()) * h;
+      double vz = b.getVz() - a.getVz() + (b.getAz() - a.getAz()) * h;
+      // repulsive (+) tethers do work as they lengthen
+      double work = tethers[index] * dt *
+          (abx * vx + aby * vy + abz * vz) / Math.sqrt(abx*abx + aby*aby + abz*abz);
+      ledger.addTetherWork(index, work);
+      tetherWork += work;
+    }
+    
+    double ke = 0;
+    double px, py, pz = py = px = 0;
+    double dpx, dpy, dpz = dpy = dpx = 0;
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = bobs[i];
+      double dvx = bob.getAx() * dt;
+      double dvy = bob.getAy() * dt;
+      double dvz = bob.getAz() * dt;
+      ke += dvx * (bob.getVx() + dvx / 2) + dvy * (bob.getVy() + dvy / 2) + dvz * (bob.getVz() + dvz / 2);
+      px += bob.getVx();
+      py += bob.getVy();
+      pz += bob.getVz();
+      dpx += dvx;
+      dpy += dvy;
+      dpz += dvz;
+    }
+    ledger.addGravityWork(ke - tetherWork);
+    postTranslationalWork(px, py, pz, dpx, dpy, dpz);
+  }
+  
+  
+  /**
+   * Posts the work of the given gravitational accelerations (laid out x, y, z by bob)
+   * over the next <tt>dt</tt> seconds.
+   */
+  private void postGravityWork(double[] acc, double dt) {
+    double ke = 0;
+    double px, py, pz = py = px = 0;
+    double dpx, dpy, dpz = dpy = dpx = 0;
+    for (int i = 0, j = 0; i < 4; ++i, j += 3) {
+      DynaVector bob = bobs[i];
+      double dvx = acc[j] * dt;
+      double dvy = acc[j + 1] * dt;
+      double dvz = acc[j + 2] * dt;
+      ke += dvx * (bob.getVx() + dvx / 2) + dvy * (bob.getVy() + dvy / 2) + dvz * (bob.getVz() + dvz / 2);
+      px += bob.getVx();
+      py += bob.getVy();
+      pz += bob.getVz();
+      dpx += dvx;
+      dpy += dvy;
+      dpz += dvz;
+    }
+    ledger.addGravityWork(ke);
+    postTranslationalWork(px, py, pz, dpx, dpy, dpz);
+  }
+  
+  
+  /**
+   * Posts the change in the center of mass's kinetic energy given the bobs'
+   * summed velocities <tt>p</tt> and their summed change <tt>dp</tt>.
+   */
+  private void postTranslationalWork(
+      double px, double py, double pz, double dpx, double dpy, double dpz) {
+    // (M = 4 kg)
+    ledger.addTranslationalWork(
+        (dpx * (px + dpx / 2) + dpy * (py + dpy / 2) + dpz * (pz + dpz / 2)) / 4);
+  }
+  
 
   
   private void addTetherForces(int tetherIndex) {
@@ -6,8 +6,6 @@ package com.gnahraf.gskate.tetra.model;
 
 import static com.gnahraf.util.list.DoubleArrayList.asList;
 
-import com.gnahraf.math.matrix.DetMatrix;
-
 /**
  * A tetrahedron specified by the lengths of its edges. So this description
  * is independent of the coordinate system, and does not specify location
@@ -21,7 +19,11 @@ public class TetraShape {
    */
   private final double[] lengths = new double[6];
   
-  private final DetMatrix cayleyMenger;
+  /**
+   * Cayley-Menger determinant of the {@linkplain #lengths}: 288 times the volume
+   * squared.
+   */
+  private double cayleyMenger;
 
   /**
    * 
@@ -29,60 +31,52 @@ public class TetraShape {
   public TetraShape() {
     for (int i = 6; i-- > 0; )
       lengths[i] = 1;
-    double[] array =
-      {
-        0, 1, 1, 1, 1,
-        1, 0, 1, 1, 1,
-        1, 1, 0, 1, 1,
-        1, 1, 1, 0, 1,
-        1, 1, 1, 1, 0,
-      };
-    this.cayleyMenger = new DetMatrix(array);
+    this.cayleyMenger = cayleyMenger(lengths);
   }
   
   
   
-  private void updateCaleyMenger(double[] edges) {
-
-//    {
-//      0, 1,    1,    1,    1,
-//      1, 0, d01s, d02s, d03s,
-//      1, .,    0, d12s, d13s,
-//      1, ., ., .,    0, d23s,
-//      1, ., ., .,    .,    0,
-//    }
-    
-    double dSq = length(edges, 0, 1);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 2, 1);
-    cayleyMenger.val(dSq, 1, 2);
-    
-    dSq = length(edges, 0, 2);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 3, 1);
-    cayleyMenger.val(dSq, 1, 3);
-    
-    dSq = length(edges, 0, 3);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 4, 1);
-    cayleyMenger.val(dSq, 1, 4);
-    
-    dSq = length(edges, 1, 2);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 3, 2);
-    cayleyMenger.val(dSq, 2, 3);
+  /**
+   * Returns the Cayley-Menger determinant of the given edge lengths, expanded in
+   * closed form (a few dozen flops, instead of a 5x5 determinant):
+   * <pre>
+   *   | 0  1      1      1      1      |
+   *   | 1  0      d01^2  d02^2  d03^2  |
+   *   | 1  d01^2  0      d12^2  d13^2  |
+   *   | 1  d02^2  d12^2  0      d23^2  |
+   *   | 1  d03^2  d13^2  d23^2  0      |
+   * </pre>
+   */
+  private double cayleyMenger(double[] edges) {
+    // squared lengths of opposite edges (a, A), (b, B), (c, C)
+    double a = length(edges, 0, 1);
+    double b = length(edges, 0, 2);
+    double c = length(edges, 0, 3);
+    double aa = length(edges, 2, 3);
+    double bb = length(edges, 1, 3);
+    double cc = length(edges, 1, 2);
+    a *= a;
+    b *= b;
+    c *= c;
+    aa *= aa;
+    bb *= bb;
+    cc *= cc;
     
-    dSq = length(edges, 1, 3);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 4, 2);
-    cayleyMenger.val(dSq, 2, 4);
+    double aSum = a + aa;
+    double bSum = b + bb;
+    double cSum = c + cc;
     
-    dSq = length(edges, 2, 3);
-    dSq *= dSq;
-    cayleyMenger.val(dSq, 4, 3);
-    cayleyMenger.val(dSq, 3, 4);
+    // 144 V^2 = aA(b + B + c + C - a - A) + .. (ditto for bB and cC)
+    //           - (one product for each face)
+    double det =
+        a * aa * (bSum + cSum - aSum) +
+        b * bb * (aSum + cSum - bSum) +
+        c * cc * (aSum + bSum - cSum) -
+        a * b * cc - a * c * bb - b * c * aa - aa * bb * cc;
+    return 2 * det;
   }
   
+  
   private double length(double[] edges, int bobA, int bobB) {
     return edges[TetraEdge.forBobs(bobA, bobB).index];
   }
@@ -111,6 +105,7 @@ public class TetraShape {
     validateLengths(edges, 0);
     for (int index = 6; index-- > 0; )
       lengths[index] = edges[index];
+    cayleyMenger = cayleyMenger(lengths);
   }
   
   
@@ -128,7 +123,7 @@ public class TetraShape {
       throw new IllegalArgumentException("equiLength " + equiLength);
     for (int index = 6; index-- > 0; )
       lengths[index] = equiLength;
-    updateCaleyMenger(lengths);
+    cayleyMenger = cayleyMenger(lengths);
   }
   
   
@@ -136,7 +131,7 @@ public class TetraShape {
   public void copyFrom(TetraShape other) {
     for (int index = 6; index-- > 0; )
       lengths[index] = other.lengths[index];
-    cayleyMenger.copyFrom(other.cayleyMenger);
+    cayleyMenger = other.cayleyMenger;
   }
   
   
@@ -174,12 +169,12 @@ public class TetraShape {
   
   
   public double getCayleyMengerDeterminant() {
-    return cayleyMenger.determinant();
+    return cayleyMenger;
   }
   
   
   public double getVolume() {
-    return Math.sqrt(cayleyMenger.determinant() / 288);
+    return Math.sqrt(cayleyMenger / 288);
   }
   
   
@@ -221,9 +216,8 @@ public class TetraShape {
   /**
    * Validates the given lengths indeed describe a possible tetrahedron. This is
    * called right before edge lengths are copied and
-   * involves checking that Cayley-Menger determinant is non-negative. On return,
-   * the CM matrix is already updated. If the method fails, the matrix is restored to
-   * its old state.
+   * involves checking that Cayley-Menger determinant is non-negative. The instance
+   * is not modified.
    * 
    * @param edges array of at least 6 doubles specifying the length
    * @param minEdgeLength the minimum edge length (exclusive). Each of the
@@ -242,12 +236,9 @@ public class TetraShape {
         throw new IllegalArgumentException(
             "edges[" + index + "] " + edges[index] + " < minEdgeLength " + minEdgeLength);
     
-    updateCaleyMenger(edges);
-    if (cayleyMenger.determinant() < 0) {
-      double det = cayleyMenger.determinant();
-      updateCaleyMenger(this.lengths);
-      throw new IllegalArgumentException("negative det " + det + " from " + asList(edges) + "\n" + cayleyMenger.toDebugString());
-    }
+    double det = cayleyMenger(edges);
+    if (det < 0)
+      throw new IllegalArgumentException("negative det " + det + " from " + asList(edges));
 
     // OLD CHECK FOR TRIANGLE INEQUALITY (NECESSARY, BUT NOT SUFFICIENT)
     // we validate the following triangle relation for each face..
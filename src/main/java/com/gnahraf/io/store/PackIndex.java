@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.io.store;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+import com.gnahraf.io.ClosingStack;
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.IoRuntimeException;
+
+/**
+ * The on-disk hash index of a {@linkplain PackObjectManager}: a memory-mapped
+ * open-addressing (linear probe) table from 16-byte hash to pack number, offset
+ * and length. The table is kept at most half full; when it would be more, it's
+ * rewritten at double the capacity and swapped in by rename.
+ *
+ * <h4>Format</h4>
+ * <pre>
+ *   header:  int magic, int capacity (slots), long count,
+ *            int checkpoint pack, int dirty, long checkpoint offset
+ *   slot:    byte[16] hash, int pack + 1 (zero if empty), int length, long offset
+ * </pre>
+ * The checkpoint is the position in the packs up to which every record is indexed.
+ * Records past the checkpoint (e.g. after a crash) are recovered by scanning.
+ * <p/>
+ * The table is written through memory, so after a power loss it may reference
+ * pack data that never made it to disk. The <em>dirty</em> flag is set while the
+ * index is open for writing, and cleared only after the packs are forced on
+ * closing; a dirty index can't be trusted, and is {@linkplain #clear() clear}ed
+ * and rebuilt.
+ */
+class PackIndex {
+
+  final static int HASH_SIZE = 16;
+
+  private final static int MAGIC = 0x504B4931;  // "PKI1"
+  private final static int HEADER_SIZE = 32;
+  private final static int SLOT_SIZE = 32;
+  private final static int MIN_CAPACITY = 1024;
+
+  private final static int CAPACITY_OFFSET = 4;
+  private final static int COUNT_OFFSET = 8;
+  private final static int CP_PACK_OFFSET = 16;
+  private final static int DIRTY_OFFSET = 20;
+  private final static int CP_OFFSET_OFFSET = 24;
+
+  private final static int PACK_SLOT_OFFSET = 16;
+  private final static int LENGTH_SLOT_OFFSET = 20;
+  private final static int OFFSET_SLOT_OFFSET = 24;
+
+
+  private final File file;
+
+  private MappedByteBuffer table;
+  private int capacity;
+  private long count;
+
+
+  /**
+   * Loads the index at the given <tt>file</tt>, creating an empty one if it
+   * doesn't exist.
+   */
+  PackIndex(File file) {
+    this.file = file;
+    if (file.exists()) {
+      table = map(file, file.length());
+      if (file.length() < HEADER_SIZE || table.getInt(0) != MAGIC)
+        throw new CorruptionException("bad header: " + file);
+      capacity = table.getInt(CAPACITY_OFFSET);
+      count = table.getLong(COUNT_OFFSET);
+      if (Integer.bitCount(capacity) != 1 ||
+          file.length() != HEADER_SIZE + (long) capacity * SLOT_SIZE ||
+          count < 0 || count > capacity / 2)
+        throw new CorruptionException("capacity " + capacity + "; count " + count + ": " + file);
+    } else {
+      capacity = MIN_CAPACITY;
+      table = newTable(file, capacity);
+    }
+  }
+
+
+  private static MappedByteBuffer newTable(File file, int capacity) {
+    MappedByteBuffer table = map(file, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+    table.putInt(0, MAGIC);
+    table.putInt(CAPACITY_OFFSET, capacity);
+    return table;
+  }
+
+
+  @SuppressWarnings("resource")
+  private static MappedByteBuffer map(File file, long length) {
+    try (ClosingStack resources = new ClosingStack()) {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      resources.push(raf);
+      return raf.getChannel().map(MapMode.READ_WRITE, 0, length);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on mapping " + file, iox);
+    }
+  }
+
+
+
+  long count() {
+    return count;
+  }
+
+
+  int getCheckpointPack() {
+    return table.getInt(CP_PACK_OFFSET);
+  }
+
+
+  long getCheckpointOffset() {
+    return table.getLong(CP_OFFSET_OFFSET);
+  }
+
+
+  void setCheckpoint(int pack, long offset) {
+    table.putInt(CP_PACK_OFFSET, pack);
+    table.putLong(CP_OFFSET_OFFSET, offset);
+  }
+
+
+  boolean isDirty() {
+    return table.getInt(DIRTY_OFFSET) != 0;
+  }
+
+
+  void setDirty(boolean dirty) {
+    table.putInt(DIRTY_OFFSET, dirty ? 1 : 0);
+  }
+
+
+  /**
+   * Removes all entries and resets the checkpoint to the beginning of the packs.
+   * The capacity is unchanged.
+   */
+  void clear() {
+    for (int slot = 0; slot < capacity; ++slot)
+      table.putInt(HEADER_SIZE + slot * SLOT_SIZE + PACK_SLOT_OFFSET, 0);
+    count = 0;
+    table.putLong(COUNT_OFFSET, 0);
+    setCheckpoint(0, 0);
+  }
+
+
+
+  /**
+   * Returns the slot position of the given <tt>hash</tt>, or the negative of
+   * the (empty) slot position where it would be inserted, minus one.
+   */
+  private int find(byte[] hash) {
+    ByteBuffer key = ByteBuffer.wrap(hash);
+    final long hi = key.getLong(0);
+    final long lo = key.getLong(8);
+    final int mask = capacity - 1;
+    for (int slot = (int) hi & mask; ; slot = (slot + 1) & mask) {
+      int pos = HEADER_SIZE + slot * SLOT_SIZE;
+      if (table.getInt(pos + PACK_SLOT_OFFSET) == 0)
+        return -pos - 1;
+      if (table.getLong(pos) == hi && table.getLong(pos + 8) == lo)
+        return pos;
+    }
+  }
+
+
+  /**
+   * Returns the slot position of the given <tt>hash</tt>, or -1 if not found.
+   */
+  int lookup(byte[] hash) {
+    int pos = find(hash);
+    return pos < 0 ? -1 : pos;
+  }
+
+
+  int pack(int pos) {
+    return table.getInt(pos + PACK_SLOT_OFFSET) - 1;
+  }
+
+
+  int length(int pos) {
+    return table.getInt(pos + LENGTH_SLOT_OFFSET);
+  }
+
+
+  long offset(int pos) {
+    return table.getLong(pos + OFFSET_SLOT_OFFSET);
+  }
+
+
+  /**
+   * Adds an entry, unless the hash is already indexed.
+   *
+   * @return <tt>true</tt> if added
+   */
+  boolean add(byte[] hash, int pack, int length, long offset) {
+    if (find(hash) >= 0)
+      return false;
+    if (count + 1 > capacity / 2)
+      grow();
+    int pos = -find(hash) - 1;
+    put(table, pos, hash, pack, length, offset);
+    table.putLong(COUNT_OFFSET, ++count);
+    return true;
+  }
+
+
+  private static void put(ByteBuffer table, int pos, byte[] hash, int pack, int length, long offset) {
+    for (int index = 0; index < HASH_SIZE; ++index)
+      table.put(pos + index, hash[index]);
+    table.putInt(pos + LENGTH_SLOT_OFFSET, length);
+    table.putLong(pos + OFFSET_SLOT_OFFSET, offset);
+    table.putInt(pos + PACK_SLOT_OFFSET, pack + 1);
+  }
+
+
+  private void grow() {
+    if (capacity > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE / 2)
+      throw new IllegalStateException("index full: " + count);
+    final int newCapacity = capacity * 2;
+    final int mask = newCapacity - 1;
+    File tmp = new File(file.getPath() + ".tmp");
+    if (tmp.exists() && !tmp.delete())
+      throw new IoRuntimeException("failed to delete " + tmp);
+
+    MappedByteBuffer newTable = newTable(tmp, newCapacity);
+    byte[] hash = new byte[HASH_SIZE];
+    for (int slot = 0; slot < capacity; ++slot) {
+      int pos = HEADER_SIZE + slot * SLOT_SIZE;
+      if (table.getInt(pos + PACK_SLOT_OFFSET) == 0)
+        continue;
+      long hi = table.getLong(pos);
+      int newSlot = (int) hi & mask;
+      while (newTable.getInt(HEADER_SIZE + newSlot * SLOT_SIZE + PACK_SLOT_OFFSET) != 0)
+        newSlot = (newSlot + 1) & mask;
+      getHash(pos, hash);
+      put(newTable, HEADER_SIZE + newSlot * SLOT_SIZE,
+          hash, pack(pos), length(pos), offset(pos));
+    }
+    newTable.putLong(COUNT_OFFSET, count);
+    newTable.putInt(CP_PACK_OFFSET, getCheckpointPack());
+    newTable.putLong(CP_OFFSET_OFFSET, getCheckpointOffset());
+    newTable.putInt(DIRTY_OFFSET, table.getInt(DIRTY_OFFSET));
+    newTable.force();
+
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on replacing " + file, iox);
+    }
+    table = newTable;
+    capacity = newCapacity;
+  }
+
+
+  /**
+   * Copies the hash at the given slot position into <tt>out</tt>.
+   */
+  private void getHash(int pos, byte[] out) {
+    for (int index = 0; index < HASH_SIZE; ++index)
+      out[index] = table.get(pos + index);
+  }
+
+
+  /**
+   * Visits the indexed hashes in table order.
+   */
+  void forEachHash(Consumer<byte[]> action) {
+    for (int slot = 0; slot < capacity; ++slot) {
+      int pos = HEADER_SIZE + slot * SLOT_SIZE;
+      if (table.getInt(pos + PACK_SLOT_OFFSET) != 0) {
+        byte[] hash = new byte[HASH_SIZE];
+        getHash(pos, hash);
+        action.accept(hash);
+      }
+    }
+  }
+
+
+  void force() {
+    table.force();
+  }
+
+}
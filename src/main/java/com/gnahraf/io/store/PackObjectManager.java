@@ -0,0 +1,478 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.io.store;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.xml.bind.DatatypeConverter;
+
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.IoRuntimeException;
+import com.gnahraf.xcept.NotFoundException;
+
+/**
+ * A log-structured, binary encoded object manager. Instead of a file per object
+ * (as in {@linkplain BinaryObjectManager}), objects are appended to a few large
+ * <em>pack</em> files and located through an on-disk hash index. The IDs are the
+ * same as {@linkplain HashedObjectManager}'s (the MD5 hash of the object's encoding,
+ * in hex), so the 2 are interchangeable (see {@linkplain #migrate(ObjectManager)}).
+ *
+ * <h4>Pack Format</h4>
+ * A pack is a sequence of records of the form
+ * <pre>
+ *   byte[16] hash, int length, byte[length] contents
+ * </pre>
+ * Records are never updated in place. Since every record carries its own hash,
+ * the index can always be rebuilt from the packs: on loading, any records past
+ * the index's checkpoint are indexed, and a torn record at the end of the last
+ * pack is truncated. If the store wasn't {@linkplain #close() close}d (a crash,
+ * or power loss), the index may be ahead of what made it to disk in the packs, so
+ * it's rebuilt from scratch.
+ * <p/>
+ * A store may only be opened by one instance at a time (enforced with a file
+ * lock, so across processes too). Methods are synchronized.
+ */
+public class PackObjectManager<T> extends ObjectManager<T> implements Closeable {
+
+  public final static String INDEX_FILE = "pack.idx";
+  public final static String LOCK_FILE = "pack.lock";
+  public final static String PACK_PREFIX = "pack-";
+  public final static String PACK_EXT = ".dat";
+
+  /**
+   * Default maximum pack file size (64MB). The last record in a pack may
+   * overrun it.
+   */
+  public final static long DEFAULT_MAX_PACK_SIZE = 64 * 1024 * 1024;
+
+  private final static int RECORD_HEADER_SIZE = PackIndex.HASH_SIZE + 4;
+
+
+  /**
+   * Determines whether the given directory contains a pack store. Since the index
+   * can be rebuilt, the packs (or the lock file) alone are enough.
+   */
+  public static boolean isPack(File dir) {
+    if (new File(dir, INDEX_FILE).isFile() || new File(dir, LOCK_FILE).isFile())
+      return true;
+    String[] packs = dir.list((d, name) -> name.startsWith(PACK_PREFIX) && name.endsWith(PACK_EXT));
+    return packs != null && packs.length > 0;
+  }
+
+
+
+  private final File dir;
+  private final Codec<T> codec;
+  private final long maxPackSize;
+
+  private final List<FileChannel> packs = new ArrayList<>();
+  private final PackIndex index;
+  private FileChannel lockChannel;
+
+  // the records' headers are written from here (recycling ok since synchronized)
+  private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+  private boolean closed;
+
+
+  /**
+   * Creates an instance with the {@linkplain #DEFAULT_MAX_PACK_SIZE default} maximum
+   * pack size.
+   *
+   * @see #PackObjectManager(File, Codec, long)
+   */
+  public PackObjectManager(File dir, Codec<T> codec) {
+    this(dir, codec, DEFAULT_MAX_PACK_SIZE);
+  }
+
+
+  /**
+   * Creates an instance, loading an existing pack store in the given <tt>dir</tt>,
+   * if any. If <tt>dir</tt> does not exist, it is created.
+   *
+   * @param maxPackSize  the size in bytes at which a new pack file is started
+   *
+   * @throws IllegalStateException if the store is already open (in this, or another process)
+   */
+  public PackObjectManager(File dir, Codec<T> codec, long maxPackSize) {
+    this.dir = dir;
+    this.codec = codec;
+    this.maxPackSize = maxPackSize;
+
+    if (dir == null)
+      throw new IllegalArgumentException("null dir");
+    if (codec == null)
+      throw new IllegalArgumentException("null codec");
+    if (maxPackSize < RECORD_HEADER_SIZE)
+      throw new IllegalArgumentException("maxPackSize " + maxPackSize);
+    if (!dir.isDirectory()) {
+      if (dir.exists())
+        throw new IllegalArgumentException("not a directory: " + dir);
+      if (!dir.mkdirs() && !dir.isDirectory())
+        throw new IllegalArgumentException("failed to create directory " + dir);
+    }
+
+    try {
+      lockChannel = new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+      FileLock lock;
+      try {
+        lock = lockChannel.tryLock();
+      } catch (OverlappingFileLockException olfx) {
+        lock = null;
+      }
+      if (lock == null) {
+        closeQuietly();
+        throw new IllegalStateException("already open: " + dir);
+      }
+      for (int pack = 0; ; ++pack) {
+        File file = packFile(pack);
+        if (!file.isFile())
+          break;
+        packs.add(new RandomAccessFile(file, "rw").getChannel());
+      }
+    } catch (IOException iox) {
+      closeQuietly();
+      throw new IoRuntimeException("on opening packs in " + dir, iox);
+    }
+
+    try {
+      this.index = new PackIndex(new File(dir, INDEX_FILE));
+      // not closed the last time? then the index may reference data lost in the packs
+      if (index.isDirty())
+        index.clear();
+      recover();
+      index.setDirty(true);
+      index.force();
+    } catch (IOException iox) {
+      closeQuietly();
+      throw new IoRuntimeException("on recovering " + dir, iox);
+    } catch (RuntimeException rx) {
+      closeQuietly();
+      throw rx;
+    }
+  }
+
+
+  private File packFile(int pack) {
+    return new File(dir, PACK_PREFIX + String.format("%05d", pack) + PACK_EXT);
+  }
+
+
+  /**
+   * Indexes the records past the index's checkpoint.
+   */
+  private void recover() throws IOException {
+    int pack = index.getCheckpointPack();
+    long offset = index.getCheckpointOffset();
+    if (packs.isEmpty()) {
+      if (pack != 0 || offset != 0)
+        throw new CorruptionException("missing packs in " + dir);
+      return;
+    }
+    if (pack >= packs.size() || offset > packs.get(pack).size())
+      throw new CorruptionException(
+          "index checkpoint (" + pack + ", " + offset + ") past end of packs in " + dir);
+
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    byte[] hash = new byte[PackIndex.HASH_SIZE];
+    for (; pack < packs.size(); ++pack, offset = 0) {
+      FileChannel channel = packs.get(pack);
+      final long size = channel.size();
+      while (offset < size) {
+        header.clear();
+        boolean torn = offset + RECORD_HEADER_SIZE > size;
+        int length = 0;
+        if (!torn) {
+          readFully(channel, header, offset);
+          header.flip();
+          header.get(hash);
+          length = header.getInt();
+          torn = length < 0 || offset + RECORD_HEADER_SIZE + length > size;
+        }
+        if (torn) {
+          if (pack != packs.size() - 1)
+            throw new CorruptionException("torn record at " + offset + " in " + packFile(pack));
+          // a write that didn't complete
+          channel.truncate(offset);
+          break;
+        }
+        index.add(hash, pack, length, offset);
+        offset += RECORD_HEADER_SIZE + length;
+      }
+    }
+    pack = packs.size() - 1;
+    index.setCheckpoint(pack, packs.get(pack).size());
+  }
+
+
+
+  public File getDir() {
+    return dir;
+  }
+
+
+  /**
+   * Returns the number of objects stored.
+   */
+  public synchronized long size() {
+    return index.count();
+  }
+
+
+
+  @Override
+  public synchronized String write(T object) throws IoRuntimeException {
+    checkOpen();
+    ByteBuffer buffer = encode(object);
+    byte[] hash = hash(buffer);
+
+    int pos = index.lookup(hash);
+    if (pos >= 0) {
+      ByteBuffer contents = readContents(pos);
+      if (!contents.equals(buffer))
+        throw new CorruptionException(DatatypeConverter.printHexBinary(hash) + " in " + dir);
+    } else
+      append(hash, buffer);
+
+    return DatatypeConverter.printHexBinary(hash);
+  }
+
+
+  private void append(byte[] hash, ByteBuffer buffer) {
+    try {
+      int pack = packs.size() - 1;
+      if (pack == -1 || packs.get(pack).size() >= maxPackSize) {
+        ++pack;
+        packs.add(new RandomAccessFile(packFile(pack), "rw").getChannel());
+      }
+      FileChannel channel = packs.get(pack);
+      long offset = channel.size();
+      int length = buffer.remaining();
+
+      header.clear();
+      header.put(hash).putInt(length).flip();
+      long position = offset;
+      buffer.mark();
+      try {
+        while (header.hasRemaining())
+          position += channel.write(header, position);
+        while (buffer.hasRemaining())
+          position += channel.write(buffer, position);
+      } catch (IOException iox) {
+        // don't leave a partial record for the next append to write past
+        try {
+          channel.truncate(offset);
+        } catch (IOException tx) {
+          iox.addSuppressed(tx);
+        }
+        throw iox;
+      } finally {
+        buffer.reset();
+      }
+
+      index.add(hash, pack, length, offset);
+      index.setCheckpoint(pack, position);
+
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on writing to " + dir, iox);
+    }
+  }
+
+
+  @Override
+  public String getId(T object) {
+    return DatatypeConverter.printHexBinary(hash(encode(object)));
+  }
+
+
+  @Override
+  public synchronized boolean containsId(String id) {
+    checkOpen();
+    byte[] hash = parseId(id);
+    return hash != null && index.lookup(hash) >= 0;
+  }
+
+
+  @Override
+  public synchronized T read(String id) throws NotFoundException, IoRuntimeException {
+    checkOpen();
+    byte[] hash = parseId(id);
+    int pos = hash == null ? -1 : index.lookup(hash);
+    if (pos < 0)
+      throw new NotFoundException(id);
+    return codec.read(readContents(pos));
+  }
+
+
+  /**
+   * Streams the IDs in no particular order. The stream is over a snapshot.
+   */
+  @Override
+  public synchronized Stream<String> streamIds() {
+    checkOpen();
+    List<String> ids = new ArrayList<>((int) index.count());
+    index.forEachHash(hash -> ids.add(DatatypeConverter.printHexBinary(hash)));
+    return ids.stream();
+  }
+
+
+
+  /**
+   * Copies the objects in the given <tt>source</tt> manager not already in
+   * this instance.
+   *
+   * @return the number of objects copied
+   */
+  public long migrate(ObjectManager<T> source) throws IoRuntimeException {
+    long[] count = new long[1];
+    source.streamIds().forEach(id -> {
+      if (!containsId(id)) {
+        String newId = write(source.read(id));
+        if (!newId.equals(id))
+          throw new CorruptionException("ID mismatch " + id + " -> " + newId);
+        ++count[0];
+      }
+    });
+    return count[0];
+  }
+
+
+
+  /**
+   * Flushes the packs and the index to disk.
+   */
+  public synchronized void flush() throws IoRuntimeException {
+    checkOpen();
+    try {
+      for (FileChannel pack : packs)
+        pack.force(false);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on flushing " + dir, iox);
+    }
+    index.force();
+  }
+
+
+  /**
+   * Flushes and closes the pack files, marks the index clean, and releases the
+   * store's lock. Idempotent.
+   */
+  @Override
+  public synchronized void close() throws IoRuntimeException {
+    if (closed)
+      return;
+    flush();
+    index.setDirty(false);
+    index.force();
+    closed = true;
+    closeQuietly();
+  }
+
+
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+
+  private void closeQuietly() {
+    for (FileChannel pack : packs) {
+      try {
+        pack.close();
+      } catch (IOException ignore) {  }
+    }
+    packs.clear();
+    if (lockChannel != null) {
+      // releases the lock
+      try {
+        lockChannel.close();
+      } catch (IOException ignore) {  }
+      lockChannel = null;
+    }
+  }
+
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("closed " + dir);
+  }
+
+
+
+  private ByteBuffer encode(T object) {
+    ByteBuffer buffer = ByteBuffer.allocate(codec.maxBytes());
+    codec.write(object, buffer);
+    buffer.flip();
+    return buffer;
+  }
+
+
+  private ByteBuffer readContents(int pos) throws IoRuntimeException {
+    int pack = index.pack(pos);
+    int length = index.length(pos);
+    long offset = index.offset(pos) + RECORD_HEADER_SIZE;
+    if (pack >= packs.size())
+      throw new CorruptionException("pack " + pack + " in " + dir);
+    ByteBuffer contents = ByteBuffer.allocate(length);
+    try {
+      readFully(packs.get(pack), contents, offset);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on reading " + packFile(pack), iox);
+    }
+    contents.flip();
+    return contents;
+  }
+
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int bytes = channel.read(buffer, position);
+      if (bytes == -1)
+        throw new CorruptionException("unexpected EOF at " + position);
+      position += bytes;
+    }
+  }
+
+
+  /**
+   * Returns the MD5 hash of the given buffer's remaining contents. The state of
+   * the buffer is not modified.
+   *
+   * @see HashedObjectManager#signature(ByteBuffer)
+   */
+  private static byte[] hash(ByteBuffer buffer) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new RuntimeException(nsax);
+    }
+    digest.update(buffer.duplicate());
+    return digest.digest();
+  }
+
+
+  private static byte[] parseId(String id) {
+    if (id == null || id.length() != 2 * PackIndex.HASH_SIZE)
+      return null;
+    try {
+      return DatatypeConverter.parseHexBinary(id);
+    } catch (IllegalArgumentException iax) {
+      return null;
+    }
+  }
+
+}
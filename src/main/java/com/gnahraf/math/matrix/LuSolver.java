@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.math.matrix;
+
+/**
+ * LU decomposition, with partial pivoting, of a square matrix laid out in a flat
+ * <tt>double</tt> array row by row (as in {@linkplain ArrayMatrix}). Instances are
+ * sized once and reused: neither {@linkplain #factor(double[])} nor
+ * {@linkplain #solve(double[])} allocate. The cost of a factorization is about
+ * <tt>n<sup>3</sup>/3</tt> multiply-adds; of a solve, <tt>n<sup>2</sup></tt>.
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class LuSolver {
+
+  private final int n;
+  /**
+   * The factors, row by row: <tt>U</tt> on and above the diagonal; <tt>L</tt>
+   * (whose diagonal is all ones) below.
+   */
+  private final double[] lu;
+  /**
+   * Row permutation: row <tt>i</tt> of the factors is row <tt>pivot[i]</tt> of
+   * the original.
+   */
+  private final int[] pivot;
+  // work vector recycling ok since single threaded
+  private final double[] work;
+  private boolean factored;
+  private boolean singular;
+  /**
+   * Whether the row permutation is odd.
+   */
+  private boolean oddPermutation;
+
+
+  /**
+   * @param n the matrix dimension (&ge; 1)
+   */
+  public LuSolver(int n) {
+    if (n < 1)
+      throw new IllegalArgumentException("n " + n);
+    this.n = n;
+    this.lu = new double[n * n];
+    this.pivot = new int[n];
+    this.work = new double[n];
+  }
+
+
+  public int getDimension() {
+    return n;
+  }
+
+
+  /**
+   * Factors the given <tt>n</tt> by <tt>n</tt> matrix (unmodified).
+   *
+   * @return <tt>false</tt> if the matrix is singular (in which case it can't be
+   *         {@linkplain #solve(double[]) solve}d)
+   */
+  public boolean factor(double[] matrix) {
+    final int n = this.n;
+    final double[] lu = this.lu;
+    if (matrix.length < n * n)
+      throw new IllegalArgumentException("matrix length " + matrix.length);
+    System.arraycopy(matrix, 0, lu, 0, n * n);
+    for (int i = 0; i < n; ++i)
+      pivot[i] = i;
+    singular = false;
+    oddPermutation = false;
+    factored = true;
+
+    for (int k = 0; k < n; ++k) {
+      // pick the largest pivot in column k
+      int p = k;
+      double max = Math.abs(lu[k * n + k]);
+      for (int i = k + 1; i < n; ++i) {
+        double abs = Math.abs(lu[i * n + k]);
+        if (abs > max) {
+          max = abs;
+          p = i;
+        }
+      }
+      if (max == 0) {
+        singular = true;
+        return false;
+      }
+      if (p != k) {
+        for (int j = 0, a = k * n, b = p * n; j < n; ++j, ++a, ++b) {
+          double tmp = lu[a];
+          lu[a] = lu[b];
+          lu[b] = tmp;
+        }
+        int tmp = pivot[k];
+        pivot[k] = pivot[p];
+        pivot[p] = tmp;
+        oddPermutation = !oddPermutation;
+      }
+
+      // eliminate below the pivot
+      final double diag = lu[k * n + k];
+      for (int i = k + 1; i < n; ++i) {
+        final int row = i * n;
+        double factor = lu[row + k] / diag;
+        lu[row + k] = factor;
+        if (factor == 0)
+          continue;
+        for (int j = k + 1, kj = k * n + k + 1; j < n; ++j, ++kj)
+          lu[row + j] -= factor * lu[kj];
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Solves the last {@linkplain #factor(double[]) factor}ed system in place:
+   * on return, <tt>b</tt> holds <tt>x</tt> such that <tt>A x = b</tt>.
+   *
+   * @param b the right hand side (length <tt>n</tt>, at least), overwritten
+   *          with the solution
+   *
+   * @throws IllegalStateException if not factored, or singular
+   */
+  public void solve(double[] b) throws IllegalStateException {
+    checkSolvable();
+    final int n = this.n;
+    final double[] lu = this.lu;
+    final double[] work = this.work;
+
+    // permute, and forward substitute L y = P b
+    for (int i = 0; i < n; ++i) {
+      double sum = b[pivot[i]];
+      for (int j = 0, ij = i * n; j < i; ++j, ++ij)
+        sum -= lu[ij] * work[j];
+      work[i] = sum;
+    }
+    // back substitute U x = y
+    for (int i = n; i-- > 0; ) {
+      double sum = work[i];
+      for (int j = i + 1, ij = i * n + i + 1; j < n; ++j, ++ij)
+        sum -= lu[ij] * b[j];
+      b[i] = sum / lu[i * n + i];
+    }
+  }
+
+
+  /**
+   * Returns the determinant of the last {@linkplain #factor(double[]) factor}ed
+   * matrix: the product of the pivots, signed by the row permutation's parity.
+   * 
+   * @return zero, if singular
+   * 
+   * @throws IllegalStateException if not factored
+   */
+  public double determinant() throws IllegalStateException {
+    if (!factored)
+      throw new IllegalStateException("not factored");
+    if (singular)
+      return 0;
+    double det = oddPermutation ? -1 : 1;
+    for (int i = 0; i < n; ++i)
+      det *= lu[i * n + i];
+    return det;
+  }
+
+
+  private void checkSolvable() {
+    if (!factored)
+      throw new IllegalStateException("not factored");
+    if (singular)
+      throw new IllegalStateException("singular");
+  }
+
+}
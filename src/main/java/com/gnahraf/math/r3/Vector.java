@@ -79,7 +79,7 @@ public class Vector extends Matrix {
   }
   
   public double diffMagnitude(double u, double v, double w) {
-    return Math.sqrt( diffMagnitude(u, v, w) );
+    return Math.sqrt( diffMagnitudeSq(u, v, w) );
   }
   
   
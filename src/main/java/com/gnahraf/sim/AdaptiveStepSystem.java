@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * A {@linkplain TwoStepSystem} that, once given a positive {@linkplain #setTolerance(double)
+ * tolerance}, chooses its own step sizes. Each step is taken twice: once as a
+ * whole step, and again as 2 half steps (step doubling). The difference between
+ * the 2 results estimates the local truncation error; if it's within tolerance
+ * the half-step result is kept (after being improved by extrapolation), otherwise
+ * the step is retried at a smaller size. Either way, the next step size is scaled
+ * to the error.
+ * <p/>
+ * The <tt>steps</tt> argument to {@linkplain #tick(double, long)} is then only
+ * used as a first guess for the step size. The <tt>time</tt> argument, on the
+ * other hand, is honored exactly: the last step is clipped to land on it. Since
+ * the {@linkplain SimEngine} never ticks past its next checkpoint, steps never
+ * straddle a checkpoint.
+ * <p/>
+ * If the error estimate isn't finite (the state has diverged), the tick fails
+ * with an <tt>IllegalStateException</tt>.
+ * <p/>
+ * With a non-positive tolerance (the default) this behaves exactly as the base class.
+ * <p/>
+ * Since its state is accessible, it's also {@linkplain Restorable}.
+ */
+public abstract class AdaptiveStepSystem extends TwoStepSystem implements Restorable {
+
+  private final static double SAFETY = 0.9;
+  private final static double MIN_SCALE = 0.2;
+  private final static double MAX_SCALE = 5;
+
+
+  private double tolerance;
+  private double minStep;
+  private double maxStep = Double.MAX_VALUE;
+
+  /**
+   * The next step size. Zero means unknown.
+   */
+  private double step;
+
+  private long acceptedSteps;
+  private long rejectedSteps;
+
+  private double[] start;
+  private double[] whole;
+  private double[] halves;
+
+
+
+
+  @Override
+  protected void tickImpl(double time, long steps) {
+    if (tolerance <= 0) {
+      super.tickImpl(time, steps);
+      return;
+    }
+
+    if (start == null) {
+      int length = stateLength();
+      if (length <= 0 || length % 6 != 0)
+        throw new IllegalStateException("stateLength " + length);
+      start = new double[length];
+      whole = new double[length];
+      halves = new double[length];
+    }
+
+    double h = step == 0 ? time / steps : step;
+    double elapsed = 0;
+
+    while (elapsed < time) {
+      h = Math.max(minStep, Math.min(maxStep, h));
+
+      double remaining = time - elapsed;
+      boolean clipped = h >= remaining;
+      double dt = clipped ? remaining : h;
+
+      getState(start);
+
+      integrate(dt, 1);
+      getState(whole);
+
+      setState(start);
+      integrate(dt / 2, 2);
+      getState(halves);
+
+      double error = errorRatio(whole, halves);
+      // a diverged state would otherwise poison the step size (NaN) and never
+      // be accepted
+      if (!Double.isFinite(error))
+        throw new IllegalStateException("error ratio " + error + " at " + elapsed + " of " + time);
+
+      // the local error of the halves scales as dt to the (order + 1)
+      double scale =
+          error == 0 ? MAX_SCALE : SAFETY * Math.pow(error, -1.0 / (getIntegrator().getOrder() + 1));
+      scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+
+      if (error <= 1 || dt <= minStep) {
+        ++acceptedSteps;
+        extrapolate(whole, halves);
+        setState(halves);
+        elapsed = clipped ? time : elapsed + dt;
+        // don't let a clipped step shrink the step size
+        if (!clipped || scale < 1)
+          h = dt * scale;
+      } else {
+        ++rejectedSteps;
+        setState(start);
+        h = dt * scale;
+      }
+    }
+
+    step = h;
+  }
+
+
+  /**
+   * Improves the 2 half-step result using the whole-step result (local Richardson
+   * extrapolation). For an integrator of order <i>p</i>, the halves' local error is
+   * about 1 / (2<sup><small>p</small></sup> - 1) times their difference from the whole
+   * step.
+   * <p/>
+   * The {@linkplain Integrator#DEFAULT default} scheme is lopsided, however. Expanding
+   * a step of {@linkplain TwoStepSystem#animate(double) animate} in Taylor series, the
+   * leading error terms (in the time derivative of acceleration, <i>j</i>) are
+   * <pre>
+   *             position        velocity
+   *   whole    -(8/48) j h^3   -(1/2) j h^2
+   *   halves   -(5/48) j h^3   -(1/4) j h^2
+   * </pre>
+   * from which the corrections below follow. Either way, the corrected step's local
+   * error is one order higher in both position and velocity.
+   */
+  private void extrapolate(double[] whole, double[] halves) {
+    Integrator integrator = getIntegrator();
+    if (integrator != Integrator.DEFAULT) {
+      double factor = 1.0 / ((1 << integrator.getOrder()) - 1);
+      for (int index = halves.length; index-- > 0; )
+        halves[index] += (halves[index] - whole[index]) * factor;
+      return;
+    }
+    for (int index = 0; index < halves.length; ) {
+      for (int end = index + 3; index < end; ++index)
+        halves[index] += (halves[index] - whole[index]) * 5 / 3;
+      for (int end = index + 3; index < end; ++index)
+        halves[index] += halves[index] - whole[index];
+    }
+  }
+
+
+  /**
+   * Returns the ratio of the estimated local error to the tolerance. A value
+   * no greater than 1 means the step is accepted. The base implementation
+   * returns the maximum absolute difference across the state components,
+   * divided by the tolerance (NaN, if any component is).
+   *
+   * @param whole   the state after a whole step
+   * @param halves  the state after 2 half steps
+   */
+  protected double errorRatio(double[] whole, double[] halves) {
+    double max = 0;
+    for (int index = whole.length; index-- > 0; ) {
+      double diff = Math.abs(whole[index] - halves[index]);
+      if (diff > max)
+        max = diff;
+      else if (Double.isNaN(diff))
+        return Double.NaN;
+    }
+    return max / tolerance;
+  }
+
+
+  @Override
+  public final int getStateLength() {
+    return stateLength();
+  }
+
+
+  @Override
+  public final void saveState(double[] state) {
+    getState(state);
+  }
+
+
+  @Override
+  public final void restoreState(double[] state) {
+    setState(state);
+  }
+
+
+  /**
+   * Returns the length of the state array (a multiple of 6). Only invoked in
+   * adaptive mode, or if {@linkplain Restorable restored}.
+   */
+  protected abstract int stateLength();
+
+  /**
+   * Copies the dynamic state to the given array. The state is laid out in blocks of
+   * 6: a position (<tt>x, y, z</tt>) followed by its velocity (<tt>vx, vy, vz</tt>).
+   */
+  protected abstract void getState(double[] state);
+
+  /**
+   * Sets the dynamic state (positions and velocities) from the given array.
+   * Accelerations need not be restored: {@linkplain #updateForces()} is always
+   * invoked before the next {@linkplain #animate(double)}.
+   */
+  protected abstract void setState(double[] state);
+
+
+
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+
+  /**
+   * Sets the error tolerance per step. Non-positive means fixed step mode
+   * (the default).
+   *
+   * @see #errorRatio(double[], double[])
+   */
+  public void setTolerance(double tolerance) {
+    this.tolerance = tolerance;
+  }
+
+
+  public double getMinStep() {
+    return minStep;
+  }
+
+
+  /**
+   * Sets the minimum step size in seconds. Steps this small are always
+   * accepted, whatever their error. Defaults to zero.
+   */
+  public void setMinStep(double minStep) {
+    if (minStep < 0 || minStep > maxStep)
+      throw new IllegalArgumentException("minStep " + minStep);
+    this.minStep = minStep;
+  }
+
+
+  public double getMaxStep() {
+    return maxStep;
+  }
+
+
+  /**
+   * Sets the maximum step size in seconds. Defaults to {@linkplain Double#MAX_VALUE}.
+   */
+  public void setMaxStep(double maxStep) {
+    if (maxStep <= 0 || maxStep < minStep)
+      throw new IllegalArgumentException("maxStep " + maxStep);
+    this.maxStep = maxStep;
+    if (step > maxStep)
+      step = maxStep;
+  }
+
+
+  /**
+   * Returns the size of the next step (in adaptive mode), or zero if not yet known.
+   */
+  public double getStep() {
+    return step;
+  }
+
+
+  public long getAcceptedSteps() {
+    return acceptedSteps;
+  }
+
+
+  public long getRejectedSteps() {
+    return rejectedSteps;
+  }
+
+}
@@ -4,13 +4,21 @@
 package com.gnahraf.sim;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
 import com.gnahraf.xcept.NotFoundException;
 
 /**
- *
+ * Checkpoint schedules ordered by tick, and then by descending priority.
+ * The schedules are kept in a binary heap (each schedule knows its index
+ * in the heap), and are looked up by checkpoint in a hash map. So
+ * scheduling, rescheduling and removing are O(log n); lookups are O(1).
+ * <p/>
+ * Checkpoints are keyed by equality, not identity: an equal checkpoint
+ * instance finds the same schedule.
  */
 public class CheckpointStack {
   
@@ -23,9 +31,9 @@ public class CheckpointStack {
     private long periodTicks;
     private int priority;
     /**
-     * Singly linked.
+     * Index in the heap; -1 if not in the heap.
      */
-    private Schedule next;
+    private int index = -1;
     
     Schedule(Checkpoint checkpoint) {
       this.checkpoint = checkpoint;
@@ -58,16 +66,18 @@ public class CheckpointStack {
   
   
   private final HashSet<Integer> prioritySet = new HashSet<>();
+  private final HashMap<Checkpoint, Schedule> schedules = new HashMap<>();
+  /**
+   * The schedule whose checkpoint is being checked, if any.
+   */
+  private Schedule firing;
   private long lastTickSeen = -1;
   
+  private SimMetrics metrics;
   
-  private Schedule head;
   
-  
-  public CheckpointStack() {
-    head = new Schedule(Checkpoint.NULL);
-    head.tick = Long.MAX_VALUE;
-  }
+  private Schedule[] heap = new Schedule[16];
+  private int size;
   
   
   
@@ -75,13 +85,25 @@ public class CheckpointStack {
 
   
   
+  /**
+   * Sets the metrics checkpoint firings are counted in; <tt>null</tt> for none.
+   */
+  void setMetrics(SimMetrics metrics) {
+    this.metrics = metrics;
+  }
+  
+  
   public boolean isEmpty() {
-    return head.next == null;
+    return size == 0;
   }
   
   
+  /**
+   * Returns the tick of the next scheduled checkpoint, or {@linkplain Long#MAX_VALUE}
+   * if empty.
+   */
   public long getHeadTick() {
-    return head.tick;
+    return size == 0 ? Long.MAX_VALUE : heap[0].tick;
   }
   
   
@@ -97,26 +119,34 @@ public class CheckpointStack {
     if (isEmpty())
       return 0;
     
-    final long headTick = head.tick;
+    final long headTick = heap[0].tick;
     if (headTick == Long.MAX_VALUE)
       throw new IllegalStateException("overflow");
     
     int count = 0;
     
     do {
-      Schedule s = head;
-      head = head.next;
+      Schedule s = heap[0];
       
-      s.checkpoint.check();
+      // s stays in the heap while it fires, but can't be looked up
+      firing = s;
+      try {
+        s.checkpoint.check();
+      } finally {
+        firing = null;
+      }
       ++count;
+      if (metrics != null)
+        metrics.checkpointFired(s.priority);
       
       if (s.advancePeriod()) {
-        attach(s);
+        reorder(s);
       } else {
+        detach(s);
         clearPriority(s);
       }
       
-    } while (headTick == head.tick);
+    } while (headTick == getHeadTick());
     
     lastTickSeen = headTick;
     
@@ -147,9 +177,8 @@ public class CheckpointStack {
   public void setScheduledTickTime(Checkpoint checkpoint, long tickTime) {
     checkTimeArg(tickTime);
     Schedule s = getSchedule(checkpoint);
-    detach(s);
     s.tick = tickTime;
-    attach(s);
+    reorder(s);
   }
   
   public void setScheduledPeriodTicks(Checkpoint checkpoint, long periodTicks) {
@@ -165,9 +194,8 @@ public class CheckpointStack {
       
       clearPriority(s);
       
-      detach(s);
       s.priority = priority;
-      attach(s);
+      reorder(s);
     }
   }
   
@@ -191,24 +219,21 @@ public class CheckpointStack {
     
     Schedule existing = findSchedule(checkpoint);
     if (existing != null) {
-      boolean detach;
+      boolean reorder;
       if (priority != existing.priority) {
         if (!prioritySet.add(priority))
           throw new IllegalStateException("priority collision on update " + priority);
-        detach = true;
+        reorder = true;
         clearPriority(existing);
       } else
-        detach = tickTime != existing.tick;
+        reorder = tickTime != existing.tick;
       
-      if (detach) {
-        detach(existing);
+      existing.periodTicks = periodTicks;
+      if (reorder) {
         existing.priority = priority;
         existing.tick = tickTime;
-        existing.periodTicks = periodTicks;
-        
-        attach(existing);
-      } else
-        existing.periodTicks = periodTicks;
+        reorder(existing);
+      }
       
       return;
     
@@ -226,11 +251,16 @@ public class CheckpointStack {
   
   
   
+  /**
+   * Returns the scheduled checkpoints in the order they're due.
+   */
   public List<ScheduledCheckpoint> getScheduledCheckpoints() {
-    ArrayList<ScheduledCheckpoint> schedules = new ArrayList<>();
-    for (Schedule s = head; s.next != null; s = s.next)
-      schedules.add(s.toSc());
-    return schedules;
+    Schedule[] sorted = Arrays.copyOf(heap, size);
+    Arrays.sort(sorted, (a, b) -> a.compareTo(b));
+    ArrayList<ScheduledCheckpoint> list = new ArrayList<>(size);
+    for (Schedule s : sorted)
+      list.add(s.toSc());
+    return list;
   }
   
   
@@ -254,26 +284,16 @@ public class CheckpointStack {
   
   
   private void attach(Schedule s) {
-    int comp = s.compareTo(head);
-    if (comp < 0) {
-      s.next = head;
-      head = s;
-      return;
-    }
-    
-    if (comp == 0)
-      throw new RuntimeException("Sanity check fail 1");
+    if (s.index != -1)
+      throw new RuntimeException("Sanity check fail on attach " + s.checkpoint);
     
-    Schedule prev = head;
-    while ((comp = prev.next.compareTo(s)) < 0)
-      prev = prev.next;
+    if (size == heap.length)
+      heap = Arrays.copyOf(heap, 2 * size);
     
-
-    if (comp == 0)
-      throw new RuntimeException("Sanity check fail 2");
-    
-    s.next = prev.next;
-    prev.next = s;
+    s.index = size++;
+    heap[s.index] = s;
+    siftUp(s);
+    schedules.put(s.checkpoint, s);
   }
 
 
@@ -282,26 +302,70 @@ public class CheckpointStack {
 
 
   private void detach(Schedule existing) {
+    final int index = existing.index;
+    if (index < 0 || index >= size || heap[index] != existing)
+      throw new RuntimeException("Sanity check fail on detach " + existing.checkpoint);
     
-    if (existing.next == null)
-      throw new RuntimeException("Sanity check 1 fail");
+    schedules.remove(existing.checkpoint, existing);
+    existing.index = -1;
     
-    if (existing == head) {
-      head = head.next;
-      
-      if (head == null)
-        throw new RuntimeException("Sanity check 2 fail");
-      
-      return;
+    Schedule last = heap[--size];
+    heap[size] = null;
+    if (last != existing) {
+      last.index = index;
+      heap[index] = last;
+      reorder(last);
     }
-    
-    Schedule prev = head;
-    
-    // no checks needed; blows up if broken
-    while (prev.next != existing)
-      prev = prev.next;
-    
-    prev.next = existing.next;
+  }
+  
+  
+  /**
+   * Restores the heap order after <tt>s</tt>'s tick or priority has changed.
+   */
+  private void reorder(Schedule s) {
+    if (!siftUp(s))
+      siftDown(s);
+  }
+  
+  
+  /**
+   * @return <tt>true</tt> iff <tt>s</tt> moved
+   */
+  private boolean siftUp(Schedule s) {
+    int index = s.index;
+    while (index > 0) {
+      int parentIndex = (index - 1) >>> 1;
+      Schedule parent = heap[parentIndex];
+      if (parent.compareTo(s) <= 0)
+        break;
+      heap[index] = parent;
+      parent.index = index;
+      index = parentIndex;
+    }
+    boolean moved = index != s.index;
+    heap[index] = s;
+    s.index = index;
+    return moved;
+  }
+  
+  
+  private void siftDown(Schedule s) {
+    int index = s.index;
+    int half = size >>> 1;
+    while (index < half) {
+      int childIndex = 2 * index + 1;
+      Schedule child = heap[childIndex];
+      int right = childIndex + 1;
+      if (right < size && heap[right].compareTo(child) < 0)
+        child = heap[childIndex = right];
+      if (s.compareTo(child) <= 0)
+        break;
+      heap[index] = child;
+      child.index = index;
+      index = childIndex;
+    }
+    heap[index] = s;
+    s.index = index;
   }
 
 
@@ -315,11 +379,8 @@ public class CheckpointStack {
   }
 
   private Schedule findSchedule(Checkpoint checkpoint) {
-    for (Schedule s = head; s.next != null; s = s.next) {
-      if (s.checkpoint.equals(checkpoint))
-        return s;
-    }
-    return null;
+    Schedule s = schedules.get(checkpoint);
+    return s == firing ? null : s;
   }
 
 
@@ -330,8 +391,6 @@ public class CheckpointStack {
 
   public boolean remove(Checkpoint checkpoint) {
     boolean removed = false;
-    // we could do this in one pass,
-    // but not worth the increase in code/bug surface..
     Schedule s = findSchedule(checkpoint);
     if (s != null) {
       detach(s);
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.IoRuntimeException;
+
+/**
+ * A log of control inputs: values set on numbered channels (e.g. tether forces,
+ * by tether index), keyed by tick. Recorded once (with the controllers running),
+ * it can be {@linkplain Player played} back verbatim, so a run can be reproduced
+ * exactly without re-running its controllers, or re-run at a finer time resolution
+ * with the same inputs.
+ * <p/>
+ * Ticks are in whatever unit the recorder uses (engine ticks, or milliseconds) and
+ * never decrease. Only changes need be recorded. Not thread safe.
+ */
+public class ControlLog {
+
+  /**
+   * Where the values are played back to.
+   */
+  public interface Sink {
+    void set(int channel, double value);
+  }
+
+
+
+  /**
+   * Plays back a log in tick order.
+   */
+  public class Player {
+
+    private int next;
+
+    private Player() {  }
+
+    /**
+     * Plays back the entries up to (and including) the given <tt>tick</tt> not yet
+     * played, and returns the number played.
+     */
+    public int playUpTo(long tick, Sink sink) {
+      int count = 0;
+      for (; next < size && ticks[next] <= tick; ++next, ++count)
+        sink.set(channels[next], values[next]);
+      return count;
+    }
+
+    /**
+     * Returns the tick of the next entry to be played, or {@linkplain Long#MAX_VALUE}
+     * if done.
+     */
+    public long nextTick() {
+      return isDone() ? Long.MAX_VALUE : ticks[next];
+    }
+
+    public boolean isDone() {
+      return next == size;
+    }
+  }
+
+
+
+  /**
+   * Channel numbers are stored in a byte.
+   */
+  public final static int MAX_CHANNEL = 0xFF;
+
+  private final static int MAGIC = 0x434c4731;  // "CLG1"
+
+
+  private long[] ticks;
+  private byte[] channels;
+  private double[] values;
+  private int size;
+
+
+  public ControlLog() {
+    this(64);
+  }
+
+
+  public ControlLog(int initCapacity) {
+    if (initCapacity < 1)
+      throw new IllegalArgumentException("initCapacity " + initCapacity);
+    ticks = new long[initCapacity];
+    channels = new byte[initCapacity];
+    values = new double[initCapacity];
+  }
+
+
+  /**
+   * Appends an entry.
+   *
+   * @param tick    no less than the last tick appended
+   * @param channel &ge; 0 and &le; {@linkplain #MAX_CHANNEL}
+   */
+  public void append(long tick, int channel, double value) {
+    if (size > 0 && tick < ticks[size - 1])
+      throw new IllegalArgumentException("tick " + tick + " < last tick " + ticks[size - 1]);
+    if (channel < 0 || channel > MAX_CHANNEL)
+      throw new IllegalArgumentException("channel " + channel);
+    if (size == ticks.length) {
+      int capacity = size * 2;
+      ticks = Arrays.copyOf(ticks, capacity);
+      channels = Arrays.copyOf(channels, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    ticks[size] = tick;
+    channels[size] = (byte) channel;
+    values[size] = value;
+    ++size;
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  public long getTick(int index) {
+    checkIndex(index);
+    return ticks[index];
+  }
+
+
+  public int getChannel(int index) {
+    checkIndex(index);
+    return channels[index] & 0xFF;
+  }
+
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("index " + index + "; size " + size);
+  }
+
+
+  /**
+   * Returns a new player positioned at the first entry.
+   */
+  public Player newPlayer() {
+    return new Player();
+  }
+
+
+
+  /**
+   * Saves this log to the given file (overwriting it, if it exists).
+   */
+  public void save(File file) throws IoRuntimeException {
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+        out.writeInt(MAGIC);
+        out.writeInt(size);
+        for (int index = 0; index < size; ++index) {
+          out.writeLong(ticks[index]);
+          out.writeByte(channels[index]);
+          out.writeDouble(values[index]);
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on saving " + file, iox);
+    }
+  }
+
+
+  /**
+   * Loads a log {@linkplain #save(File) saved} to the given file.
+   */
+  public static ControlLog load(File file) throws IoRuntimeException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+      if (in.readInt() != MAGIC)
+        throw new CorruptionException("bad header: " + file);
+      int count = in.readInt();
+      if (count < 0)
+        throw new CorruptionException("count " + count + ": " + file);
+      ControlLog log = new ControlLog(Math.max(1, count));
+      for (int index = 0; index < count; ++index) {
+        long tick = in.readLong();
+        int channel = in.readUnsignedByte();
+        double value = in.readDouble();
+        if (index > 0 && tick < log.ticks[index - 1])
+          throw new CorruptionException("tick " + tick + " at index " + index + ": " + file);
+        log.append(tick, channel, value);
+      }
+      return log;
+
+    } catch (EOFException eofx) {
+      throw new CorruptionException("truncated " + file);
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on loading " + file, iox);
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * A checkpoint triggered by a physical event instead of the clock. The event
+ * is a zero crossing of a scalar function of the model's state (e.g. the radial
+ * velocity, for periapsis and apoapsis; or a tether length minus its limit).
+ * <p/>
+ * The {@linkplain SimEngine} samples the {@linkplain #value() function} at least as
+ * often as the interval the event is {@linkplain SimEngine#scheduleEvent(EventCheckpoint, double)
+ * scheduled} with. When it sees a sign change, and the model is {@linkplain Restorable},
+ * it bisects the interval to the first animation tick past the crossing, and
+ * {@linkplain #check() checks} the event there. (Otherwise, it's checked at the end of
+ * the interval.) Either way, the {@linkplain #getCrossingTime() crossing time} is
+ * interpolated from the bracketing values.
+ * <p/>
+ * A crossing that reverts within the sampling interval is missed, so the interval
+ * should be short relative to the time between events. An instance should be
+ * scheduled with only one engine. Equality semantics are by identity.
+ */
+public abstract class EventCheckpoint extends Checkpoint {
+
+  /**
+   * The direction of the crossings that trigger an event.
+   */
+  public enum Direction {
+    /**
+     * From negative to non-negative.
+     */
+    RISING,
+    /**
+     * From positive to non-positive.
+     */
+    FALLING,
+    EITHER;
+
+    boolean crossed(double before, double after) {
+      switch (this) {
+      case RISING:
+        return before < 0 && after >= 0;
+      case FALLING:
+        return before > 0 && after <= 0;
+      default:
+        return before < 0 && after >= 0 || before > 0 && after <= 0;
+      }
+    }
+  }
+
+
+
+  private final Direction direction;
+
+  // engine managed state..
+  long intervalTicks;
+  /**
+   * The value at the last sample the engine accepted (the low end of the bracket,
+   * while bisecting).
+   */
+  double lastValue;
+  /**
+   * The value at the high end of the bracket, while bisecting.
+   */
+  double hiValue;
+  double sample;
+  private double crossingTime = Double.NaN;
+
+
+  /**
+   * Creates an instance triggered by crossings in either direction.
+   */
+  protected EventCheckpoint() {
+    this(Direction.EITHER);
+  }
+
+
+  protected EventCheckpoint(Direction direction) {
+    if (direction == null)
+      throw new IllegalArgumentException("null direction");
+    this.direction = direction;
+  }
+
+
+  /**
+   * Returns the value of the function whose zero crossings are the events. Must be
+   * a function of the model's state only (it's sampled repeatedly as the engine
+   * backs up in time), and should be cheap.
+   */
+  public abstract double value();
+
+
+  public final Direction getDirection() {
+    return direction;
+  }
+
+
+  /**
+   * Returns the interpolated time of the last crossing, in seconds. Typically
+   * a fraction of an animation tick before the {@linkplain SimEngine#getTime() engine's time}
+   * when {@linkplain #check() checked}. <tt>NaN</tt> if never triggered.
+   */
+  public final double getCrossingTime() {
+    return crossingTime;
+  }
+
+
+  final boolean crossed(double value) {
+    return direction.crossed(lastValue, value);
+  }
+
+
+  void setCrossingTime(double crossingTime) {
+    this.crossingTime = crossingTime;
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * Time step strategy for systems of point masses moving under forces that
+ * depend only on their positions (and time). The system is abstracted as a
+ * {@linkplain Dynamics}.
+ * <p/>
+ * Besides the {@linkplain #DEFAULT} scheme (the one we've always used), there are
+ * 2 symplectic schemes: {@linkplain #VELOCITY_VERLET} (2nd order) and
+ * {@linkplain #YOSHIDA4} (4th order). Symplectic schemes don't drift in energy
+ * over long runs, so they allow much larger steps. They do require the system
+ * to support separate {@linkplain Dynamics#kick(double) kick} and
+ * {@linkplain Dynamics#drift(double) drift} operations.
+ * <p/>
+ * For systems whose forces split into fast and slowly varying parts (tethers vs
+ * gravity), there's also a multiple time stepping scheme, {@linkplain #newRespa(int)}.
+ */
+public abstract class Integrator {
+
+
+  /**
+   * The system being integrated.
+   */
+  public interface Dynamics {
+
+    /**
+     * Computes the accelerations from the current positions.
+     */
+    void updateForces();
+
+    /**
+     * Advances the velocities by <tt>dt</tt> seconds of the current accelerations.
+     */
+    void kick(double dt);
+
+    /**
+     * Advances the positions by <tt>dt</tt> seconds of the current velocities.
+     * Note <tt>dt</tt> may be negative (see {@linkplain Integrator#YOSHIDA4}).
+     */
+    void drift(double dt);
+
+    /**
+     * Advances both positions and velocities by <tt>dt</tt> seconds, holding the
+     * accelerations constant. (The {@linkplain Integrator#DEFAULT} scheme.)
+     */
+    void animate(double dt);
+  }
+
+
+
+  /**
+   * A system whose forces split into a fast varying part (e.g. the tethers) and
+   * a slowly varying one (e.g. gravity). The {@linkplain #newRespa(int) multi-rate}
+   * scheme evaluates the slow forces less often.
+   */
+  public interface MultiRateDynamics extends Dynamics {
+
+    /**
+     * Computes the fast accelerations only, from the current positions. These are the
+     * accelerations {@linkplain #kick(double) kick} applies.
+     */
+    void updateFastForces();
+
+    /**
+     * Computes the slow accelerations from the current positions. These are kept apart
+     * from the fast accelerations (which are unaffected).
+     */
+    void updateSlowForces();
+
+    /**
+     * Advances the velocities by <tt>dt</tt> seconds of the slow accelerations.
+     */
+    void kickSlow(double dt);
+  }
+
+
+
+  /**
+   * Update forces, then animate. First order: energy drifts.
+   *
+   * @see Dynamics#animate(double)
+   */
+  public final static Integrator DEFAULT = new Integrator("default", 1) {
+    @Override
+    public void integrate(Dynamics system, double dt, long steps) {
+      checkArgs(dt, steps);
+      while (steps-- > 0) {
+        system.updateForces();
+        system.animate(dt);
+      }
+    }
+  };
+
+
+  /**
+   * Kick-drift-kick leapfrog. One force evaluation per step.
+   */
+  public final static Integrator VELOCITY_VERLET = new Symplectic("verlet", 2, 1.0);
+
+
+  /**
+   * Yoshida's 4th order composition of 3 velocity Verlet sub-steps, the
+   * middle of which steps backward in time. Three force evaluations per step.
+   */
+  public final static Integrator YOSHIDA4;
+
+  static {
+    double cubeRoot2 = Math.cbrt(2);
+    double w1 = 1 / (2 - cubeRoot2);
+    double w0 = -cubeRoot2 * w1;
+    YOSHIDA4 = new Symplectic("yoshida4", 4, w1, w0, w1);
+  }
+
+
+  /**
+   * Returns a reversible RESPA (multiple time stepping) integrator. Each step
+   * <tt>dt</tt> is a velocity Verlet step in the slow forces, with the fast forces
+   * sub-cycled in the given number of velocity Verlet <tt>substeps</tt> in between:
+   * <pre>
+   *   kickSlow(dt/2)
+   *   substeps times:
+   *     kick(h/2); drift(h); updateFastForces(); kick(h/2)     (h = dt / substeps)
+   *   updateSlowForces(); kickSlow(dt/2)
+   * </pre>
+   * So there is one slow force evaluation per step, and one fast force evaluation
+   * per sub-step. The scheme is symplectic and 2nd order. Systems that don't separate
+   * their forces (not {@linkplain MultiRateDynamics}) are integrated with
+   * {@linkplain #VELOCITY_VERLET} at the sub-step instead.
+   * <p/>
+   * Its {@linkplain #getName() name} is <tt>respa</tt> followed by the number of
+   * sub-steps (e.g. <tt>respa10</tt>).
+   *
+   * @param substeps &ge; 1
+   */
+  public static Integrator newRespa(int substeps) {
+    return new Respa(substeps);
+  }
+
+
+  /**
+   * Returns the integrator with the given {@linkplain #getName() name}.
+   *
+   * @throws IllegalArgumentException if not found
+   * @see #newRespa(int)
+   */
+  public static Integrator forName(String name) throws IllegalArgumentException {
+    for (Integrator integrator : new Integrator[] { DEFAULT, VELOCITY_VERLET, YOSHIDA4 })
+      if (integrator.name.equals(name))
+        return integrator;
+    if (name.startsWith(Respa.NAME)) {
+      try {
+        int substeps = Integer.parseInt(name.substring(Respa.NAME.length()));
+        if (substeps > 0)
+          return newRespa(substeps);
+      } catch (NumberFormatException nfx) {  }
+    }
+    throw new IllegalArgumentException("name " + name);
+  }
+
+
+
+  private final String name;
+  private final int order;
+
+
+  private Integrator(String name, int order) {
+    this.name = name;
+    this.order = order;
+  }
+
+
+  /**
+   * Advances the given <tt>system</tt> by the given number of <tt>steps</tt>,
+   * each <tt>dt</tt> seconds long. The system's accelerations on entry are
+   * ignored (they're recomputed).
+   */
+  public abstract void integrate(Dynamics system, double dt, long steps);
+
+
+  public final String getName() {
+    return name;
+  }
+
+
+  /**
+   * Returns the order of the scheme (the global error scales as
+   * <tt>dt</tt> to this power).
+   */
+  public final int getOrder() {
+    return order;
+  }
+
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+
+  static void checkArgs(double dt, long steps) {
+    if (dt <= 0 || steps < 0)
+      throw new IllegalArgumentException(dt + "; " + steps);
+  }
+
+
+
+  /**
+   * A composition of velocity Verlet sub-steps with the given weights.
+   * Adjacent half-kicks are not merged (kicks are cheap), but the force
+   * evaluation at the end of each sub-step is reused at the start of the next.
+   */
+  private static class Symplectic extends Integrator {
+
+    private final double[] weights;
+
+    Symplectic(String name, int order, double... weights) {
+      super(name, order);
+      this.weights = weights;
+    }
+
+    @Override
+    public void integrate(Dynamics system, double dt, long steps) {
+      checkArgs(dt, steps);
+      if (steps == 0)
+        return;
+      system.updateForces();
+      while (steps-- > 0) {
+        for (double weight : weights) {
+          double h = weight * dt;
+          system.kick(h / 2);
+          system.drift(h);
+          system.updateForces();
+          system.kick(h / 2);
+        }
+      }
+    }
+  }
+
+
+
+  private static class Respa extends Integrator {
+
+    final static String NAME = "respa";
+
+    private final int substeps;
+
+    Respa(int substeps) {
+      super(NAME + substeps, 2);
+      this.substeps = substeps;
+      if (substeps < 1)
+        throw new IllegalArgumentException("substeps " + substeps);
+    }
+
+    @Override
+    public void integrate(Dynamics system, double dt, long steps) {
+      checkArgs(dt, steps);
+      if (!(system instanceof MultiRateDynamics)) {
+        VELOCITY_VERLET.integrate(system, dt / substeps, steps * substeps);
+        return;
+      }
+      if (steps == 0)
+        return;
+
+      MultiRateDynamics multi = (MultiRateDynamics) system;
+      final double h = dt / substeps;
+      multi.updateSlowForces();
+      multi.updateFastForces();
+      while (steps-- > 0) {
+        multi.kickSlow(dt / 2);
+        for (int count = substeps; count-- > 0; ) {
+          multi.kick(h / 2);
+          multi.drift(h);
+          multi.updateFastForces();
+          multi.kick(h / 2);
+        }
+        multi.updateSlowForces();
+        multi.kickSlow(dt / 2);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o == this || o instanceof Respa && ((Respa) o).substeps == substeps;
+    }
+
+    @Override
+    public int hashCode() {
+      return substeps;
+    }
+  }
+
+}
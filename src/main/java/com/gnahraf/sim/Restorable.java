@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * A {@linkplain Universe} whose dynamic state can be saved and later restored,
+ * so that the {@linkplain SimEngine} can back up in time. (It uses this to locate
+ * {@linkplain EventCheckpoint events} between steps.)
+ */
+public interface Restorable {
+
+  /**
+   * Returns the length of the state array. Must be constant.
+   */
+  int getStateLength();
+
+  /**
+   * Copies the dynamic state to the given array.
+   */
+  void saveState(double[] state);
+
+  /**
+   * Restores the dynamic state from the given array (previously
+   * {@linkplain #saveState(double[]) saved}).
+   */
+  void restoreState(double[] state);
+
+}
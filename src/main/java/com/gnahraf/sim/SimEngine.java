@@ -3,6 +3,7 @@
  */
 package com.gnahraf.sim;
 
+import java.util.ArrayList;
 
 
 /**
@@ -24,6 +25,9 @@ package com.gnahraf.sim;
  * So a checkpoint is distinguishable from the {@linkplain Universe model}
  * in that it is not really the meat of the simulation (although it
  * can definitely affect it).
+ * <p/>
+ * {@linkplain EventCheckpoint Event checkpoints}, on the other hand, are triggered
+ * by the model's state (zero crossings), not the clock.
  */
 public class SimEngine {
   
@@ -42,6 +46,16 @@ public class SimEngine {
   private long animationTpsFactor;
   private double animationUnitTime;
   
+  private SimMetrics metrics;
+  
+  private final ArrayList<EventCheckpoint> events = new ArrayList<>();
+  /**
+   * State buffers for locating events. Only allocated if there are events
+   * and the model is {@linkplain Restorable}.
+   */
+  private double[] eventLoState;
+  private double[] eventHiState;
+  
   
   public SimEngine(Universe model) {
     this(model, DEFAULT_TPS);
@@ -69,6 +83,9 @@ public class SimEngine {
     final long animationTicks = (long) (seconds * animationTps);
     long animationTicksRemaining = animationTicks;
     
+    final SimMetrics metrics = this.metrics;
+    long nanos = metrics == null ? 0 : System.nanoTime();
+    
     
     /*
      
@@ -80,19 +97,50 @@ public class SimEngine {
       long animationTicksToCheckPoint =
           Math.min(ticksToCheckpoint / animationTpsFactor, animationTicksRemaining);
       
+      final long ticks;
+      
       if (animationTicksToCheckPoint == 0) {
         long finalTickTime = tickTime + animationTpsFactor;
         checkpoints.consumeUpToTick(finalTickTime);
+        if (metrics != null) {
+          long now = System.nanoTime();
+          metrics.checkpointsConsumed(now - nanos);
+          nanos = now;
+        }
+        ticks = 1;
+        if (eventLoState != null)
+          ((Restorable) model).saveState(eventLoState);
         model.tick(animationUnitTime, 1);
         
         tickTime += animationTpsFactor;
         --animationTicksRemaining;
+        if (metrics != null)
+          nanos = recordModelTick(metrics, 1, nanos);
+        
       } else {
-        double time = ((double) animationTicksToCheckPoint) / animationTps;
-        model.tick(time, animationTicksToCheckPoint);
+        // with events, don't tick past the next sample
+        ticks =
+            events.isEmpty() ?
+                animationTicksToCheckPoint :
+                  Math.min(animationTicksToCheckPoint, eventSampleTicks());
+        if (eventLoState != null)
+          ((Restorable) model).saveState(eventLoState);
+        double time = ((double) ticks) / animationTps;
+        model.tick(time, ticks);
         
-        tickTime += (animationTicksToCheckPoint * animationTpsFactor);
-        animationTicksRemaining -= animationTicksToCheckPoint;
+        tickTime += (ticks * animationTpsFactor);
+        animationTicksRemaining -= ticks;
+        if (metrics != null)
+          nanos = recordModelTick(metrics, ticks, nanos);
+      }
+      
+      if (!events.isEmpty()) {
+        animationTicksRemaining += pollEvents(ticks);
+        if (metrics != null) {
+          long now = System.nanoTime();
+          metrics.checkpointsConsumed(now - nanos);
+          nanos = now;
+        }
       }
     }
     
@@ -101,6 +149,147 @@ public class SimEngine {
   
   
   
+  /**
+   * Records a model tick of the given number of <tt>steps</tt> begun at <tt>start</tt>
+   * nanos (also the time of the engine's last record), and returns the current nanos.
+   */
+  private long recordModelTick(SimMetrics metrics, long steps, long start) {
+    long now = System.nanoTime();
+    metrics.modelTicked(steps, steps * animationTpsFactor, now - start);
+    return now;
+  }
+  
+  
+  /**
+   * Returns the maximum number of animation ticks between event samples.
+   */
+  private long eventSampleTicks() {
+    long intervalTicks = Long.MAX_VALUE;
+    for (int index = events.size(); index-- > 0; )
+      intervalTicks = Math.min(intervalTicks, events.get(index).intervalTicks);
+    return Math.max(1, intervalTicks / animationTpsFactor);
+  }
+  
+  
+  /**
+   * Samples the events after the model has been advanced the given number of
+   * animation <tt>ticks</tt>, and checks those that crossed. If any did, and the
+   * model is {@linkplain Restorable}, the model and clock are first backed up
+   * to the first animation tick past the earliest crossing (by bisection).
+   * 
+   * @return the number of animation ticks backed up
+   */
+  private long pollEvents(long ticks) {
+    if (!sampleEvents()) {
+      for (int index = events.size(); index-- > 0; ) {
+        EventCheckpoint event = events.get(index);
+        event.lastValue = event.sample;
+      }
+      return 0;
+    }
+    
+    for (int index = events.size(); index-- > 0; ) {
+      EventCheckpoint event = events.get(index);
+      event.hiValue = event.sample;
+    }
+    
+    // the crossing lies in the animation ticks (lo, hi], relative to the tick's start
+    long lo = 0;
+    long hi = ticks;
+    
+    if (eventLoState != null && ticks > 1) {
+      Restorable restorable = (Restorable) model;
+      restorable.saveState(eventHiState);
+      
+      while (hi - lo > 1) {
+        long mid = (lo + hi) >>> 1;
+        restorable.restoreState(eventLoState);
+        model.tick(((double) (mid - lo)) / animationTps, mid - lo);
+        if (sampleEvents()) {
+          hi = mid;
+          restorable.saveState(eventHiState);
+          for (int index = events.size(); index-- > 0; ) {
+            EventCheckpoint event = events.get(index);
+            event.hiValue = event.sample;
+          }
+        } else {
+          lo = mid;
+          restorable.saveState(eventLoState);
+          for (int index = events.size(); index-- > 0; ) {
+            EventCheckpoint event = events.get(index);
+            event.lastValue = event.sample;
+          }
+        }
+      }
+      restorable.restoreState(eventHiState);
+    }
+    
+    final long backup = ticks - hi;
+    tickTime -= backup * animationTpsFactor;
+    
+    double hiTime = getTime();
+    double span = ((double) (hi - lo)) / animationTps;
+    
+    // (the events may remove themselves, or others)
+    for (EventCheckpoint event : events.toArray(new EventCheckpoint[events.size()])) {
+      if (event.crossed(event.hiValue) && events.contains(event)) {
+        double fraction = event.hiValue / (event.hiValue - event.lastValue);
+        event.setCrossingTime(hiTime - fraction * span);
+        event.check();
+      }
+    }
+    
+    // the checks may have changed the state
+    for (int index = events.size(); index-- > 0; ) {
+      EventCheckpoint event = events.get(index);
+      event.lastValue = event.value();
+    }
+    return backup;
+  }
+  
+  
+  /**
+   * Samples the events' values and returns <tt>true</tt> if any crossed since
+   * last accepted.
+   */
+  private boolean sampleEvents() {
+    boolean crossed = false;
+    for (int index = events.size(); index-- > 0; ) {
+      EventCheckpoint event = events.get(index);
+      event.sample = event.value();
+      crossed |= event.crossed(event.sample);
+    }
+    return crossed;
+  }
+  
+  
+  
+  /**
+   * Enables the collection of runtime metrics, if not already enabled, and returns them.
+   * 
+   * @see SimMetrics#register(String)
+   */
+  public SimMetrics enableMetrics() {
+    if (metrics == null) {
+      metrics = new SimMetrics(timeTps);
+      checkpoints.setMetrics(metrics);
+    }
+    return metrics;
+  }
+  
+  
+  public void disableMetrics() {
+    metrics = null;
+    checkpoints.setMetrics(null);
+  }
+  
+  
+  /**
+   * Returns the runtime metrics, if enabled; <tt>null</tt>, otherwise.
+   */
+  public SimMetrics getMetrics() {
+    return metrics;
+  }
   
   
   
@@ -172,6 +361,43 @@ public class SimEngine {
   public boolean remove(Checkpoint checkpoint) {
     return checkpoints.remove(checkpoint);
   }
+  
+  
+  /**
+   * Schedules an event checkpoint, or if already scheduled, updates its sampling
+   * interval. It stays scheduled (triggering at every crossing) until
+   * {@linkplain #removeEvent(EventCheckpoint) removed}. Events are located more precisely
+   * if the model is {@linkplain Restorable}.
+   * 
+   * @param event     triggered by zero crossings of its value
+   * @param interval  the maximum time between samples of the event's value (seconds).
+   *                  Should be short relative to the time between crossings.
+   */
+  public void scheduleEvent(EventCheckpoint event, double interval) {
+    long intervalTicks = (long) (interval * timeTps);
+    if (intervalTicks <= 0)
+      throw new IllegalArgumentException("interval " + interval);
+    
+    event.intervalTicks = intervalTicks;
+    event.lastValue = event.value();
+    if (events.contains(event))
+      return;
+    
+    events.add(event);
+    if (eventLoState == null && model instanceof Restorable) {
+      int length = ((Restorable) model).getStateLength();
+      eventLoState = new double[length];
+      eventHiState = new double[length];
+    }
+  }
+  
+  
+  public boolean removeEvent(EventCheckpoint event) {
+    boolean removed = events.remove(event);
+    if (events.isEmpty())
+      eventLoState = eventHiState = null;
+    return removed;
+  }
 
 
 
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime counters for a {@linkplain SimEngine}: how fast the simulation runs
+ * (simulated seconds and steps per wall second), and how the wall time splits
+ * between the model and the checkpoints (counted by priority).
+ * <p/>
+ * The engine's thread is the only writer. The counters are {@linkplain LongAdder}s,
+ * so they can be read (sampled) from any thread, e.g. over JMX
+ * (see {@linkplain #register(String)}), or periodically from within the simulation
+ * using a {@linkplain SimMetrics.SummaryCheckpoint}. The overhead is a couple of
+ * {@linkplain System#nanoTime()} calls per model call and per checkpoint tick.
+ *
+ * @see SimEngine#enableMetrics()
+ */
+public class SimMetrics implements SimMetricsMBean {
+
+  public final static String JMX_DOMAIN = "com.gnahraf.sim";
+
+  private final static double NANOS_PER_SECOND = 1e9;
+
+
+  private final long timeTps;
+
+  private final LongAdder simulatedTicks = new LongAdder();
+  private final LongAdder wallNanos = new LongAdder();
+  private final LongAdder steps = new LongAdder();
+  private final LongAdder modelCalls = new LongAdder();
+  private final LongAdder modelNanos = new LongAdder();
+  private final LongAdder checkpointNanos = new LongAdder();
+  private final LongAdder checkpointCount = new LongAdder();
+  private final ConcurrentHashMap<Integer, LongAdder> priorityCounts = new ConcurrentHashMap<>();
+
+
+  /**
+   * @param timeTps the engine's ticks per second
+   *
+   * @see SimEngine#getTimeTps()
+   */
+  public SimMetrics(long timeTps) {
+    this.timeTps = timeTps;
+    if (timeTps <= 0)
+      throw new IllegalArgumentException("timeTps " + timeTps);
+  }
+
+
+
+  /**
+   * Records a model call of the given number of <tt>steps</tt> advancing the clock
+   * by <tt>ticks</tt>. The wall <tt>nanos</tt> are measured from the engine's last
+   * record, so the wall time accrues as the engine progresses (not just at the end
+   * of an animation), and the rates sampled mid-animation are current.
+   */
+  void modelTicked(long steps, long ticks, long nanos) {
+    this.steps.add(steps);
+    modelCalls.increment();
+    modelNanos.add(nanos);
+    simulatedTicks.add(ticks);
+    wallNanos.add(nanos);
+  }
+
+
+  void checkpointsConsumed(long nanos) {
+    checkpointNanos.add(nanos);
+    wallNanos.add(nanos);
+  }
+
+
+  void checkpointFired(int priority) {
+    checkpointCount.increment();
+    LongAdder count = priorityCounts.get(priority);
+    if (count == null)
+      count = priorityCounts.computeIfAbsent(priority, p -> new LongAdder());
+    count.increment();
+  }
+
+
+
+  @Override
+  public double getSimulatedSeconds() {
+    return ((double) simulatedTicks.sum()) / timeTps;
+  }
+
+
+  @Override
+  public double getWallSeconds() {
+    return wallNanos.sum() / NANOS_PER_SECOND;
+  }
+
+
+  @Override
+  public double getSimulatedSecondsPerWallSecond() {
+    return rate(getSimulatedSeconds(), getWallSeconds());
+  }
+
+
+  @Override
+  public long getSteps() {
+    return steps.sum();
+  }
+
+
+  @Override
+  public double getStepsPerWallSecond() {
+    return rate(getSteps(), getWallSeconds());
+  }
+
+
+  @Override
+  public long getModelCalls() {
+    return modelCalls.sum();
+  }
+
+
+  @Override
+  public double getModelSeconds() {
+    return modelNanos.sum() / NANOS_PER_SECOND;
+  }
+
+
+  @Override
+  public double getCheckpointSeconds() {
+    return checkpointNanos.sum() / NANOS_PER_SECOND;
+  }
+
+
+  @Override
+  public double getCheckpointFraction() {
+    return rate(getCheckpointSeconds(), getWallSeconds());
+  }
+
+
+  @Override
+  public long getCheckpointCount() {
+    return checkpointCount.sum();
+  }
+
+
+  /**
+   * Returns a snapshot of the checkpoint counts keyed by priority, in descending
+   * order of priority.
+   */
+  public SortedMap<Integer, Long> getCheckpointCounts() {
+    TreeMap<Integer, Long> counts = new TreeMap<>((a, b) -> Integer.compare(b, a));
+    for (Map.Entry<Integer, LongAdder> entry : priorityCounts.entrySet())
+      counts.put(entry.getKey(), entry.getValue().sum());
+    return counts;
+  }
+
+
+  @Override
+  public String getCheckpointCountsByPriority() {
+    StringBuilder string = new StringBuilder();
+    for (Map.Entry<Integer, Long> entry : getCheckpointCounts().entrySet()) {
+      if (string.length() > 0)
+        string.append(", ");
+      string.append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return string.toString();
+  }
+
+
+  /**
+   * Zeroes the counters. Not atomic with respect to concurrent updates.
+   */
+  @Override
+  public void reset() {
+    simulatedTicks.reset();
+    wallNanos.reset();
+    steps.reset();
+    modelCalls.reset();
+    modelNanos.reset();
+    checkpointNanos.reset();
+    checkpointCount.reset();
+    priorityCounts.clear();
+  }
+
+
+  private static double rate(double amount, double seconds) {
+    return seconds == 0 ? 0 : amount / seconds;
+  }
+
+
+
+  /**
+   * Registers this instance with the platform MBean server under the name
+   * <tt>com.gnahraf.sim:type=SimEngine,name=</tt><em>name</em>.
+   *
+   * @return the object name registered
+   */
+  public ObjectName register(String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName objectName = newObjectName(name);
+      server.registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException jmx) {
+      throw new IllegalArgumentException("name " + name, jmx);
+    }
+  }
+
+
+  /**
+   * Unregisters the MBean registered under the given <tt>name</tt>, if any.
+   *
+   * @return <tt>true</tt> if unregistered
+   */
+  public static boolean unregister(String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName objectName = newObjectName(name);
+      if (!server.isRegistered(objectName))
+        return false;
+      server.unregisterMBean(objectName);
+      return true;
+    } catch (JMException jmx) {
+      throw new IllegalArgumentException("name " + name, jmx);
+    }
+  }
+
+
+  private static ObjectName newObjectName(String name) throws JMException {
+    return new ObjectName(JMX_DOMAIN + ":type=SimEngine,name=" + ObjectName.quote(name));
+  }
+
+
+
+  @Override
+  public String toString() {
+    return String.format(
+        "sim/wall %.3g; steps/s %.3g; model %.3f s; checkpoints %.3f s (%.1f%%) [%s]",
+        getSimulatedSecondsPerWallSecond(), getStepsPerWallSecond(),
+        getModelSeconds(), getCheckpointSeconds(), 100 * getCheckpointFraction(),
+        getCheckpointCountsByPriority());
+  }
+
+
+
+  /**
+   * Prints a line summarizing the metrics over the interval since it was last
+   * checked. Schedule it periodically (in simulated time) on the same engine, e.g.
+   * <pre><tt>
+   *   engine.schedule(new SimMetrics.SummaryCheckpoint(engine.enableMetrics(), System.out),
+   *       60, 60, Integer.MIN_VALUE);
+   * </tt></pre>
+   * (Note its own time counts toward the checkpoints'.)
+   */
+  public static class SummaryCheckpoint extends Checkpoint {
+
+    private final SimMetrics metrics;
+    private final PrintStream out;
+
+    private double lastSimSeconds;
+    private double lastWallSeconds;
+    private long lastSteps;
+    private double lastCheckpointSeconds;
+    private long lastCheckpointCount;
+
+
+    public SummaryCheckpoint(SimMetrics metrics, PrintStream out) {
+      this.metrics = metrics;
+      this.out = out;
+      if (metrics == null)
+        throw new IllegalArgumentException("null metrics");
+      if (out == null)
+        throw new IllegalArgumentException("null out");
+    }
+
+
+    @Override
+    public void check() {
+      double simSeconds = metrics.getSimulatedSeconds();
+      double wallSeconds = metrics.getWallSeconds();
+      long steps = metrics.getSteps();
+      double checkpointSeconds = metrics.getCheckpointSeconds();
+      long checkpointCount = metrics.getCheckpointCount();
+
+      double wall = wallSeconds - lastWallSeconds;
+      out.println(String.format(
+          "[sim %.1f s] sim/wall %.3g; steps/s %.3g; checkpoints %d (%.1f%% of wall)",
+          simSeconds,
+          rate(simSeconds - lastSimSeconds, wall),
+          rate(steps - lastSteps, wall),
+          checkpointCount - lastCheckpointCount,
+          100 * rate(checkpointSeconds - lastCheckpointSeconds, wall)));
+
+      lastSimSeconds = simSeconds;
+      lastWallSeconds = wallSeconds;
+      lastSteps = steps;
+      lastCheckpointSeconds = checkpointSeconds;
+      lastCheckpointCount = checkpointCount;
+    }
+  }
+
+}
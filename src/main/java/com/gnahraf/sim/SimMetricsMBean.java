@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * JMX view of {@linkplain SimMetrics}. Times are in seconds; rates are
+ * averages since the last reset.
+ */
+public interface SimMetricsMBean {
+
+  /**
+   * Returns the simulated time animated.
+   */
+  double getSimulatedSeconds();
+
+  /**
+   * Returns the wall time spent animating.
+   */
+  double getWallSeconds();
+
+  double getSimulatedSecondsPerWallSecond();
+
+  /**
+   * Returns the number of steps taken through {@linkplain Universe#tick(double, long)}.
+   */
+  long getSteps();
+
+  double getStepsPerWallSecond();
+
+  /**
+   * Returns the number of calls to {@linkplain Universe#tick(double, long)}.
+   */
+  long getModelCalls();
+
+  /**
+   * Returns the wall time spent in the model.
+   */
+  double getModelSeconds();
+
+  /**
+   * Returns the wall time spent in checkpoints.
+   */
+  double getCheckpointSeconds();
+
+  /**
+   * Returns the fraction of the wall time animating spent in checkpoints.
+   */
+  double getCheckpointFraction();
+
+  /**
+   * Returns the number of checkpoints fired.
+   */
+  long getCheckpointCount();
+
+  /**
+   * Returns the checkpoint counts by priority, in the form
+   * <tt>priority=count</tt>, comma separated, in descending order of priority.
+   */
+  String getCheckpointCountsByPriority();
+
+  void reset();
+
+}
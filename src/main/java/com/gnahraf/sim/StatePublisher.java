@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A checkpoint that publishes snapshots of the simulation's state for other threads
+ * (e.g. a live view) to read. Schedule it periodically with the {@linkplain SimEngine}
+ * at the rate frames are wanted, e.g.
+ * <pre><tt>
+ *   engine.schedule(publisher, 0, 1.0 / 60, Integer.MIN_VALUE);
+ * </tt></pre>
+ * Any number of reader threads can {@linkplain #read(Frame) read} the latest frame.
+ * <p/>
+ * Publication is lock-free (a seqlock): the simulation thread never waits on
+ * the readers, and readers never block the simulation; a reader that catches a
+ * frame mid-write simply retries. So the simulation's throughput is independent
+ * of the readers'. There is only one buffer, and it's recycled.
+ * Equality semantics are by identity.
+ */
+public class StatePublisher extends Checkpoint {
+
+
+  /**
+   * A reader's copy of a published frame. Not safe to share across readers.
+   *
+   * @see StatePublisher#newFrame()
+   */
+  public static class Frame {
+
+    private final double[] state;
+    private long sequence;
+    private long tickTime;
+    private double time;
+
+    private Frame(int width) {
+      this.state = new double[width];
+    }
+
+    /**
+     * Returns the frame number (1-based); zero if not yet read.
+     */
+    public long getFrameNumber() {
+      return sequence / 2;
+    }
+
+    public long getTickTime() {
+      return tickTime;
+    }
+
+    /**
+     * Returns the simulation time in seconds.
+     */
+    public double getTime() {
+      return time;
+    }
+
+    /**
+     * Returns the state (not a copy).
+     *
+     * @see TrajectoryRecorder.Source#getState(double[])
+     */
+    public double[] getState() {
+      return state;
+    }
+  }
+
+
+
+  private final SimEngine engine;
+  private final TrajectoryRecorder.Source source;
+
+  /**
+   * Odd while a frame is being written; twice the number of frames published, otherwise.
+   */
+  private volatile long sequence;
+  /**
+   * The tick time, the time, and then the state (as raw long bits).
+   */
+  private final AtomicLongArray buffer;
+
+  // work array recycling ok since single writer
+  private final double[] state;
+
+
+  /**
+   * @param engine  the engine whose time is published
+   * @param source  the state published
+   */
+  public StatePublisher(SimEngine engine, TrajectoryRecorder.Source source) {
+    if (engine == null)
+      throw new IllegalArgumentException("null engine");
+    if (source.width() < 1)
+      throw new IllegalArgumentException("source width " + source.width());
+    this.engine = engine;
+    this.source = source;
+    this.state = new double[source.width()];
+    this.buffer = new AtomicLongArray(2 + state.length);
+  }
+
+
+  /**
+   * Publishes the current state. Invoked on the simulation thread.
+   */
+  @Override
+  public void check() {
+    source.getState(state);
+
+    final long seq = sequence;
+    sequence = seq + 1;
+    // (lazySet: the buffer's stores are not reordered before the odd sequence)
+    buffer.lazySet(0, engine.getTickTime());
+    buffer.lazySet(1, Double.doubleToRawLongBits(engine.getTime()));
+    for (int index = 0; index < state.length; ++index)
+      buffer.lazySet(index + 2, Double.doubleToRawLongBits(state[index]));
+    sequence = seq + 2;
+  }
+
+
+  /**
+   * Returns the number of values in the state.
+   */
+  public int width() {
+    return state.length;
+  }
+
+
+  /**
+   * Returns the number of frames published.
+   */
+  public long getFrameCount() {
+    return sequence / 2;
+  }
+
+
+  /**
+   * Returns a new (empty) frame for {@linkplain #read(Frame) reading}.
+   */
+  public Frame newFrame() {
+    return new Frame(state.length);
+  }
+
+
+  /**
+   * Copies the latest published frame into the given one, if newer. Safe to invoke
+   * from any thread; does not block.
+   *
+   * @param frame from {@linkplain #newFrame()} (possibly previously read into)
+   *
+   * @return <tt>true</tt> if a newer frame was read; <tt>false</tt>, if none has been
+   *         published since the given <tt>frame</tt> was last read into
+   */
+  public boolean read(Frame frame) {
+    if (frame.state.length != state.length)
+      throw new IllegalArgumentException("frame width " + frame.state.length);
+    while (true) {
+      final long seq = sequence;
+      if (seq == frame.sequence)
+        return false;
+      if ((seq & 1) != 0) {
+        // the next frame is being written over the last one
+        if (seq - 1 == frame.sequence)
+          return false;
+        Thread.yield();
+        continue;
+      }
+      long tickTime = buffer.get(0);
+      double time = Double.longBitsToDouble(buffer.get(1));
+      for (int index = 0; index < frame.state.length; ++index)
+        frame.state[index] = Double.longBitsToDouble(buffer.get(index + 2));
+      if (seq == sequence) {
+        frame.sequence = seq;
+        frame.tickTime = tickTime;
+        frame.time = time;
+        return true;
+      }
+    }
+  }
+
+
+  public TrajectoryRecorder.Source getSource() {
+    return source;
+  }
+
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.gnahraf.io.ClosingStack;
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.io.IoRuntimeException;
+import com.gnahraf.xcept.NotFoundException;
+
+/**
+ * An append-only log of fixed-width records, each a tick time, the time in seconds,
+ * and a fixed number of <tt>double</tt> values (the <em>width</em>). Typically
+ * written by a {@linkplain TrajectoryRecorder}.
+ * <p/>
+ * The log is a directory of segment files, each memory-mapped and each holding up to
+ * a fixed number of records, so appending is just writing to memory. Records must be
+ * appended in non-decreasing tick order; they can then be looked up by tick in
+ * logarithmic time and {@linkplain #slice(long, long) sliced} by tick range without
+ * copying.
+ *
+ * <h4>Segment Format</h4>
+ * <pre>
+ *   header:  int magic, int width, int capacity (records), int 0, long count
+ *   record:  long tick, double time, double[width] values
+ * </pre>
+ * All little-endian. The count in the header is updated on every append, so a log
+ * whose writer died is still readable up to its last record. (Segments are
+ * pre-allocated to capacity; only the first <tt>count</tt> records are valid.)
+ *
+ * <h4>Not Safe Under Concurrent Access!</h4>
+ */
+public class TrajectoryLog implements Closeable {
+
+  public final static String SEGMENT_EXT = ".trj";
+
+  /**
+   * Default records per segment.
+   */
+  public final static int DEFAULT_SEGMENT_RECORDS = 1024 * 1024;
+
+  private final static int MAGIC = 0x54524A31;  // "TRJ1"
+
+  private final static int HEADER_SIZE = 24;
+  private final static int WIDTH_OFFSET = 4;
+  private final static int CAPACITY_OFFSET = 8;
+  private final static int COUNT_OFFSET = 16;
+
+  private final static int TIME_OFFSET = 8;
+  private final static int VALUES_OFFSET = 16;
+
+
+
+  /**
+   * Creates a new log. <tt>dir</tt> must not exist.
+   *
+   * @param width           the number of values per record
+   * @param segmentRecords  the number of records per segment file
+   */
+  public static TrajectoryLog create(File dir, int width, int segmentRecords) throws IllegalStateException {
+    if (dir.exists())
+      throw new IllegalStateException("already exists " + dir);
+    if (width < 0)
+      throw new IllegalArgumentException("width " + width);
+    if (segmentRecords < 1 || HEADER_SIZE + (long) segmentRecords * recordSize(width) > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("segmentRecords " + segmentRecords);
+    if (!dir.mkdirs())
+      throw new IoRuntimeException("failed to create " + dir);
+    return new TrajectoryLog(dir, width, segmentRecords);
+  }
+
+
+  /**
+   * Loads an already existing log, read-only.
+   */
+  public static TrajectoryLog load(File dir) {
+    if (!dir.isDirectory())
+      throw new NotFoundException(dir.toString());
+    return new TrajectoryLog(dir);
+  }
+
+
+  private static int recordSize(int width) {
+    return VALUES_OFFSET + 8 * width;
+  }
+
+
+
+
+  private final File dir;
+  private final boolean readOnly;
+  private final int width;
+  private final int recordSize;
+  private final int segmentRecords;
+
+  private final List<ByteBuffer> segments = new ArrayList<>();
+
+  private long size;
+  private long lastTick = Long.MIN_VALUE;
+  private boolean closed;
+
+
+
+  private TrajectoryLog(File dir, int width, int segmentRecords) {
+    this.dir = dir;
+    this.readOnly = false;
+    this.width = width;
+    this.recordSize = recordSize(width);
+    this.segmentRecords = segmentRecords;
+  }
+
+
+  private TrajectoryLog(File dir) {
+    this.dir = dir;
+    this.readOnly = true;
+
+    int width = -1;
+    int segmentRecords = -1;
+    for (int index = 0; ; ++index) {
+      File file = segmentFile(index);
+      if (!file.isFile())
+        break;
+      ByteBuffer segment = map(file, MapMode.READ_ONLY, file.length());
+      if (segment.capacity() < HEADER_SIZE || segment.getInt(0) != MAGIC)
+        throw new CorruptionException("bad header: " + file);
+      if (index == 0) {
+        width = segment.getInt(WIDTH_OFFSET);
+        segmentRecords = segment.getInt(CAPACITY_OFFSET);
+        if (width < 0 || segmentRecords < 1)
+          throw new CorruptionException(
+              "width " + width + "; capacity " + segmentRecords + ": " + file);
+      } else if (segment.getInt(WIDTH_OFFSET) != width || segment.getInt(CAPACITY_OFFSET) != segmentRecords)
+        throw new CorruptionException("header mismatch: " + file);
+
+      long count = segment.getLong(COUNT_OFFSET);
+      if (count < 0 || count > segmentRecords ||
+          HEADER_SIZE + count * recordSize(width) > segment.capacity())
+        throw new CorruptionException("count " + count + ": " + file);
+      if (size != (long) index * segmentRecords)
+        throw new CorruptionException("missing records before " + file);
+
+      segments.add(segment);
+      size += count;
+    }
+    if (segments.isEmpty())
+      throw new NotFoundException("no segments in " + dir);
+
+    this.width = width;
+    this.recordSize = recordSize(width);
+    this.segmentRecords = segmentRecords;
+    if (size > 0)
+      lastTick = getTick(size - 1);
+  }
+
+
+  private File segmentFile(int index) {
+    return new File(dir, String.format("%08d", index) + SEGMENT_EXT);
+  }
+
+
+  @SuppressWarnings("resource")
+  private static ByteBuffer map(File file, MapMode mode, long length) throws IoRuntimeException {
+    try (ClosingStack resources = new ClosingStack()) {
+      RandomAccessFile raf = new RandomAccessFile(file, mode == MapMode.READ_ONLY ? "r" : "rw");
+      resources.push(raf);
+      MappedByteBuffer buffer = raf.getChannel().map(mode, 0, length);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      return buffer;
+    } catch (IOException iox) {
+      throw new IoRuntimeException("on mapping " + file, iox);
+    }
+  }
+
+
+
+
+  /**
+   * Appends a record.
+   *
+   * @param tick    no less than the last tick appended
+   * @param time    the time in seconds (not checked)
+   * @param values  of length {@linkplain #width()}
+   */
+  public void append(long tick, double time, double[] values) {
+    if (readOnly)
+      throw new IllegalStateException("read-only " + dir);
+    checkOpen();
+    if (tick < lastTick)
+      throw new IllegalArgumentException("tick " + tick + " < last tick " + lastTick);
+    if (values.length != width)
+      throw new IllegalArgumentException("values length " + values.length + "; width " + width);
+
+    int offset = (int) (size % segmentRecords);
+    ByteBuffer segment;
+    if (offset == 0) {
+      if (!segments.isEmpty())
+        ((MappedByteBuffer) segments.get(segments.size() - 1)).force();
+      File file = segmentFile(segments.size());
+      segment = map(file, MapMode.READ_WRITE, HEADER_SIZE + (long) segmentRecords * recordSize);
+      segment.putInt(0, MAGIC);
+      segment.putInt(WIDTH_OFFSET, width);
+      segment.putInt(CAPACITY_OFFSET, segmentRecords);
+      segments.add(segment);
+    } else
+      segment = segments.get(segments.size() - 1);
+
+    int pos = HEADER_SIZE + offset * recordSize;
+    segment.putLong(pos, tick);
+    segment.putDouble(pos + TIME_OFFSET, time);
+    pos += VALUES_OFFSET;
+    for (int index = 0; index < width; ++index, pos += 8)
+      segment.putDouble(pos, values[index]);
+
+    segment.putLong(COUNT_OFFSET, offset + 1);
+    ++size;
+    lastTick = tick;
+  }
+
+
+
+  /**
+   * Returns the number of records.
+   */
+  public long size() {
+    return size;
+  }
+
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  /**
+   * Returns the number of values per record.
+   */
+  public int width() {
+    return width;
+  }
+
+
+  /**
+   * Returns the size of each record in bytes.
+   */
+  public int recordSize() {
+    return recordSize;
+  }
+
+
+  public int getSegmentRecords() {
+    return segmentRecords;
+  }
+
+
+  public File getDir() {
+    return dir;
+  }
+
+
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+
+
+  public long getTick(long index) {
+    return segment(index).getLong(position(index));
+  }
+
+
+  public double getTime(long index) {
+    return segment(index).getDouble(position(index) + TIME_OFFSET);
+  }
+
+
+  public double getValue(long index, int column) {
+    if (column < 0 || column >= width)
+      throw new IndexOutOfBoundsException("column " + column);
+    return segment(index).getDouble(position(index) + VALUES_OFFSET + 8 * column);
+  }
+
+
+  /**
+   * Copies the values of the record at the given <tt>index</tt> into <tt>out</tt>.
+   */
+  public void getValues(long index, double[] out) {
+    if (out.length < width)
+      throw new IllegalArgumentException("out length " + out.length + "; width " + width);
+    ByteBuffer segment = segment(index);
+    int pos = position(index) + VALUES_OFFSET;
+    for (int column = 0; column < width; ++column, pos += 8)
+      out[column] = segment.getDouble(pos);
+  }
+
+
+  /**
+   * Returns the index of the first record whose tick is no less than the given
+   * <tt>tick</tt>, or {@linkplain #size()}, if there is none.
+   */
+  public long indexOf(long tick) {
+    long lo = 0;
+    long hi = size;
+    while (lo < hi) {
+      long mid = (lo + hi) >>> 1;
+      if (getTick(mid) < tick)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+
+  /**
+   * Returns read-only views of the records with ticks in the range
+   * [<tt>fromTick</tt>, <tt>toTick</tt>), one buffer per segment spanned.
+   * Each buffer's position and limit bound a whole number of records; nothing
+   * is copied.
+   */
+  public List<ByteBuffer> slice(long fromTick, long toTick) {
+    if (fromTick > toTick)
+      throw new IllegalArgumentException("fromTick " + fromTick + " > toTick " + toTick);
+    return sliceIndices(indexOf(fromTick), indexOf(toTick));
+  }
+
+
+  /**
+   * Returns read-only views of the records in the index range
+   * [<tt>fromIndex</tt>, <tt>toIndex</tt>), one buffer per segment spanned.
+   */
+  public List<ByteBuffer> sliceIndices(long fromIndex, long toIndex) {
+    if (fromIndex < 0 || fromIndex > toIndex || toIndex > size)
+      throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + "); size " + size);
+    checkOpen();
+    if (fromIndex == toIndex)
+      return Collections.emptyList();
+
+    List<ByteBuffer> slices = new ArrayList<>();
+    for (long index = fromIndex; index < toIndex; ) {
+      int segIndex = (int) (index / segmentRecords);
+      long segEnd = Math.min(toIndex, (segIndex + 1L) * segmentRecords);
+      ByteBuffer slice = segments.get(segIndex).asReadOnlyBuffer();
+      slice.order(ByteOrder.LITTLE_ENDIAN);
+      slice.limit(position(segEnd - 1) + recordSize).position(position(index));
+      slices.add(slice);
+      index = segEnd;
+    }
+    return slices;
+  }
+
+
+
+  /**
+   * Flushes the written records to disk.
+   */
+  public void flush() {
+    checkOpen();
+    if (!readOnly && !segments.isEmpty())
+      ((MappedByteBuffer) segments.get(segments.size() - 1)).force();
+  }
+
+
+  /**
+   * Flushes and releases the segments. (The mappings themselves are released
+   * when they're garbage collected.)
+   */
+  @Override
+  public void close() {
+    if (closed)
+      return;
+    if (!readOnly)
+      for (ByteBuffer segment : segments)
+        ((MappedByteBuffer) segment).force();
+    segments.clear();
+    closed = true;
+  }
+
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("closed " + dir);
+  }
+
+
+  private ByteBuffer segment(long index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("index " + index + "; size " + size);
+    checkOpen();
+    return segments.get((int) (index / segmentRecords));
+  }
+
+
+  private int position(long index) {
+    return HEADER_SIZE + (int) (index % segmentRecords) * recordSize;
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+/**
+ * A checkpoint that appends the state of the simulation to a {@linkplain TrajectoryLog}
+ * each time it's checked. Schedule it periodically with the {@linkplain SimEngine}
+ * whose time it records. Note equality semantics are by identity.
+ */
+public class TrajectoryRecorder extends Checkpoint {
+
+
+  /**
+   * The recorded state. Each record is a fixed number of <tt>double</tt>s.
+   */
+  public interface Source {
+
+    /**
+     * Returns the number of values per record. Must be constant.
+     */
+    int width();
+
+    /**
+     * Copies the current state into the given array of length {@linkplain #width()}.
+     */
+    void getState(double[] state);
+  }
+
+
+
+  private final SimEngine engine;
+  private final Source source;
+  private final TrajectoryLog log;
+
+  // work array recycling ok since single threaded
+  private final double[] state;
+
+
+  /**
+   * @param engine  the engine whose time is recorded
+   * @param source  the state recorded
+   * @param log     writable and of the same width as <tt>source</tt>
+   */
+  public TrajectoryRecorder(SimEngine engine, Source source, TrajectoryLog log) {
+    if (engine == null)
+      throw new IllegalArgumentException("null engine");
+    if (log.isReadOnly())
+      throw new IllegalArgumentException("read-only log " + log.getDir());
+    if (source.width() != log.width())
+      throw new IllegalArgumentException(
+          "source width " + source.width() + "; log width " + log.width());
+    this.engine = engine;
+    this.source = source;
+    this.log = log;
+    this.state = new double[log.width()];
+  }
+
+
+  @Override
+  public void check() {
+    source.getState(state);
+    log.append(engine.getTickTime(), engine.getTime(), state);
+  }
+
+
+  public TrajectoryLog getLog() {
+    return log;
+  }
+
+
+  public Source getSource() {
+    return source;
+  }
+
+}
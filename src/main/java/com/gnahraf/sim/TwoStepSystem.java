@@ -8,20 +8,171 @@ package com.gnahraf.sim;
  * system, we must update the derivatives of change, before effecting
  * change. If we do this globally, then we're less prone to errors,
  * systemic artifacts, etc.
+ * <p/>
+ * How the 2 steps are interleaved is determined by the {@linkplain Integrator}.
+ * The symplectic integrators require the subclass to override {@linkplain #kick(double)}
+ * and {@linkplain #drift(double)}. To be integrated {@linkplain Integrator#newRespa(int)
+ * multi-rate}, the subclass must also override {@linkplain #updateFastForces()},
+ * {@linkplain #updateSlowForces()} and {@linkplain #kickSlow(double)}, and return
+ * <tt>true</tt> from {@linkplain #isMultiRate()}; otherwise, the multi-rate integrators
+ * fall back to velocity Verlet at the sub-step.
  */
 public abstract class TwoStepSystem extends CheckedUniverse {
 
+  private Integrator integrator = Integrator.DEFAULT;
+
+  private final Integrator.Dynamics dynamics = new Integrator.Dynamics() {
+    @Override
+    public void updateForces() {
+      TwoStepSystem.this.updateForces();
+    }
+    @Override
+    public void kick(double dt) {
+      TwoStepSystem.this.kick(dt);
+    }
+    @Override
+    public void drift(double dt) {
+      TwoStepSystem.this.drift(dt);
+    }
+    @Override
+    public void animate(double dt) {
+      TwoStepSystem.this.animate(dt);
+    }
+  };
+
+  private final Integrator.Dynamics multiRateDynamics = new Integrator.MultiRateDynamics() {
+    @Override
+    public void updateForces() {
+      TwoStepSystem.this.updateForces();
+    }
+    @Override
+    public void updateFastForces() {
+      TwoStepSystem.this.updateFastForces();
+    }
+    @Override
+    public void updateSlowForces() {
+      TwoStepSystem.this.updateSlowForces();
+    }
+    @Override
+    public void kickSlow(double dt) {
+      TwoStepSystem.this.kickSlow(dt);
+    }
+    @Override
+    public void kick(double dt) {
+      TwoStepSystem.this.kick(dt);
+    }
+    @Override
+    public void drift(double dt) {
+      TwoStepSystem.this.drift(dt);
+    }
+    @Override
+    public void animate(double dt) {
+      TwoStepSystem.this.animate(dt);
+    }
+  };
+
   @Override
   protected void tickImpl(double time, long steps) {
     final double timePerStep = time / steps;
-    while (steps-- > 0) {
-      updateForces();
-      animate(timePerStep);
-    }
+    integrate(timePerStep, steps);
+  }
+
+
+  /**
+   * Advances the system the given number of <tt>steps</tt>, each <tt>dt</tt>
+   * seconds long, using the {@linkplain #getIntegrator() integrator}.
+   */
+  protected final void integrate(double dt, long steps) {
+    integrator.integrate(isMultiRate() ? multiRateDynamics : dynamics, dt, steps);
+  }
+
+
+  /**
+   * Determines whether the system separates its fast and slow forces, i.e. whether
+   * it overrides {@linkplain #updateFastForces()}, {@linkplain #updateSlowForces()}
+   * and {@linkplain #kickSlow(double)}.
+   *
+   * @return <tt>false</tt> (base implementation)
+   * @see Integrator.MultiRateDynamics
+   */
+  protected boolean isMultiRate() {
+    return false;
   }
 
   protected abstract void updateForces();
 
   protected abstract void animate(double timePerStep);
 
+
+  /**
+   * Advances velocities using the current accelerations. Must be overridden
+   * for the symplectic integrators.
+   *
+   * @throws UnsupportedOperationException (base implementation)
+   */
+  protected void kick(double dt) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException();
+  }
+
+
+  /**
+   * Advances positions using the current velocities. Must be overridden
+   * for the symplectic integrators.
+   *
+   * @throws UnsupportedOperationException (base implementation)
+   */
+  protected void drift(double dt) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException();
+  }
+
+
+  /**
+   * Computes the fast varying accelerations only. Must be overridden if
+   * {@linkplain #isMultiRate() multi-rate}.
+   *
+   * @throws UnsupportedOperationException (base implementation)
+   * @see Integrator.MultiRateDynamics#updateFastForces()
+   */
+  protected void updateFastForces() throws UnsupportedOperationException {
+    throw new UnsupportedOperationException();
+  }
+
+
+  /**
+   * Computes the slowly varying accelerations, apart from the fast ones. Must be
+   * overridden if {@linkplain #isMultiRate() multi-rate}.
+   *
+   * @throws UnsupportedOperationException (base implementation)
+   * @see Integrator.MultiRateDynamics#updateSlowForces()
+   */
+  protected void updateSlowForces() throws UnsupportedOperationException {
+    throw new UnsupportedOperationException();
+  }
+
+
+  /**
+   * Advances velocities using the slow accelerations. Must be overridden if
+   * {@linkplain #isMultiRate() multi-rate}.
+   *
+   * @throws UnsupportedOperationException (base implementation)
+   */
+  protected void kickSlow(double dt) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException();
+  }
+
+
+  public Integrator getIntegrator() {
+    return integrator;
+  }
+
+
+  /**
+   * Sets the integration scheme. Defaults to {@linkplain Integrator#DEFAULT}.
+   */
+  public void setIntegrator(Integrator integrator) {
+    if (integrator == null)
+      throw new IllegalArgumentException("null integrator");
+    this.integrator = integrator;
+  }
+
 }
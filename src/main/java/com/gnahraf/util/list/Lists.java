@@ -5,7 +5,12 @@ package com.gnahraf.util.list;
 
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
 
 /**
  *
@@ -32,4 +37,34 @@ public class Lists {
         };
   }
 
+
+  /**
+   * Returns the first <tt>count</tt> items in the given <tt>order</tt>, sorted.
+   * Only <tt>count</tt> items are ever held (in a bounded heap), so this is cheaper
+   * than collecting and sorting the whole stream when <tt>count</tt> is small.
+   *
+   * @param count &ge; 0
+   */
+  public static <T> List<T> first(Stream<? extends T> items, Comparator<? super T> order, int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count " + count);
+    if (count == 0)
+      return new ArrayList<>();
+
+    // max-heap on order: the head is the first to go
+    PriorityQueue<T> heap = new PriorityQueue<>(Math.min(count, 1024) + 1, order.reversed());
+    items.forEachOrdered(item -> {
+      if (heap.size() < count)
+        heap.add(item);
+      else if (order.compare(item, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(item);
+      }
+    });
+
+    ArrayList<T> first = new ArrayList<>(heap);
+    Collections.sort(first, order);
+    return first;
+  }
+
 }
@@ -3,8 +3,21 @@
  */
 package com.gnahraf.util.tree;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  *
+ * <h4>Fork-join mode</h4>
+ * <p/>
+ * {@linkplain #processTree(ForkJoinPool)} hands off the subtrees of nodes
+ * selected by {@linkplain #forkSubtree(TreeNode)} to new processors (see
+ * {@linkplain #newSubtreeProcessor(TreeNode)}) that run as separate tasks.
+ * The traversal order <em>within</em> each processor is still pre-order,
+ * but the order across subtrees is no longer defined; implementations that care
+ * about order must sort their results.
  */
 public abstract class DecisionTreeProcessor<N extends TreeNode> {
   
@@ -14,11 +27,18 @@ public abstract class DecisionTreeProcessor<N extends TreeNode> {
   
   private TreeNode node;
 
+  /**
+   * The node whose descendants this instance processes. (For the processor
+   * of the whole tree, this is the root.)
+   */
+  private final TreeNode top;
+
   /**
    * 
    */
   public DecisionTreeProcessor(N node) {
     this.node = node;
+    this.top = node;
     if (!node.isRoot())
       throw new IllegalArgumentException(node + " not root");
     if (node.isLeaf())
@@ -26,26 +46,73 @@ public abstract class DecisionTreeProcessor<N extends TreeNode> {
   }
   
   
+  /**
+   * Creates an instance that processes only the descendants of the given
+   * <tt>subtree</tt> node. This is the constructor subclasses use to implement
+   * {@linkplain #newSubtreeProcessor(TreeNode)}.
+   *
+   * @param parent  the processor that already processed <tt>subtree</tt>
+   * @param subtree a non-leaf node
+   */
+  protected DecisionTreeProcessor(DecisionTreeProcessor<N> parent, N subtree) {
+    this.node = subtree;
+    this.top = subtree;
+    if (subtree.isLeaf())
+      throw new IllegalArgumentException("subtree " + subtree + " is a leaf");
+    if (subtree.level() <= parent.top.level())
+      throw new IllegalArgumentException("subtree " + subtree + " not below " + parent.top);
+  }
+
+
   /**
    * Processes the tree in a pre-order traversal.
    */
   public void processTree() {
-    node = node.child(0);
+    processImpl(null);
+  }
+
+
+  /**
+   * Processes the tree in the given fork-join <tt>pool</tt>. Each processed
+   * node for which {@linkplain #forkSubtree(TreeNode)} returns <tt>true</tt>
+   * has its subtree processed in a separate task. On return all tasks
+   * have completed.
+   */
+  public void processTree(ForkJoinPool pool) {
+    if (pool == null)
+      throw new IllegalArgumentException("null pool");
+    if (!top.isRoot())
+      throw new IllegalStateException("not a root processor");
+    pool.invoke(new SubtreeTask(this));
+  }
+
+
+  private void processImpl(List<SubtreeTask> forked) {
+    node = top.child(0);
+    int depth = 1;
     while (true) {
       @SuppressWarnings("unchecked")
       
-      boolean ok = processNode((N) node);
+      N current = (N) node;
+
+      boolean ok = processNode(current);
       if (ok) {
-        node = node.nextPreOrder();
-        if (node == null)
-          return;
-        continue;
+        if (!node.isLeaf()) {
+          if (forked == null || !forkSubtree(current)) {
+            node = node.child(0);
+            ++depth;
+            continue;
+          }
+          SubtreeTask task = new SubtreeTask(newSubtreeProcessor(current));
+          task.fork();
+          forked.add(task);
+        }
       }
 
       
       while (node.isLastChild()) {
         node = node.parent();
-        if (node.isRoot())
+        if (--depth == 0)
           return;
       }
       node = node.nextSibling();
@@ -55,4 +122,50 @@ public abstract class DecisionTreeProcessor<N extends TreeNode> {
   
   protected abstract boolean processNode(N node);
 
+
+  /**
+   * Determines whether the subtree of the given (just successfully processed)
+   * <tt>node</tt> is to be processed in a separate task. Only invoked in
+   * fork-join mode and only for non-leaf nodes.
+   *
+   * @return <tt>false</tt> (base implementation)
+   */
+  protected boolean forkSubtree(N node) {
+    return false;
+  }
+
+
+  /**
+   * Returns a new processor for the descendants of the given <tt>node</tt>.
+   * Invoked on the thread processing <tt>node</tt>, right after it's been
+   * processed, so any state the new instance needs must be copied here.
+   * Must be overridden if {@linkplain #forkSubtree(TreeNode)} is.
+   *
+   * @see #DecisionTreeProcessor(DecisionTreeProcessor, TreeNode)
+   */
+  protected DecisionTreeProcessor<N> newSubtreeProcessor(N node) {
+    throw new UnsupportedOperationException();
+  }
+
+
+
+
+  @SuppressWarnings("serial")
+  private static class SubtreeTask extends RecursiveAction {
+
+    private final DecisionTreeProcessor<?> processor;
+
+    SubtreeTask(DecisionTreeProcessor<?> processor) {
+      this.processor = processor;
+    }
+
+    @Override
+    protected void compute() {
+      List<SubtreeTask> forked = new ArrayList<>();
+      processor.processImpl(forked);
+      for (SubtreeTask task : forked)
+        task.join();
+    }
+  }
+
 }
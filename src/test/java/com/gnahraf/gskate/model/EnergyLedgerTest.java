@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class EnergyLedgerTest {
+
+  @Test
+  public void testBalances() {
+    EnergyLedger ledger = new EnergyLedger(2);
+    assertEquals(2, ledger.getTethers());
+    ledger.open(100, 60, -500);
+    ledger.addTetherWork(0, 3);
+    ledger.addTetherWork(1, -1);
+    ledger.addGravityWork(10);
+    ledger.addTranslationalWork(9);
+    
+    assertEquals(3, ledger.getTetherWork(0), 0);
+    assertEquals(-1, ledger.getTetherWork(1), 0);
+    assertEquals(2, ledger.getTetherWork(), 0);
+    assertEquals(112, ledger.getKe(), 0);
+    assertEquals(69, ledger.getTranslationalKe(), 0);
+    assertEquals(43, ledger.getRotationalKe(), 0);
+    assertEquals(-510, ledger.getPe(), 0);
+    assertEquals(-398, ledger.getEnergy(), 0);
+    assertEquals(2, ledger.getEnergyGain(), 0);
+    
+    EnergyLedger copy = new EnergyLedger(ledger);
+    ledger.open(0, 0, 0);
+    assertEquals(0, ledger.getEnergy(), 0);
+    assertEquals(0, ledger.getTetherWork(0), 0);
+    assertEquals(-398, copy.getEnergy(), 0);
+  }
+  
+  
+  @Test
+  public void testCompensated() {
+    EnergyLedger ledger = new EnergyLedger(1);
+    ledger.addGravityWork(1e8);
+    double naive = 1e8;
+    for (int i = 0; i < 1000 * 1000; ++i) {
+      ledger.addGravityWork(1e-9);
+      naive += 1e-9;
+    }
+    // each posting is under half an ulp: the naive sum loses them all
+    assertEquals(1e8, naive, 0);
+    assertEquals(1e8 + 1e-3, ledger.getGravityWork(), 1e-8);
+  }
+  
+  
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testBadIndex() {
+    new EnergyLedger(1).addTetherWork(1, 1);
+  }
+
+}
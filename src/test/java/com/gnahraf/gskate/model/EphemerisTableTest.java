@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ *
+ */
+public class EphemerisTableTest {
+  
+  
+  @Test
+  public void testMoon() {
+    EphemerisTable.CircularOrbit orbit = new EphemerisTable.CircularOrbit(
+        Constants.MOON_ORBIT_RADIUS, Constants.MOON_PERIOD, Constants.OBLIQUITY, 1);
+    final double end = 10 * 86400;
+    EphemerisTable table = new EphemerisTable(orbit, 0, end, 3600);
+    assertEquals(241, table.getNodes());
+    assertEquals(end, table.getEndTime(), 0);
+    
+    Vector pos = new Vector();
+    double[] state = new double[6];
+    double maxError = 0;
+    for (double time = 0; time <= end; time += 1000) {
+      orbit.getState(time, state);
+      table.getPosition(time, pos);
+      maxError = Math.max(maxError, pos.diffMagnitude(state[0], state[1], state[2]));
+      assertEquals(Constants.MOON_ORBIT_RADIUS, pos.magnitude(), 0.01);
+    }
+    assertTrue("maxError " + maxError, maxError < 0.01);
+    
+    // exact at the nodes
+    orbit.getState(7200, state);
+    table.getPosition(7200, pos);
+    assertEquals(state[0], pos.getX(), 1e-6);
+    assertEquals(state[1], pos.getY(), 1e-6);
+    assertEquals(state[2], pos.getZ(), 1e-6);
+  }
+  
+  
+  @Test
+  public void testOutOfSpan() {
+    EphemerisTable table = new EphemerisTable(
+        new EphemerisTable.CircularOrbit(1e9, 1e6, 0, 0), 100, 150, 20);
+    assertEquals(160, table.getEndTime(), 0);
+    table.getPosition(100, new Vector());
+    table.getPosition(160, new Vector());
+    try {
+      table.getPosition(99.9, new Vector());
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      table.getPosition(160.1, new Vector());
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+}
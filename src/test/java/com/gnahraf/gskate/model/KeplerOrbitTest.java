@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ *
+ */
+public class KeplerOrbitTest {
+  
+  private final static double G = Constants.G_EARTH;
+  
+  
+  @Test
+  public void testApoapsis() {
+    final double periapsis = Constants.EARTH_RADIUS + 300 * 1000;
+    final double apoapsis = Constants.EARTH_RADIUS + 2000 * 1000;
+    final double a = (periapsis + apoapsis) / 2;
+    DynaVector state = new DynaVector();
+    state.setPosition(0, periapsis * 0.6, periapsis * 0.8);
+    double speed = Math.sqrt(G * (2 / periapsis - 1 / a));
+    state.setVelocity(speed, 0, 0);
+    
+    KeplerOrbit orbit = new KeplerOrbit(G, state);
+    assertEquals(a, orbit.getSemiMajorAxis(), 1e-6);
+    assertEquals(2 * Math.PI * Math.sqrt(a * a * a / G), orbit.getPeriod(), 1e-9);
+    
+    final double halfPeriod = orbit.getPeriod() / 2;
+    for (double time : new double[] { halfPeriod, -halfPeriod, 11 * halfPeriod }) {
+      DynaVector out = orbit.propagate(time, new DynaVector());
+      assertEquals(0, out.getX(), 1e-6);
+      assertEquals(-apoapsis * 0.6, out.getY(), 1e-6);
+      assertEquals(-apoapsis * 0.8, out.getZ(), 1e-6);
+      assertEquals(-speed * periapsis / apoapsis, out.getVx(), 1e-9);
+      assertEquals(G / (apoapsis * apoapsis), out.getAcc().magnitude(), 1e-12);
+    }
+    
+    DynaVector out = orbit.propagate(orbit.getPeriod() * 100, new DynaVector());
+    assertEquals(0, out.getPos().diffMagnitude(state.getPos()), 1e-4);
+    assertEquals(0, out.getVel().diffMagnitude(state.getVel()), 1e-7);
+  }
+  
+  
+  @Test
+  public void testConservation() {
+    DynaVector state = new DynaVector();
+    state.setPosition(7.1e6, -1.2e6, 3.3e5);
+    state.setVelocity(1200, 7100, -900);
+    KeplerOrbit orbit = new KeplerOrbit(G, state);
+    
+    Vector h0 = new Vector(state.getPos()).cross(state.getVel());
+    DynaVector out = new DynaVector();
+    for (double time = -5000; time < 50000; time += 777.7) {
+      orbit.propagate(time, out);
+      double energy = out.getVel().magnitudeSq() / 2 - G / out.getPos().magnitude();
+      assertEquals(orbit.getEnergy(), energy, 1e-6);
+      Vector h = new Vector(out.getPos()).cross(out.getVel());
+      assertEquals(0, h.diffMagnitude(h0), h0.magnitude() * 1e-13);
+    }
+    // exact at epoch
+    orbit.propagate(0, out);
+    assertEquals(state.getPos(), out.getPos());
+    assertEquals(state.getVel(), out.getVel());
+  }
+  
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testEscape() {
+    DynaVector state = new DynaVector();
+    state.setPosition(7e6, 0, 0);
+    state.setVelocity(0, Math.sqrt(2 * G / 7e6) * 1.0001, 0);
+    new KeplerOrbit(G, state);
+  }
+
+}
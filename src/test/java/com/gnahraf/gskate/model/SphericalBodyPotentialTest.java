@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class SphericalBodyPotentialTest {
+  
+  
+  @Test
+  public void testBulkForce() {
+    SphericalBodyPotential potential = new SphericalBodyPotential();
+    assertBulkForceExact(potential);
+  }
+  
+  
+  @Test
+  public void testBaseBulkForce() {
+    SphericalBodyPotential earth = new SphericalBodyPotential();
+    // only overrides the abstract methods
+    Potential potential = new Potential() {
+      @Override
+      public void force(DynaVector bob) {
+        earth.force(bob);
+      }
+      @Override
+      public double pe(DynaVector bob) {
+        return earth.pe(bob);
+      }
+      @Override
+      public void update(double seconds) {  }
+      @Override
+      public Potential clone() {
+        return this;
+      }
+    };
+    assertBulkForceExact(potential);
+  }
+  
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCount() {
+    new SphericalBodyPotential().force(new double[3], new double[3], 0, -1);
+  }
+  
+  
+  private void assertBulkForceExact(Potential potential) {
+    final int offset = 2;
+    final int count = 5;
+    Random random = new Random(7);
+    double[] pos = new double[offset + 3 * count + 1];
+    double[] acc = new double[pos.length];
+    for (int index = 0; index < pos.length; ++index) {
+      pos[index] = (random.nextDouble() - 0.5) * 2e7;
+      acc[index] = random.nextDouble();
+    }
+    double[] expected = acc.clone();
+    DynaVector bob = new DynaVector();
+    for (int x = offset; x < offset + 3 * count; x += 3) {
+      bob.setPosition(pos[x], pos[x + 1], pos[x + 2]);
+      bob.setAcceleration(acc[x], acc[x + 1], acc[x + 2]);
+      potential.force(bob);
+      expected[x] = bob.getAx();
+      expected[x + 1] = bob.getAy();
+      expected[x + 2] = bob.getAz();
+    }
+    potential.force(pos, acc, offset, count);
+    assertArrayEquals(expected, acc, 0);
+  }
+
+}
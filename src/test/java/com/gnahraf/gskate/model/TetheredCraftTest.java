@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.sling.Sling;
+import com.gnahraf.gskate.sling.le.Launcher;
+import com.gnahraf.gskate.tetra.model.TetraEdge;
+import com.gnahraf.math.r3.Vector;
+import com.gnahraf.sim.Integrator;
+
+/**
+ *
+ */
+public class TetheredCraftTest {
+
+
+  /**
+   * Returns an octahedron (6 bobs, 12 tethers) of unequal masses, 10 m across,
+   * at rest about the origin. The edges are given in scrambled order.
+   */
+  private TetheredCraft newOctahedron() {
+    int[] edges = {
+        2, 0,  4, 1,  0, 5,  3, 2,  1, 2,  5, 1,
+        0, 3,  4, 2,  3, 5,  0, 4,  3, 4,  5, 2,
+    };
+    TetheredCraft craft = new TetheredCraft(new double[] { 1, 2, 3, 1, 2, 3 }, edges);
+    // bobs 0 and 1 are opposite, so are 2 and 3, and 4 and 5 (not tethered)
+    double[][] xyz = {
+        { 5, 0, 0 }, { -5, 0, 0 }, { 0, 5, 0 }, { 0, -5, 0 }, { 0, 0, 5 }, { 0, 0, -5 },
+    };
+    DynaVector bob = new DynaVector();
+    for (int i = 0; i < 6; ++i) {
+      bob.setPosition(xyz[i][0], xyz[i][1], xyz[i][2]);
+      bob.setVelocity(0.1 * i, -0.05 * i, 0.02);
+      craft.setBob(i, bob);
+    }
+    return craft;
+  }
+
+
+  @Test
+  public void testCsrOrder() {
+    TetheredCraft craft = newOctahedron();
+    assertEquals(6, craft.getBobs());
+    assertEquals(12, craft.getTethers());
+    for (int t = 0; t < 12; ++t) {
+      assertTrue(craft.getLoBob(t) < craft.getHiBob(t));
+      if (t > 0) {
+        int prevLo = craft.getLoBob(t - 1);
+        int lo = craft.getLoBob(t);
+        assertTrue(prevLo < lo || prevLo == lo && craft.getHiBob(t - 1) < craft.getHiBob(t));
+      }
+      assertEquals(t, craft.getTetherIndex(craft.getLoBob(t), craft.getHiBob(t)));
+      assertEquals(t, craft.getTetherIndex(craft.getHiBob(t), craft.getLoBob(t)));
+    }
+    assertEquals(-1, craft.getTetherIndex(0, 1));
+    assertEquals(-1, craft.getTetherIndex(5, 4));
+
+    TetheredCraft tetra = TetheredCraft.newComplete(4);
+    for (int t = 0; t < 6; ++t) {
+      assertEquals(TetraEdge.forIndex(t).loBob, tetra.getLoBob(t));
+      assertEquals(TetraEdge.forIndex(t).hiBob, tetra.getHiBob(t));
+    }
+  }
+
+
+  @Test
+  public void testBadEdges() {
+    double[] masses = { 1, 1, 1 };
+    int[][] bad = { { 0, 0 }, { 0, 3 }, { -1, 2 }, { 0, 1, 1, 0 }, { 0, 1, 2 } };
+    for (int[] edges : bad) {
+      try {
+        new TetheredCraft(masses, edges);
+        fail();
+      } catch (IllegalArgumentException expected) {  }
+    }
+  }
+
+
+  @Test
+  public void testMomentumConserved() {
+    TetheredCraft craft = newOctahedron();
+    for (int t = 0; t < craft.getTethers(); ++t)
+      craft.setTetherByIndex(t, t % 3 == 0 ? -0.5 : 0.1 * t);
+    Vector cmVel = craft.getCmVel(new Vector());
+    Vector cm0 = craft.getCm(new Vector());
+
+    double seconds = 20;
+    for (int step = 0; step < 20000; ++step) {
+      craft.updateTetherForces();
+      craft.animateDeltaT(seconds / 20000);
+    }
+    assertEquals(0, craft.getCmVel(new Vector()).diffMagnitude(cmVel), 1e-14);
+    Vector expected = new Vector(cm0).add(cmVel, seconds);
+    assertEquals(0, craft.getCm(new Vector()).diffMagnitude(expected), 1e-11);
+  }
+
+
+  @Test
+  public void testCopy() {
+    TetheredCraft craft = newOctahedron();
+    craft.setTetherByIndex(3, 2.5);
+    TetheredCraft copy = new TetheredCraft(craft);
+    craft.updateTetherForces();
+    craft.animateDeltaT(1);
+    assertNotEquals(craft.getX(2), copy.getX(2), 1e-6);
+    copy.copyFrom(craft);
+    for (int i = 0; i < 6; ++i)
+      assertEquals(craft.getVz(i), copy.getVz(i), 0);
+    assertEquals(2.5, copy.getTetherByIndex(3), 0);
+    try {
+      copy.copyFrom(TetheredCraft.newComplete(6));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
+  @Test
+  public void testSameAsSling() {
+    Launcher launcher = new Launcher();
+    launcher.setInitLength(100);
+    Sling sling = launcher.launch();
+    sling.setTether(sling.getBobA().getMass() / 20);
+    TetheredCraft craft = sling.toTetheredCraft();
+    Potential potential = sling.getPotential();
+    assertEquals(sling.getKe() + sling.getPe(), craft.getEnergy(potential), 1e-6);
+
+    sling.updateForces();
+    craft.updateForces(potential);
+    DynaVector bob = new DynaVector();
+    assertEquals(0, craft.copyBobTo(0, bob).getAcc().diffMagnitude(sling.getBobA().getAcc()), 1e-15);
+    assertEquals(0, craft.copyBobTo(1, bob).getAcc().diffMagnitude(sling.getBobB().getAcc()), 1e-15);
+
+    for (int step = 0; step < 10000; ++step) {
+      sling.updateForces();
+      sling.animate(0.01);
+      craft.updateForces(potential);
+      craft.animateDeltaT(0.01);
+    }
+    Sling copy = new Launcher().launch();
+    copy.copyFrom(craft);
+    assertEquals(sling.getTether(), copy.getTether(), 0);
+    assertEquals(sling.getTetherLength(), copy.getTetherLength(), 1e-6);
+    assertEquals(0, copy.getBobA().getPos().diffMagnitude(sling.getBobA().getPos()), 1e-5);
+    assertEquals(0, copy.getBobB().getVel().diffMagnitude(sling.getBobB().getVel()), 1e-8);
+  }
+
+
+
+  /**
+   * Returns a 100 m, 1 kg sling in low earth orbit, spinning out of the orbital plane,
+   * with an elastic tether pre-stretched <tt>stretch</tt> meters.
+   */
+  private TetheredCraft newElasticSling(double stiffness, double damping, double stretch) {
+    Launcher launcher = new Launcher();
+    launcher.setInitLength(100);
+    Sling sling = launcher.launch();
+    sling.getBobA().getVel().add(0, 0, 1);
+    sling.getBobB().getVel().add(0, 0, -1);
+    TetheredCraft craft = sling.toTetheredCraft();
+    craft.setElastic(0, 100 - stretch, stiffness, damping);
+    return craft;
+  }
+
+
+  private Vector separation(TetheredCraft craft) {
+    DynaVector a = craft.copyBobTo(0, new DynaVector());
+    DynaVector b = craft.copyBobTo(1, new DynaVector());
+    return new Vector(b.getPos()).subtract(a.getPos());
+  }
+
+
+  @Test
+  public void testImexNotElastic() {
+    TetheredCraft craft = newOctahedron();
+    craft.setTetherByIndex(2, 0.5);
+    TetheredCraft copy = new TetheredCraft(craft);
+    craft.animateImex(new SphericalBodyPotential(), 10.5, 0.25);
+    copy.animate(new SphericalBodyPotential(), 10.5, 0.25, Integrator.VELOCITY_VERLET);
+    assertFalse(craft.isElastic());
+    for (int i = 0; i < 6; ++i) {
+      assertEquals(copy.getX(i), craft.getX(i), 0);
+      assertEquals(copy.getVy(i), craft.getVy(i), 0);
+    }
+  }
+
+
+  @Test
+  public void testImexSoftTether() {
+    // a soft tether: the explicit integrators resolve it too
+    final double seconds = 100;
+    TetheredCraft reference = newElasticSling(0.01, 0.001, 0.5);
+    reference.animate(new SphericalBodyPotential(), seconds, 0.001, Integrator.VELOCITY_VERLET);
+    assertTrue(reference.getElasticTension(0) > 0);
+
+    TetheredCraft craft = newElasticSling(0.01, 0.001, 0.5);
+    craft.animateImex(new SphericalBodyPotential(), seconds, 0.1);
+    assertEquals(0, separation(craft).diffMagnitude(separation(reference)), 1e-4);
+    assertEquals(reference.getElasticTension(0), craft.getElasticTension(0), 1e-6);
+  }
+
+
+  @Test
+  public void testImexStiffTether() {
+    // a stiff tether: it rings at ~2 kHz
+    final double stiffness = 1e6;
+    final double damping = 500;
+    final double seconds = 300;
+
+    TetheredCraft reference = newElasticSling(stiffness, damping, 0.001);
+    SphericalBodyPotential potential = new SphericalBodyPotential();
+    reference.animate(potential, 1, 1e-4, Integrator.VELOCITY_VERLET);
+
+    // explicitly, 10 ms steps are too coarse: the first one flings the bobs apart
+    TetheredCraft explicit = newElasticSling(stiffness, damping, 0.001);
+    explicit.animate(new SphericalBodyPotential(), 1, 0.01, Integrator.VELOCITY_VERLET);
+    assertFalse(Math.abs(explicit.getTetherLength(0) - reference.getTetherLength(0)) < 0.01);
+
+    reference.animate(potential, seconds - 1, 1e-4, Integrator.VELOCITY_VERLET);
+
+    TetheredCraft craft = newElasticSling(stiffness, damping, 0.001);
+    craft.animateImex(new SphericalBodyPotential(), seconds, 0.1);
+    // stays taut, at about its rest length (the load is ~0.01 N)
+    assertEquals(reference.getTetherLength(0), craft.getTetherLength(0), 2e-5);
+    assertTrue(craft.getElasticTension(0) > 0);
+    assertEquals(0, separation(craft).diffMagnitude(separation(reference)), 2);
+    Vector cm = craft.getCm(new Vector());
+    assertEquals(0, cm.diffMagnitude(reference.getCm(new Vector())), 0.01);
+
+    // orbital steps
+    craft = newElasticSling(stiffness, damping, 0.001);
+    craft.animateImex(new SphericalBodyPotential(), seconds, 5);
+    assertEquals(reference.getTetherLength(0), craft.getTetherLength(0), 2e-5);
+  }
+
+
+  @Test
+  public void testElasticCopy() {
+    TetheredCraft craft = newElasticSling(100, 1, 0.25);
+    assertTrue(craft.isElastic());
+    assertEquals(100 * (0.25 - 0.5 * 99.75 * 1e-4), craft.getElasticTension(0), 1e-6);
+    TetheredCraft copy = new TetheredCraft(craft);
+    assertTrue(copy.isElastic());
+    assertEquals(99.75, copy.getRestLength(0), 0);
+    assertEquals(100, copy.getStiffness(0), 0);
+    assertEquals(1, copy.getDamping(0), 0);
+    copy.setRestLength(0, 101);
+    assertEquals(0, copy.getElasticTension(0), 0);
+    assertEquals(99.75, craft.getRestLength(0), 0);
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gnahraf.math.r3.Vector;
+
+/**
+ *
+ */
+public class ThirdBodyPotentialTest {
+  
+  private final static double DAY = 86400;
+  
+  private final static double LEO = Constants.EARTH_RADIUS + 400 * 1000;
+  
+  
+  @Test
+  public void testTidalAcceleration() {
+    ThirdBodyPotential potential = ThirdBodyPotential.newEarthMoonSun(0, DAY);
+    SphericalBodyPotential earth = new SphericalBodyPotential();
+    
+    // on the Earth-Moon axis, the Moon's tidal pull is outward
+    Vector moon = potential.getBodyPosition(0, new Vector());
+    DynaVector bob = new DynaVector();
+    bob.getPos().set(moon).toMagnitude(LEO);
+    DynaVector expected = new DynaVector(bob);
+    potential.force(bob);
+    earth.force(expected);
+    
+    Vector tidal = new Vector(bob.getAcc()).subtract(expected.getAcc());
+    double moonTide = tide(Constants.MOON_MASS, Constants.MOON_ORBIT_RADIUS);
+    double sunTide = tide(Constants.SUN_MASS, Constants.AU);
+    // (at time zero, the Sun is in the same direction as the Moon)
+    assertTrue(tidal.dot(moon) > 0);
+    assertEquals(moonTide + sunTide, tidal.magnitude(), (moonTide + sunTide) * 1e-6);
+    
+    assertEquals(earth.pe(bob), potential.pe(bob), 10);
+  }
+  
+  
+  /**
+   * Returns the tidal acceleration at LEO altitude, on the axis to the given body.
+   */
+  private double tide(double mass, double distance) {
+    double gm = Constants.G * mass;
+    return gm / ((distance - LEO) * (distance - LEO)) - gm / (distance * distance);
+  }
+  
+  
+  @Test
+  public void testForceIsGradient() {
+    ThirdBodyPotential potential = ThirdBodyPotential.newEarthMoonSun(0, DAY);
+    potential.update(DAY / 3);
+    DynaVector bob = new DynaVector();
+    bob.setPosition(LEO * 0.6, -LEO * 0.8, 0);
+    potential.force(bob);
+    
+    final double h = 1;
+    double[] dx = { h, 0, 0, 0, h, 0, 0, 0, h };
+    DynaVector probe = new DynaVector();
+    for (int axis = 0; axis < 3; ++axis) {
+      probe.copyFrom(bob);
+      probe.getPos().add(dx[3 * axis], dx[3 * axis + 1], dx[3 * axis + 2]);
+      double hi = potential.pe(probe);
+      probe.copyFrom(bob);
+      probe.getPos().add(-dx[3 * axis], -dx[3 * axis + 1], -dx[3 * axis + 2]);
+      double lo = potential.pe(probe);
+      double expected = -(hi - lo) / (2 * h);
+      assertEquals(expected, bob.getAcc().val(0, axis), 1e-6);
+    }
+  }
+  
+  
+  @Test
+  public void testBulkForce() {
+    ThirdBodyPotential potential = ThirdBodyPotential.newEarthMoonSun(0, DAY);
+    potential.update(1234.5);
+    final int offset = 1;
+    final int count = 10000;
+    Random random = new Random(11);
+    double[] pos = new double[offset + 3 * count + 1];
+    double[] acc = new double[pos.length];
+    for (int x = offset; x < offset + 3 * count; x += 3) {
+      // random directions, LEO altitudes (give or take)
+      Vector p = new Vector(
+          random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+      p.toMagnitude(LEO + (random.nextDouble() - 0.5) * 2e5);
+      pos[x] = p.getX();
+      pos[x + 1] = p.getY();
+      pos[x + 2] = p.getZ();
+      acc[x] = random.nextDouble();
+      acc[x + 1] = random.nextDouble();
+      acc[x + 2] = random.nextDouble();
+    }
+    double[] expected = acc.clone();
+    DynaVector bob = new DynaVector();
+    for (int x = offset; x < offset + 3 * count; x += 3) {
+      bob.setPosition(pos[x], pos[x + 1], pos[x + 2]);
+      bob.setAcceleration(acc[x], acc[x + 1], acc[x + 2]);
+      potential.force(bob);
+      expected[x] = bob.getAx();
+      expected[x + 1] = bob.getAy();
+      expected[x + 2] = bob.getAz();
+    }
+    potential.force(pos, acc, offset, count);
+    // bit for bit
+    assertArrayEquals(expected, acc, 0);
+  }
+  
+  
+  @Test
+  public void testUpdateAndClone() {
+    ThirdBodyPotential potential = ThirdBodyPotential.newEarthMoonSun(DAY, 3 * DAY);
+    assertEquals(DAY, potential.getTime(), 0);
+    Vector moon = potential.getBodyPosition(0, new Vector());
+    
+    ThirdBodyPotential copy = potential.clone();
+    potential.update(DAY);
+    assertEquals(2 * DAY, potential.getTime(), 0);
+    assertEquals(DAY, copy.getTime(), 0);
+    assertEquals(moon, copy.getBodyPosition(0, new Vector()));
+    
+    // the moon moves about 13 degrees a day
+    double angle = Math.acos(
+        moon.dot(potential.getBodyPosition(0, new Vector())) / moon.magnitudeSq());
+    assertEquals(2 * Math.PI * DAY / Constants.MOON_PERIOD, angle, 1e-6);
+    
+    try {
+      potential.update(1.01 * DAY);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertEquals(2 * DAY, potential.getTime(), 0);
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.sling.le.Launcher;
+import com.gnahraf.gskate.sling.le.LowEarth;
+import com.gnahraf.sim.Integrator;
+
+/**
+ *
+ */
+public class HillSlingTest {
+  
+  
+  /**
+   * Returns a 100 m sling in low earth orbit, spinning out of the orbital plane
+   * (the bobs at 1 m/s about the CM).
+   */
+  private Sling newSpinningSling() {
+    Launcher launcher = new Launcher();
+    launcher.setInitLength(100);
+    Sling sling = launcher.launch();
+    sling.getBobA().getVel().add(0, 0, 1);
+    sling.getBobB().getVel().add(0, 0, -1);
+    sling.setTether(sling.getBobA().getMass() / 50);
+    return sling;
+  }
+  
+  
+  @Test
+  public void testRoundtrip() {
+    Sling sling = newSpinningSling();
+    HillSling hill = new HillSling(sling);
+    assertEquals(sling.getTetherLength(), hill.getTetherLength(), 1e-12);
+    assertEquals(sling.getTetherLengthRate(), hill.getTetherLengthRate(), 1e-12);
+    assertEquals(sling.getTether(), hill.getTether(), 0);
+    assertEquals(0, hill.getCm().diffMagnitude(sling.getCm()), 1e-9);
+    
+    // radial offset, spinning along the orbit normal
+    assertEquals(-100, hill.getOffset().getX(), 1e-9);
+    assertEquals(0, hill.getOffset().getY(), 1e-9);
+    assertEquals(-2, hill.getOffsetRate().getZ(), 1e-8);
+    
+    Sling copy = newSpinningSling();
+    copy.setTether(0);
+    hill.copyTo(copy);
+    assertEquals(sling.getTether(), copy.getTether(), 0);
+    assertEquals(0, copy.getBobA().getPos().diffMagnitude(sling.getBobA().getPos()), 1e-8);
+    assertEquals(0, copy.getBobB().getVel().diffMagnitude(sling.getBobB().getVel()), 1e-11);
+  }
+  
+  
+  @Test
+  public void testAccuracy() {
+    final double seconds = 500;
+    Sling reference = newSpinningSling();
+    LowEarth system = new LowEarth(new Craft(reference));
+    system.setIntegrator(Integrator.YOSHIDA4);
+    system.tick(seconds, 500 * 1000);
+    
+    Sling plain = newSpinningSling();
+    system = new LowEarth(new Craft(plain));
+    system.setIntegrator(Integrator.YOSHIDA4);
+    system.tick(seconds, 500);
+    
+    HillSling hill = new HillSling(newSpinningSling());
+    hill.tick(seconds, 500);
+    
+    // 1 second steps: the tether length is 10x more accurate
+    double hillErr = Math.abs(reference.getTetherLength() - hill.getTetherLength());
+    double plainErr = Math.abs(reference.getTetherLength() - plain.getTetherLength());
+    assertTrue("hillErr " + hillErr, hillErr < 1e-6);
+    assertTrue("hillErr " + hillErr + "; plainErr " + plainErr, hillErr * 10 < plainErr);
+    
+    Sling out = newSpinningSling();
+    hill.copyTo(out);
+    assertEquals(0, out.getCm().diffMagnitude(reference.getCm()), 1e-5);
+    assertEquals(
+        reference.getTetherLengthRate(), hill.getTetherLengthRate(), 1e-7);
+  }
+  
+  
+  @Test
+  public void testLengthControl() {
+    // the controller makes the same decisions, given the same inputs
+    Sling sling = newSpinningSling();
+    LowEarth system = new LowEarth(new Craft(sling));
+    system.setIntegrator(Integrator.YOSHIDA4);
+    TetherLengthControl control = new TetherLengthControl(sling);
+    
+    HillSling hill = new HillSling(newSpinningSling());
+    TetherLengthControl hillControl = new TetherLengthControl(hill);
+    
+    for (TetherLengthControl c : new TetherLengthControl[] { control, hillControl }) {
+      c.setTargetLength(120);
+      c.init(0);
+    }
+    for (int t = 1; t <= 200; ++t) {
+      system.tick(1, 1000);
+      control.adjustTether(t);
+      hill.tick(1, 10);
+      hillControl.adjustTether(t);
+    }
+    assertEquals(sling.getTether(), hill.getTether(), 1e-9);
+    assertEquals(sling.getTetherLength(), hill.getTetherLength(), 1e-5);
+  }
+  
+  
+  @Test(expected = IllegalStateException.class)
+  public void testAdjustTetherOldNotSling() {
+    new TetherLengthControl(new HillSling(newSpinningSling())).adjustTetherOld();
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.sling;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.model.EnergyLedger;
+import com.gnahraf.gskate.sling.le.Launcher;
+import com.gnahraf.gskate.sling.le.LowEarth;
+import com.gnahraf.sim.Integrator;
+
+/**
+ *
+ */
+public class SlingTest {
+  
+  
+  @Test
+  public void testLedger() {
+    for (Integrator integrator :
+        new Integrator[] { Integrator.DEFAULT, Integrator.VELOCITY_VERLET, Integrator.newRespa(10) }) {
+      testLedger(integrator);
+    }
+  }
+  
+  
+  private void testLedger(Integrator integrator) {
+    Launcher launcher = new Launcher();
+    launcher.setInitLength(100);
+    Sling sling = launcher.launch();
+    sling.getBobA().getVel().add(0, 0, 1);
+    sling.getBobB().getVel().add(0, 0, -1);
+    LowEarth system = new LowEarth(new Craft(sling));
+    system.setIntegrator(integrator);
+    TetherLengthControl control = new TetherLengthControl(sling);
+    control.setTargetLength(80);
+    control.init(0);
+    
+    double ke = sling.getKe();
+    EnergyLedger ledger = sling.openLedger();
+    for (int t = 1; t <= 100; ++t) {
+      system.tick(1, 1000);
+      control.adjustTether(t);
+    }
+    
+    // reeling in spins the sling up: the tether's doing
+    double rotationalKe = sling.getKe() - sling.getCmVel().magnitudeSq() * sling.getMass() / 2;
+    assertTrue(ledger.getTetherWork() > 0.1);
+    assertEquals(ledger.getTetherWork(), ledger.getTetherWork(0), 0);
+    assertEquals(sling.getKe(), ledger.getKe(), 1e-9 * ke);
+    assertEquals(rotationalKe, ledger.getRotationalKe(), 1e-6 * ledger.getTetherWork());
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le;
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.tetra.model.TetraTest;
+
+/**
+ *
+ */
+public class SimpleEquiTrialTest {
+
+
+  @Test
+  public void testBatchedSameAsAlone() {
+    Constraints constraints = new Constraints();
+    constraints.maxTetherLength = 20000;
+    constraints.steadyStateTetherLength = 250;
+    constraints.initTetherLength = 250;
+    constraints.timeFineness = 0.05;
+
+    double min = constraints.steadyStateTetherLength / constraints.maxTetherLength;
+    double[][] times = { { 0.2, 0.4, 0.6 }, { 0.25, 0.5, 0.75 }, { 0.1, 0.5, 0.9 } };
+    List<SimpleEquiTrial> batched = new ArrayList<>();
+    List<SimpleEquiTrial> alone = new ArrayList<>();
+    for (double[] t : times) {
+      SimpleEquiTrial.Profile profile = new SimpleEquiTrial.Profile();
+      profile.addNextPoint(t[0], 0.98);
+      profile.addNextPoint(t[1], 0.98);
+      profile.addNextPoint(t[2], min);
+      batched.add(new SimpleEquiTrial(constraints, profile));
+      alone.add(new SimpleEquiTrial(constraints, profile));
+    }
+
+    SimpleEquiTrial.runOneOrbit(batched);
+    for (int i = 0; i < times.length; ++i) {
+      SimpleEquiTrial trial = alone.get(i);
+      trial.runOneOrbit();
+      assertEquals(trial.failed(), batched.get(i).failed());
+      assertEquals(trial.getSystem().getTime(), batched.get(i).getSystem().getTime());
+      TetraTest.assertTetraslEqual(trial.getSystem().getCraft(), batched.get(i).getSystem().getCraft());
+    }
+  }
+
+}
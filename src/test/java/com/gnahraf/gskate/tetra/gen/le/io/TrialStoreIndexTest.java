@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.io;
+
+
+import static org.junit.Assert.*;
+import static com.gnahraf.gskate.tetra.model.TetraTest.newCraft;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.gen.StateComparators;
+import com.gnahraf.gskate.tetra.model.CraftState;
+import com.gnahraf.gskate.tetra.model.Tetra;
+import com.gnahraf.test.IoTestCase;
+
+/**
+ *
+ */
+public class TrialStoreIndexTest extends IoTestCase {
+
+  public final static String STORE_PREFIX = "store-";
+
+
+  @Test
+  public void testFirst() {
+    TrialStore store = newStore(new Object() { });
+    List<CraftState> states = writeStates(store, 20);
+
+    TrialStoreIndex index = new TrialStoreIndex(store);
+    assertEquals(20, index.refresh());
+    assertEquals(20, index.stateCount());
+
+    Collections.sort(states, StateComparators.newCmEnergyComparator(new SphericalBodyPotential()));
+    List<TrialStoreIndex.Summary> first = index.first(TrialStoreIndex.Summary.CM_ENERGY_ORDER, 5);
+    assertEquals(5, first.size());
+    for (int i = 0; i < 5; ++i)
+      assertEquals(store.getStateManager().getId(states.get(i)), first.get(i).id);
+
+    assertEquals(20, index.first(TrialStoreIndex.Summary.CM_ENERGY_ORDER, 100).size());
+    assertTrue(index.first(TrialStoreIndex.Summary.CM_ENERGY_ORDER, 0).isEmpty());
+  }
+
+
+  @Test
+  public void testProvenance() {
+    TrialStore store = newStore(new Object() { });
+    List<CraftState> states = writeStates(store, 3);
+    List<String> ids =
+        states.stream().map(store.getStateManager()::getId).collect(Collectors.toList());
+    String t1 = writeTransform(store, ids.get(0), ids.get(1));
+    String t2 = writeTransform(store, ids.get(1), ids.get(2));
+
+    TrialStoreIndex index = new TrialStoreIndex(store);
+    index.refresh();
+    assertEquals(2, index.transformCount());
+    assertNull(index.getTransformTo(ids.get(0)));
+    assertEquals(t1, index.getTransformTo(ids.get(1)));
+    assertEquals(t2, index.getTransformTo(ids.get(2)));
+  }
+
+
+  @Test
+  public void testPersistAndIncrement() {
+    TrialStore store = newStore(new Object() { });
+    List<CraftState> states = writeStates(store, 4);
+    String id0 = store.getStateManager().getId(states.get(0));
+    String id1 = store.getStateManager().getId(states.get(1));
+    String t = writeTransform(store, id0, id1);
+
+    TrialStoreIndex index = new TrialStoreIndex(store);
+    assertEquals(5, index.refresh());
+    assertTrue(index.getFile().isFile());
+    assertEquals(0, index.refresh());
+
+    // reload from disk
+    index = new TrialStoreIndex(store);
+    assertEquals(4, index.stateCount());
+    assertEquals(t, index.getTransformTo(id1));
+    TrialStoreIndex.Summary summary = index.getSummary(id0);
+    SphericalBodyPotential earth = new SphericalBodyPotential();
+    assertEquals(states.get(0).getCmEnergy(earth), summary.cmEnergy, 0);
+    assertEquals(states.get(0).getPe(earth), summary.pe, 0);
+    assertEquals(states.get(0).getRotationalEnergy(), summary.rotationalEnergy, 0);
+    assertEquals(states.get(0).getTime(), summary.time);
+
+    // only what's new is indexed
+    writeStates(store, 6);
+    assertEquals(2, index.refresh());
+    assertEquals(6, new TrialStoreIndex(store).stateCount());
+  }
+
+
+
+  private TrialStore newStore(Object innerMethodObject) {
+    File dir = getMethodOutputFilepath(innerMethodObject, STORE_PREFIX);
+    return TrialStore.create(dir);
+  }
+
+
+  /**
+   * Writes <tt>count</tt> (&le; 20) distinct states. The first states written are
+   * always the same ones.
+   */
+  private List<CraftState> writeStates(TrialStore store, int count) {
+    List<CraftState> states = new ArrayList<>();
+    for (int s = 0; s < count; ++s) {
+      Tetra craft = newCraft();
+      double k = 1 + ((s * 7) % 20) * 0.1;
+      for (int i = 0; i < 4; ++i) {
+        DynaVector bob = craft.getBob(i);
+        bob.setVelocity(k * bob.getVx(), k * bob.getVy(), k * bob.getVz());
+      }
+      CraftState state = new CraftState(1000 + s, craft);
+      store.getStateManager().write(state);
+      states.add(state);
+    }
+    return states;
+  }
+
+
+  private String writeTransform(TrialStore store, String startState, String endState) {
+    RegularShapeTransform.Builder transform = new RegularShapeTransform.Builder();
+    transform.config = "c";
+    transform.startState = startState;
+    transform.endState = endState;
+    transform.commandSet = "cmds";
+    return store.getRegShapeTransformManager().write(transform.build());
+  }
+
+}
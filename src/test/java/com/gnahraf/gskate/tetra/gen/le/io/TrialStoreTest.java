@@ -9,6 +9,7 @@ import static com.gnahraf.gskate.tetra.model.TetraTest.*;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.junit.Test;
@@ -16,8 +17,10 @@ import org.junit.Test;
 import com.gnahraf.gskate.tetra.gen.le.Constraints;
 import com.gnahraf.gskate.tetra.gen.le.io.RegularShapeTransform;
 import com.gnahraf.gskate.tetra.gen.le.io.TrialStore;
+import com.gnahraf.gskate.tetra.gen.le.reg.RegularShapeTrial;
 import com.gnahraf.gskate.tetra.model.CraftState;
 import com.gnahraf.gskate.tetra.model.Tetra;
+import com.gnahraf.io.store.PackObjectManager;
 import com.gnahraf.test.IoTestCase;
 import com.gnahraf.util.data.NormPoint;
 
@@ -209,6 +212,130 @@ public class TrialStoreTest extends IoTestCase {
   
   
   
+  @Test
+  public void testPacked() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, STORE_PREFIX);
+    TrialStore store = TrialStore.create(dir, true);
+    CraftState state = new CraftState(1025, newCraft());
+    String id = store.getStateManager().write(state);
+    assertEquals(state, store.getStateManager().read(id));
+    
+    // the pack is locked while open
+    try {
+      TrialStore.load(dir);
+      fail();
+    } catch (IllegalStateException expected) {  }
+    store.close();
+    
+    // the layout is detected on reload
+    store = TrialStore.load(dir);
+    assertEquals(state, store.getStateManager().read(id));
+    assertEquals(1, store.getStateManager().streamIds().count());
+    store.close();
+  }
+  
+  
+  @Test
+  public void testPackedLostIndex() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, STORE_PREFIX);
+    TrialStore store = TrialStore.create(dir, true);
+    CraftState state = new CraftState(1025, newCraft());
+    String id = store.getStateManager().write(state);
+    store.close();
+    
+    File states = new File(dir, TrialStore.STATES);
+    assertTrue(new File(states, PackObjectManager.INDEX_FILE).delete());
+    assertTrue(new File(states, PackObjectManager.LOCK_FILE).delete());
+    
+    // still detected as packed, and the index is rebuilt
+    store = TrialStore.load(dir);
+    assertTrue(store.getStateManager() instanceof PackObjectManager);
+    assertEquals(state, store.getStateManager().read(id));
+    assertEquals(1, store.getStateManager().streamIds().count());
+    store.close();
+  }
+  
+  
+  @Test
+  public void testPacker() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, STORE_PREFIX);
+    TrialStore store = TrialStore.create(dir);
+    
+    Tetra craft = newCraft();
+    CraftState state = new CraftState(1025, craft);
+    String id = store.getStateManager().write(state);
+    craft.setTetherByIndex(2, craft.getTetherByIndex(2) + .001);
+    CraftState state2 = new CraftState(1026, craft);
+    String id2 = store.getStateManager().write(state2);
+    
+    ArrayList<NormPoint> commands = new ArrayList<>();
+    commands.add(new NormPoint(0.25, 0.5));
+    String cmdId = store.getRegShapeCmdSetManager().write(commands);
+    
+    TrialStorePacker packer = new TrialStorePacker(dir);
+    assertEquals(2, packer.packStates(true));
+    assertEquals(1, packer.packCommandSets(true));
+    assertEquals(0, packer.packStates(true));
+    
+    store = TrialStore.load(dir);
+    assertEquals(state, store.getStateManager().read(id));
+    assertEquals(state2, store.getStateManager().read(id2));
+    assertEquals(commands, store.getRegShapeCmdSetManager().read(cmdId));
+    assertEquals(2, store.getStateManager().streamIds().count());
+    assertEquals(id, store.getStateManager().getId(state));
+    store.close();
+  }
+  
+  
+  
+  
+  @Test
+  public void testCheckpoint() {
+    TrialStore store = newStore(new Object() { });
+    Constraints constraints = new Constraints();
+    
+    RegularShapeTrial trial = new RegularShapeTrial(constraints);
+    assertTrue(trial.runToOrbitalPoint(new NormPoint(0.001, 0.5)));
+    assertTrue(trial.runToOrbitalPoint(new NormPoint(0.002, 0.5)));
+    
+    List<NormPoint> history = new ArrayList<>(trial.getCommandHistory());
+    assertNull(store.readRegularShapeCheckpoint(constraints, trial.getInitState(), history));
+    
+    String id = store.writeRegularShapeCheckpoint(trial);
+    assertEquals(id, store.writeRegularShapeCheckpoint(trial));
+    
+    // the intermediate state and commands aren't mixed in with the outcomes
+    assertEquals(1, store.getStateManager().streamIds().count());
+    assertEquals(0, store.getRegShapeCmdSetManager().streamIds().count());
+    assertEquals(1, store.getCheckpointStateManager().streamIds().count());
+    
+    RegularShapeTrial resumed =
+        store.readRegularShapeCheckpoint(constraints, trial.getInitState(), history);
+    assertNotNull(resumed);
+    assertEquals(trial.getCommandsReceived(), resumed.getCommandsReceived());
+    assertEquals(history, resumed.getCommandHistory());
+    assertEquals(trial.getPeriodMillis(), resumed.getPeriodMillis());
+    assertEquals(trial.getTrialTime(), resumed.getTrialTime());
+    
+    // the resumed trial proceeds exactly as the original
+    NormPoint next = new NormPoint(0.003, 0.9);
+    assertTrue(trial.runToOrbitalPoint(next));
+    assertTrue(resumed.runToOrbitalPoint(next));
+    assertTetraslEqual(trial.getSystem().getCraft(), resumed.getSystem().getCraft());
+    assertArrayEquals(trial.getControllerState(), resumed.getControllerState(), 0);
+    assertEquals(trial.getCmEnergyGain(), resumed.getCmEnergyGain(), 0);
+    
+    // a different history is a miss
+    history.add(next);
+    assertNull(store.readRegularShapeCheckpoint(constraints, trial.getInitState(), history));
+  }
+  
+  
+  
+  
   private TrialStore newStore(Object innerMethodObject) {
     File dir = getMethodOutputFilepath(innerMethodObject, STORE_PREFIX);
     return new TrialStore(dir);
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.reg;
+
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.model.TetraTest;
+
+/**
+ *
+ */
+public class RegularShapeTrialEnsembleTest {
+
+  private final static int REGIONS = 5;
+
+
+  @Test
+  public void testParallelSameAsSerial() {
+    RegularShapeTrialEnsemble serial = newEnsemble();
+    serial.execute();
+    RegularShapeTrialEnsemble parallel = newEnsemble();
+    parallel.execute(4);
+
+    List<RegularShapeTrial> expected = serial.getTrials();
+    List<RegularShapeTrial> actual = parallel.getTrials();
+    assertTrue(expected.size() > 2);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      RegularShapeTrial e = expected.get(i);
+      RegularShapeTrial a = actual.get(i);
+      assertEquals("trial " + i, e.getCommandHistory(), a.getCommandHistory());
+      assertEquals("trial " + i, e.getCmEnergyGain(), a.getCmEnergyGain(), 0);
+    }
+  }
+
+
+
+  @Test
+  public void testBatchedSameAsAlone() {
+    RegularShapeTrialEnsemble ensemble = newEnsemble();
+    ensemble.execute();
+    List<RegularShapeTrial> trials = ensemble.getTrials();
+    assertTrue(trials.size() > 2);
+    for (RegularShapeTrial trial : trials) {
+      // the replay runs one command at a time, by itself
+      RegularShapeTrial alone = trial.replay(trial.getConstraints());
+      assertFalse(alone.failed());
+      assertEquals(trial.getSystem().getTime(), alone.getSystem().getTime());
+      TetraTest.assertTetraslEqual(trial.getSystem().getCraft(), alone.getSystem().getCraft());
+    }
+  }
+
+
+
+  private RegularShapeTrialEnsemble newEnsemble() {
+    Constraints constraints = new Constraints();
+    constraints.maxTetherLength = 20000;
+    constraints.steadyStateTetherLength = 250;
+    constraints.initTetherLength = 250;
+    constraints.timeFineness = 0.004;
+    return new RegularShapeTrialEnsemble(constraints, REGIONS, 1, 0, REGIONS - 1, null);
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.reg;
+
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.model.TetraTest;
+
+/**
+ *
+ */
+public class RegularShapeTrialPipelineTest {
+
+  private final static int REGIONS = 5;
+
+
+  @Test
+  public void testSameResolution() {
+    Constraints constraints = newConstraints(0.004);
+    RegularShapeTrialPipeline pipeline =
+        new RegularShapeTrialPipeline(constraints, 0.004, 2, REGIONS, 1, 0, REGIONS - 1, null);
+    pipeline.execute(2);
+
+    List<RegularShapeTrialPipeline.Verification> verifications = pipeline.getVerifications();
+    assertEquals(2, verifications.size());
+    assertTrue(pipeline.getEnsemble().getTrials().size() > 2);
+
+    // a replay at the same resolution is exact
+    for (RegularShapeTrialPipeline.Verification v : verifications) {
+      assertFalse(v.fine.failed());
+      assertEquals(v.coarseRank, v.fineRank);
+      assertEquals(0, v.getCmEnergyGainError(), 0);
+      assertEquals(0, v.getCmPositionError(), 0);
+      TetraTest.assertTetraslEqual(v.coarse.getSystem().getCraft(), v.fine.getSystem().getCraft());
+    }
+    assertTrue(
+        verifications.get(0).coarse.getCmEnergyGain() >= verifications.get(1).coarse.getCmEnergyGain());
+  }
+
+
+  @Test
+  public void testFinerResolution() {
+    Constraints constraints = newConstraints(0.002);
+    RegularShapeTrialPipeline pipeline =
+        new RegularShapeTrialPipeline(constraints, 0.004, 1, REGIONS, 1, 0, REGIONS - 1, null);
+    pipeline.execute(1);
+
+    RegularShapeTrialPipeline.Verification v = pipeline.getVerifications().get(0);
+    assertEquals(0.004, v.coarse.getConstraints().timeFineness, 0);
+    assertEquals(0.002, v.fine.getConstraints().timeFineness, 0);
+    assertEquals(v.coarse.getCommandHistory(), v.fine.getCommandHistory());
+    assertEquals(v.coarse.getTrialTime(), v.fine.getTrialTime());
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCoarserThanFine() {
+    new RegularShapeTrialPipeline(newConstraints(0.004), 0.002, 1, REGIONS, 1, 0, REGIONS - 1, null);
+  }
+
+
+
+  private Constraints newConstraints(double timeFineness) {
+    Constraints constraints = new Constraints();
+    constraints.maxTetherLength = 20000;
+    constraints.steadyStateTetherLength = 250;
+    constraints.initTetherLength = 250;
+    constraints.timeFineness = timeFineness;
+    return constraints;
+  }
+
+}
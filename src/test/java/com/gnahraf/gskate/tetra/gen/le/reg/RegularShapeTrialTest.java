@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.gen.le.reg;
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.model.Simulation;
+import com.gnahraf.gskate.tetra.model.TetraTest;
+import com.gnahraf.sim.ControlLog;
+import com.gnahraf.util.data.NormPoint;
+
+/**
+ *
+ */
+public class RegularShapeTrialTest {
+
+
+  @Test
+  public void testReplayTethers() {
+    RegularShapeTrial trial = new RegularShapeTrial(newConstraints(0.004));
+    ControlLog log = trial.recordTethers();
+    assertTrue(trial.runToOrbitalPoint(new NormPoint(0.001, 0.25)));
+    assertTrue(trial.runToOrbitalPoint(new NormPoint(0.002, 0.5)));
+    assertTrue(trial.runSteady(5000));
+    assertTrue(log.size() > 6);
+    assertSame(log, trial.getTetherLog());
+
+    // same resolution: exact
+    Simulation replay = trial.replayTethers(0.004);
+    assertEquals(trial.getSystem().getTime(), replay.getTime());
+    TetraTest.assertTetraslEqual(trial.getSystem().getCraft(), replay.getCraft());
+
+    // finer resolution: close
+    Simulation fine = trial.replayTethers(0.002);
+    assertEquals(trial.getSystem().getTime(), fine.getTime());
+    for (int i = 0; i < 4; ++i) {
+      double dx = trial.getSystem().getCraft().getBob(i).getX() - fine.getCraft().getBob(i).getX();
+      assertEquals(0, dx, 1);
+    }
+  }
+
+
+  @Test(expected = IllegalStateException.class)
+  public void testReplayNotRecorded() {
+    RegularShapeTrial trial = new RegularShapeTrial(newConstraints(0.004));
+    trial.runToOrbitalPoint(new NormPoint(0.001, 0.25));
+    trial.replayTethers(0.004);
+  }
+
+
+
+  @Test
+  public void testRunToOrbitalPoints() {
+    RegularShapeTrial proto = new RegularShapeTrial(newConstraints(0.004));
+    assertTrue(proto.runToOrbitalPoint(new NormPoint(0.001, 0.25)));
+
+    List<NormPoint> points = Arrays.asList(
+        new NormPoint(0.002, 0.5),
+        new NormPoint(0.0025, 0.25),  // holds steady
+        new NormPoint(0.001, 0.25),   // already there
+        new NormPoint(0.0005, 0.5),   // out of sequence
+        new NormPoint(0.003, 0.75));
+    List<RegularShapeTrial> batched = new ArrayList<>();
+    List<RegularShapeTrial> alone = new ArrayList<>();
+    for (int i = 0; i < points.size(); ++i) {
+      batched.add(new RegularShapeTrial(proto));
+      alone.add(new RegularShapeTrial(proto));
+    }
+
+    RegularShapeTrial.runToOrbitalPoints(batched, points);
+    for (int i = 0; i < points.size(); ++i) {
+      RegularShapeTrial trial = alone.get(i);
+      assertEquals(trial.runToOrbitalPoint(points.get(i)), !batched.get(i).failed());
+      assertEquals(trial.getCommandHistory(), batched.get(i).getCommandHistory());
+      assertEquals(trial.getSystem().getTime(), batched.get(i).getSystem().getTime());
+      TetraTest.assertTetraslEqual(trial.getSystem().getCraft(), batched.get(i).getSystem().getCraft());
+    }
+    assertTrue(batched.get(3).failed());
+    assertFalse(batched.get(4).failed());
+  }
+
+
+
+  private Constraints newConstraints(double timeFineness) {
+    Constraints constraints = new Constraints();
+    constraints.maxTetherLength = 20000;
+    constraints.steadyStateTetherLength = 250;
+    constraints.initTetherLength = 250;
+    constraints.timeFineness = timeFineness;
+    return constraints;
+  }
+
+}
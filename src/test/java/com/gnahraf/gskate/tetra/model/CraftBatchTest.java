@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.tetra.control.ShapeFuzzyController;
+import com.gnahraf.gskate.tetra.control.ShapeMetaController;
+import com.gnahraf.gskate.tetra.control.TetherController;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.sim.Integrator;
+
+/**
+ *
+ */
+public class CraftBatchTest {
+
+  private final static double TIME_FINENESS = 0.001;
+
+
+  @Test
+  public void testSameTrajectory() {
+    final int count = 5;
+    List<LonelyEarth> batched = newSystems(count);
+    List<LonelyEarth> solo = newSystems(count);
+
+    CraftBatch batch = new CraftBatch(batched);
+    assertEquals(count, batch.size());
+
+    for (int lap = 0; lap < 10; ++lap) {
+      batch.animateMillis(255, TIME_FINENESS);
+      for (int c = 0; c < count; ++c) {
+        solo.get(c).animateMillis(255, TIME_FINENESS);
+        TetraTest.assertTetraslEqual(solo.get(c).getCraft(), batched.get(c).getCraft());
+        assertEquals(solo.get(c).getTime(), batched.get(c).getTime());
+      }
+    }
+    assertEquals(0, batch.getFailures());
+  }
+
+
+  @Test
+  public void testSameControlledTrajectory() {
+    final int count = 3;
+    List<LonelyEarth> batched = newSystems(count);
+    List<LonelyEarth> solo = newSystems(count);
+
+    CraftBatch batch = new CraftBatch(batched);
+    List<TetherController> soloControllers = new ArrayList<>();
+    for (int c = 0; c < count; ++c) {
+      double length = 120 + 40 * c;
+      batch.setController(c, newController(batched.get(c), length));
+      soloControllers.add(newController(solo.get(c), length));
+    }
+
+    batch.animateControlledMillis(2010, TIME_FINENESS, 40);
+    for (int c = 0; c < count; ++c) {
+      solo.get(c).animateControlledMillis(2010, TIME_FINENESS, soloControllers.get(c), 40);
+      TetraTest.assertTetraslEqual(solo.get(c).getCraft(), batched.get(c).getCraft());
+      assertEquals(2010, batched.get(c).getTime());
+    }
+  }
+
+
+  @Test
+  public void testSameControlledTrajectoryOwnDurations() {
+    final long[] millis = { 2010, 95, 0, 1240, 2010 };
+    final int count = millis.length;
+    List<LonelyEarth> batched = newSystems(count);
+    List<LonelyEarth> solo = newSystems(count);
+
+    CraftBatch batch = new CraftBatch(batched);
+    List<TetherController> soloControllers = new ArrayList<>();
+    for (int c = 0; c < count; ++c) {
+      double length = 120 + 40 * c;
+      batch.setController(c, newController(batched.get(c), length));
+      soloControllers.add(newController(solo.get(c), length));
+    }
+
+    batch.animateControlledMillis(millis, TIME_FINENESS, 40);
+    assertEquals(0, batch.getFailures());
+    for (int c = 0; c < count; ++c) {
+      solo.get(c).animateControlledMillis(millis[c], TIME_FINENESS, soloControllers.get(c), 40);
+      TetraTest.assertTetraslEqual(solo.get(c).getCraft(), batched.get(c).getCraft());
+      assertEquals(millis[c], batched.get(c).getTime());
+    }
+  }
+
+
+  @Test
+  public void testFailureIsolated() {
+    List<LonelyEarth> systems = newSystems(3);
+    List<LonelyEarth> solo = newSystems(3);
+    CraftBatch batch = new CraftBatch(systems);
+
+    final RuntimeException boom = new RuntimeException("boom");
+    batch.setController(1, new TetherController() {
+      @Override
+      public void adjustTethers() {
+        throw boom;
+      }
+    });
+
+    batch.animateControlledMillis(200, TIME_FINENESS, 40);
+    assertEquals(1, batch.getFailures());
+    assertTrue(batch.failed(1));
+    assertSame(boom, batch.getException(1));
+    assertFalse(batch.failed(0));
+    assertNull(batch.getException(2));
+
+    // the failed craft stopped at its first control point
+    assertEquals(40, systems.get(1).getTime());
+    solo.get(1).animateMillis(40, TIME_FINENESS);
+    TetraTest.assertTetraslEqual(solo.get(1).getCraft(), systems.get(1).getCraft());
+
+    // the others carried on undisturbed
+    for (int c = 0; c < 3; c += 2) {
+      solo.get(c).animateMillis(200, TIME_FINENESS);
+      TetraTest.assertTetraslEqual(solo.get(c).getCraft(), systems.get(c).getCraft());
+    }
+  }
+
+
+  @Test
+  public void testCollision() {
+    List<LonelyEarth> systems = newSystems(2);
+    Tetra craft = systems.get(0).getCraft();
+    craft.getBob(1).getPos().set(craft.getBob(0).getPos());
+
+    List<LonelyEarth> solo = newSystems(2);
+
+    CraftBatch batch = new CraftBatch(systems);
+    batch.animateMillis(100, TIME_FINENESS);
+    assertTrue(batch.failed(0));
+    assertTrue(batch.getException(0) instanceof IllegalStateException);
+    assertFalse(batch.failed(1));
+    assertEquals(0, systems.get(0).getTime());
+    assertEquals(100, systems.get(1).getTime());
+
+    // the other craft was animated as if alone
+    solo.get(1).animateMillis(100, TIME_FINENESS);
+    TetraTest.assertTetraslEqual(solo.get(1).getCraft(), systems.get(1).getCraft());
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLedgerNotSupported() {
+    List<LonelyEarth> systems = newSystems(2);
+    systems.get(0).openLedger();
+    new CraftBatch(systems);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSymplecticNotSupported() {
+    List<LonelyEarth> systems = newSystems(2);
+    systems.get(1).setIntegrator(Integrator.VELOCITY_VERLET);
+    new CraftBatch(systems);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmpty() {
+    new CraftBatch(Collections.<Simulation>emptyList());
+  }
+
+
+
+  private List<LonelyEarth> newSystems(int count) {
+    List<LonelyEarth> systems = new ArrayList<>(count);
+    for (int c = 0; c < count; ++c) {
+      LonelyEarth system = new LonelyEarth(new Constraints());
+      Tetra craft = system.getCraft();
+      for (int i = 0; i < 6; ++i)
+        craft.setTetherByIndex(i, (i + c) % 2 == 0 ? -0.5 * (i + 1) : 0.25 * c);
+      systems.add(system);
+    }
+    return systems;
+  }
+
+
+  private TetherController newController(Simulation system, double edgeLength) {
+    ShapeFuzzyController fuzzy = new ShapeFuzzyController(system);
+    fuzzy.freeze();
+    ShapeMetaController controller = new ShapeMetaController(fuzzy);
+    TetraShape target = new TetraShape();
+    target.setLengths(edgeLength);
+    controller.setTargetShape(target, 2000, 50);
+    return controller;
+  }
+
+}
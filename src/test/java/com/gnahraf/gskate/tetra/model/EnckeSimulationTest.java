@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.EnergyLedger;
+import com.gnahraf.gskate.model.KeplerOrbit;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+import com.gnahraf.sim.Integrator;
+
+/**
+ *
+ */
+public class EnckeSimulationTest {
+  
+  
+  @Test
+  public void testFreeFall() {
+    // w/o tethers, each bob is on its own Kepler orbit
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    SphericalBodyPotential potential = (SphericalBodyPotential) system.getPotential();
+    Tetra init = new Tetra(system.getCraft());
+    
+    EnckeSimulation encke = new EnckeSimulation(potential, new Tetra(init));
+    encke.setIntegrator(Integrator.VELOCITY_VERLET);
+    Simulation plain = new Simulation(potential, new Tetra(init));
+    plain.setIntegrator(Integrator.VELOCITY_VERLET);
+    encke.animateMillis(1000 * 1000, 1);
+    plain.animateMillis(1000 * 1000, 1);
+    assertEquals(1000 * 1000, encke.getTime());
+    
+    DynaVector expected = new DynaVector();
+    for (int i = 0; i < 4; ++i) {
+      new KeplerOrbit(potential.getG(), init.getBob(i)).propagate(1000, expected);
+      double enckeErr = expected.distance(encke.getCraft().getBob(i));
+      double plainErr = expected.distance(plain.getCraft().getBob(i));
+      assertTrue("enckeErr " + enckeErr, enckeErr < 1e-3);
+      assertTrue(enckeErr * 1000 < plainErr);
+    }
+  }
+  
+  
+  @Test
+  public void testTethered() {
+    final long millis = 200 * 1000;
+    Simulation reference = newTethered(false, Integrator.YOSHIDA4);
+    reference.animateMillis(millis, 1e-3);
+    Simulation plain = newTethered(false, Integrator.VELOCITY_VERLET);
+    plain.animateMillis(millis, 0.1);
+    EnckeSimulation encke = (EnckeSimulation) newTethered(true, Integrator.VELOCITY_VERLET);
+    for (long t = 0; t < millis; t += 1000)
+      encke.animateMillis(1000, 0.1);
+    
+    Tetra expected = reference.getCraft();
+    double enckeErr = expected.newCmBob().distance(encke.getCraft().newCmBob());
+    double plainErr = expected.newCmBob().distance(plain.getCraft().newCmBob());
+    assertTrue("enckeErr " + enckeErr, enckeErr < 1e-5);
+    assertTrue(enckeErr * 100 < plainErr);
+    assertEquals(1, encke.getRectifications());
+    // tether lengths are resolved as in a plain simulation
+    assertEquals(
+        plain.getCraft().getBob(0).distance(plain.getCraft().getBob(1)),
+        encke.getCraft().getBob(0).distance(encke.getCraft().getBob(1)),
+        1e-4);
+  }
+  
+  
+  @Test
+  public void testRectify() {
+    EnckeSimulation encke = (EnckeSimulation) newTethered(true, Integrator.VELOCITY_VERLET);
+    assertNull(encke.getReference());
+    encke.animateMillis(1000, 0.01);
+    assertEquals(1, encke.getRectifications());
+    KeplerOrbit reference = encke.getReference();
+    
+    // a copy animates exactly the same
+    EnckeSimulation copy = encke.clone();
+    encke.animateMillis(1000, 0.01);
+    copy.animateMillis(1000, 0.01);
+    TetraTest.assertTetraslEqual(encke.getCraft(), copy.getCraft());
+    assertSame(reference, encke.getReference());
+    
+    // modifying the craft restarts the reference
+    encke.getCraft().getBob(0).getVel().add(0.001, 0, 0);
+    encke.animateMillis(1000, 0.01);
+    assertEquals(2, encke.getRectifications());
+    
+    // as does straying from it (by tidal forces, which are weak on a regular tetrahedron)
+    encke.setRectifyDistance(1e-9);
+    encke.animateMillis(100 * 1000, 0.1);
+    assertEquals(3, encke.getRectifications());
+    encke.animateMillis(100 * 1000, 0.1);
+    assertEquals(4, encke.getRectifications());
+  }
+  
+  
+  @Test
+  public void testLedger() {
+    Simulation plain = newTethered(false, Integrator.VELOCITY_VERLET);
+    EnckeSimulation encke = (EnckeSimulation) newTethered(true, Integrator.VELOCITY_VERLET);
+    Tetra craft = encke.getCraft();
+    double energy = encke.getEnergy();
+    double ke = craft.getKe();
+    EnergyLedger plainLedger = plain.openLedger();
+    EnergyLedger ledger = encke.openLedger();
+    assertSame(ledger, craft.getLedger());
+    for (int k = 0; k < 20; ++k) {
+      plain.animateMillis(10000, 0.01);
+      encke.animateMillis(10000, 0.01);
+      for (int j = 0; j < 6; ++j) {
+        double tether = -1.1 * craft.getTetherByIndex(j);
+        craft.setTetherByIndex(j, tether);
+        plain.getCraft().setTetherByIndex(j, tether);
+      }
+    }
+    
+    assertEquals(craft.getKe(), ledger.getKe(), 1e-13 * ke);
+    assertEquals(craft.getCmKe(), ledger.getTranslationalKe(), 1e-13 * ke);
+    assertEquals(craft.getPe(encke.getPotential()), ledger.getPe(), 1e-13 * ke);
+    // the tethers' work is the same as in a plain simulation
+    for (int j = 0; j < 6; ++j)
+      assertEquals(plainLedger.getTetherWork(j), ledger.getTetherWork(j), 1e-8);
+    assertEquals(encke.getEnergy() - energy, ledger.getEnergyGain(), 1e-6);
+    
+    // a ledger opened on the craft is posted to, too
+    EnergyLedger other = craft.openLedger(encke.getPotential());
+    encke.animateMillis(10000, 0.01);
+    assertNotEquals(0, other.getTetherWork(), 0);
+    assertEquals(craft.getKe(), other.getKe(), 1e-13 * ke);
+  }
+  
+  
+  private Simulation newTethered(boolean encke, Integrator integrator) {
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    Tetra craft = new Tetra(system.getCraft());
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, -0.01);
+    SphericalBodyPotential potential = (SphericalBodyPotential) system.getPotential();
+    Simulation sim = encke ? new EnckeSimulation(potential, craft) : new Simulation(potential, craft);
+    sim.setIntegrator(integrator);
+    return sim;
+  }
+
+}
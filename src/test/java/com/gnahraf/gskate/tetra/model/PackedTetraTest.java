@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.gskate.tetra.model;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.SphericalBodyPotential;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
+
+/**
+ *
+ */
+public class PackedTetraTest {
+
+  @Test
+  public void testCopyRoundTrip() {
+    Tetra craft = TetraTest.newCraft();
+    PackedTetra packed = new PackedTetra(craft);
+    Tetra copy = packed.toTetra();
+    TetraTest.assertTetraslEqual(craft, copy);
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = craft.getBob(i);
+      DynaVector bobCopy = copy.getBob(i);
+      assertEquals(bob.getAx(), bobCopy.getAx(), 0);
+      assertEquals(bob.getAy(), bobCopy.getAy(), 0);
+      assertEquals(bob.getAz(), bobCopy.getAz(), 0);
+      assertEquals(bob.getX(), packed.getX(i), 0);
+      assertEquals(bob.getVz(), packed.getVz(i), 0);
+    }
+    assertEquals(craft.getKe(), packed.getKe(), 0);
+    TetraTest.assertTetraslEqual(craft, new PackedTetra(packed).toTetra());
+  }
+
+
+  @Test
+  public void testUpdateForces() {
+    Tetra craft = TetraTest.newCraft();
+    SphericalBodyPotential potential = new SphericalBodyPotential();
+    PackedTetra packed = new PackedTetra(craft);
+    craft.updateForces(potential);
+    packed.updateForces(potential);
+    Tetra copy = packed.toTetra();
+    for (int i = 0; i < 4; ++i) {
+      DynaVector bob = craft.getBob(i);
+      DynaVector bobCopy = copy.getBob(i);
+      assertEquals(bob.getAx(), bobCopy.getAx(), 0);
+      assertEquals(bob.getAy(), bobCopy.getAy(), 0);
+      assertEquals(bob.getAz(), bobCopy.getAz(), 0);
+    }
+  }
+
+
+  @Test
+  public void testSameTrajectory() {
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    Tetra craft = system.getCraft();
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, i % 2 == 0 ? -0.5 * (i + 1) : 0.25);
+
+    SphericalBodyPotential potential = new SphericalBodyPotential();
+    PackedTetra packed = new PackedTetra(craft);
+    double timeFineness = 0.001;
+
+    for (int lap = 0; lap < 20; ++lap) {
+      craft.animate(potential, 0.2555, timeFineness);
+      packed.animate(potential, 0.2555, timeFineness);
+      TetraTest.assertTetraslEqual(craft, packed.toTetra());
+    }
+    assertEquals(craft.getEnergy(potential), packed.getEnergy(potential), 0);
+  }
+
+}
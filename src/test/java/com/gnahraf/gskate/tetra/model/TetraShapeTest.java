@@ -49,4 +49,47 @@ public class TetraShapeTest {
     }
   }
 
+  
+  
+  @Test
+  public void testVolume() {
+    // corners at the origin and (1, 0, 0), (0, 2, 0), (0, 0, 3): volume 1
+    double[] x = { 0, 1, 0, 0 };
+    double[] y = { 0, 0, 2, 0 };
+    double[] z = { 0, 0, 0, 3 };
+    double[] lengths = new double[6];
+    for (int e = 0; e < 6; ++e) {
+      TetraEdge edge = TetraEdge.forIndex(e);
+      double dx = x[edge.hiBob] - x[edge.loBob];
+      double dy = y[edge.hiBob] - y[edge.loBob];
+      double dz = z[edge.hiBob] - z[edge.loBob];
+      lengths[e] = Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+    TetraShape shape = new TetraShape();
+    shape.setLengths(lengths);
+    assertEquals(1, shape.getVolume(), TOLERANCE);
+    assertEquals(288, shape.getCayleyMengerDeterminant(), TOLERANCE);
+    
+    TetraShape copy = new TetraShape();
+    copy.copyFrom(shape);
+    assertEquals(1, copy.getVolume(), TOLERANCE);
+    
+    copy.setLengths(1);
+    assertEquals(UNIT_VOLUME, copy.getVolume(), TOLERANCE);
+  }
+  
+  
+  @Test
+  public void testImpossible() {
+    TetraShape shape = new TetraShape();
+    // 3 unit edges around corner 0, the others long: can't close up
+    double[] lengths = { 1, 1, 1, 3, 3, 3 };
+    try {
+      shape.setLengths(lengths);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertEquals(new TetraShape(), shape);
+    assertEquals(UNIT_VOLUME, shape.getVolume(), TOLERANCE);
+  }
+
 }
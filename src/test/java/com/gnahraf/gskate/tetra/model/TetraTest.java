@@ -9,7 +9,12 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import com.gnahraf.gskate.model.DynaVector;
+import com.gnahraf.gskate.model.EnergyLedger;
+import com.gnahraf.gskate.model.Potential;
+import com.gnahraf.gskate.tetra.gen.le.Constraints;
+import com.gnahraf.gskate.tetra.gen.le.LonelyEarth;
 import com.gnahraf.gskate.tetra.model.Tetra;
+import com.gnahraf.sim.Integrator;
 
 /**
  *
@@ -62,6 +67,98 @@ public class TetraTest {
 
   
   
+  @Test
+  public void testSymplecticLargeStep() {
+    final double seconds = 200;
+    Tetra reference = animateOrbiting(seconds, 6.7e-4, Integrator.YOSHIDA4);
+    Tetra yoshida = animateOrbiting(seconds, 6.7e-3, Integrator.YOSHIDA4);
+    Tetra verlet = animateOrbiting(seconds, 6.7e-3, Integrator.VELOCITY_VERLET);
+    Tetra fine = animateOrbiting(seconds, 6.7e-4, Integrator.DEFAULT);
+    
+    double refLength = reference.getBob(0).distance(reference.getBob(1));
+    double lengthErr = Math.abs(refLength - yoshida.getBob(0).distance(yoshida.getBob(1)));
+    double verletLengthErr = Math.abs(refLength - verlet.getBob(0).distance(verlet.getBob(1)));
+    double fineLengthErr = Math.abs(refLength - fine.getBob(0).distance(fine.getBob(1)));
+    
+    // 10x larger steps, yet more accurate than the default scheme
+    assertTrue(lengthErr < fineLengthErr);
+    assertTrue(verletLengthErr < fineLengthErr);
+    assertTrue(lengthErr < 1e-3);
+  }
+  
+  
+  @Test
+  public void testRespa() {
+    final double seconds = 200;
+    Tetra reference = animateOrbiting(seconds, 6.7e-4, Integrator.YOSHIDA4);
+    Tetra respa = animateOrbiting(seconds, 6.7e-3, Integrator.newRespa(10));
+    Tetra verlet = animateOrbiting(seconds, 6.7e-4, Integrator.VELOCITY_VERLET);
+    
+    double refLength = reference.getBob(0).distance(reference.getBob(1));
+    double lengthErr = Math.abs(refLength - respa.getBob(0).distance(respa.getBob(1)));
+    double verletLengthErr = Math.abs(refLength - verlet.getBob(0).distance(verlet.getBob(1)));
+    double cmErr = reference.newCmBob().distance(respa.newCmBob());
+    
+    // gravity evaluated 10x less often: the tethers are as accurate as with
+    // fine verlet steps, the orbit a little less
+    assertTrue(lengthErr < 2 * verletLengthErr);
+    assertTrue(cmErr < 1e-4);
+  }
+  
+  
+  @Test
+  public void testLedger() {
+    Integrator[] integrators =
+        { Integrator.DEFAULT, Integrator.VELOCITY_VERLET, Integrator.newRespa(10) };
+    double[] gains = new double[integrators.length];
+    for (int i = 0; i < integrators.length; ++i) {
+      LonelyEarth system = new LonelyEarth(new Constraints());
+      system.setIntegrator(integrators[i]);
+      Tetra craft = system.getCraft();
+      for (int j = 0; j < 6; ++j)
+        craft.setTetherByIndex(j, j % 2 == 0 ? -0.01 : 0.005);
+      double energy = system.getEnergy();
+      double ke = craft.getKe();
+      EnergyLedger ledger = system.openLedger();
+      for (int k = 0; k < 20; ++k) {
+        system.animateMillis(10000, 6.7e-3);
+        for (int j = 0; j < 6; ++j)
+          craft.setTetherByIndex(j, -1.1 * craft.getTetherByIndex(j));
+      }
+      
+      assertEquals(craft.getKe(), ledger.getKe(), 1e-13 * ke);
+      assertEquals(craft.getCmKe(), ledger.getTranslationalKe(), 1e-13 * ke);
+      double tetherWork = 0;
+      for (int j = 0; j < 6; ++j)
+        tetherWork += ledger.getTetherWork(j);
+      assertEquals(tetherWork, ledger.getTetherWork(), 1e-12);
+      gains[i] = ledger.getEnergyGain();
+      if (integrators[i] != Integrator.DEFAULT) {
+        // symplectic: the measured energy doesn't drift
+        assertEquals(system.getEnergy() - energy, gains[i], 1e-4);
+        assertEquals(craft.getPe(system.getPotential()), ledger.getPe(), 1e-13 * ke);
+      }
+    }
+    // the non-symplectic scheme's energy drifts (by hundreds of joules), but not
+    // its ledgered gain
+    assertEquals(gains[1], gains[0], 1e-4);
+    assertEquals(gains[1], gains[2], 1e-4);
+  }
+  
+  
+  private Tetra animateOrbiting(double seconds, double timeFineness, Integrator integrator) {
+    LonelyEarth system = new LonelyEarth(new Constraints());
+    Tetra craft = system.getCraft();
+    for (int i = 0; i < 6; ++i)
+      craft.setTetherByIndex(i, -0.01);
+    Potential potential = system.getPotential();
+    craft.animate(potential, seconds, timeFineness, integrator);
+    return craft;
+  }
+  
+  
+  
+  
   public static void assertTetraslEqual(Tetra expected, Tetra actual) {
     for (int i = 0; i < 4; ++i)
       assertBobsEqual(expected.getBob(i), actual.getBob(i));
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.io.store;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.gnahraf.io.HashedFilepath;
+import com.gnahraf.test.IoTestCase;
+import com.gnahraf.xcept.NotFoundException;
+
+/**
+ *
+ */
+public class PackObjectManagerTest extends IoTestCase {
+
+  private final static String PREFIX = "pack-";
+
+  /**
+   * Variable length (so the pack records are, too).
+   */
+  static class StringCodec implements Codec<String> {
+
+    @Override
+    public void write(String item, ByteBuffer dtn) {
+      byte[] bytes = item.getBytes();
+      dtn.putInt(bytes.length).put(bytes);
+    }
+
+    @Override
+    public int maxBytes() {
+      return 256;
+    }
+
+    @Override
+    public String read(ByteBuffer src) throws BufferUnderflowException {
+      byte[] bytes = new byte[src.getInt()];
+      src.get(bytes);
+      return new String(bytes);
+    }
+  }
+
+
+  @Test
+  public void testEmpty() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    assertTrue(PackObjectManager.isPack(dir));
+    assertEquals(0, manager.size());
+    assertEquals(0, manager.streamIds().count());
+    assertFalse(manager.containsId("not a hash"));
+    try {
+      manager.read("0123456789ABCDEF0123456789ABCDEF");
+      fail();
+    } catch (NotFoundException expected) {  }
+    manager.close();
+  }
+
+
+  @Test
+  public void testReadWrite() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    BinaryObjectManager<String> files =
+        new BinaryObjectManager<>(new HashedFilepath(dir, "f-", null), new StringCodec());
+
+    String id = manager.write("hello");
+    assertEquals(files.getId("hello"), id);
+    assertEquals(id, manager.getId("hello"));
+    assertEquals(id, manager.write("hello"));
+    assertEquals(1, manager.size());
+    assertTrue(manager.containsId(id));
+    assertEquals("hello", manager.read(id));
+    assertEquals("hello", manager.readUsingPrefix(id.substring(0, 6)));
+
+    String id2 = manager.write("world");
+    assertNotEquals(id, id2);
+    assertEquals("world", manager.read(id2));
+    assertEquals(2, manager.size());
+    manager.close();
+  }
+
+
+  @Test
+  public void testManyAcrossPacks() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    final int count = 3000;
+    final long maxPackSize = 4096;
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec(), maxPackSize);
+    String[] ids = new String[count];
+    for (int i = 0; i < count; ++i)
+      ids[i] = manager.write(value(i));
+    assertEquals(count, manager.size());
+    assertReadable(manager, ids);
+    manager.close();
+
+    assertTrue(new File(dir, PackObjectManager.PACK_PREFIX + "00010" + PackObjectManager.PACK_EXT).isFile());
+
+    manager = new PackObjectManager<>(dir, new StringCodec(), maxPackSize);
+    assertEquals(count, manager.size());
+    assertReadable(manager, ids);
+    Set<String> streamed = manager.streamIds().collect(Collectors.toSet());
+    assertEquals(count, streamed.size());
+    for (String id : ids)
+      assertTrue(streamed.contains(id));
+    manager.close();
+  }
+
+
+  @Test
+  public void testRebuildIndex() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    final int count = 700;
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec(), 8192);
+    String[] ids = new String[count];
+    for (int i = 0; i < count; ++i)
+      ids[i] = manager.write(value(i));
+    manager.close();
+
+    assertTrue(new File(dir, PackObjectManager.INDEX_FILE).delete());
+    manager = new PackObjectManager<>(dir, new StringCodec(), 8192);
+    assertEquals(count, manager.size());
+    assertReadable(manager, ids);
+    manager.close();
+  }
+
+
+  @Test
+  public void testTornRecord() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    String id = manager.write("complete");
+    manager.close();
+
+    File pack = new File(dir, PackObjectManager.PACK_PREFIX + "00000" + PackObjectManager.PACK_EXT);
+    long size = pack.length();
+    try (FileOutputStream out = new FileOutputStream(pack, true)) {
+      // a header's worth of bytes, with a length pointing past EOF
+      byte[] torn = new byte[24];
+      torn[19] = 100;
+      out.write(torn);
+    }
+    // also, pretend the index missed it
+    assertTrue(new File(dir, PackObjectManager.INDEX_FILE).delete());
+
+    manager = new PackObjectManager<>(dir, new StringCodec());
+    assertEquals(size, pack.length());
+    assertEquals(1, manager.size());
+    assertEquals("complete", manager.read(id));
+    String id2 = manager.write("next");
+    assertEquals("next", manager.read(id2));
+    manager.close();
+  }
+
+
+  @Test
+  public void testUncleanShutdown() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    String id = manager.write("durable");
+    File pack = new File(dir, PackObjectManager.PACK_PREFIX + "00000" + PackObjectManager.PACK_EXT);
+    long size = pack.length();
+    manager.write("lost");
+    manager.close();
+
+    // a power loss: the index (still marked dirty) made it to disk, the last record didn't
+    PackIndex index = new PackIndex(new File(dir, PackObjectManager.INDEX_FILE));
+    index.setDirty(true);
+    index.force();
+    try (FileOutputStream out = new FileOutputStream(pack, true)) {
+      out.getChannel().truncate(size);
+    }
+
+    manager = new PackObjectManager<>(dir, new StringCodec());
+    assertEquals(1, manager.size());
+    assertEquals("durable", manager.read(id));
+    assertFalse(manager.containsId(manager.getId("lost")));
+    String id2 = manager.write("lost");
+    assertEquals("lost", manager.read(id2));
+    manager.close();
+  }
+
+
+  @Test
+  public void testLocked() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    String id = manager.write("hello");
+    try {
+      new PackObjectManager<>(dir, new StringCodec());
+      fail();
+    } catch (IllegalStateException expected) {  }
+    manager.close();
+
+    manager = new PackObjectManager<>(dir, new StringCodec());
+    assertEquals("hello", manager.read(id));
+    manager.close();
+  }
+
+
+  @Test
+  public void testMigrate() {
+    File dir = getMethodOutputFilepath(new Object() { }, PREFIX);
+    BinaryObjectManager<String> files =
+        new BinaryObjectManager<>(new HashedFilepath(dir, "f-", null), new StringCodec());
+    final int count = 50;
+    for (int i = 0; i < count; ++i)
+      files.write(value(i));
+
+    PackObjectManager<String> manager = new PackObjectManager<>(dir, new StringCodec());
+    manager.write(value(0));
+    assertEquals(count - 1, manager.migrate(files));
+    assertEquals(0, manager.migrate(files));
+
+    List<String> ids = files.streamIds().collect(Collectors.toList());
+    assertEquals(count, ids.size());
+    Set<String> values = new HashSet<>();
+    for (String id : ids)
+      values.add(manager.read(id));
+    assertEquals(count, values.size());
+    manager.close();
+  }
+
+
+
+  private static String value(int i) {
+    StringBuilder value = new StringBuilder("value-").append(i);
+    for (int j = i % 17; j-- > 0; )
+      value.append('.');
+    return value.toString();
+  }
+
+
+  private static void assertReadable(PackObjectManager<String> manager, String[] ids) {
+    for (int i = 0; i < ids.length; ++i)
+      assertEquals(value(i), manager.read(ids[i]));
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.math.matrix;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class LuSolverTest {
+
+  @Test
+  public void testSolve() {
+    final int n = 7;
+    Random random = new Random(11);
+    double[] a = new double[n * n];
+    for (int i = 0; i < a.length; ++i)
+      a[i] = random.nextDouble() - 0.5;
+    double[] x = new double[n];
+    for (int i = 0; i < n; ++i)
+      x[i] = random.nextDouble() * 10;
+    double[] b = new double[n];
+    for (int i = 0; i < n; ++i)
+      for (int j = 0; j < n; ++j)
+        b[i] += a[i * n + j] * x[j];
+
+    double[] aCopy = a.clone();
+    LuSolver lu = new LuSolver(n);
+    assertTrue(lu.factor(a));
+    assertArrayEquals(aCopy, a, 0);
+    lu.solve(b);
+    assertArrayEquals(x, b, 1e-12);
+  }
+
+
+  @Test
+  public void testPivot() {
+    // zero in the top left corner
+    double[] a = { 0, 2, 3, 1 };
+    double[] b = { 4, 5 };
+    LuSolver lu = new LuSolver(2);
+    assertTrue(lu.factor(a));
+    lu.solve(b);
+    // 2y = 4; 3x + y = 5
+    assertEquals(1, b[0], 1e-15);
+    assertEquals(2, b[1], 1e-15);
+  }
+
+
+  @Test
+  public void testSingular() {
+    LuSolver lu = new LuSolver(3);
+    try {
+      lu.solve(new double[3]);
+      fail();
+    } catch (IllegalStateException expected) {  }
+    double[] a = {
+        1, 2, 3,
+        2, 4, 6,
+        0, 1, 1,
+    };
+    assertFalse(lu.factor(a));
+    try {
+      lu.solve(new double[3]);
+      fail();
+    } catch (IllegalStateException expected) {  }
+    assertEquals(0, lu.determinant(), 0);
+  }
+
+
+  @Test
+  public void testDeterminant() {
+    LuSolver lu = new LuSolver(2);
+    try {
+      lu.determinant();
+      fail();
+    } catch (IllegalStateException expected) {  }
+    // one row swap
+    lu.factor(new double[] { 0, 2, 3, 1 });
+    assertEquals(-6, lu.determinant(), 1e-15);
+    
+    double[] array =
+      {
+        -3,   0,   5,  12,
+        24,   1,   7,  -9,
+        -15,  0,  29,  13,
+        11, -37,  -1,  17,
+      };
+    lu = new LuSolver(4);
+    lu.factor(array);
+    assertEquals(-287003, lu.determinant(), 1e-9 * 287003);
+  }
+
+}
@@ -187,6 +187,28 @@ public class MatrixTest {
   }
   
   
+  @Test
+  public void test5x5() {
+    double[] array =
+      {
+        -3,   0,   5,  12,   2,
+        24,   1,   7,  -9,   0,
+        -15,  0,  29,  13,  -4,
+        11, -37,  -1,  17,   6,
+         8,   3, -21,   0,  10,
+      };
+    Matrix m = new ArrayMatrix(array, 5, 5);
+    
+    // expand the first row (the 4x4 minors are exact)
+    double expectedDet = 0;
+    for (int c = 0, sign = 1; c < 5; ++c, sign *= -1)
+      expectedDet += sign * m.val(c, 0) * m.getMinor(c, 0).determinant();
+    
+    assertEquals(expectedDet, m.determinant(), 1e-9 * Math.abs(expectedDet));
+    assertNotEquals(0, expectedDet, 0);
+  }
+  
+  
   @Test
   public void test2x2Composition() {
     double[] a =
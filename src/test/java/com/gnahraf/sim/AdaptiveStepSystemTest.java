@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class AdaptiveStepSystemTest {
+  
+  /**
+   * A unit harmonic oscillator <i>x'' = -x</i>, with its own clock riding
+   * along as the <i>y</i> coordinate (unit velocity, zero acceleration).
+   */
+  static class Oscillator extends AdaptiveStepSystem {
+    
+    double x = 1;
+    double v;
+    double a;
+    double clock;
+    long forceUpdates;
+    
+    @Override
+    protected void updateForces() {
+      a = -x;
+      ++forceUpdates;
+    }
+
+    @Override
+    protected void animate(double dt) {
+      double dv = a * dt;
+      x += (v + dv / 2) * dt;
+      v += dv;
+      clock += dt;
+    }
+
+    @Override
+    protected void kick(double dt) {
+      v += a * dt;
+    }
+
+    @Override
+    protected void drift(double dt) {
+      x += v * dt;
+      clock += dt;
+    }
+
+    @Override
+    protected int stateLength() {
+      return 6;
+    }
+
+    @Override
+    protected void getState(double[] state) {
+      state[0] = x;
+      state[1] = clock;
+      state[2] = 0;
+      state[3] = v;
+      state[4] = 1;
+      state[5] = 0;
+    }
+
+    @Override
+    protected void setState(double[] state) {
+      x = state[0];
+      clock = state[1];
+      v = state[3];
+    }
+    
+    double error(double time) {
+      return Math.abs(x - Math.cos(time));
+    }
+  }
+  
+  
+  @Test
+  public void testFixedStepByDefault() {
+    Oscillator fixed = new Oscillator();
+    fixed.tick(1, 1000);
+    assertEquals(1000, fixed.forceUpdates);
+    assertEquals(0, fixed.getAcceptedSteps());
+    assertEquals(1, fixed.clock, 1e-12);
+  }
+  
+  
+  @Test
+  public void testAccuracy() {
+    final double time = 2 * Math.PI;
+    
+    Oscillator fixed = new Oscillator();
+    fixed.tick(time, 100 * 1000);
+    
+    Oscillator adaptive = new Oscillator();
+    adaptive.setTolerance(1e-6);
+    adaptive.tick(time, 100 * 1000);
+    
+    assertEquals(time, adaptive.clock, 1e-12);
+    assertTrue(adaptive.getAcceptedSteps() > 0);
+    assertTrue(adaptive.error(time) < fixed.error(time));
+    // at least an order of magnitude fewer force updates
+    assertTrue(adaptive.forceUpdates * 10 < fixed.forceUpdates);
+  }
+  
+  
+  @Test
+  public void testRespaFallback() {
+    // not multi-rate: integrated with velocity Verlet at the sub-step
+    Oscillator respa = new Oscillator();
+    respa.setIntegrator(Integrator.newRespa(4));
+    respa.tick(1, 100);
+    
+    Oscillator verlet = new Oscillator();
+    verlet.setIntegrator(Integrator.VELOCITY_VERLET);
+    verlet.tick(1, 400);
+    
+    assertEquals(verlet.x, respa.x, 0);
+    assertEquals(verlet.v, respa.v, 0);
+    assertEquals(401, respa.forceUpdates);
+  }
+  
+  
+  @Test
+  public void testDiverged() {
+    Oscillator system = new Oscillator();
+    system.setTolerance(1e-6);
+    system.tick(0.5, 100);
+    system.x = Double.NaN;
+    try {
+      system.tick(0.5, 100);
+      fail();
+    } catch (IllegalStateException expected) {  }
+  }
+  
+  
+  @Test
+  public void testLandsOnCheckpoints() {
+    Oscillator system = new Oscillator();
+    system.setTolerance(1e-8);
+    SimEngine engine = new SimEngine(system, 1000 * 1000);
+    final double period = 0.0371;
+    final int[] count = new int[1];
+    engine.schedule(new Checkpoint() {
+      @Override
+      public void check() {
+        ++count[0];
+        assertEquals(engine.getTime(), system.clock, 1e-9);
+        assertEquals(count[0] * period, system.clock, 1e-9);
+      }
+    }, period, period, 0);
+    
+    engine.animate(1);
+    assertEquals((int) (1 / period), count[0]);
+    assertEquals(1, system.clock, 1e-9);
+    assertTrue(system.getStep() > 0);
+  }
+  
+  
+  @Test
+  public void testMaxStep() {
+    Oscillator system = new Oscillator();
+    system.setTolerance(1);
+    system.setMaxStep(0.01);
+    system.tick(1, 1);
+    assertTrue(system.getAcceptedSteps() >= 100);
+    assertEquals(1, system.clock, 1e-12);
+  }
+
+}
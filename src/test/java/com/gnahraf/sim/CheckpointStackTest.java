@@ -6,7 +6,9 @@ package com.gnahraf.sim;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -268,6 +270,110 @@ public class CheckpointStackTest {
   
   
   
+  @Test
+  public void testManyPeriodic() {
+    CheckpointStack stack = new CheckpointStack();
+    final int count = 200;
+    // firing log of { tick, priority } pairs
+    final List<long[]> fired = new ArrayList<>();
+    final long[] now = new long[1];
+    
+    MockCheckpoint[] checkpoints = new MockCheckpoint[count];
+    long[] ticks = new long[count];
+    long[] periods = new long[count];
+    Random random = new Random(11);
+    for (int id = 0; id < count; ++id) {
+      final int priority = 3 * id;
+      checkpoints[id] = new MockCheckpoint(id) {
+        @Override
+        public void check() {
+          super.check();
+          fired.add(new long[] { now[0], priority });
+        }
+      };
+      ticks[id] = 1 + random.nextInt(50);
+      periods[id] = 1 + random.nextInt(50);
+      stack.schedule(checkpoints[id], ticks[id], periods[id], priority);
+    }
+    
+    final long lastTick = 1000;
+    while (stack.getHeadTick() <= lastTick) {
+      now[0] = stack.getHeadTick();
+      int firedBefore = fired.size();
+      int consumed = stack.consumeHeadTick();
+      assertEquals(fired.size() - firedBefore, consumed);
+    }
+    
+    for (int i = 1; i < fired.size(); ++i) {
+      long[] prev = fired.get(i - 1);
+      long[] next = fired.get(i);
+      assertTrue(prev[0] < next[0] || prev[0] == next[0] && prev[1] > next[1]);
+    }
+    
+    for (int id = 0; id < count; ++id) {
+      int expected = (int) ((lastTick - ticks[id]) / periods[id] + 1);
+      assertEquals(expected, checkpoints[id].invocations);
+      assertScheduled(id, (int) (ticks[id] + expected * periods[id]), (int) periods[id], 3 * id, stack);
+    }
+    
+    assertInOrder(stack);
+  }
+  
+  
+  @Test
+  public void testRescheduleAndRemove() {
+    CheckpointStack stack = new CheckpointStack();
+    final int count = 100;
+    Random random = new Random(7);
+    for (int id = 0; id < count; ++id)
+      stack.schedule(mockCp(id), 1 + random.nextInt(1000), 0, id);
+    assertInOrder(stack);
+    
+    for (int id = 0; id < count; id += 3) {
+      stack.setScheduledTickTime(mockCp(id), 1 + random.nextInt(1000));
+      assertInOrder(stack);
+    }
+    
+    for (int id = 1; id < count; id += 3) {
+      stack.setScheduledPriority(mockCp(id), -id);
+      assertInOrder(stack);
+    }
+    
+    try {
+      stack.setScheduledPriority(mockCp(0), 2);
+      fail();
+    } catch (IllegalArgumentException expected) {   }
+    
+    for (int id = 2; id < count; id += 3) {
+      assertTrue(stack.remove(mockCp(id)));
+      assertFalse(stack.remove(mockCp(id)));
+      assertNull(stack.findScheduled(mockCp(id)));
+      assertInOrder(stack);
+    }
+    
+    // removed priorities are free again
+    stack.schedule(mockCp(count), 5, 0, 2);
+    assertScheduled(count, 5, 0, 2, stack);
+    
+    int remaining = stack.getScheduledCheckpoints().size();
+    int consumed = 0;
+    while (!stack.isEmpty()) {
+      consumed += stack.consumeHeadTick();
+      assertInOrder(stack);
+    }
+    assertEquals(remaining, consumed);
+    assertEmpty(stack);
+  }
+  
+  
+  
+  
+  
+  
+  
+  
+  
+  
   private MockCheckpoint mockCp(int id) {
     return new MockCheckpoint(id);
   }
@@ -279,6 +385,17 @@ public class CheckpointStackTest {
     assertEquals(0, stack.consumeHeadTick());
   }
   
+  private void assertInOrder(CheckpointStack stack) {
+    List<ScheduledCheckpoint> schedules = stack.getScheduledCheckpoints();
+    if (!schedules.isEmpty())
+      assertEquals(schedules.get(0).tick(), stack.getHeadTick());
+    for (int i = 1; i < schedules.size(); ++i) {
+      ScheduledCheckpoint a = schedules.get(i - 1);
+      ScheduledCheckpoint b = schedules.get(i);
+      assertTrue(a.tick() < b.tick() || a.tick() == b.tick() && a.priority() > b.priority());
+    }
+  }
+  
   private void assertScheduled(int id, int tick, int period, int priority, CheckpointStack stack) {
     Checkpoint cp = mockCp(id);
     ScheduledCheckpoint scp = stack.findScheduled(cp);
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.io.CorruptionException;
+import com.gnahraf.test.IoTestCase;
+
+/**
+ *
+ */
+public class ControlLogTest extends IoTestCase {
+  
+  
+  @Test
+  public void testAppend() {
+    ControlLog log = new ControlLog(1);
+    assertTrue(log.isEmpty());
+    for (int i = 0; i < 100; ++i)
+      log.append(i / 3, i % 6, i * 0.5);
+    assertEquals(100, log.size());
+    assertEquals(33, log.getTick(99));
+    assertEquals(3, log.getChannel(99));
+    assertEquals(49.5, log.getValue(99), 0);
+    
+    try {
+      log.append(32, 0, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      log.append(34, ControlLog.MAX_CHANNEL + 1, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    
+    log.append(34, ControlLog.MAX_CHANNEL, 1);
+    assertEquals(ControlLog.MAX_CHANNEL, log.getChannel(100));
+  }
+  
+  
+  @Test
+  public void testPlayer() {
+    ControlLog log = new ControlLog();
+    log.append(0, 0, 1);
+    log.append(0, 1, 2);
+    log.append(10, 0, 3);
+    log.append(20, 1, 4);
+    
+    List<String> played = new ArrayList<>();
+    ControlLog.Sink sink = (channel, value) -> played.add(channel + "=" + value);
+    ControlLog.Player player = log.newPlayer();
+    
+    assertEquals(2, player.playUpTo(5, sink));
+    assertEquals(10, player.nextTick());
+    assertEquals(0, player.playUpTo(9, sink));
+    assertEquals(1, player.playUpTo(10, sink));
+    assertFalse(player.isDone());
+    assertEquals(1, player.playUpTo(Long.MAX_VALUE, sink));
+    assertTrue(player.isDone());
+    assertEquals(Long.MAX_VALUE, player.nextTick());
+    
+    assertEquals("[0=1.0, 1=2.0, 0=3.0, 1=4.0]", played.toString());
+  }
+  
+  
+  @Test
+  public void testSaveLoad() throws IOException {
+    File file = getMethodOutputFilepath(new Object() { }, "control-", ".log");
+    
+    ControlLog log = new ControlLog();
+    for (int i = 0; i < 1000; ++i)
+      log.append(i * 40, i % 6, -Math.sqrt(i));
+    log.save(file);
+    
+    ControlLog loaded = ControlLog.load(file);
+    assertEquals(log.size(), loaded.size());
+    for (int i = 0; i < log.size(); ++i) {
+      assertEquals(log.getTick(i), loaded.getTick(i));
+      assertEquals(log.getChannel(i), loaded.getChannel(i));
+      assertEquals(log.getValue(i), loaded.getValue(i), 0);
+    }
+    
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.getChannel().truncate(file.length() - 1);
+    }
+    try {
+      ControlLog.load(file);
+      fail();
+    } catch (CorruptionException expected) {  }
+  }
+
+}
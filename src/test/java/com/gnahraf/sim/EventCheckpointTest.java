@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.sim.AdaptiveStepSystemTest.Oscillator;
+
+/**
+ *
+ */
+public class EventCheckpointTest {
+
+  private final static long TPS = 1000 * 1000;
+  private final static long ANIMATION_TPS = 10 * 1000;
+  private final static double STEP = 1.0 / ANIMATION_TPS;
+  /**
+   * The oscillator's default integration scheme is only first order, so its
+   * zero crossings drift from the exact ones by a fraction of a step.
+   */
+  private final static double TOLERANCE = STEP;
+
+
+  /**
+   * Records the oscillator's zero crossings (at <i>t = pi/2 + k pi</i>).
+   */
+  static class ZeroCrossing extends EventCheckpoint {
+
+    final SimEngine engine;
+    final Oscillator system;
+    final List<Double> times = new ArrayList<>();
+
+    ZeroCrossing(SimEngine engine, Oscillator system, Direction direction) {
+      super(direction);
+      this.engine = engine;
+      this.system = system;
+    }
+
+    @Override
+    public double value() {
+      return system.x;
+    }
+
+    @Override
+    public void check() {
+      // the model is at the engine's time
+      assertEquals(engine.getTime(), system.clock, 1e-9);
+      times.add(getCrossingTime());
+    }
+  }
+
+
+  private SimEngine newEngine(Universe model) {
+    SimEngine engine = new SimEngine(model, TPS);
+    engine.setAnimationTps(ANIMATION_TPS);
+    return engine;
+  }
+
+
+  @Test
+  public void testBisectsToCrossing() {
+    Oscillator system = new Oscillator();
+    SimEngine engine = newEngine(system);
+    ZeroCrossing event = new ZeroCrossing(engine, system, EventCheckpoint.Direction.EITHER);
+    engine.scheduleEvent(event, 0.5);
+    engine.animate(10);
+
+    assertEquals(3, event.times.size());
+    for (int k = 0; k < 3; ++k) {
+      double expected = Math.PI / 2 + k * Math.PI;
+      assertEquals(expected, event.times.get(k), TOLERANCE);
+    }
+    assertEquals(10, engine.getTime(), 1e-12);
+    assertEquals(10, system.clock, 1e-9);
+  }
+
+
+  @Test
+  public void testChecksAtFirstTickPastCrossing() {
+    Oscillator system = new Oscillator();
+    SimEngine engine = newEngine(system);
+    final double[] checkTime = { -1 };
+    EventCheckpoint event = new EventCheckpoint(EventCheckpoint.Direction.FALLING) {
+      @Override
+      public double value() {
+        return system.x;
+      }
+      @Override
+      public void check() {
+        checkTime[0] = engine.getTime();
+        engine.removeEvent(this);
+      }
+    };
+    engine.scheduleEvent(event, 1);
+    engine.animate(5);
+
+    double crossing = event.getCrossingTime();
+    assertEquals(Math.PI / 2, crossing, TOLERANCE);
+    assertTrue(checkTime[0] >= crossing);
+    assertTrue(checkTime[0] - STEP < crossing);
+  }
+
+
+  @Test
+  public void testDoesNotPerturbTrajectory() {
+    Oscillator plain = new Oscillator();
+    newEngine(plain).animate(10);
+
+    Oscillator system = new Oscillator();
+    SimEngine engine = newEngine(system);
+    engine.scheduleEvent(new ZeroCrossing(engine, system, EventCheckpoint.Direction.EITHER), 0.25);
+    engine.animate(10);
+
+    assertEquals(plain.x, system.x, 1e-12);
+    assertEquals(plain.v, system.v, 1e-12);
+  }
+
+
+  @Test
+  public void testDirection() {
+    Oscillator system = new Oscillator();
+    SimEngine engine = newEngine(system);
+    ZeroCrossing rising = new ZeroCrossing(engine, system, EventCheckpoint.Direction.RISING);
+    ZeroCrossing falling = new ZeroCrossing(engine, system, EventCheckpoint.Direction.FALLING);
+    engine.scheduleEvent(rising, 0.5);
+    engine.scheduleEvent(falling, 0.3);
+    engine.animate(10);
+
+    assertEquals(1, rising.times.size());
+    assertEquals(3 * Math.PI / 2, rising.times.get(0), TOLERANCE);
+    assertEquals(2, falling.times.size());
+    assertEquals(Math.PI / 2, falling.times.get(0), TOLERANCE);
+    assertEquals(5 * Math.PI / 2, falling.times.get(1), TOLERANCE);
+  }
+
+
+  @Test
+  public void testWithCheckpoints() {
+    Oscillator system = new Oscillator();
+    SimEngine engine = newEngine(system);
+    ZeroCrossing event = new ZeroCrossing(engine, system, EventCheckpoint.Direction.EITHER);
+    engine.scheduleEvent(event, 0.5);
+    CheckpointStackTest.MockCheckpoint checkpoint = new CheckpointStackTest.MockCheckpoint(1);
+    engine.schedule(checkpoint, 0.1, 0.1, 0);
+    engine.animate(11.05);
+
+    assertEquals(110, checkpoint.invocations);
+    assertEquals(4, event.times.size());
+    assertEquals(7 * Math.PI / 2, event.times.get(3), TOLERANCE);
+  }
+
+
+  /**
+   * A clock, not {@linkplain Restorable}.
+   */
+  static class Clock extends Universe {
+    double time;
+    @Override
+    public void tick(double time, long steps) {
+      this.time += time;
+    }
+  }
+
+
+  @Test
+  public void testNotRestorable() {
+    Clock clock = new Clock();
+    SimEngine engine = newEngine(clock);
+    final double alarm = 2.5037;
+    final double[] checkTime = { -1 };
+    EventCheckpoint event = new EventCheckpoint() {
+      @Override
+      public double value() {
+        return clock.time - alarm;
+      }
+      @Override
+      public void check() {
+        checkTime[0] = engine.getTime();
+      }
+    };
+    engine.scheduleEvent(event, 1);
+    engine.animate(10);
+
+    // checked at the end of the sample interval, but interpolated exactly
+    assertEquals(3, checkTime[0], 1e-12);
+    assertEquals(alarm, event.getCrossingTime(), 1e-9);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroInterval() {
+    Clock clock = new Clock();
+    newEngine(clock).scheduleEvent(new EventCheckpoint() {
+      @Override
+      public double value() {
+        return clock.time;
+      }
+      @Override
+      public void check() {  }
+    }, 0);
+  }
+
+}
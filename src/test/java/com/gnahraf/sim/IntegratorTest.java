@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class IntegratorTest {
+  
+  /**
+   * A unit harmonic oscillator <i>x'' = -x</i>, starting at <i>x = 1</i>.
+   */
+  static class Oscillator implements Integrator.Dynamics {
+    
+    double x = 1;
+    double v;
+    double a;
+    int forceUpdates;
+
+    @Override
+    public void updateForces() {
+      a = -x;
+      ++forceUpdates;
+    }
+
+    @Override
+    public void kick(double dt) {
+      v += a * dt;
+    }
+
+    @Override
+    public void drift(double dt) {
+      x += v * dt;
+    }
+
+    @Override
+    public void animate(double dt) {
+      double dv = a * dt;
+      x += (v + dv / 2) * dt;
+      v += dv;
+    }
+    
+    double energy() {
+      return (x*x + v*v) / 2;
+    }
+    
+    double error(double time) {
+      return Math.hypot(x - Math.cos(time), v + Math.sin(time));
+    }
+  }
+  
+  
+  /**
+   * 2 unit masses joined by a stiff spring (fast), whose center of mass sits in a
+   * weak harmonic well (slow): <i>c'' = -c</i>, and <i>r'' = -400 r</i> for the
+   * separation <i>r</i>. Starts at <i>c = 1, r = 0.01</i>, at rest.
+   */
+  static class TwoRate implements Integrator.MultiRateDynamics {
+    
+    final static double K_FAST = 400;
+    
+    double x1 = 1.005;
+    double x2 = 0.995;
+    double v1, v2;
+    double a1, a2;
+    double slow1, slow2;
+    int fastUpdates;
+    int slowUpdates;
+
+    @Override
+    public void updateForces() {
+      updateSlowForces();
+      updateFastForces();
+      a1 += slow1;
+      a2 += slow2;
+    }
+
+    @Override
+    public void updateFastForces() {
+      // per unit mass: each end feels k/2 of the separation (reduced mass 1/2)
+      double f = -K_FAST / 2 * (x1 - x2);
+      a1 = f;
+      a2 = -f;
+      ++fastUpdates;
+    }
+
+    @Override
+    public void updateSlowForces() {
+      slow1 = slow2 = -(x1 + x2) / 2;
+      ++slowUpdates;
+    }
+
+    @Override
+    public void kickSlow(double dt) {
+      v1 += slow1 * dt;
+      v2 += slow2 * dt;
+    }
+
+    @Override
+    public void kick(double dt) {
+      v1 += a1 * dt;
+      v2 += a2 * dt;
+    }
+
+    @Override
+    public void drift(double dt) {
+      x1 += v1 * dt;
+      x2 += v2 * dt;
+    }
+
+    @Override
+    public void animate(double dt) {
+      x1 += (v1 + a1 * dt / 2) * dt;
+      x2 += (v2 + a2 * dt / 2) * dt;
+      v1 += a1 * dt;
+      v2 += a2 * dt;
+    }
+    
+    double error(double time) {
+      double c = (x1 + x2) / 2;
+      double r = x1 - x2;
+      return Math.hypot(c - Math.cos(time), r - 0.01 * Math.cos(Math.sqrt(K_FAST) * time));
+    }
+  }
+  
+  
+  @Test
+  public void testForName() {
+    assertSame(Integrator.DEFAULT, Integrator.forName("default"));
+    assertSame(Integrator.VELOCITY_VERLET, Integrator.forName("verlet"));
+    assertSame(Integrator.YOSHIDA4, Integrator.forName("yoshida4"));
+    assertEquals(Integrator.newRespa(10), Integrator.forName("respa10"));
+    assertEquals("respa10", Integrator.newRespa(10).getName());
+    for (String bad : new String[] { "euler", "respa", "respa0", "respax" }) {
+      try {
+        Integrator.forName(bad);
+        fail(bad);
+      } catch (IllegalArgumentException expected) {  }
+    }
+  }
+  
+  
+  @Test
+  public void testRespaForceUpdates() {
+    TwoRate system = new TwoRate();
+    Integrator.newRespa(10).integrate(system, 0.05, 20);
+    assertEquals(21, system.slowUpdates);
+    assertEquals(201, system.fastUpdates);
+  }
+  
+  
+  @Test
+  public void testRespaAccuracy() {
+    final double time = 10;
+    
+    TwoRate fine = new TwoRate();
+    Integrator.VELOCITY_VERLET.integrate(fine, 0.005, 2000);
+    TwoRate coarse = new TwoRate();
+    Integrator.VELOCITY_VERLET.integrate(coarse, 0.05, 200);
+    TwoRate respa = new TwoRate();
+    Integrator.newRespa(10).integrate(respa, 0.05, 200);
+    
+    // about as accurate as the fine steps, with a tenth of the slow force updates
+    assertTrue(respa.error(time) < 2 * fine.error(time));
+    assertTrue(respa.error(time) * 10 < coarse.error(time));
+    assertEquals(201, respa.slowUpdates);
+    assertEquals(2001, fine.slowUpdates);
+  }
+  
+  
+  @Test
+  public void testRespaFallback() {
+    // not multi-rate: verlet at the sub-step
+    Oscillator system = run(Integrator.newRespa(5), 0.05, 20);
+    Oscillator verlet = run(Integrator.VELOCITY_VERLET, 0.01, 100);
+    assertEquals(verlet.x, system.x, 0);
+    assertEquals(verlet.v, system.v, 0);
+  }
+  
+  
+  @Test
+  public void testForceUpdates() {
+    assertEquals(10, run(Integrator.DEFAULT, 0.1, 10).forceUpdates);
+    assertEquals(11, run(Integrator.VELOCITY_VERLET, 0.1, 10).forceUpdates);
+    assertEquals(31, run(Integrator.YOSHIDA4, 0.1, 10).forceUpdates);
+    assertEquals(0, run(Integrator.YOSHIDA4, 0.1, 0).forceUpdates);
+  }
+  
+  
+  @Test
+  public void testOrder() {
+    for (Integrator integrator :
+        new Integrator[] { Integrator.DEFAULT, Integrator.VELOCITY_VERLET, Integrator.YOSHIDA4 }) {
+      double coarse = run(integrator, 0.01, 100).error(1);
+      double fine = run(integrator, 0.005, 200).error(1);
+      double expectedRatio = 1 << integrator.getOrder();
+      assertEquals(integrator.toString(), expectedRatio, coarse / fine, expectedRatio * 0.1);
+    }
+  }
+  
+  
+  @Test
+  public void testEnergyConservation() {
+    // 1000 periods, 20 steps per period
+    final double dt = 2 * Math.PI / 20;
+    final long steps = 20 * 1000;
+    
+    double drift = Math.abs(run(Integrator.DEFAULT, dt, steps).energy() - 0.5);
+    double verletDrift = Math.abs(run(Integrator.VELOCITY_VERLET, dt, steps).energy() - 0.5);
+    double yoshidaDrift = Math.abs(run(Integrator.YOSHIDA4, dt, steps).energy() - 0.5);
+    
+    assertTrue(drift > 1);
+    assertTrue(verletDrift < 0.01);
+    assertTrue(yoshidaDrift < 1e-3);
+  }
+  
+  
+  private Oscillator run(Integrator integrator, double dt, long steps) {
+    Oscillator system = new Oscillator();
+    integrator.integrate(system, dt, steps);
+    return system;
+  }
+
+}
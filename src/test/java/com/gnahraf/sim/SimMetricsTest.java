@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.gnahraf.sim.CheckpointStackTest.MockCheckpoint;
+import com.gnahraf.sim.SimEngineTest.MockSystem;
+
+/**
+ *
+ */
+public class SimMetricsTest {
+
+  @Test
+  public void testDisabledByDefault() {
+    SimEngine engine = new SimEngine(new MockSystem());
+    assertNull(engine.getMetrics());
+    SimMetrics metrics = engine.enableMetrics();
+    assertSame(metrics, engine.enableMetrics());
+    assertSame(metrics, engine.getMetrics());
+    engine.disableMetrics();
+    assertNull(engine.getMetrics());
+  }
+
+
+  @Test
+  public void testCounts() {
+    MockSystem model = new MockSystem();
+    SimEngine engine = new SimEngine(model);
+    long animationTps = SimEngine.DEFAULT_TPS / 10;
+    engine.setAnimationTps(animationTps);
+
+    MockCheckpoint cp1 = new MockCheckpoint(1);
+    MockCheckpoint cp2 = new MockCheckpoint(2);
+    engine.schedule(cp1, 1000L, 1000L, 1);
+    engine.schedule(cp2, 3000L, 3000L, -5);
+
+    SimMetrics metrics = engine.enableMetrics();
+    engine.animate(0.0001);
+
+    assertEquals(model.stepsSum, metrics.getSteps());
+    assertEquals(model.timeSum, metrics.getSimulatedSeconds(), 1e-12);
+    assertEquals(engine.getTime(), metrics.getSimulatedSeconds(), 1e-12);
+    assertTrue(metrics.getModelCalls() > 0);
+    assertEquals(
+        metrics.getWallSeconds(), metrics.getModelSeconds() + metrics.getCheckpointSeconds(), 1e-9);
+
+    assertEquals(cp1.invocations + cp2.invocations, metrics.getCheckpointCount());
+    SortedMap<Integer, Long> counts = metrics.getCheckpointCounts();
+    assertEquals(2, counts.size());
+    assertEquals(1, counts.firstKey().intValue());
+    assertEquals(cp1.invocations, counts.get(1).longValue());
+    assertEquals(cp2.invocations, counts.get(-5).longValue());
+    assertEquals(
+        "1=" + cp1.invocations + ", -5=" + cp2.invocations,
+        metrics.getCheckpointCountsByPriority());
+
+    engine.disableMetrics();
+    long steps = metrics.getSteps();
+    engine.animate(0.0001);
+    assertEquals(steps, metrics.getSteps());
+
+    metrics.reset();
+    assertEquals(0, metrics.getSteps());
+    assertEquals(0, metrics.getCheckpointCount());
+    assertTrue(metrics.getCheckpointCounts().isEmpty());
+  }
+
+
+  @Test
+  public void testJmx() throws Exception {
+    SimEngine engine = new SimEngine(new MockSystem());
+    SimMetrics metrics = engine.enableMetrics();
+    engine.animate(0.000001);
+
+    String name = getClass().getSimpleName();
+    ObjectName objectName = metrics.register(name);
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(metrics.getSteps(), server.getAttribute(objectName, "Steps"));
+      assertTrue(metrics.getSteps() > 0);
+    } finally {
+      assertTrue(SimMetrics.unregister(name));
+    }
+    assertFalse(SimMetrics.unregister(name));
+  }
+
+
+  @Test
+  public void testSummaryCheckpoint() {
+    SimEngine engine = new SimEngine(new MockSystem());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes, true);
+    engine.schedule(
+        new SimMetrics.SummaryCheckpoint(engine.enableMetrics(), out), 0.25, 0.25, Integer.MIN_VALUE);
+    engine.setAnimationTps(1000);
+    engine.animate(1);
+
+    String[] lines = bytes.toString().trim().split("\n");
+    // the one at 1 second fires on the next animation
+    assertEquals(3, lines.length);
+    assertTrue(lines[0].startsWith("[sim 0.3 s]"));
+    assertTrue(lines[0].contains("sim/wall"));
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.gnahraf.sim.SimEngineTest.MockSystem;
+
+/**
+ *
+ */
+public class StatePublisherTest {
+
+  /**
+   * Every value in the state is the model's step count.
+   */
+  static class StepSource implements TrajectoryRecorder.Source {
+
+    final MockSystem model;
+    final int width;
+
+    StepSource(MockSystem model, int width) {
+      this.model = model;
+      this.width = width;
+    }
+
+    @Override
+    public int width() {
+      return width;
+    }
+
+    @Override
+    public void getState(double[] state) {
+      for (int index = 0; index < width; ++index)
+        state[index] = model.stepsSum;
+    }
+  }
+
+
+  @Test
+  public void testPublish() {
+    MockSystem model = new MockSystem();
+    SimEngine engine = new SimEngine(model, 1000);
+    StatePublisher publisher = new StatePublisher(engine, new StepSource(model, 3));
+    engine.schedule(publisher, 0.1, 0.1, 0);
+
+    StatePublisher.Frame frame = publisher.newFrame();
+    assertFalse(publisher.read(frame));
+    assertEquals(0, frame.getFrameNumber());
+
+    engine.animate(1);
+    assertEquals(9, publisher.getFrameCount());
+    assertTrue(publisher.read(frame));
+    assertEquals(9, frame.getFrameNumber());
+    assertEquals(0.9, frame.getTime(), 1e-12);
+    assertEquals(900, frame.getTickTime());
+    assertArrayEquals(new double[] { 900, 900, 900 }, frame.getState(), 0);
+
+    // nothing new
+    assertFalse(publisher.read(frame));
+    engine.animate(0.15);
+    assertTrue(publisher.read(frame));
+    assertEquals(11, frame.getFrameNumber());
+    assertEquals(1.1, frame.getTime(), 1e-12);
+  }
+
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    MockSystem model = new MockSystem();
+    SimEngine engine = new SimEngine(model, 1000 * 1000);
+    StatePublisher publisher = new StatePublisher(engine, new StepSource(model, 64));
+    engine.schedule(publisher, 0, 1e-6, 0);
+
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> error = new AtomicReference<>();
+    Thread[] readers = new Thread[3];
+    int[] reads = new int[readers.length];
+    for (int r = 0; r < readers.length; ++r) {
+      final int id = r;
+      readers[r] = new Thread(() -> {
+        StatePublisher.Frame frame = publisher.newFrame();
+        long last = 0;
+        while (!done.get()) {
+          if (!publisher.read(frame))
+            continue;
+          ++reads[id];
+          double[] state = frame.getState();
+          for (double value : state) {
+            if (value != state[0])
+              error.compareAndSet(null, "torn frame " + frame.getFrameNumber());
+          }
+          if (frame.getFrameNumber() < last)
+            error.compareAndSet(null, "frame " + frame.getFrameNumber() + " after " + last);
+          last = frame.getFrameNumber();
+        }
+      });
+      readers[r].start();
+    }
+
+    engine.animate(0.2);
+    done.set(true);
+    for (Thread reader : readers)
+      reader.join();
+
+    assertNull(error.get());
+    assertEquals(200 * 1000, publisher.getFrameCount());
+    for (int count : reads)
+      assertTrue(count > 0);
+  }
+
+}
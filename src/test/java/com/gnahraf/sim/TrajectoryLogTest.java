@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 Babak Farhang
+ */
+package com.gnahraf.sim;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gnahraf.sim.SimEngineTest.MockSystem;
+import com.gnahraf.test.IoTestCase;
+import com.gnahraf.xcept.NotFoundException;
+
+/**
+ *
+ */
+public class TrajectoryLogTest extends IoTestCase {
+
+  private final static String PREFIX = "trj";
+
+
+  @Test
+  public void testEmpty() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, PREFIX);
+    TrajectoryLog log = TrajectoryLog.create(dir, 3, 10);
+    assertTrue(log.isEmpty());
+    assertEquals(0, log.indexOf(100));
+    assertTrue(log.slice(0, 100).isEmpty());
+    log.close();
+    try {
+      TrajectoryLog.load(dir);
+      fail();
+    } catch (NotFoundException expected) {  }
+  }
+
+
+  @Test
+  public void testAppendAndLoad() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, PREFIX);
+    final int width = 3;
+    final int count = 25;
+    TrajectoryLog log = TrajectoryLog.create(dir, width, 10);
+    for (int i = 0; i < count; ++i)
+      log.append(tick(i), time(i), values(i, width));
+    assertEquals(count, log.size());
+    assertRecords(log, count);
+    log.close();
+
+    assertEquals(3, dir.list().length);
+
+    TrajectoryLog loaded = TrajectoryLog.load(dir);
+    assertTrue(loaded.isReadOnly());
+    assertEquals(width, loaded.width());
+    assertEquals(10, loaded.getSegmentRecords());
+    assertEquals(count, loaded.size());
+    assertRecords(loaded, count);
+    try {
+      loaded.append(tick(count), time(count), values(count, width));
+      fail();
+    } catch (IllegalStateException expected) {  }
+    loaded.close();
+  }
+
+
+  @Test
+  public void testOutOfOrder() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, PREFIX);
+    TrajectoryLog log = TrajectoryLog.create(dir, 1, 10);
+    log.append(5, 0, new double[] { 1 });
+    log.append(5, 0, new double[] { 2 });
+    try {
+      log.append(4, 0, new double[] { 3 });
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      log.append(6, 0, new double[] { 3, 4 });
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertEquals(2, log.size());
+    log.close();
+  }
+
+
+  @Test
+  public void testSlice() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, PREFIX);
+    final int width = 2;
+    final int count = 35;
+    TrajectoryLog log = TrajectoryLog.create(dir, width, 10);
+    for (int i = 0; i < count; ++i)
+      log.append(tick(i), time(i), values(i, width));
+
+    // ticks are 100 apart, starting at 1000
+    assertEquals(0, log.indexOf(0));
+    assertEquals(0, log.indexOf(1000));
+    assertEquals(1, log.indexOf(1001));
+    assertEquals(count, log.indexOf(tick(count)));
+
+    // records 8 thru 22 span 3 segments
+    List<ByteBuffer> slices = log.slice(tick(8) - 50, tick(22) + 1);
+    assertEquals(3, slices.size());
+    int i = 8;
+    for (ByteBuffer slice : slices) {
+      assertTrue(slice.isReadOnly());
+      assertEquals(0, slice.remaining() % log.recordSize());
+      while (slice.hasRemaining()) {
+        assertEquals(tick(i), slice.getLong());
+        assertEquals(time(i), slice.getDouble(), 0);
+        double[] expected = values(i, width);
+        for (int column = 0; column < width; ++column)
+          assertEquals(expected[column], slice.getDouble(), 0);
+        ++i;
+      }
+    }
+    assertEquals(23, i);
+
+    assertEquals(1, log.slice(tick(10), tick(20)).size());
+    assertTrue(log.slice(tick(10), tick(10)).isEmpty());
+    log.close();
+  }
+
+
+  @Test
+  public void testRecorder() {
+    Object innerMethodObject = new Object() { };
+    File dir = getMethodOutputFilepath(innerMethodObject, PREFIX);
+
+    final MockSystem model = new MockSystem();
+    SimEngine engine = new SimEngine(model);
+    engine.setAnimationTps(SimEngine.DEFAULT_TPS / 1000);
+
+    TrajectoryLog log = TrajectoryLog.create(dir, 2, 8);
+    TrajectoryRecorder recorder = new TrajectoryRecorder(
+        engine,
+        new TrajectoryRecorder.Source() {
+          @Override
+          public int width() {
+            return 2;
+          }
+          @Override
+          public void getState(double[] state) {
+            state[0] = model.timeSum;
+            state[1] = model.stepsSum;
+          }
+        },
+        log);
+
+    engine.schedule(recorder, 0.0, 0.1, 0);
+    engine.animate(2.05);
+
+    assertEquals(21, log.size());
+    for (int i = 0; i < log.size(); ++i) {
+      long tick = log.getTick(i);
+      assertEquals(i * SimEngine.DEFAULT_TPS / 10, tick, SimEngine.DEFAULT_TPS / 1000);
+      assertEquals(tick / (double) SimEngine.DEFAULT_TPS, log.getTime(i), 0);
+      assertEquals(log.getTime(i), log.getValue(i, 0), 1e-9);
+    }
+    log.close();
+  }
+
+
+
+  private static long tick(int i) {
+    return 1000 + 100 * i;
+  }
+
+
+  private static double time(int i) {
+    return i / 8.0;
+  }
+
+
+  private static double[] values(int i, int width) {
+    double[] values = new double[width];
+    for (int column = 0; column < width; ++column)
+      values[column] = i * 10 + column + 0.5;
+    return values;
+  }
+
+
+  private static void assertRecords(TrajectoryLog log, int count) {
+    double[] out = new double[log.width()];
+    for (int i = 0; i < count; ++i) {
+      assertEquals(tick(i), log.getTick(i));
+      assertEquals(time(i), log.getTime(i), 0);
+      double[] expected = values(i, log.width());
+      log.getValues(i, out);
+      assertArrayEquals(expected, out, 0);
+      assertEquals(expected[1], log.getValue(i, 1), 0);
+      assertEquals(i, log.indexOf(tick(i)));
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Babak Farhang
+ */
+package com.gnahraf.util.tree;
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class DecisionTreeProcessorTest {
+
+
+  /**
+   * Records the region paths of the nodes it visits. Prunes nodes in
+   * the given region.
+   */
+  static class PathRecorder extends DecisionTreeProcessor<RegionProgression> {
+
+    final List<String> paths;
+    final int prunedRegion;
+    final int forkLevel;
+
+    PathRecorder(RegionProgression root, int prunedRegion, int forkLevel) {
+      super(root);
+      this.paths = Collections.synchronizedList(new ArrayList<>());
+      this.prunedRegion = prunedRegion;
+      this.forkLevel = forkLevel;
+    }
+
+    PathRecorder(PathRecorder parent, RegionProgression node) {
+      super(parent, node);
+      this.paths = parent.paths;
+      this.prunedRegion = parent.prunedRegion;
+      this.forkLevel = parent.forkLevel;
+    }
+
+    @Override
+    protected boolean processNode(RegionProgression node) {
+      String path = "";
+      for (RegionProgression n = node; !n.isRoot(); n = n.parent())
+        path = n.region() + "." + path;
+      paths.add(path);
+      return node.region() != prunedRegion;
+    }
+
+    @Override
+    protected boolean forkSubtree(RegionProgression node) {
+      return node.level() <= forkLevel;
+    }
+
+    @Override
+    protected PathRecorder newSubtreeProcessor(RegionProgression node) {
+      return new PathRecorder(this, node);
+    }
+  }
+
+
+  @Test
+  public void testSerialPreOrder() {
+    PathRecorder processor = new PathRecorder(new RegionProgression(4, 2), -1, 0);
+    processor.processTree();
+    List<String> expected = new ArrayList<>();
+    for (TreeNode node = new RegionProgression(4, 2).child(0); node != null; node = node.nextPreOrder()) {
+      String path = "";
+      for (RegionProgression n = (RegionProgression) node; !n.isRoot(); n = n.parent())
+        path = n.region() + "." + path;
+      expected.add(path);
+    }
+    assertEquals(expected, processor.paths);
+  }
+
+
+  @Test
+  public void testForkedMatchesSerial() {
+    for (int forkLevel = 1; forkLevel < 4; ++forkLevel)
+      assertForkedMatchesSerial(new RegionProgression(9, 4), 5, forkLevel);
+  }
+
+
+  @Test
+  public void testForkedMatchesSerialNoPruning() {
+    assertForkedMatchesSerial(new RegionProgression(8, 3), -1, 1);
+  }
+
+
+  private void assertForkedMatchesSerial(RegionProgression root, int prunedRegion, int forkLevel) {
+    PathRecorder serial = new PathRecorder(root, prunedRegion, forkLevel);
+    serial.processTree();
+
+    PathRecorder forked = new PathRecorder(root, prunedRegion, forkLevel);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      forked.processTree(pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    List<String> expected = new ArrayList<>(serial.paths);
+    List<String> actual = new ArrayList<>(forked.paths);
+    Collections.sort(expected);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+  }
+
+}